@@ -21,6 +21,7 @@ package org.sonar.ce;
 
 import org.sonar.ce.httpd.CeHttpServer;
 import org.sonar.ce.logging.ChangeLogLevelHttpAction;
+import org.sonar.ce.queue.TaskSubmittedHttpAction;
 import org.sonar.ce.systeminfo.SystemInfoHttpAction;
 import org.sonar.ce.taskprocessor.RefreshWorkerCountAction;
 import org.sonar.core.platform.Module;
@@ -32,6 +33,7 @@ public class CeHttpModule extends Module {
       CeHttpServer.class,
       SystemInfoHttpAction.class,
       ChangeLogLevelHttpAction.class,
-      RefreshWorkerCountAction.class);
+      RefreshWorkerCountAction.class,
+      TaskSubmittedHttpAction.class);
   }
 }
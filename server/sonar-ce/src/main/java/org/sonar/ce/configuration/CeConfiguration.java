@@ -38,10 +38,24 @@ public interface CeConfiguration {
 
   /**
    * The delay in millisecond before a {@link org.sonar.ce.taskprocessor.CeWorker} shall try and find a task
-   * to process when it's previous execution had nothing to do.
+   * to process for the first time.
    */
   long getQueuePollingDelay();
 
+  /**
+   * The delay in millisecond before a {@link org.sonar.ce.taskprocessor.CeWorker} shall try and find a task
+   * to process when it's previous execution had nothing to do and it has not been woken up by
+   * a {@link org.sonar.ce.queue.CeQueueSignal}.
+   */
+  long getQueueFallbackPollingDelay();
+
+  /**
+   * The maximum number of tasks a {@link org.sonar.ce.taskprocessor.CeWorker} claims each time it queries the queue,
+   * integer strictly greater than 0. Tasks claimed beyond the first one are reserved for the worker and processed
+   * by it without querying the queue again.
+   */
+  int getQueuePeekBatchSize();
+
   /**
    * Delay before running job that cleans CE tasks for the first time (in minutes).
    */
@@ -21,6 +21,7 @@ package org.sonar.ce.configuration;
 
 import javax.annotation.CheckForNull;
 import org.picocontainer.Startable;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
 
 import static java.lang.String.format;
@@ -30,13 +31,20 @@ import static java.lang.String.format;
  * {@link WorkerCountProvider}, if any is available, or use the {@link #DEFAULT_WORKER_COUNT default worker count}.
  * In addition, it always returns {@link #DEFAULT_QUEUE_POLLING_DELAY} when
  * {@link CeConfiguration#getQueuePollingDelay()} is called.
+ * The number of tasks a worker selects each time it queries the queue is read from property
+ * {@link #PROPERTY_QUEUE_PEEK_BATCH_SIZE}.
  */
 public class CeConfigurationImpl implements CeConfiguration, Startable {
+  static final String PROPERTY_QUEUE_PEEK_BATCH_SIZE = "sonar.ce.queuePeekBatchSize";
+
   private static final int DEFAULT_WORKER_THREAD_COUNT = 1;
   private static final int MAX_WORKER_THREAD_COUNT = 10;
   private static final int DEFAULT_WORKER_COUNT = 1;
   // 2 seconds
   private static final long DEFAULT_QUEUE_POLLING_DELAY = 2 * 1000L;
+  // 30 seconds, workers are woken up when tasks are submitted
+  private static final long DEFAULT_QUEUE_FALLBACK_POLLING_DELAY = 30 * 1000L;
+  private static final int DEFAULT_QUEUE_PEEK_BATCH_SIZE = 5;
   // 1 minute
   private static final long CANCEL_WORN_OUTS_INITIAL_DELAY = 1;
   // 10 minutes
@@ -45,18 +53,31 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
   @CheckForNull
   private final WorkerCountProvider workerCountProvider;
   private final int workerThreadCount;
+  private final int queuePeekBatchSize;
   private int workerCount;
 
-  public CeConfigurationImpl() {
+  public CeConfigurationImpl(Configuration config) {
     this.workerCountProvider = null;
     this.workerThreadCount = DEFAULT_WORKER_THREAD_COUNT;
     this.workerCount = DEFAULT_WORKER_COUNT;
+    this.queuePeekBatchSize = readQueuePeekBatchSize(config);
   }
 
-  public CeConfigurationImpl(WorkerCountProvider workerCountProvider) {
+  public CeConfigurationImpl(Configuration config, WorkerCountProvider workerCountProvider) {
     this.workerCountProvider = workerCountProvider;
     this.workerThreadCount = MAX_WORKER_THREAD_COUNT;
     this.workerCount = readWorkerCount(workerCountProvider);
+    this.queuePeekBatchSize = readQueuePeekBatchSize(config);
+  }
+
+  private static int readQueuePeekBatchSize(Configuration config) {
+    int value = config.getInt(PROPERTY_QUEUE_PEEK_BATCH_SIZE).orElse(DEFAULT_QUEUE_PEEK_BATCH_SIZE);
+    if (value < 1) {
+      throw MessageException.of(format(
+        "Property %s is invalid: '%s'. It must be an integer strictly greater than 0",
+        PROPERTY_QUEUE_PEEK_BATCH_SIZE, value));
+    }
+    return value;
   }
 
   private static int readWorkerCount(WorkerCountProvider workerCountProvider) {
@@ -105,6 +126,16 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
     return DEFAULT_QUEUE_POLLING_DELAY;
   }
 
+  @Override
+  public long getQueueFallbackPollingDelay() {
+    return DEFAULT_QUEUE_FALLBACK_POLLING_DELAY;
+  }
+
+  @Override
+  public int getQueuePeekBatchSize() {
+    return queuePeekBatchSize;
+  }
+
   @Override
   public long getCleanCeTasksInitialDelay() {
     return CANCEL_WORN_OUTS_INITIAL_DELAY;
@@ -51,7 +51,9 @@ import org.sonar.ce.db.ReadOnlyPropertiesDao;
 import org.sonar.ce.log.CeProcessLogging;
 import org.sonar.ce.platform.ComputeEngineExtensionInstaller;
 import org.sonar.ce.queue.CeQueueCleaner;
+import org.sonar.ce.queue.DistributedCeQueueSignal;
 import org.sonar.ce.queue.PurgeCeActivities;
+import org.sonar.ce.queue.StandaloneCeQueueSignal;
 import org.sonar.ce.settings.ProjectConfigurationFactory;
 import org.sonar.ce.taskprocessor.CeProcessingScheduler;
 import org.sonar.ce.taskprocessor.CeTaskProcessorModule;
@@ -192,10 +194,12 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
     if (props.valueAsBoolean("sonar.cluster.enabled")) {
       this.level4.add(
         HazelcastClientWrapperImpl.class,
-        CeDistributedInformationImpl.class);
+        CeDistributedInformationImpl.class,
+        DistributedCeQueueSignal.class);
     } else {
       this.level4.add(
-        StandaloneCeDistributedInformation.class);
+        StandaloneCeDistributedInformation.class,
+        StandaloneCeQueueSignal.class);
     }
     configureFromModules(this.level4);
     ServerExtensionInstaller extensionInstaller = this.level4.getComponentByType(ServerExtensionInstaller.class);
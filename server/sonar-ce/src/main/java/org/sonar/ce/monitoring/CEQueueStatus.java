@@ -61,6 +61,32 @@ public interface CEQueueStatus {
    */
   long addError(long processingTime);
 
+  /**
+   * Adds 1 to the count of times the queue has been queried by workers looking for a task to process.
+   *
+   * @return the new count of queries to the queue
+   *
+   * @see #getPeekCount()
+   */
+  long addPeek();
+
+  /**
+   * Adds the specified time to the counter of time spent by tasks in the queue before their processing started.
+   *
+   * @param waitingTime time between submission and start of processing of a task, in ms
+   *
+   * @throws IllegalArgumentException if waitingTime is < 0
+   */
+  void addWaitingTime(long waitingTime);
+
+  /**
+   * Adds the specified count to the counter of eligible tasks a worker failed to claim because another worker
+   * claimed them first.
+   *
+   * @throws IllegalArgumentException if conflicts is < 0
+   */
+  void addClaimConflicts(long conflicts);
+
   /**
    * Count of batch reports waiting for processing since startup, including reports received before instance startup.
    */
@@ -85,4 +111,20 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup, in milliseconds.
    */
   long getProcessingTime();
+
+  /**
+   * Count of queries to the queue made by workers looking for a task to process since startup.
+   */
+  long getPeekCount();
+
+  /**
+   * Time spent by tasks in the queue between their submission and the start of their processing, since startup,
+   * in milliseconds.
+   */
+  long getWaitingTime();
+
+  /**
+   * Count of eligible tasks workers failed to claim because another worker claimed them first, since startup.
+   */
+  long getClaimConflictCount();
 }
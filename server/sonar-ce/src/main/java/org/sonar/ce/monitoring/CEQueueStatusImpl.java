@@ -33,6 +33,9 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final AtomicLong peeks = new AtomicLong(0);
+  private final AtomicLong waitingTime = new AtomicLong(0);
+  private final AtomicLong claimConflicts = new AtomicLong(0);
 
   public CEQueueStatusImpl(DbClient dbClient) {
     this.dbClient = dbClient;
@@ -57,6 +60,23 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     return success.incrementAndGet();
   }
 
+  @Override
+  public long addPeek() {
+    return peeks.incrementAndGet();
+  }
+
+  @Override
+  public void addWaitingTime(long waitingTimeInMs) {
+    checkArgument(waitingTimeInMs >= 0, "Waiting time can not be < 0");
+    waitingTime.addAndGet(waitingTimeInMs);
+  }
+
+  @Override
+  public void addClaimConflicts(long conflicts) {
+    checkArgument(conflicts >= 0, "Claim conflicts can not be < 0");
+    claimConflicts.addAndGet(conflicts);
+  }
+
   private void addProcessingTime(long ms) {
     checkArgument(ms >= 0, "Processing time can not be < 0");
     processingTime.addAndGet(ms);
@@ -88,4 +108,19 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public long getPeekCount() {
+    return peeks.get();
+  }
+
+  @Override
+  public long getWaitingTime() {
+    return waitingTime.get();
+  }
+
+  @Override
+  public long getClaimConflictCount() {
+    return claimConflicts.get();
+  }
 }
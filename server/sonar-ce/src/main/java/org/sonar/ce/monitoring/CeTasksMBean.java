@@ -48,6 +48,21 @@ public interface CeTasksMBean {
    */
   long getProcessingTime();
 
+  /**
+   * Count of queries to the queue made by workers looking for a task to process since startup.
+   */
+  long getPeekCount();
+
+  /**
+   * Time spent by tasks in the queue before their processing started, since startup, in milliseconds.
+   */
+  long getWaitingTime();
+
+  /**
+   * Count of pending tasks workers failed to claim because another worker claimed them first, since startup.
+   */
+  long getClaimConflictCount();
+
   /**
    * Configured maximum number of workers.
    */
@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.Collection;
+
+/**
+ * Wakes up the idle workers of the Compute Engine(s) when tasks are added to the queue.
+ * <p>
+ * Signals are best-effort: a signal may be lost (eg. a Compute Engine is restarting), workers
+ * must still poll the queue periodically.
+ * </p>
+ */
+public interface CeQueueSignal extends CeTaskSubmitListener {
+
+  /**
+   * Notifies the listeners of all the Compute Engines that tasks have been added to the queue.
+   */
+  void signal();
+
+  /**
+   * Registers a listener to be called, from any thread, every time a signal is received by the current
+   * Compute Engine.
+   */
+  void addListener(Listener listener);
+
+  @Override
+  default void onSubmit(Collection<CeTask> tasks) {
+    if (!tasks.isEmpty()) {
+      signal();
+    }
+  }
+
+  @FunctionalInterface
+  interface Listener {
+    void onSignal();
+  }
+}
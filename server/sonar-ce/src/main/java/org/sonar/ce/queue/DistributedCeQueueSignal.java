@@ -0,0 +1,85 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.cluster.HazelcastClientWrapper;
+
+import static org.sonar.ce.queue.StandaloneCeQueueSignal.notifyListeners;
+import static org.sonar.process.cluster.ClusterObjectKeys.CE_QUEUE_SIGNAL;
+
+/**
+ * Signals tasks added to the queue to the workers of the current Compute Engine and, through a Hazelcast
+ * topic, to the workers of the other Compute Engines of the cluster.
+ * <p>
+ * The message published on the topic is the Hazelcast UUID of the emitting Compute Engine, so that
+ * it can ignore its own signals (its listeners are notified directly).
+ * </p>
+ */
+public class DistributedCeQueueSignal implements CeQueueSignal, Startable {
+  private static final Logger LOG = Loggers.get(DistributedCeQueueSignal.class);
+
+  private final HazelcastClientWrapper hazelcastClientWrapper;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  @CheckForNull
+  private String registrationId;
+
+  public DistributedCeQueueSignal(HazelcastClientWrapper hazelcastClientWrapper) {
+    this.hazelcastClientWrapper = hazelcastClientWrapper;
+  }
+
+  @Override
+  public void start() {
+    String localUuid = hazelcastClientWrapper.getClientUUID();
+    this.registrationId = hazelcastClientWrapper.<String>subscribe(CE_QUEUE_SIGNAL, emitterUuid -> {
+      if (!localUuid.equals(emitterUuid)) {
+        notifyListeners(listeners);
+      }
+    });
+  }
+
+  @Override
+  public void stop() {
+    if (registrationId != null) {
+      hazelcastClientWrapper.unsubscribe(CE_QUEUE_SIGNAL, registrationId);
+      registrationId = null;
+    }
+  }
+
+  @Override
+  public void signal() {
+    notifyListeners(listeners);
+    try {
+      hazelcastClientWrapper.publish(CE_QUEUE_SIGNAL, hazelcastClientWrapper.getClientUUID());
+    } catch (Exception e) {
+      LOG.warn("Failed to notify other Compute Engines of tasks added to the queue", e);
+    }
+  }
+
+  @Override
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+}
@@ -40,6 +40,12 @@ public interface InternalCeQueue extends CeQueue {
    *
    * <p>Only a single task can be peeked by project.</p>
    *
+   * <p>Several pending tasks may be selected at once for the specified worker (see
+   * {@link org.sonar.ce.configuration.CeConfiguration#getQueuePeekBatchSize()}). The ones which are not returned
+   * remain pending but are reserved in database for this worker, which tries to claim them, in order, on its next
+   * calls to this method before querying the queue again. Reservations expire, so that reserved tasks are not lost
+   * if the worker stops.</p>
+   *
    * <p>An unchecked exception may be thrown on technical errors (db connection, ...).</p>
    *
    * <p>Tasks which have been executed twice already but are still {@link org.sonar.db.ce.CeQueueDto.Status#PENDING}
@@ -66,6 +72,12 @@ public interface InternalCeQueue extends CeQueue {
    */
   void remove(CeTask task, Status status, @Nullable CeTaskResult taskResult, @Nullable Throwable error);
 
+  /**
+   * Releases the tasks reserved for the specified worker which it did not claim yet. These tasks are still
+   * {@link org.sonar.db.ce.CeQueueDto.Status#PENDING} and can be claimed right away by other workers.
+   */
+  void releaseReserved(String workerUuid);
+
   void cancelWornOuts();
 
   void resetTasksWithUnknownWorkerUUIDs(Set<String> knownWorkerUUIDs);
@@ -23,15 +23,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.configuration.CeConfiguration;
 import org.sonar.ce.container.ComputeEngineStatus;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.core.util.UuidFactory;
@@ -40,6 +45,8 @@ import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDao;
 import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.EligibleTaskDto;
+import org.sonar.db.ce.PeekResult;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -55,14 +62,27 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
   private final ComputeEngineStatus computeEngineStatus;
+  private final CeConfiguration ceConfiguration;
+  /**
+   * Pending tasks reserved for a worker when it last queried the queue and which it will try to claim next,
+   * by worker uuid. The reservations are stored in database by {@link CeQueueDao#peek(DbSession, String, int, int)}.
+   */
+  private final Map<String, Deque<EligibleTaskDto>> reservedTasks = new ConcurrentHashMap<>();
 
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
-    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus) {
-    super(dbClient, uuidFactory, defaultOrganizationProvider);
+    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus, CeConfiguration ceConfiguration) {
+    this(system2, dbClient, uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus, ceConfiguration, new CeTaskSubmitListener[0]);
+  }
+
+  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
+    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus, CeConfiguration ceConfiguration,
+    CeTaskSubmitListener[] submitListeners) {
+    super(dbClient, uuidFactory, defaultOrganizationProvider, submitListeners);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
     this.computeEngineStatus = computeEngineStatus;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
@@ -70,6 +90,8 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     requireNonNull(workerUuid, "workerUuid can't be null");
 
     if (computeEngineStatus.getStatus() != ComputeEngineStatus.Status.STARTED) {
+      // Compute Engine is stopping, reserved tasks are still pending and will be processed by other Compute Engines
+      releaseReserved(workerUuid);
       return Optional.empty();
     }
     try (DbSession dbSession = dbClient.openSession(false)) {
@@ -78,16 +100,68 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
       if (i > 0) {
         LOG.debug("{} in progress tasks reset for worker uuid {}", i, workerUuid);
       }
-      Optional<CeQueueDto> dto = ceQueueDao.peek(dbSession, workerUuid, MAX_EXECUTION_COUNT);
+      Optional<CeQueueDto> dto = claimReservedTask(dbSession, workerUuid);
+      if (!dto.isPresent()) {
+        dto = claimTask(dbSession, workerUuid);
+      }
       CeTask task = null;
       if (dto.isPresent()) {
         task = loadTask(dbSession, dto.get());
         queueStatus.addInProgress();
+        addWaitingTime(dto.get());
       }
       return Optional.ofNullable(task);
     }
   }
 
+  private Optional<CeQueueDto> claimReservedTask(DbSession dbSession, String workerUuid) {
+    Deque<EligibleTaskDto> reserved = reservedTasks.get(workerUuid);
+    if (reserved == null) {
+      return Optional.empty();
+    }
+    EligibleTaskDto eligible;
+    while ((eligible = reserved.poll()) != null) {
+      Optional<CeQueueDto> claimed = dbClient.ceQueueDao().tryToClaimReserved(dbSession, eligible, workerUuid);
+      if (claimed.isPresent()) {
+        return claimed;
+      }
+      queueStatus.addClaimConflicts(1);
+      LOG.debug("Reserved task {} can not be claimed anymore by worker uuid {}", eligible.getUuid(), workerUuid);
+    }
+    reservedTasks.remove(workerUuid);
+    return Optional.empty();
+  }
+
+  private Optional<CeQueueDto> claimTask(DbSession dbSession, String workerUuid) {
+    PeekResult peekResult = dbClient.ceQueueDao().peek(dbSession, workerUuid, MAX_EXECUTION_COUNT, ceConfiguration.getQueuePeekBatchSize());
+    queueStatus.addPeek();
+    queueStatus.addClaimConflicts(peekResult.getConflicts());
+    List<EligibleTaskDto> reserved = peekResult.getReserved();
+    if (!reserved.isEmpty()) {
+      reservedTasks.put(workerUuid, new ArrayDeque<>(reserved));
+    }
+    return peekResult.getTask();
+  }
+
+  @Override
+  public void releaseReserved(String workerUuid) {
+    if (reservedTasks.remove(workerUuid) == null) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      int i = dbClient.ceQueueDao().releaseReservations(dbSession, workerUuid);
+      dbSession.commit();
+      LOG.debug("{} reserved tasks released for worker uuid {}", i, workerUuid);
+    }
+  }
+
+  private void addWaitingTime(CeQueueDto dto) {
+    Long startedAt = dto.getStartedAt();
+    if (startedAt != null && startedAt >= dto.getCreatedAt()) {
+      queueStatus.addWaitingTime(startedAt - dto.getCreatedAt());
+    }
+  }
+
   @Override
   public int clear() {
     return cancelAll(true);
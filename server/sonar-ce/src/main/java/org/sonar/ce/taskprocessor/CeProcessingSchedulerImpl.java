@@ -22,7 +22,8 @@ package org.sonar.ce.taskprocessor;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -30,8 +31,8 @@ import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.configuration.CeConfiguration;
+import org.sonar.ce.queue.CeQueueSignal;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
@@ -39,18 +40,22 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
   private static final long DELAY_BETWEEN_DISABLED_TASKS = 30 * 1000L; // 30 seconds
 
   private final CeProcessingSchedulerExecutorService executorService;
+  private final long initialDelay;
   private final long delayBetweenEnabledTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
   private final EnabledCeWorkerController ceWorkerController;
+  private final CeQueueSignal ceQueueSignal;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
     CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerFactory ceCeWorkerFactory,
-    EnabledCeWorkerController ceWorkerController) {
+    EnabledCeWorkerController ceWorkerController, CeQueueSignal ceQueueSignal) {
     this.executorService = processingExecutorService;
 
-    this.delayBetweenEnabledTasks = ceConfiguration.getQueuePollingDelay();
+    this.initialDelay = ceConfiguration.getQueuePollingDelay();
+    this.delayBetweenEnabledTasks = ceConfiguration.getQueueFallbackPollingDelay();
     this.ceWorkerController = ceWorkerController;
+    this.ceQueueSignal = ceQueueSignal;
     this.timeUnit = MILLISECONDS;
 
     int threadWorkerCount = ceConfiguration.getWorkerMaxCount();
@@ -64,8 +69,18 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
   @Override
   public void startScheduling() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<CeWorker.Result> future = executorService.schedule(chainingCallback.worker, delayBetweenEnabledTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.chainWithDelay(initialDelay);
+    }
+    ceQueueSignal.addListener(this::wakeUpIdleWorkers);
+  }
+
+  /**
+   * Idle workers (ie. the ones waiting for the polling delay to expire because they previously found no task to
+   * process) look for a task right away.
+   */
+  private void wakeUpIdleWorkers() {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.wakeUp();
     }
   }
 
@@ -103,19 +118,25 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
     }
   }
 
-  private class ChainingCallback implements FutureCallback<CeWorker.Result> {
+  private class ChainingCallback {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
     private final CeWorker worker;
+    private final Callable<CeWorker.Result> idleWorker;
 
     @CheckForNull
     private ListenableFuture<CeWorker.Result> workerFuture;
+    /**
+     * {@code true} while {@link #workerFuture} is a delayed call to the worker which has not started yet.
+     * Guarded by {@code this}.
+     */
+    private boolean idle = false;
 
     public ChainingCallback(CeWorker worker) {
       this.worker = worker;
+      this.idleWorker = this::callIfStillIdle;
     }
 
-    @Override
-    public void onSuccess(@Nullable CeWorker.Result result) {
+    private void onSuccess(@Nullable CeWorker.Result result) {
       if (result == null) {
         chainWithEnabledTaskDelay();
       } else {
@@ -133,8 +154,11 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
       }
     }
 
-    @Override
-    public void onFailure(Throwable t) {
+    private void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // worker has been stopped
+        return;
+      }
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -142,7 +166,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
       }
     }
 
-    private void chainWithoutDelay() {
+    private synchronized void chainWithoutDelay() {
       if (keepRunning()) {
         workerFuture = executorService.submit(worker);
       }
@@ -150,34 +174,98 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
     }
 
     private void chainWithEnabledTaskDelay() {
+      chainWithDelay(delayBetweenEnabledTasks);
+    }
+
+    private synchronized void chainWithDelay(long delay) {
       if (keepRunning()) {
-        workerFuture = executorService.schedule(worker, delayBetweenEnabledTasks, timeUnit);
+        idle = true;
+        workerFuture = executorService.schedule(idleWorker, delay, timeUnit);
       }
       addCallback();
     }
 
-    private void chainWithDisabledTaskDelay() {
+    private synchronized void chainWithDisabledTaskDelay() {
       if (keepRunning()) {
         workerFuture = executorService.schedule(worker, DELAY_BETWEEN_DISABLED_TASKS, timeUnit);
       }
       addCallback();
     }
 
+    /**
+     * Calls the worker unless it has been woken up in the meantime, in which case the worker has already been
+     * called (or is being called) by the chain started by {@link #wakeUp()}, and the result of this call is ignored
+     * as its future is not {@link #workerFuture} anymore.
+     */
+    @CheckForNull
+    private CeWorker.Result callIfStillIdle() throws Exception {
+      synchronized (this) {
+        if (!idle) {
+          return null;
+        }
+        idle = false;
+      }
+      return worker.call();
+    }
+
+    /**
+     * Cancels the delayed call to the worker, if any, and calls it right away.
+     */
+    public synchronized void wakeUp() {
+      if (!idle || !keepRunning() || workerFuture == null) {
+        return;
+      }
+      idle = false;
+      workerFuture.cancel(false);
+      chainWithoutDelay();
+    }
+
     private void addCallback() {
       if (workerFuture != null && keepRunning()) {
-        Futures.addCallback(workerFuture, this, executorService);
+        Futures.addCallback(workerFuture, new CurrentFutureCallback(workerFuture), executorService);
       }
     }
 
+    private synchronized boolean isCurrent(ListenableFuture<CeWorker.Result> future) {
+      return future == workerFuture;
+    }
+
     private boolean keepRunning() {
       return keepRunning.get();
     }
 
-    public void stop(boolean interrupt) {
+    public synchronized void stop(boolean interrupt) {
       this.keepRunning.set(false);
       if (workerFuture != null) {
         workerFuture.cancel(interrupt);
       }
     }
+
+    /**
+     * Chains the next call to the worker once the given future completes, unless this future has been replaced by
+     * {@link #wakeUp()}. A delayed call which was already running when woken up can't be cancelled, so it must not
+     * start a second chain next to the one started by {@link #wakeUp()}.
+     */
+    private class CurrentFutureCallback implements FutureCallback<CeWorker.Result> {
+      private final ListenableFuture<CeWorker.Result> future;
+
+      private CurrentFutureCallback(ListenableFuture<CeWorker.Result> future) {
+        this.future = future;
+      }
+
+      @Override
+      public void onSuccess(@Nullable CeWorker.Result result) {
+        if (isCurrent(future)) {
+          ChainingCallback.this.onSuccess(result);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (isCurrent(future)) {
+          ChainingCallback.this.onFailure(t);
+        }
+      }
+    }
   }
 }
@@ -72,6 +72,7 @@ public class CeWorkerImpl implements CeWorker {
 
   private Result findAndProcessTask() {
     if (!enabledCeWorkerController.isEnabled(this)) {
+      queue.releaseReserved(uuid);
       return DISABLED;
     }
     Optional<CeTask> ceTask = tryAndFindTaskToExecute();
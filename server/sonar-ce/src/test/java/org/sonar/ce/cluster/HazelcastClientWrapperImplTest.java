@@ -37,7 +37,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang.RandomStringUtils;
 import org.junit.AfterClass;
@@ -226,6 +228,27 @@ public class HazelcastClientWrapperImplTest {
     }
   }
 
+  @Test
+  public void client_must_receive_messages_published_on_topics() throws InterruptedException {
+    hzClient.start();
+    try {
+      BlockingQueue<String> received = new LinkedBlockingQueue<>();
+      String registrationId = hzClient.subscribe("TEST4", received::add);
+
+      hzCluster.getTopic("TEST4").publish("foo");
+      hzClient.publish("TEST4", "bar");
+
+      assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("foo");
+      assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("bar");
+
+      hzClient.unsubscribe("TEST4", registrationId);
+      hzCluster.getTopic("TEST4").publish("baz");
+      assertThat(received.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    } finally {
+      hzClient.stop();
+    }
+  }
+
   @Test
   public void configuration_tweaks_of_hazelcast_must_be_present() {
     hzClient.start();
@@ -24,6 +24,7 @@ import java.util.stream.IntStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.MessageException;
 
 import static java.lang.Math.abs;
@@ -33,16 +34,17 @@ public class CeConfigurationImplTest {
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
+  private MapSettings settings = new MapSettings();
   private SimpleWorkerCountProvider workerCountProvider = new SimpleWorkerCountProvider();
 
   @Test
   public void getWorkerCount_returns_1_when_there_is_no_WorkerCountProvider() {
-    assertThat(new CeConfigurationImpl().getWorkerCount()).isEqualTo(1);
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getWorkerCount()).isEqualTo(1);
   }
 
   @Test
   public void getWorkerMaxCount_returns_1_when_there_is_no_WorkerCountProvider() {
-    assertThat(new CeConfigurationImpl().getWorkerMaxCount()).isEqualTo(1);
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getWorkerMaxCount()).isEqualTo(1);
   }
 
   @Test
@@ -50,7 +52,7 @@ public class CeConfigurationImplTest {
     int value = randomValidWorkerCount();
     workerCountProvider.set(value);
 
-    assertThat(new CeConfigurationImpl(workerCountProvider).getWorkerCount()).isEqualTo(value);
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getWorkerCount()).isEqualTo(value);
   }
 
   @Test
@@ -58,7 +60,7 @@ public class CeConfigurationImplTest {
     int value = randomValidWorkerCount();
     workerCountProvider.set(value);
 
-    assertThat(new CeConfigurationImpl(workerCountProvider).getWorkerMaxCount()).isEqualTo(10);
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getWorkerMaxCount()).isEqualTo(10);
   }
 
   @Test
@@ -67,7 +69,7 @@ public class CeConfigurationImplTest {
 
     expectMessageException(0);
 
-    new CeConfigurationImpl(workerCountProvider);
+    new CeConfigurationImpl(settings.asConfig(), workerCountProvider);
   }
 
   @Test
@@ -77,7 +79,7 @@ public class CeConfigurationImplTest {
 
     expectMessageException(value);
 
-    new CeConfigurationImpl(workerCountProvider);
+    new CeConfigurationImpl(settings.asConfig(), workerCountProvider);
   }
 
   @Test
@@ -87,7 +89,7 @@ public class CeConfigurationImplTest {
 
     expectMessageException(value);
 
-    new CeConfigurationImpl(workerCountProvider);
+    new CeConfigurationImpl(settings.asConfig(), workerCountProvider);
   }
 
   private void expectMessageException(int value) {
@@ -98,25 +100,64 @@ public class CeConfigurationImplTest {
 
   @Test
   public void getCleanCeTasksInitialDelay_returns_1() {
-    assertThat(new CeConfigurationImpl().getCleanCeTasksInitialDelay())
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getCleanCeTasksInitialDelay())
       .isEqualTo(1L);
     workerCountProvider.set(1);
-    assertThat(new CeConfigurationImpl(workerCountProvider).getCleanCeTasksInitialDelay())
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getCleanCeTasksInitialDelay())
       .isEqualTo(1L);
   }
 
   @Test
   public void getCleanCeTasksDelay_returns_10() {
-    assertThat(new CeConfigurationImpl().getCleanCeTasksDelay())
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getCleanCeTasksDelay())
       .isEqualTo(10L);
     workerCountProvider.set(1);
-    assertThat(new CeConfigurationImpl(workerCountProvider).getCleanCeTasksDelay())
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getCleanCeTasksDelay())
       .isEqualTo(10L);
   }
 
+  @Test
+  public void getQueueFallbackPollingDelay_returns_30_seconds() {
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getQueueFallbackPollingDelay())
+      .isEqualTo(30_000L);
+    workerCountProvider.set(1);
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getQueueFallbackPollingDelay())
+      .isEqualTo(30_000L);
+  }
+
+  @Test
+  public void getQueuePeekBatchSize_returns_5() {
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getQueuePeekBatchSize())
+      .isEqualTo(5);
+    workerCountProvider.set(1);
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getQueuePeekBatchSize())
+      .isEqualTo(5);
+  }
+
+  @Test
+  public void getQueuePeekBatchSize_returns_value_of_property() {
+    settings.setProperty("sonar.ce.queuePeekBatchSize", 3);
+
+    assertThat(new CeConfigurationImpl(settings.asConfig()).getQueuePeekBatchSize())
+      .isEqualTo(3);
+    workerCountProvider.set(1);
+    assertThat(new CeConfigurationImpl(settings.asConfig(), workerCountProvider).getQueuePeekBatchSize())
+      .isEqualTo(3);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_queuePeekBatchSize_is_0() {
+    settings.setProperty("sonar.ce.queuePeekBatchSize", 0);
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("Property sonar.ce.queuePeekBatchSize is invalid: '0'. It must be an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings.asConfig());
+  }
+
   @Test
   public void refresh_does_not_change_any_value_when_there_is_no_WorkerCountProvider() {
-    CeConfigurationImpl underTest = new CeConfigurationImpl();
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings.asConfig());
     long cleanCeTasksInitialDelay = underTest.getCleanCeTasksInitialDelay();
     long cleanCeTasksDelay = underTest.getCleanCeTasksDelay();
     long queuePollingDelay = underTest.getQueuePollingDelay();
@@ -137,7 +178,7 @@ public class CeConfigurationImplTest {
   @Test
   public void refresh_updates_only_workerCount_from_WorkerCountProvider_when_there_WorkerCountProvider_is_present() {
     workerCountProvider.set(randomValidWorkerCount());
-    CeConfigurationImpl underTest = new CeConfigurationImpl(workerCountProvider);
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings.asConfig(), workerCountProvider);
     long cleanCeTasksInitialDelay = underTest.getCleanCeTasksInitialDelay();
     long cleanCeTasksDelay = underTest.getCleanCeTasksDelay();
     long queuePollingDelay = underTest.getQueuePollingDelay();
@@ -31,6 +31,8 @@ public class CeConfigurationRule extends ExternalResource implements CeConfigura
   private int workerThreadCount = 1;
   private int workerCount = 1;
   private long queuePollingDelay = 2 * 1000L;
+  private long queueFallbackPollingDelay = 20 * 1000L;
+  private int queuePeekBatchSize = 1;
   private long cancelWornOutsInitialDelay = 1L;
   private long cancelWornOutsDelay = 10L;
   private Consumer<CeConfigurationRule> refreshCallHook;
@@ -77,6 +79,27 @@ public class CeConfigurationRule extends ExternalResource implements CeConfigura
     this.queuePollingDelay = queuePollingDelay;
   }
 
+  @Override
+  public long getQueueFallbackPollingDelay() {
+    return queueFallbackPollingDelay;
+  }
+
+  public void setQueueFallbackPollingDelay(long queueFallbackPollingDelay) {
+    checkArgument(queueFallbackPollingDelay > 0, "Queue fallback polling delay must be >= 0");
+    this.queueFallbackPollingDelay = queueFallbackPollingDelay;
+  }
+
+  @Override
+  public int getQueuePeekBatchSize() {
+    return queuePeekBatchSize;
+  }
+
+  public CeConfigurationRule setQueuePeekBatchSize(int queuePeekBatchSize) {
+    checkArgument(queuePeekBatchSize >= 1, "Queue peek batch size must be >= 1");
+    this.queuePeekBatchSize = queuePeekBatchSize;
+    return this;
+  }
+
   @Override
   public long getCleanCeTasksInitialDelay() {
     return cancelWornOutsInitialDelay;
@@ -123,12 +123,12 @@ public class ComputeEngineContainerImplTest {
           + 72 // level 4
           + 4 // content of CeConfigurationModule
           + 4 // content of CeQueueModule
-          + 4 // content of CeHttpModule
+          + 5 // content of CeHttpModule
           + 3 // content of CeTaskCommonsModule
-          + 4 // content of ProjectAnalysisTaskModule
+          + 5 // content of ProjectAnalysisTaskModule
           + 5 // content of CeTaskProcessorModule
           + 3 // CeCleaningModule + its content
-          + 1 // CeDistributedInformation
+          + 2 // CeDistributedInformation and CeQueueSignal
     );
     assertThat(picoContainer.getParent().getComponentAdapters()).hasSize(
       CONTAINER_ITSELF
@@ -142,8 +142,8 @@ public class ComputeEngineContainerImplTest {
     assertThat(picoContainer.getParent().getParent().getParent().getComponentAdapters()).hasSize(
       COMPONENTS_IN_LEVEL_1_AT_CONSTRUCTION
         + 25 // level 1
-        + 49 // content of DaoModule
-        + 3 // content of EsSearchModule
+        + 50 // content of DaoModule
+        + 4 // content of EsSearchModule
         + 64 // content of CorePropertyDefinitions
         + 1 // StopFlagContainer
     );
@@ -50,6 +50,9 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(0);
     assertThat(underTest.getSuccessCount()).isEqualTo(0);
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
+    assertThat(underTest.getPeekCount()).isEqualTo(0);
+    assertThat(underTest.getWaitingTime()).isEqualTo(0);
+    assertThat(underTest.getClaimConflictCount()).isEqualTo(0);
   }
 
   @Test
@@ -133,6 +136,51 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getProcessingTime()).isEqualTo(calls);
   }
 
+  @Test
+  public void addPeek_increases_PeekCount_by_1_per_call() {
+    int calls = new Random().nextInt(SOME_RANDOM_MAX);
+    for (int i = 0; i < calls; i++) {
+      underTest.addPeek();
+    }
+
+    assertThat(underTest.getPeekCount()).isEqualTo(calls);
+    assertThat(underTest.getInProgressCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void addWaitingTime_throws_IAE_if_time_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Waiting time can not be < 0");
+
+    underTest.addWaitingTime(-1);
+  }
+
+  @Test
+  public void addWaitingTime_sums_waiting_times() {
+    underTest.addWaitingTime(SOME_PROCESSING_TIME);
+    underTest.addWaitingTime(1);
+
+    assertThat(underTest.getWaitingTime()).isEqualTo(SOME_PROCESSING_TIME + 1);
+    assertThat(underTest.getProcessingTime()).isEqualTo(0);
+  }
+
+  @Test
+  public void addClaimConflicts_throws_IAE_if_count_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Claim conflicts can not be < 0");
+
+    underTest.addClaimConflicts(-1);
+  }
+
+  @Test
+  public void addClaimConflicts_sums_conflicts() {
+    underTest.addClaimConflicts(3);
+    underTest.addClaimConflicts(0);
+    underTest.addClaimConflicts(2);
+
+    assertThat(underTest.getClaimConflictCount()).isEqualTo(5);
+  }
+
   @Test
   public void count_Pending_from_database() {
     when(dbClient.ceQueueDao().countByStatus(any(DbSession.class), eq(CeQueueDto.Status.PENDING))).thenReturn(42);
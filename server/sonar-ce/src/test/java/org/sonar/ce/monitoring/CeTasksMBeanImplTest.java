@@ -36,6 +36,9 @@ public class CeTasksMBeanImplTest {
   private static final long ERROR_COUNT = 10;
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
+  private static final long PEEK_COUNT = 42;
+  private static final long WAITING_TIME = 1_234;
+  private static final long CLAIM_CONFLICT_COUNT = 17;
   private static final int WORKER_MAX_COUNT = 666;
   private static final int WORKER_COUNT = 56;
 
@@ -59,6 +62,9 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getPeekCount()).isEqualTo(PEEK_COUNT);
+    assertThat(underTest.getWaitingTime()).isEqualTo(WAITING_TIME);
+    assertThat(underTest.getClaimConflictCount()).isEqualTo(CLAIM_CONFLICT_COUNT);
   }
 
   @Test
@@ -75,7 +81,7 @@ public class CeTasksMBeanImplTest {
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
     assertThat(section.getName()).isEqualTo("Compute Engine Tasks");
-    assertThat(section.getAttributesCount()).isEqualTo(7);
+    assertThat(section.getAttributesCount()).isEqualTo(10);
   }
 
   /**
@@ -124,6 +130,36 @@ public class CeTasksMBeanImplTest {
       return PROCESSING_TIME;
     }
 
+    @Override
+    public long addPeek() {
+      return methodNotImplemented();
+    }
+
+    @Override
+    public void addWaitingTime(long waitingTime) {
+      methodNotImplemented();
+    }
+
+    @Override
+    public void addClaimConflicts(long conflicts) {
+      methodNotImplemented();
+    }
+
+    @Override
+    public long getPeekCount() {
+      return PEEK_COUNT;
+    }
+
+    @Override
+    public long getWaitingTime() {
+      return WAITING_TIME;
+    }
+
+    @Override
+    public long getClaimConflictCount() {
+      return CLAIM_CONFLICT_COUNT;
+    }
+
     private long methodNotImplemented() {
       throw new UnsupportedOperationException("Not Implemented");
     }
@@ -150,6 +186,16 @@ public class CeTasksMBeanImplTest {
       throw new UnsupportedOperationException("getQueuePollingDelay is not implemented");
     }
 
+    @Override
+    public long getQueueFallbackPollingDelay() {
+      throw new UnsupportedOperationException("getQueueFallbackPollingDelay is not implemented");
+    }
+
+    @Override
+    public int getQueuePeekBatchSize() {
+      throw new UnsupportedOperationException("getQueuePeekBatchSize is not implemented");
+    }
+
     @Override
     public long getCleanCeTasksInitialDelay() {
       throw new UnsupportedOperationException("getCleanCeTasksInitialDelay is not implemented");
@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.ce.cluster.HazelcastClientWrapper;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.sonar.process.cluster.ClusterObjectKeys.CE_QUEUE_SIGNAL;
+
+public class DistributedCeQueueSignalTest {
+  private static final String LOCAL_UUID = "local uuid";
+  private static final String REGISTRATION_ID = "registration id";
+
+  private HazelcastClientWrapper hzClientWrapper = mock(HazelcastClientWrapper.class);
+  private CeQueueSignal.Listener listener = mock(CeQueueSignal.Listener.class);
+  private DistributedCeQueueSignal underTest = new DistributedCeQueueSignal(hzClientWrapper);
+
+  @Test
+  public void signal_notifies_local_listeners_and_publishes_to_cluster() {
+    when(hzClientWrapper.getClientUUID()).thenReturn(LOCAL_UUID);
+    underTest.addListener(listener);
+
+    underTest.signal();
+
+    verify(listener).onSignal();
+    verify(hzClientWrapper).publish(CE_QUEUE_SIGNAL, LOCAL_UUID);
+  }
+
+  @Test
+  public void signal_notifies_local_listeners_even_if_publication_fails() {
+    when(hzClientWrapper.getClientUUID()).thenReturn(LOCAL_UUID);
+    doThrow(new IllegalStateException("faking Hazelcast failure")).when(hzClientWrapper).publish(CE_QUEUE_SIGNAL, LOCAL_UUID);
+    underTest.addListener(listener);
+
+    underTest.signal();
+
+    verify(listener).onSignal();
+  }
+
+  @Test
+  public void signals_from_other_Compute_Engines_notify_local_listeners() {
+    Consumer<String> topicListener = startAndCaptureTopicListener();
+
+    topicListener.accept("other uuid");
+
+    verify(listener).onSignal();
+  }
+
+  @Test
+  public void signals_from_current_Compute_Engine_are_ignored_when_received_from_cluster() {
+    Consumer<String> topicListener = startAndCaptureTopicListener();
+
+    topicListener.accept(LOCAL_UUID);
+
+    verifyZeroInteractions(listener);
+  }
+
+  @Test
+  public void stop_unsubscribes_from_cluster_topic() {
+    startAndCaptureTopicListener();
+
+    underTest.stop();
+
+    verify(hzClientWrapper).unsubscribe(CE_QUEUE_SIGNAL, REGISTRATION_ID);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Consumer<String> startAndCaptureTopicListener() {
+    when(hzClientWrapper.getClientUUID()).thenReturn(LOCAL_UUID);
+    when(hzClientWrapper.subscribe(eq(CE_QUEUE_SIGNAL), any(Consumer.class))).thenReturn(REGISTRATION_ID);
+    underTest.addListener(listener);
+    underTest.start();
+
+    ArgumentCaptor<Consumer> captor = ArgumentCaptor.forClass(Consumer.class);
+    verify(hzClientWrapper).subscribe(eq(CE_QUEUE_SIGNAL), captor.capture());
+    return captor.getValue();
+  }
+}
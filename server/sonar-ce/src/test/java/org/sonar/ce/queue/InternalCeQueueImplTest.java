@@ -33,6 +33,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.AlwaysIncreasingSystem2;
+import org.sonar.ce.configuration.CeConfigurationRule;
 import org.sonar.ce.container.ComputeEngineStatus;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.monitoring.CEQueueStatusImpl;
@@ -69,6 +70,8 @@ public class InternalCeQueueImplTest {
   public ExpectedException expectedException = ExpectedException.none();
   @Rule
   public DbTester dbTester = DbTester.create(system2);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private DbSession session = dbTester.getSession();
 
@@ -76,7 +79,8 @@ public class InternalCeQueueImplTest {
   private CEQueueStatus queueStatus = new CEQueueStatusImpl(dbTester.getDbClient());
   private DefaultOrganizationProvider defaultOrganizationProvider = mock(DefaultOrganizationProvider.class);
   private ComputeEngineStatus computeEngineStatus = mock(ComputeEngineStatus.class);
-  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus);
+  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus,
+    ceConfiguration);
 
   @Before
   public void setUp() throws Exception {
@@ -299,6 +303,138 @@ public class InternalCeQueueImplTest {
     assertThat(ceQueueDto.getWorkerUuid()).isEqualTo(WORKER_UUID_1);
   }
 
+  @Test
+  public void peek_records_number_of_peeks_and_waiting_time_of_peeked_task() {
+    CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task.getUuid());
+    assertThat(underTest.peek(WORKER_UUID_2).isPresent()).isFalse();
+
+    CeQueueDto ceQueueDto = dbTester.getDbClient().ceQueueDao().selectByUuid(session, task.getUuid()).get();
+    assertThat(queueStatus.getPeekCount()).isEqualTo(2);
+    assertThat(queueStatus.getWaitingTime()).isEqualTo(ceQueueDto.getStartedAt() - ceQueueDto.getCreatedAt());
+  }
+
+  @Test
+  public void peek_reserves_pending_tasks_for_worker_and_claims_them_on_next_peeks() {
+    ceConfiguration.setQueuePeekBatchSize(3);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    submit(CeTaskTypes.REPORT, "PROJECT_3");
+    CeTask task4 = submit(CeTaskTypes.REPORT, "PROJECT_4");
+
+    // no more than half of the eligible tasks are selected
+    CeTask peek = underTest.peek(WORKER_UUID_1).get();
+    assertThat(peek.getUuid()).isEqualTo(task1.getUuid());
+    CeQueueDto reserved = dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid()).get();
+    assertThat(reserved.getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+    assertThat(reserved.getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(reserved.getStartedAt()).isNull();
+    underTest.remove(peek, CeActivityDto.Status.SUCCESS, null, null);
+
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task2.getUuid());
+    CeQueueDto started = dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid()).get();
+    assertThat(started.getStatus()).isEqualTo(CeQueueDto.Status.IN_PROGRESS);
+    assertThat(started.getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(started.getStartedAt()).isNotNull();
+    assertThat(started.getExecutionCount()).isEqualTo(1);
+    // queue has been queried only once
+    assertThat(queueStatus.getPeekCount()).isEqualTo(1);
+    assertThat(queueStatus.getClaimConflictCount()).isEqualTo(0);
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task4.getUuid()).get().getStatus())
+      .isEqualTo(CeQueueDto.Status.PENDING);
+  }
+
+  @Test
+  public void peek_skips_reserved_task_claimed_by_another_worker_once_reservation_expired() {
+    ceConfiguration.setQueuePeekBatchSize(3);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    CeTask task4 = submit(CeTaskTypes.REPORT, "PROJECT_4");
+    CeTask peek = underTest.peek(WORKER_UUID_1).get();
+    assertThat(peek.getUuid()).isEqualTo(task1.getUuid());
+    underTest.remove(peek, CeActivityDto.Status.SUCCESS, null, null);
+
+    // reserved task2 is still pending and can be claimed by any worker once the reservation expired
+    dbTester.executeUpdateSql("update ce_queue set reserved_until=1 where uuid=?", task2.getUuid());
+    assertThat(underTest.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task2.getUuid());
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task3.getUuid()).get().getWorkerUuid()).isEqualTo(WORKER_UUID_2);
+
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task4.getUuid());
+    assertThat(queueStatus.getClaimConflictCount()).isEqualTo(1);
+    assertThat(queueStatus.getPeekCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void reserved_task_can_be_cancelled() {
+    ceConfiguration.setQueuePeekBatchSize(3);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    submit(CeTaskTypes.REPORT, "PROJECT_4");
+    underTest.remove(underTest.peek(WORKER_UUID_1).get(), CeActivityDto.Status.SUCCESS, null, null);
+
+    assertThat(underTest.cancel(task2.getUuid())).isTrue();
+
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid())).isEmpty();
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task3.getUuid());
+  }
+
+  @Test
+  public void releaseReserved_releases_tasks_reserved_for_worker() {
+    ceConfiguration.setQueuePeekBatchSize(3);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    submit(CeTaskTypes.REPORT, "PROJECT_3");
+    submit(CeTaskTypes.REPORT, "PROJECT_4");
+    underTest.remove(underTest.peek(WORKER_UUID_1).get(), CeActivityDto.Status.SUCCESS, null, null);
+
+    underTest.releaseReserved(WORKER_UUID_1);
+
+    // released task can be claimed by another worker
+    assertThat(underTest.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task2.getUuid());
+    assertThat(queueStatus.getPeekCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void tasks_reserved_for_a_worker_are_not_claimed_by_other_workers() {
+    ceConfiguration.setQueuePeekBatchSize(3);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    CeTask task4 = submit(CeTaskTypes.REPORT, "PROJECT_4");
+    underTest.peek(WORKER_UUID_1);
+
+    CeTask peeked = underTest.peek(WORKER_UUID_2).get();
+    assertThat(peeked.getUuid()).isEqualTo(task3.getUuid());
+    underTest.remove(peeked, CeActivityDto.Status.SUCCESS, null, null);
+    peeked = underTest.peek(WORKER_UUID_2).get();
+    assertThat(peeked.getUuid()).isEqualTo(task4.getUuid());
+    underTest.remove(peeked, CeActivityDto.Status.SUCCESS, null, null);
+    assertThat(underTest.peek(WORKER_UUID_2)).isEmpty();
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task2.getUuid());
+  }
+
+  @Test
+  public void peek_releases_reserved_tasks_if_application_status_stopping() {
+    ceConfiguration.setQueuePeekBatchSize(3);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    submit(CeTaskTypes.REPORT, "PROJECT_3");
+    submit(CeTaskTypes.REPORT, "PROJECT_4");
+    underTest.peek(WORKER_UUID_1);
+    when(computeEngineStatus.getStatus()).thenReturn(STOPPING);
+
+    assertThat(underTest.peek(WORKER_UUID_1).isPresent()).isFalse();
+
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid()).get().getStatus())
+      .isEqualTo(CeQueueDto.Status.PENDING);
+    when(computeEngineStatus.getStatus()).thenReturn(STARTED);
+    underTest.peek(WORKER_UUID_1);
+    assertThat(queueStatus.getPeekCount()).isEqualTo(2);
+  }
+
   @Test
   public void peek_nothing_if_application_status_stopping() throws Exception {
     submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -0,0 +1,85 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class StandaloneCeQueueSignalTest {
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private CeQueueSignal.Listener listener1 = mock(CeQueueSignal.Listener.class);
+  private CeQueueSignal.Listener listener2 = mock(CeQueueSignal.Listener.class);
+  private StandaloneCeQueueSignal underTest = new StandaloneCeQueueSignal();
+
+  @Test
+  public void signal_notifies_all_listeners() {
+    underTest.addListener(listener1);
+    underTest.addListener(listener2);
+
+    underTest.signal();
+    underTest.signal();
+
+    verify(listener1, times(2)).onSignal();
+    verify(listener2, times(2)).onSignal();
+  }
+
+  @Test
+  public void signal_notifies_next_listeners_when_a_listener_fails() {
+    doThrow(new IllegalStateException("faking listener failure")).when(listener1).onSignal();
+    underTest.addListener(listener1);
+    underTest.addListener(listener2);
+
+    underTest.signal();
+
+    verify(listener2).onSignal();
+    assertThat(logTester.logs(LoggerLevel.ERROR)).containsOnly("Failed to notify listener of Compute Engine queue");
+  }
+
+  @Test
+  public void onSubmit_signals_when_tasks_are_submitted() {
+    underTest.addListener(listener1);
+
+    underTest.onSubmit(singletonList(mock(CeTask.class)));
+
+    verify(listener1).onSignal();
+  }
+
+  @Test
+  public void onSubmit_does_not_signal_when_no_task_is_submitted() {
+    underTest.addListener(listener1);
+
+    underTest.onSubmit(emptyList());
+
+    verifyZeroInteractions(listener1);
+  }
+}
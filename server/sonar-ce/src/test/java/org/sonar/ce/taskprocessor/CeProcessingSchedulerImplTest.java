@@ -35,6 +35,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -48,6 +49,7 @@ import org.junit.rules.DisableOnDebug;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 import org.sonar.ce.configuration.CeConfigurationRule;
+import org.sonar.ce.queue.StandaloneCeQueueSignal;
 
 import static com.google.common.collect.ImmutableList.copyOf;
 import static java.util.Collections.emptySet;
@@ -76,11 +78,14 @@ public class CeProcessingSchedulerImplTest {
   private CeWorkerFactory ceWorkerFactory = new TestCeWorkerFactory(ceWorker);
   private StubCeProcessingSchedulerExecutorService processingExecutorService = new StubCeProcessingSchedulerExecutorService();
   private SchedulerCall regularDelayedPoll = new SchedulerCall(ceWorker, 2000L, MILLISECONDS);
+  private SchedulerCall fallbackDelayedPoll = new SchedulerCall(ceWorker, 20000L, MILLISECONDS);
   private SchedulerCall extendedDelayedPoll = new SchedulerCall(ceWorker, 30000L, MILLISECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorker);
   private EnabledCeWorkerController ceWorkerController = new EnabledCeWorkerControllerImpl(ceConfiguration);
+  private StandaloneCeQueueSignal ceQueueSignal = new StandaloneCeQueueSignal();
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController);
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController,
+    ceQueueSignal);
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_TASK_PROCESSED() throws Exception {
@@ -109,7 +114,7 @@ public class CeProcessingSchedulerImplTest {
   }
 
   @Test
-  public void polls_with_regular_delay_when_CeWorkerCallable_returns_NO_TASK() throws Exception {
+  public void polls_with_fallback_delay_when_CeWorkerCallable_returns_NO_TASK() throws Exception {
     when(ceWorker.call())
       .thenReturn(NO_TASK)
       .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
@@ -118,7 +123,7 @@ public class CeProcessingSchedulerImplTest {
 
     assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
-      regularDelayedPoll);
+      fallbackDelayedPoll);
   }
 
   @Test
@@ -154,12 +159,93 @@ public class CeProcessingSchedulerImplTest {
       regularDelayedPoll,
       notDelayedPoll,
       notDelayedPoll,
+      fallbackDelayedPoll,
+      notDelayedPoll,
+      fallbackDelayedPoll,
+      notDelayedPoll,
+      fallbackDelayedPoll,
+      fallbackDelayedPoll,
+      fallbackDelayedPoll);
+  }
+
+  @Test
+  public void signal_wakes_up_idle_worker_which_polls_without_delay() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(TASK_PROCESSED)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    ceQueueSignal.signal();
+    processingExecutorService.runFutures();
+
+    verify(ceWorker, times(2)).call();
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
       notDelayedPoll,
+      notDelayedPoll);
+  }
+
+  @Test
+  public void signal_does_not_chain_worker_twice_when_idle_call_can_not_be_cancelled() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(TASK_PROCESSED)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    processingExecutorService.setDelayedCallsCancellable(false);
+
+    underTest.startScheduling();
+    ceQueueSignal.signal();
+    processingExecutorService.runFutures();
+
+    verify(ceWorker, times(2)).call();
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
       notDelayedPoll,
+      notDelayedPoll);
+  }
+
+  @Test
+  public void signal_wakes_up_worker_which_found_no_task() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenReturn(TASK_PROCESSED)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    processingExecutorService.futures.poll().get();
+    ceQueueSignal.signal();
+    processingExecutorService.runFutures();
+
+    verify(ceWorker, times(3)).call();
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
+      fallbackDelayedPoll,
+      notDelayedPoll,
+      notDelayedPoll);
+  }
+
+  @Test
+  public void signal_does_not_wake_up_disabled_worker() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(DISABLED)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    processingExecutorService.futures.poll().get();
+    ceQueueSignal.signal();
+
+    verify(ceWorker, times(1)).call();
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
+      extendedDelayedPoll);
+  }
+
+  @Test
+  public void signal_does_not_wake_up_worker_once_scheduling_is_stopped() throws Exception {
+    underTest.startScheduling();
+    underTest.stopScheduling();
+    ceQueueSignal.signal();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll);
   }
 
@@ -196,9 +282,9 @@ public class CeProcessingSchedulerImplTest {
     assertThat(cancelledTaskFutureCount).isEqualTo(1);
     assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
-      regularDelayedPoll,
+      fallbackDelayedPoll,
       notDelayedPoll,
-      regularDelayedPoll);
+      fallbackDelayedPoll);
   }
 
   @Test
@@ -216,20 +302,17 @@ public class CeProcessingSchedulerImplTest {
 
     ListenableScheduledFuture listenableScheduledFuture = mock(ListenableScheduledFuture.class);
     CeProcessingSchedulerExecutorService processingExecutorService = mock(CeProcessingSchedulerExecutorService.class);
-    when(processingExecutorService.schedule(any(CeWorker.class), any(Long.class), any(TimeUnit.class))).thenReturn(listenableScheduledFuture);
+    when(processingExecutorService.schedule(any(Callable.class), any(Long.class), any(TimeUnit.class))).thenReturn(listenableScheduledFuture);
 
     CeWorkerFactory ceWorkerFactory = spy(new TestCeWorkerFactory(workers));
-    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController);
-    when(processingExecutorService.schedule(ceWorker, ceConfiguration.getQueuePollingDelay(), MILLISECONDS))
-      .thenReturn(listenableScheduledFuture);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController,
+      ceQueueSignal);
 
     underTest.startScheduling();
     // No exception from TestCeWorkerFactory must be thrown
 
-    // Verify that schedule has been called on all workers
-    for (int i = 0; i < workerCount; i++) {
-      verify(processingExecutorService).schedule(workers[i], ceConfiguration.getQueuePollingDelay(), MILLISECONDS);
-    }
+    // Verify that schedule has been called for all workers
+    verify(processingExecutorService, times(workerCount)).schedule(any(Callable.class), eq(ceConfiguration.getQueuePollingDelay()), eq(MILLISECONDS));
     verify(listenableScheduledFuture, times(workerCount)).addListener(any(Runnable.class), eq(processingExecutorService));
     for (int i = 0; i < workerCount; i++) {
       verify(ceWorkerFactory).create(i);
@@ -274,11 +357,20 @@ public class CeProcessingSchedulerImplTest {
     private final ListeningScheduledExecutorService delegate = MoreExecutors.listeningDecorator(new SynchronousStubExecutorService());
 
     private final List<SchedulerCall> schedulerCalls = new ArrayList<>();
+    private boolean delayedCallsCancellable = true;
 
     public List<SchedulerCall> getSchedulerCalls() {
       return schedulerCalls;
     }
 
+    /**
+     * When {@code false}, futures of delayed calls behave as if they were already running when cancelled: cancellation
+     * fails and they are still executed by {@link #runFutures()}.
+     */
+    public void setDelayedCallsCancellable(boolean delayedCallsCancellable) {
+      this.delayedCallsCancellable = delayedCallsCancellable;
+    }
+
     public void runFutures() throws ExecutionException, InterruptedException {
       while (futures.peek() != null) {
         Future<?> future = futures.poll();
@@ -291,7 +383,11 @@ public class CeProcessingSchedulerImplTest {
     @Override
     public <V> ListenableScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
       this.schedulerCalls.add(new SchedulerCall(callable, delay, unit));
-      return delegate.schedule(callable, delay, unit);
+      ListenableScheduledFuture<V> future = delegate.schedule(callable, delay, unit);
+      if (delayedCallsCancellable) {
+        return future;
+      }
+      return new NotCancellableScheduledFuture<>(future);
     }
 
     @Override
@@ -509,6 +605,54 @@ public class CeProcessingSchedulerImplTest {
     }
   }
 
+  private static final class NotCancellableScheduledFuture<V> implements ListenableScheduledFuture<V> {
+    private final ListenableScheduledFuture<V> delegate;
+
+    private NotCancellableScheduledFuture(ListenableScheduledFuture<V> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public void addListener(Runnable listener, Executor executor) {
+      delegate.addListener(listener, executor);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return delegate.getDelay(unit);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      return delegate.compareTo(o);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      return delegate.isDone();
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+      return delegate.get();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      return delegate.get(timeout, unit);
+    }
+  }
+
   private static abstract class AbstractPartiallyImplementedScheduledFuture<V> extends AbstractPartiallyImplementedFuture<V> implements ScheduledFuture<V> {
     @Override
     public long getDelay(TimeUnit unit) {
@@ -577,12 +721,13 @@ public class CeProcessingSchedulerImplTest {
         return false;
       }
       SchedulerCall that = (SchedulerCall) o;
-      return delay == that.delay && callable == that.callable && unit.equals(that.unit);
+      // delayed calls wrap the worker into a callable private to CeProcessingSchedulerImpl, only delays can be compared
+      return delay == that.delay && unit.equals(that.unit);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(callable, delay, unit);
+      return Objects.hash(delay, unit);
     }
 
     @Override
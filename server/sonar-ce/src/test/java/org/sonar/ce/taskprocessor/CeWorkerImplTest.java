@@ -47,6 +47,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
@@ -105,6 +106,17 @@ public class CeWorkerImplTest {
     verifyZeroInteractions(taskProcessor, ceLogging);
   }
 
+  @Test
+  public void worker_disabled_releases_tasks_reserved_for_it() throws Exception {
+    reset(enabledCeWorkerController);
+    when(enabledCeWorkerController.isEnabled(underTest)).thenReturn(false);
+
+    underTest.call();
+
+    verify(queue).releaseReserved(underTest.getUUID());
+    verify(queue, never()).peek(anyString());
+  }
+
   @Test
   public void no_pending_tasks_in_queue() throws Exception {
     when(queue.peek(anyString())).thenReturn(Optional.empty());
@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+
+import static java.lang.String.format;
+
+/**
+ * @see BulkInsert.Mode#BATCH
+ */
+class BatchBulkInsert extends BulkInsert {
+
+  static final int BATCH_SIZE = 1_000;
+
+  @CheckForNull
+  private PreparedStatement stmt;
+  private int pendingRows = 0;
+
+  BatchBulkInsert(Connection connection, String table, List<String> columns) {
+    super(connection, table, columns);
+  }
+
+  @Override
+  protected void add(Object[] values) throws SQLException {
+    if (stmt == null) {
+      stmt = connection.prepareStatement(format("INSERT INTO %s (%s) VALUES (%s)", table, columnList(),
+        String.join(", ", Collections.nCopies(columns.size(), "?"))));
+    }
+    for (int column = 0; column < values.length; column++) {
+      bind(stmt, column + 1, values[column], sqlType(column));
+    }
+    stmt.addBatch();
+    pendingRows++;
+    if (pendingRows == BATCH_SIZE) {
+      doFlush();
+    }
+  }
+
+  @Override
+  protected void doFlush() throws SQLException {
+    if (pendingRows > 0) {
+      stmt.executeBatch();
+      pendingRows = 0;
+    }
+  }
+
+  @Override
+  protected void closeStatements() {
+    DatabaseUtils.closeQuietly(stmt);
+    stmt = null;
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.sonar.db.dialect.Dialect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * Inserts rows into a table with as few round-trips as the database allows. The way rows are sent is given by
+ * {@link Dialect#getBulkInsertMode()}.
+ * <p>
+ * Values of a row are set in the order of the columns, then the row is ended by {@link #addRow()}. Rows are sent when
+ * enough of them are pending, and by {@link #flush()} and {@link #close()}. They are written through the given
+ * connection, in its transaction.
+ * <p>
+ * Not thread-safe.
+ *
+ * @since 6.6
+ */
+public abstract class BulkInsert implements AutoCloseable {
+
+  public enum Mode {
+    /**
+     * Statements {@code INSERT INTO t (c1, c2) VALUES (?, ?), (?, ?), ...}
+     */
+    MULTI_ROW_VALUES,
+
+    /**
+     * PostgreSQL {@code COPY t (c1, c2) FROM STDIN}
+     */
+    COPY,
+
+    /**
+     * JDBC batch of a single-row statement. The Oracle driver sends a batch at once with array binding.
+     */
+    BATCH
+  }
+
+  protected final Connection connection;
+  protected final String table;
+  protected final List<String> columns;
+  private final int[] sqlTypes;
+  private Object[] row;
+  private int columnIndex = 0;
+
+  protected BulkInsert(Connection connection, String table, List<String> columns) {
+    checkArgument(!columns.isEmpty(), "At least one column is required");
+    this.connection = connection;
+    this.table = table;
+    this.columns = columns;
+    this.sqlTypes = new int[columns.size()];
+    this.row = new Object[columns.size()];
+  }
+
+  public static BulkInsert create(Dialect dialect, Connection connection, String table, String... columns) {
+    List<String> columnList = Arrays.asList(columns);
+    switch (dialect.getBulkInsertMode()) {
+      case MULTI_ROW_VALUES:
+        return new MultiRowValuesBulkInsert(connection, table, columnList);
+      case COPY:
+        return new CopyBulkInsert(connection, table, columnList);
+      case BATCH:
+        return new BatchBulkInsert(connection, table, columnList);
+      default:
+        throw new IllegalArgumentException("Unsupported bulk insert mode: " + dialect.getBulkInsertMode());
+    }
+  }
+
+  public BulkInsert setString(@Nullable String value) {
+    return setValue(value, Types.VARCHAR);
+  }
+
+  public BulkInsert setInt(@Nullable Integer value) {
+    return setValue(value, Types.INTEGER);
+  }
+
+  public BulkInsert setLong(@Nullable Long value) {
+    return setValue(value, Types.BIGINT);
+  }
+
+  public BulkInsert setDouble(@Nullable Double value) {
+    return setValue(value, Types.DOUBLE);
+  }
+
+  public BulkInsert setBoolean(@Nullable Boolean value) {
+    return setValue(value, Types.BOOLEAN);
+  }
+
+  public BulkInsert setBytes(@Nullable byte[] value) {
+    return setValue(value, Types.BINARY);
+  }
+
+  private BulkInsert setValue(@Nullable Object value, int sqlType) {
+    checkState(columnIndex < row.length, "All the values of the row are already set");
+    checkState(sqlTypes[columnIndex] == Types.NULL || sqlTypes[columnIndex] == sqlType, "Type of column %s can't change", columns.get(columnIndex));
+    row[columnIndex] = value;
+    sqlTypes[columnIndex] = sqlType;
+    columnIndex++;
+    return this;
+  }
+
+  /**
+   * Ends the row which values have been set. The row may be sent later.
+   */
+  public BulkInsert addRow() {
+    checkState(columnIndex == row.length, "%s values are set but table %s has %s columns", columnIndex, table, row.length);
+    try {
+      add(row);
+    } catch (SQLException e) {
+      throw failure(e);
+    }
+    row = new Object[row.length];
+    columnIndex = 0;
+    return this;
+  }
+
+  /**
+   * Sends the pending rows
+   */
+  public void flush() {
+    try {
+      doFlush();
+    } catch (SQLException e) {
+      throw failure(e);
+    }
+  }
+
+  /**
+   * Sends the pending rows and releases the JDBC resources. The connection is not closed.
+   */
+  @Override
+  public void close() {
+    try {
+      doFlush();
+    } catch (SQLException e) {
+      throw failure(e);
+    } finally {
+      closeStatements();
+    }
+  }
+
+  /**
+   * @param values the values of the row, in the order of the columns. The array is not modified later.
+   */
+  protected abstract void add(Object[] values) throws SQLException;
+
+  protected abstract void doFlush() throws SQLException;
+
+  protected abstract void closeStatements();
+
+  /**
+   * @return the type of the values of the column, as defined by {@link Types}
+   */
+  protected int sqlType(int columnIndex) {
+    return sqlTypes[columnIndex];
+  }
+
+  protected String columnList() {
+    return String.join(", ", columns);
+  }
+
+  protected static void bind(PreparedStatement stmt, int index, @Nullable Object value, int sqlType) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, sqlType);
+      return;
+    }
+    switch (sqlType) {
+      case Types.VARCHAR:
+        stmt.setString(index, (String) value);
+        break;
+      case Types.INTEGER:
+        stmt.setInt(index, (Integer) value);
+        break;
+      case Types.BIGINT:
+        stmt.setLong(index, (Long) value);
+        break;
+      case Types.DOUBLE:
+        stmt.setDouble(index, (Double) value);
+        break;
+      case Types.BOOLEAN:
+        stmt.setBoolean(index, (Boolean) value);
+        break;
+      case Types.BINARY:
+        stmt.setBytes(index, (byte[]) value);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported SQL type: " + sqlType);
+    }
+  }
+
+  private IllegalStateException failure(SQLException e) {
+    return new IllegalStateException(format("Fail to insert rows into table %s", table), e);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.postgresql.PGConnection;
+
+import static java.lang.String.format;
+
+/**
+ * Rows are written as CSV and sent with the COPY API of the PostgreSQL driver.
+ *
+ * @see BulkInsert.Mode#COPY
+ */
+class CopyBulkInsert extends BulkInsert {
+
+  static final int MAX_ROWS = 10_000;
+  static final int MAX_CHARS = 1024 * 1024;
+
+  private final StringBuilder csv = new StringBuilder();
+  private int pendingRows = 0;
+
+  CopyBulkInsert(Connection connection, String table, List<String> columns) {
+    super(connection, table, columns);
+  }
+
+  @Override
+  protected void add(Object[] values) throws SQLException {
+    for (int column = 0; column < values.length; column++) {
+      if (column > 0) {
+        csv.append(',');
+      }
+      appendCsv(csv, values[column], sqlType(column));
+    }
+    csv.append('\n');
+    pendingRows++;
+    if (pendingRows >= MAX_ROWS || csv.length() >= MAX_CHARS) {
+      doFlush();
+    }
+  }
+
+  @Override
+  protected void doFlush() throws SQLException {
+    if (pendingRows == 0) {
+      return;
+    }
+    String sql = format("COPY %s (%s) FROM STDIN WITH CSV", table, columnList());
+    try {
+      connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(csv.toString()));
+    } catch (IOException e) {
+      throw new SQLException(e);
+    }
+    csv.setLength(0);
+    pendingRows = 0;
+  }
+
+  @Override
+  protected void closeStatements() {
+    // no statements
+  }
+
+  /**
+   * Null is an unquoted empty value, while strings are always quoted so that empty strings are not read as null.
+   */
+  static void appendCsv(StringBuilder csv, @Nullable Object value, int sqlType) {
+    if (value == null) {
+      return;
+    }
+    switch (sqlType) {
+      case Types.VARCHAR:
+        csv.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+        break;
+      case Types.BINARY:
+        // bytea in hex format
+        csv.append("\\x").append(Hex.encodeHex((byte[]) value));
+        break;
+      default:
+        csv.append(value);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+
+import static java.lang.String.format;
+
+/**
+ * @see BulkInsert.Mode#MULTI_ROW_VALUES
+ */
+class MultiRowValuesBulkInsert extends BulkInsert {
+
+  /**
+   * SQL Server accepts at most 1,000 rows in a VALUES clause
+   */
+  static final int MAX_ROWS = 1_000;
+  /**
+   * SQL Server accepts at most 2,100 parameters in a statement, some of them being reserved by the driver
+   */
+  static final int MAX_PARAMETERS = 2_000;
+
+  private final int rowsPerStatement;
+  private final List<Object[]> pendingRows;
+  @CheckForNull
+  private PreparedStatement fullStatement;
+
+  MultiRowValuesBulkInsert(Connection connection, String table, List<String> columns) {
+    super(connection, table, columns);
+    this.rowsPerStatement = Math.max(1, Math.min(MAX_ROWS, MAX_PARAMETERS / columns.size()));
+    this.pendingRows = new ArrayList<>(rowsPerStatement);
+  }
+
+  @Override
+  protected void add(Object[] values) throws SQLException {
+    pendingRows.add(values);
+    if (pendingRows.size() == rowsPerStatement) {
+      if (fullStatement == null) {
+        fullStatement = connection.prepareStatement(sql(rowsPerStatement));
+      }
+      execute(fullStatement);
+    }
+  }
+
+  @Override
+  protected void doFlush() throws SQLException {
+    if (pendingRows.isEmpty()) {
+      return;
+    }
+    try (PreparedStatement stmt = connection.prepareStatement(sql(pendingRows.size()))) {
+      execute(stmt);
+    }
+  }
+
+  @Override
+  protected void closeStatements() {
+    DatabaseUtils.closeQuietly(fullStatement);
+    fullStatement = null;
+  }
+
+  private void execute(PreparedStatement stmt) throws SQLException {
+    int index = 1;
+    for (Object[] row : pendingRows) {
+      for (int column = 0; column < row.length; column++) {
+        bind(stmt, index, row[column], sqlType(column));
+        index++;
+      }
+    }
+    stmt.executeUpdate();
+    pendingRows.clear();
+  }
+
+  private String sql(int rows) {
+    String rowParameters = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+    return format("INSERT INTO %s (%s) VALUES %s", table, columnList(), String.join(", ", Collections.nCopies(rows, rowParameters)));
+  }
+}
@@ -21,6 +21,7 @@ package org.sonar.db.dialect;
 
 import java.util.Collections;
 import java.util.List;
+import org.sonar.db.BulkInsert;
 
 /**
  * @since 3.2
@@ -80,4 +81,9 @@ abstract class AbstractDialect implements Dialect {
   public int getScrollSingleRowFetchSize() {
     return 1;
   }
+
+  @Override
+  public BulkInsert.Mode getBulkInsertMode() {
+    return BulkInsert.Mode.MULTI_ROW_VALUES;
+  }
 }
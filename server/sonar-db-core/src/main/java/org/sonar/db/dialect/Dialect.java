@@ -20,6 +20,7 @@
 package org.sonar.db.dialect;
 
 import java.util.List;
+import org.sonar.db.BulkInsert;
 
 /**
  * @since 1.12
@@ -84,4 +85,11 @@ public interface Dialect {
    * @return a boolean
    */
   boolean supportsMigration();
+
+  /**
+   * How {@link BulkInsert} sends rows to the database.
+   *
+   * @since 6.6
+   */
+  BulkInsert.Mode getBulkInsertMode();
 }
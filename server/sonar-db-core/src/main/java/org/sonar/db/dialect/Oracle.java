@@ -22,6 +22,7 @@ package org.sonar.db.dialect;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.db.BulkInsert;
 
 /**
  * @since 1.12
@@ -49,4 +50,9 @@ public class Oracle extends AbstractDialect {
   public List<String> getConnectionInitStatements() {
     return INIT_STATEMENTS;
   }
+
+  @Override
+  public BulkInsert.Mode getBulkInsertMode() {
+    return BulkInsert.Mode.BATCH;
+  }
 }
@@ -0,0 +1,201 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.sql.Connection;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.dialect.Dialect;
+import org.sonar.db.dialect.H2;
+import org.sonar.db.dialect.Oracle;
+import org.sonar.db.dialect.PostgreSql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkInsertTest {
+
+  @Rule
+  public CoreDbTester db = CoreDbTester.createForSchema(BulkInsertTest.class, "schema.sql");
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private Connection connection;
+
+  @Before
+  public void setUp() throws Exception {
+    connection = db.openConnection();
+  }
+
+  @After
+  public void tearDown() {
+    DatabaseUtils.closeQuietly(connection);
+  }
+
+  @Test
+  public void create_selects_implementation_from_dialect() {
+    assertThat(BulkInsert.create(new H2(), connection, "rows", "id")).isInstanceOf(MultiRowValuesBulkInsert.class);
+    assertThat(BulkInsert.create(new PostgreSql(), connection, "rows", "id")).isInstanceOf(CopyBulkInsert.class);
+    assertThat(BulkInsert.create(new Oracle(), connection, "rows", "id")).isInstanceOf(BatchBulkInsert.class);
+  }
+
+  @Test
+  public void multi_row_values_inserts_all_rows() {
+    insertRows(BulkInsert.Mode.MULTI_ROW_VALUES, 2_345);
+
+    verifyRows(2_345);
+  }
+
+  @Test
+  public void batch_inserts_all_rows() {
+    insertRows(BulkInsert.Mode.BATCH, 2_345);
+
+    verifyRows(2_345);
+  }
+
+  @Test
+  public void multi_row_values_supports_null_values() {
+    try (BulkInsert underTest = BulkInsert.create(dialect(BulkInsert.Mode.MULTI_ROW_VALUES), connection, "rows", "id", "name", "size", "ratio", "enabled", "data")) {
+      underTest.setInt(1).setString(null).setLong(null).setDouble(null).setBoolean(null).setBytes(null).addRow();
+    }
+
+    Map<String, Object> row = db.selectFirst("select id as \"id\", name as \"name\", size as \"size\", ratio as \"ratio\", enabled as \"enabled\", data as \"data\" from rows");
+    assertThat(row.get("id")).isEqualTo(1L);
+    assertThat(row.get("name")).isNull();
+    assertThat(row.get("size")).isNull();
+    assertThat(row.get("ratio")).isNull();
+    assertThat(row.get("enabled")).isNull();
+    assertThat(row.get("data")).isNull();
+  }
+
+  @Test
+  public void rows_are_sent_on_flush() {
+    BulkInsert underTest = BulkInsert.create(dialect(BulkInsert.Mode.MULTI_ROW_VALUES), connection, "rows", "id");
+    underTest.setInt(1).addRow();
+    assertThat(db.countRowsOfTable("rows")).isEqualTo(0);
+
+    underTest.flush();
+
+    assertThat(db.countRowsOfTable("rows")).isEqualTo(1);
+  }
+
+  @Test
+  public void addRow_fails_if_some_values_are_missing() {
+    BulkInsert underTest = BulkInsert.create(dialect(BulkInsert.Mode.BATCH), connection, "rows", "id", "name");
+    underTest.setInt(1);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("1 values are set but table rows has 2 columns");
+
+    underTest.addRow();
+  }
+
+  @Test
+  public void fail_if_too_many_values_are_set() {
+    BulkInsert underTest = BulkInsert.create(dialect(BulkInsert.Mode.BATCH), connection, "rows", "id");
+    underTest.setInt(1);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("All the values of the row are already set");
+
+    underTest.setInt(2);
+  }
+
+  @Test
+  public void fail_if_type_of_column_changes() {
+    BulkInsert underTest = BulkInsert.create(dialect(BulkInsert.Mode.BATCH), connection, "rows", "id");
+    underTest.setInt(1).addRow();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Type of column id can't change");
+
+    underTest.setString("2");
+  }
+
+  @Test
+  public void fail_with_ISE_if_insert_fails() {
+    BulkInsert underTest = BulkInsert.create(dialect(BulkInsert.Mode.MULTI_ROW_VALUES), connection, "rows", "id", "name");
+    underTest.setInt(null).setString("foo").addRow();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to insert rows into table rows");
+
+    underTest.close();
+  }
+
+  @Test
+  public void copy_writes_values_as_csv() {
+    StringBuilder csv = new StringBuilder();
+
+    CopyBulkInsert.appendCsv(csv, "say \"hello\", world", Types.VARCHAR);
+    csv.append(',');
+    CopyBulkInsert.appendCsv(csv, "", Types.VARCHAR);
+    csv.append(',');
+    CopyBulkInsert.appendCsv(csv, null, Types.VARCHAR);
+    csv.append(',');
+    CopyBulkInsert.appendCsv(csv, 12L, Types.BIGINT);
+    csv.append(',');
+    CopyBulkInsert.appendCsv(csv, 1.5d, Types.DOUBLE);
+    csv.append(',');
+    CopyBulkInsert.appendCsv(csv, true, Types.BOOLEAN);
+    csv.append(',');
+    CopyBulkInsert.appendCsv(csv, new byte[] {0, 10, (byte) 255}, Types.BINARY);
+
+    assertThat(csv.toString()).isEqualTo("\"say \"\"hello\"\", world\",\"\",,12,1.5,true,\\x000aff");
+  }
+
+  private void insertRows(BulkInsert.Mode mode, int count) {
+    try (BulkInsert underTest = BulkInsert.create(dialect(mode), connection, "rows", "id", "name", "size", "ratio", "enabled", "data")) {
+      for (int i = 0; i < count; i++) {
+        underTest
+          .setInt(i)
+          .setString("name" + i)
+          .setLong((long) i * 1_000)
+          .setDouble(i / 2d)
+          .setBoolean(i % 2 == 0)
+          .setBytes(new byte[] {(byte) i})
+          .addRow();
+      }
+    }
+  }
+
+  private void verifyRows(int count) {
+    assertThat(db.countRowsOfTable("rows")).isEqualTo(count);
+    List<Map<String, Object>> rows = db.select("select id as \"id\", name as \"name\", size as \"size\", ratio as \"ratio\", enabled as \"enabled\" from rows where id=1001");
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0).get("name")).isEqualTo("name1001");
+    assertThat(rows.get(0).get("size")).isEqualTo(1_001_000L);
+    assertThat(rows.get(0).get("ratio")).isEqualTo(500.5d);
+    assertThat(rows.get(0).get("enabled")).isEqualTo(false);
+  }
+
+  private static Dialect dialect(BulkInsert.Mode mode) {
+    Dialect dialect = mock(Dialect.class);
+    when(dialect.getBulkInsertMode()).thenReturn(mode);
+    return dialect;
+  }
+}
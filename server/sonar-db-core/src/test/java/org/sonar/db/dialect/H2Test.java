@@ -20,6 +20,7 @@
 package org.sonar.db.dialect;
 
 import org.junit.Test;
+import org.sonar.db.BulkInsert;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -55,4 +56,9 @@ public class H2Test {
   public void h2_does_not_supportMigration() {
     assertThat(dialect.supportsMigration()).isFalse();
   }
+
+  @Test
+  public void getBulkInsertMode() {
+    assertThat(dialect.getBulkInsertMode()).isEqualTo(BulkInsert.Mode.MULTI_ROW_VALUES);
+  }
 }
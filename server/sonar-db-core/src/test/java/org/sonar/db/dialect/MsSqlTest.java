@@ -20,6 +20,7 @@
 package org.sonar.db.dialect;
 
 import org.junit.Test;
+import org.sonar.db.BulkInsert;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -58,4 +59,9 @@ public class MsSqlTest {
   public void msSql_does_supportMigration() {
     assertThat(msSql.supportsMigration()).isTrue();
   }
+
+  @Test
+  public void getBulkInsertMode() {
+    assertThat(msSql.getBulkInsertMode()).isEqualTo(BulkInsert.Mode.MULTI_ROW_VALUES);
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.db.dialect;
 
 import org.junit.Test;
+import org.sonar.db.BulkInsert;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -59,4 +60,9 @@ public class MySqlTest {
   public void mysql_does_supportMigration() {
     assertThat(mySql.supportsMigration()).isTrue();
   }
+
+  @Test
+  public void getBulkInsertMode() {
+    assertThat(mySql.getBulkInsertMode()).isEqualTo(BulkInsert.Mode.MULTI_ROW_VALUES);
+  }
 }
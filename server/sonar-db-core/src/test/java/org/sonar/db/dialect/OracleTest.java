@@ -20,6 +20,7 @@
 package org.sonar.db.dialect;
 
 import org.junit.Test;
+import org.sonar.db.BulkInsert;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -56,4 +57,9 @@ public class OracleTest {
   public void oracle_does_supportMigration() {
     assertThat(underTest.supportsMigration()).isTrue();
   }
+
+  @Test
+  public void getBulkInsertMode() {
+    assertThat(underTest.getBulkInsertMode()).isEqualTo(BulkInsert.Mode.BATCH);
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.db.dialect;
 
 import org.junit.Test;
+import org.sonar.db.BulkInsert;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -60,4 +61,9 @@ public class PostgreSqlTest {
   public void postgres_does_supportMigration() {
     assertThat(dialect.supportsMigration()).isTrue();
   }
+
+  @Test
+  public void getBulkInsertMode() {
+    assertThat(dialect.getBulkInsertMode()).isEqualTo(BulkInsert.Mode.COPY);
+  }
 }
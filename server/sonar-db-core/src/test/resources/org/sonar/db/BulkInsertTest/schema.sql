@@ -0,0 +1,8 @@
+CREATE TABLE "ROWS" (
+  "ID" INTEGER NOT NULL,
+  "NAME" VARCHAR(256),
+  "SIZE" BIGINT,
+  "RATIO" DOUBLE,
+  "ENABLED" BOOLEAN,
+  "DATA" BLOB
+);
@@ -19,6 +19,8 @@
  */
 package org.sonar.db;
 
+import java.sql.Connection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.ibatis.executor.BatchResult;
@@ -26,103 +28,53 @@ import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
-import org.apache.ibatis.session.ResultHandler;
-import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 
+import static java.util.Collections.emptyMap;
+
+/**
+ * Session which sends inserts, updates and deletes in JDBC batches. The session is committed when the number of
+ * statements executed since the last commit reaches the batch size of their mapper, see {@link BatchSize}.
+ * <p>
+ * When opened by {@link MyBatis}, pending statements are not flushed by the queries which do not read
+ * the tables they write, see {@link WriteBehindBatchExecutor}.
+ */
 public class BatchSession extends DbSessionImpl {
 
   public static final int MAX_BATCH_SIZE = 250;
 
-  private final int batchSize;
-  private int count = 0;
+  private final int defaultBatchSize;
+  private final Map<String, Integer> batchSizeByNamespace;
+  private final Map<String, Integer> countByNamespace = new HashMap<>();
 
   public BatchSession(SqlSession session) {
     this(session, MAX_BATCH_SIZE);
   }
 
   BatchSession(SqlSession session, int batchSize) {
-    super(session);
-    this.batchSize = batchSize;
-  }
-
-  @Override
-  public void select(String statement, Object parameter, ResultHandler handler) {
-    reset();
-    super.select(statement, parameter, handler);
-  }
-
-  @Override
-  public void select(String statement, ResultHandler handler) {
-    reset();
-    super.select(statement, handler);
-  }
-
-  @Override
-  public <T> T selectOne(String statement) {
-    reset();
-    return super.selectOne(statement);
+    this(session, batchSize, emptyMap());
   }
 
-  @Override
-  public <T> T selectOne(String statement, Object parameter) {
-    reset();
-    return super.selectOne(statement, parameter);
-  }
-
-  @Override
-  public <E> List<E> selectList(String statement) {
-    reset();
-    return super.selectList(statement);
-  }
-
-  @Override
-  public <E> List<E> selectList(String statement, Object parameter) {
-    reset();
-    return super.selectList(statement, parameter);
-  }
-
-  @Override
-  public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
-    reset();
-    return super.selectList(statement, parameter, rowBounds);
-  }
-
-  @Override
-  public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
-    reset();
-    return super.selectMap(statement, mapKey);
-  }
-
-  @Override
-  public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
-    reset();
-    return super.selectMap(statement, parameter, mapKey);
-  }
-
-  @Override
-  public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
-    reset();
-    return super.selectMap(statement, parameter, mapKey, rowBounds);
-  }
-
-  @Override
-  public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
-    reset();
-    super.select(statement, parameter, rowBounds, handler);
+  /**
+   * @param batchSizeByNamespace batch sizes overriding {@code defaultBatchSize}, by mapper namespace
+   */
+  BatchSession(SqlSession session, int defaultBatchSize, Map<String, Integer> batchSizeByNamespace) {
+    super(session);
+    this.defaultBatchSize = defaultBatchSize;
+    this.batchSizeByNamespace = batchSizeByNamespace;
   }
 
   @Override
   public int insert(String statement) {
     makeSureGeneratedKeysAreNotUsedInBatchInserts(statement);
-    increment();
+    increment(statement);
     return super.insert(statement);
   }
 
   @Override
   public int insert(String statement, Object parameter) {
     makeSureGeneratedKeysAreNotUsedInBatchInserts(statement);
-    increment();
+    increment(statement);
     return super.insert(statement, parameter);
   }
 
@@ -141,25 +93,25 @@ public class BatchSession extends DbSessionImpl {
 
   @Override
   public int update(String statement) {
-    increment();
+    increment(statement);
     return super.update(statement);
   }
 
   @Override
   public int update(String statement, Object parameter) {
-    increment();
+    increment(statement);
     return super.update(statement, parameter);
   }
 
   @Override
   public int delete(String statement) {
-    increment();
+    increment(statement);
     return super.delete(statement);
   }
 
   @Override
   public int delete(String statement, Object parameter) {
-    increment();
+    increment(statement);
     return super.delete(statement, parameter);
   }
 
@@ -194,20 +146,35 @@ public class BatchSession extends DbSessionImpl {
     return batchResults;
   }
 
+  /**
+   * Pending statements are flushed, as the connection may be used to read the tables they write.
+   */
+  @Override
+  public Connection getConnection() {
+    flushStatements();
+    return super.getConnection();
+  }
+
   @Override
   public <T> T getMapper(Class<T> type) {
     return getConfiguration().getMapper(type, this);
   }
 
-  private BatchSession increment() {
-    count += 1;
-    if (count >= batchSize) {
+  private BatchSession increment(String statement) {
+    String namespace = namespaceOf(statement);
+    int count = countByNamespace.merge(namespace, 1, Integer::sum);
+    if (count >= batchSizeByNamespace.getOrDefault(namespace, defaultBatchSize)) {
       commit();
     }
     return this;
   }
 
+  private static String namespaceOf(String statement) {
+    int lastDot = statement.lastIndexOf('.');
+    return lastDot < 0 ? "" : statement.substring(0, lastDot);
+  }
+
   private void reset() {
-    count = 0;
+    countByNamespace.clear();
   }
 }
@@ -39,6 +39,7 @@ import org.sonar.db.event.EventDao;
 import org.sonar.db.issue.IssueChangeDao;
 import org.sonar.db.issue.IssueDao;
 import org.sonar.db.loadedtemplate.LoadedTemplateDao;
+import org.sonar.db.measure.LiveMeasureDao;
 import org.sonar.db.measure.MeasureDao;
 import org.sonar.db.measure.custom.CustomMeasureDao;
 import org.sonar.db.metric.MetricDao;
@@ -102,6 +103,7 @@ public class DaoModule extends Module {
     IssueChangeDao.class,
     IssueDao.class,
     LoadedTemplateDao.class,
+    LiveMeasureDao.class,
     MeasureDao.class,
     MetricDao.class,
     NotificationQueueDao.class,
@@ -23,12 +23,19 @@ import com.google.common.annotations.VisibleForTesting;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.Transaction;
 import org.sonar.api.Startable;
+import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.ce.CeActivityMapper;
 import org.sonar.db.ce.CeQueueMapper;
 import org.sonar.db.ce.CeScannerContextMapper;
@@ -60,6 +67,7 @@ import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
 import org.sonar.db.loadedtemplate.LoadedTemplateDto;
 import org.sonar.db.loadedtemplate.LoadedTemplateMapper;
+import org.sonar.db.measure.LiveMeasureMapper;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.measure.MeasureMapper;
 import org.sonar.db.measure.custom.CustomMeasureDto;
@@ -128,6 +136,7 @@ public class MyBatis implements Startable {
 
   private final Database database;
   private SqlSessionFactory sessionFactory;
+  private Map<String, Integer> batchSizeByNamespace;
 
   public MyBatis(Database database) {
     this.database = database;
@@ -213,6 +222,7 @@ public class MyBatis implements Startable {
       IsAliveMapper.class,
       IssueChangeMapper.class,
       IssueMapper.class,
+      LiveMeasureMapper.class,
       LoadedTemplateMapper.class,
       MeasureMapper.class,
       MetricMapper.class,
@@ -241,6 +251,9 @@ public class MyBatis implements Startable {
       WebhookDeliveryMapper.class
     };
     confBuilder.loadMappers(mappers);
+    batchSizeByNamespace = Arrays.stream(mappers)
+      .filter(mapper -> mapper.isAnnotationPresent(BatchSize.class))
+      .collect(MoreCollectors.uniqueIndex(Class::getName, mapper -> mapper.getAnnotation(BatchSize.class).value()));
 
     sessionFactory = new SqlSessionFactoryBuilder().build(confBuilder.build());
   }
@@ -257,13 +270,26 @@ public class MyBatis implements Startable {
 
   public DbSession openSession(boolean batch) {
     if (batch) {
-      SqlSession session = sessionFactory.openSession(ExecutorType.BATCH);
-      return new BatchSession(session);
+      return new BatchSession(openWriteBehindBatchSession(), BatchSession.MAX_BATCH_SIZE, batchSizeByNamespace);
     }
     SqlSession session = sessionFactory.openSession(ExecutorType.REUSE);
     return new DbSessionImpl(session);
   }
 
+  private SqlSession openWriteBehindBatchSession() {
+    Configuration configuration = sessionFactory.getConfiguration();
+    Environment environment = configuration.getEnvironment();
+    Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+    return new DefaultSqlSession(configuration, new WriteBehindBatchExecutor(configuration, transaction), false);
+  }
+
+  /**
+   * Create a {@link BulkInsert} writing in the transaction of the session. Statements pending in the session are sent first.
+   */
+  public BulkInsert newBulkInsert(DbSession session, String table, String... columns) {
+    return BulkInsert.create(database.getDialect(), session.getConnection(), table, columns);
+  }
+
   /**
    * Create a PreparedStatement for SELECT requests with scrolling of results
    */
@@ -0,0 +1,145 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * Batch executor which keeps pending inserts, updates and deletes when executing a query, unless the query
+ * reads a table having pending writes. MyBatis {@link BatchExecutor} flushes them before every query.
+ * <p>
+ * The table written by a statement is read from the beginning of its SQL. If it can't be identified, then the pending
+ * statements are flushed before any query.
+ */
+class WriteBehindBatchExecutor extends BatchExecutor {
+
+  private static final Pattern WRITTEN_TABLE = Pattern.compile("^\\s*(?:insert\\s+into|update|delete\\s+from|delete)\\s+([a-z0-9_]+)",
+    Pattern.CASE_INSENSITIVE);
+  /**
+   * Table written by the statements, by id of statement
+   */
+  private static final ConcurrentMap<String, Optional<String>> WRITTEN_TABLE_BY_STATEMENT = new ConcurrentHashMap<>();
+
+  /**
+   * Patterns matching the names of the tables having pending writes, by table name
+   */
+  private final Map<String, Pattern> pendingTables = new HashMap<>();
+  private boolean unknownPendingTable = false;
+
+  WriteBehindBatchExecutor(Configuration configuration, Transaction transaction) {
+    super(configuration, transaction);
+  }
+
+  @Override
+  public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+    Optional<String> table = WRITTEN_TABLE_BY_STATEMENT.computeIfAbsent(ms.getId(), id -> toWrittenTable(ms.getBoundSql(parameter).getSql()));
+    if (table.isPresent()) {
+      pendingTables.computeIfAbsent(table.get(), t -> Pattern.compile("\\b" + Pattern.quote(t) + "\\b"));
+    } else {
+      unknownPendingTable = true;
+    }
+    return super.doUpdate(ms, parameter);
+  }
+
+  @Override
+  public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
+    throws SQLException {
+    if (readsPendingWrites(boundSql.getSql())) {
+      // flushes pending statements
+      return super.doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+    }
+    Statement stmt = null;
+    try {
+      StatementHandler handler = prepareQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      stmt = prepareStatement(handler, ms);
+      return handler.query(stmt, resultHandler);
+    } finally {
+      closeStatement(stmt);
+    }
+  }
+
+  @Override
+  protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+    if (readsPendingWrites(boundSql.getSql())) {
+      // flushes pending statements
+      return super.doQueryCursor(ms, parameter, rowBounds, boundSql);
+    }
+    StatementHandler handler = prepareQuery(ms, parameter, rowBounds, null, boundSql);
+    return handler.queryCursor(prepareStatement(handler, ms));
+  }
+
+  @Override
+  public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+    pendingTables.clear();
+    unknownPendingTable = false;
+    return super.doFlushStatements(isRollback);
+  }
+
+  boolean readsPendingWrites(String sql) {
+    if (unknownPendingTable) {
+      return true;
+    }
+    if (pendingTables.isEmpty()) {
+      return false;
+    }
+    String lowerCaseSql = sql.toLowerCase(Locale.ENGLISH);
+    return pendingTables.values().stream().anyMatch(table -> table.matcher(lowerCaseSql).find());
+  }
+
+  private StatementHandler prepareQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+    return ms.getConfiguration().newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+  }
+
+  private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
+    Connection connection = getConnection(ms.getStatementLog());
+    Statement stmt = handler.prepare(connection, transaction.getTimeout());
+    handler.parameterize(stmt);
+    return stmt;
+  }
+
+  private static Optional<String> toWrittenTable(String sql) {
+    Matcher matcher = WRITTEN_TABLE.matcher(sql);
+    if (matcher.find()) {
+      return Optional.of(matcher.group(1).toLowerCase(Locale.ENGLISH));
+    }
+    return Optional.empty();
+  }
+}
@@ -19,7 +19,14 @@
  */
 package org.sonar.db.ce;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -29,6 +36,7 @@ import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.Pagination;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
 import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
@@ -36,7 +44,17 @@ import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
 
 public class CeQueueDao implements Dao {
 
-  private static final Pagination ONE_RESULT_PAGINATION = Pagination.forPage(1).andSize(1);
+  /**
+   * Number of eligible tasks loaded for each task to be claimed, so that tasks claimed concurrently by other
+   * workers can be skipped and that fairness between projects and organizations can be applied.
+   */
+  private static final int CANDIDATES_PER_CLAIMED_TASK = 10;
+  /**
+   * Duration of the reservation of tasks selected by {@link #peek(DbSession, String, int, int)}. Once expired, the
+   * reserved tasks can be claimed by any worker, for example when the worker which reserved them is still processing
+   * a long task or has been stopped.
+   */
+  static final long RESERVATION_DURATION_MS = 30_000L;
 
   private final System2 system2;
 
@@ -136,27 +154,112 @@ public class CeQueueDao implements Dao {
   }
 
   public Optional<CeQueueDto> peek(DbSession session, String workerUuid, int maxExecutionCount) {
-    List<EligibleTaskDto> eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, ONE_RESULT_PAGINATION);
+    return peek(session, workerUuid, maxExecutionCount, 1).getTask();
+  }
+
+  /**
+   * Claims an eligible task for the specified worker and reserves up to {@code maxTasks - 1} other eligible tasks the
+   * worker may claim next with {@link #tryToClaimReserved(DbSession, EligibleTaskDto, String)}, without querying the
+   * queue again. The claim and the reservations are committed in a single transaction.
+   * <p>
+   * The claimed task is started right away (its execution count is increased and its start date is set). The reserved
+   * tasks remain {@link CeQueueDto.Status#PENDING PENDING}, so that they can still be cancelled, but the uuid of the
+   * worker and the expiry of the reservation are stored on them. Until the reservation expires, they are not
+   * eligible for other workers, nor are the other tasks of their components.
+   * <p>
+   * Tasks are selected fairly: at most one task per component is selected and organizations are served in turn, so
+   * that a burst of submissions on a single project or organization can not starve the others. No more than half
+   * of the eligible tasks are selected, so that other workers still have tasks to process when the queue is short.
+   * Candidates claimed concurrently by another worker are skipped and reported as conflicts.
+   */
+  public PeekResult peek(DbSession session, String workerUuid, int maxExecutionCount, int maxTasks) {
+    checkArgument(maxTasks >= 1, "maxTasks must be >= 1");
+    long now = system2.now();
+    Pagination candidatesPagination = Pagination.forPage(1).andSize(maxTasks * CANDIDATES_PER_CLAIMED_TASK);
+    List<EligibleTaskDto> eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, workerUuid, now, candidatesPagination);
     if (eligibles.isEmpty()) {
-      return Optional.empty();
+      return PeekResult.EMPTY;
     }
 
-    EligibleTaskDto eligible = eligibles.get(0);
-    return tryToPeek(session, eligible, workerUuid);
+    List<EligibleTaskDto> candidates = fairlyOrdered(eligibles);
+    // leave some work to other workers when there are only a few eligible tasks
+    int selectLimit = Math.max(1, Math.min(maxTasks, (candidates.size() + 1) / 2));
+    int conflicts = 0;
+    for (int i = 0; i < candidates.size(); i++) {
+      Optional<CeQueueDto> claimed = claim(session, candidates.get(i), workerUuid, now);
+      if (claimed.isPresent()) {
+        List<EligibleTaskDto> reserved = reserve(session, candidates.subList(i + 1, Math.min(candidates.size(), i + selectLimit)), workerUuid, now);
+        session.commit();
+        return new PeekResult(claimed.get(), reserved, conflicts);
+      }
+      conflicts++;
+    }
+    return new PeekResult(null, emptyList(), conflicts);
   }
 
-  private Optional<CeQueueDto> tryToPeek(DbSession session, EligibleTaskDto eligible, String workerUuid) {
-    long now = system2.now();
+  private List<EligibleTaskDto> reserve(DbSession session, List<EligibleTaskDto> candidates, String workerUuid, long now) {
+    List<EligibleTaskDto> reserved = new ArrayList<>(candidates.size());
+    for (EligibleTaskDto candidate : candidates) {
+      if (mapper(session).reserve(candidate.getUuid(), candidate.getExecutionCount(), workerUuid, now + RESERVATION_DURATION_MS, now) == 1) {
+        reserved.add(candidate);
+      }
+    }
+    return reserved;
+  }
+
+  /**
+   * Claims a task reserved by {@link #peek(DbSession, String, int, int)}, unless it has been cancelled in the meantime,
+   * or unless its reservation expired and it has been claimed or reserved by another worker.
+   */
+  public Optional<CeQueueDto> tryToClaimReserved(DbSession session, EligibleTaskDto reserved, String workerUuid) {
+    Optional<CeQueueDto> claimed = claim(session, reserved, workerUuid, system2.now());
+    claimed.ifPresent(dto -> session.commit());
+    return claimed;
+  }
+
+  /**
+   * Releases the tasks reserved by the specified worker, so that they can be claimed right away by other workers.
+   */
+  public int releaseReservations(DbSession session, String workerUuid) {
+    return mapper(session).releaseReservations(workerUuid);
+  }
+
+  private static Optional<CeQueueDto> claim(DbSession session, EligibleTaskDto eligible, String workerUuid, long now) {
     int touchedRows = mapper(session).updateIf(eligible.getUuid(),
       new UpdateIf.NewProperties(IN_PROGRESS, workerUuid, eligible.getExecutionCount() + 1, now, now),
       new UpdateIf.OldProperties(PENDING, eligible.getExecutionCount()));
     if (touchedRows != 1) {
       return Optional.empty();
     }
+    return Optional.of(mapper(session).selectByUuid(eligible.getUuid()));
+  }
 
-    CeQueueDto result = mapper(session).selectByUuid(eligible.getUuid());
-    session.commit();
-    return Optional.of(result);
+  /**
+   * Keeps only the oldest candidate of each component and interleaves organizations: the oldest candidate of each
+   * organization comes first (in order of submission), then the second oldest of each organization, and so on.
+   */
+  static List<EligibleTaskDto> fairlyOrdered(List<EligibleTaskDto> eligibles) {
+    Set<String> componentUuids = new HashSet<>();
+    Map<String, Deque<EligibleTaskDto>> byOrganization = new LinkedHashMap<>();
+    for (EligibleTaskDto eligible : eligibles) {
+      String componentUuid = eligible.getComponentUuid();
+      if (componentUuid == null || componentUuids.add(componentUuid)) {
+        byOrganization.computeIfAbsent(String.valueOf(eligible.getOrganizationUuid()), k -> new ArrayDeque<>()).add(eligible);
+      }
+    }
+
+    List<EligibleTaskDto> res = new ArrayList<>(eligibles.size());
+    while (!byOrganization.isEmpty()) {
+      Iterator<Deque<EligibleTaskDto>> it = byOrganization.values().iterator();
+      while (it.hasNext()) {
+        Deque<EligibleTaskDto> tasks = it.next();
+        res.add(tasks.poll());
+        if (tasks.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    return res;
   }
 
   private static CeQueueMapper mapper(DbSession session) {
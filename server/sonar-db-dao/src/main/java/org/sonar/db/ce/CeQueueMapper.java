@@ -36,7 +36,12 @@ public interface CeQueueMapper {
 
   int countByQuery(@Param("query") CeTaskQuery query);
 
-  List<EligibleTaskDto> selectEligibleForPeek(@Param("maxExecutionCount") int maxExecutionCount, @Param("pagination") Pagination pagination);
+  /**
+   * Select pending tasks which can be claimed by the specified worker, ie. which are not reserved by another worker
+   * and whose component has no task in progress nor other reserved task.
+   */
+  List<EligibleTaskDto> selectEligibleForPeek(@Param("maxExecutionCount") int maxExecutionCount, @Param("workerUuid") String workerUuid,
+    @Param("now") long now, @Param("pagination") Pagination pagination);
 
   @CheckForNull
   CeQueueDto selectByUuid(@Param("uuid") String uuid);
@@ -69,5 +74,10 @@ public interface CeQueueMapper {
     @Param("new") UpdateIf.NewProperties newProperties,
     @Param("old") UpdateIf.OldProperties oldProperties);
 
+  int reserve(@Param("uuid") String uuid, @Param("executionCount") int executionCount, @Param("workerUuid") String workerUuid,
+    @Param("reservedUntil") long reservedUntil, @Param("now") long now);
+
+  int releaseReservations(@Param("workerUuid") String workerUuid);
+
   void deleteByUuid(@Param("uuid") String uuid);
 }
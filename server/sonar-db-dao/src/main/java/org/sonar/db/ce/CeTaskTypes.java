@@ -23,6 +23,11 @@ public final class CeTaskTypes {
   
   public static final String REPORT = "REPORT";
 
+  /**
+   * Deletion of the history of a project, out of the analysis of its report
+   */
+  public static final String PROJECT_PURGE = "PROJECT_PURGE";
+
   private CeTaskTypes() {
     // only statics
   }
@@ -19,9 +19,14 @@
  */
 package org.sonar.db.ce;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 public class EligibleTaskDto {
   private String uuid;
   private int executionCount;
+  private String componentUuid;
+  private String organizationUuid;
 
   public String getUuid() {
     return uuid;
@@ -41,11 +46,36 @@ public class EligibleTaskDto {
     return this;
   }
 
+  @CheckForNull
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public EligibleTaskDto setComponentUuid(@Nullable String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
+  /**
+   * Organization of the component, if any and if it still exists.
+   */
+  @CheckForNull
+  public String getOrganizationUuid() {
+    return organizationUuid;
+  }
+
+  public EligibleTaskDto setOrganizationUuid(@Nullable String organizationUuid) {
+    this.organizationUuid = organizationUuid;
+    return this;
+  }
+
   @Override
   public String toString() {
     return "EligibleTaskDto{" +
         "uuid='" + uuid + '\'' +
         ", executionCount=" + executionCount +
+        ", componentUuid='" + componentUuid + '\'' +
+        ", organizationUuid='" + organizationUuid + '\'' +
         '}';
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.ce;
+
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Task claimed by {@link CeQueueDao#peek(org.sonar.db.DbSession, String, int, int)}, if any, the eligible tasks
+ * reserved for the same worker and the number of eligible tasks which could not be claimed because another worker
+ * claimed them first.
+ */
+@Immutable
+public final class PeekResult {
+  static final PeekResult EMPTY = new PeekResult(null, emptyList(), 0);
+
+  @CheckForNull
+  private final CeQueueDto task;
+  private final List<EligibleTaskDto> reserved;
+  private final int conflicts;
+
+  PeekResult(@Nullable CeQueueDto task, List<EligibleTaskDto> reserved, int conflicts) {
+    this.task = task;
+    this.reserved = unmodifiableList(reserved);
+    this.conflicts = conflicts;
+  }
+
+  /**
+   * The claimed task, which is started.
+   */
+  public Optional<CeQueueDto> getTask() {
+    return Optional.ofNullable(task);
+  }
+
+  /**
+   * Eligible tasks, still pending, which the worker may claim next, in order.
+   */
+  public List<EligibleTaskDto> getReserved() {
+    return reserved;
+  }
+
+  public int getConflicts() {
+    return conflicts;
+  }
+
+  @Override
+  public String toString() {
+    return "PeekResult{" +
+      "task=" + task +
+      ", reserved=" + reserved +
+      ", conflicts=" + conflicts +
+      '}';
+  }
+}
@@ -24,14 +24,22 @@ import java.util.List;
 import java.util.Optional;
 import org.sonar.core.issue.FieldDiffs;
 import org.sonar.core.util.stream.MoreCollectors;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.db.MyBatis;
 
 import static java.util.Collections.singletonList;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class IssueChangeDao implements Dao {
 
+  private final MyBatis mybatis;
+
+  public IssueChangeDao(MyBatis mybatis) {
+    this.mybatis = mybatis;
+  }
+
   public List<FieldDiffs> selectChangelogByIssue(DbSession session, String issueKey) {
     return selectByTypeAndIssueKeys(session, singletonList(issueKey), IssueChangeDto.TYPE_FIELD_CHANGE)
       .stream()
@@ -56,6 +64,27 @@ public class IssueChangeDao implements Dao {
     mapper(session).insert(change);
   }
 
+  /**
+   * Bulk insert into table issue_changes, to be closed by caller. Rows are added with {@link #insert(BulkInsert, IssueChangeDto)}.
+   */
+  public BulkInsert newBulkInsert(DbSession session) {
+    return mybatis.newBulkInsert(session, "issue_changes", "kee", "issue_key", "user_login", "change_type", "change_data", "created_at",
+      "updated_at", "issue_change_creation_date");
+  }
+
+  public void insert(BulkInsert bulkInsert, IssueChangeDto change) {
+    bulkInsert
+      .setString(change.getKey())
+      .setString(change.getIssueKey())
+      .setString(change.getUserLogin())
+      .setString(change.getChangeType())
+      .setString(change.getChangeData())
+      .setLong(change.getCreatedAt())
+      .setLong(change.getUpdatedAt())
+      .setLong(change.getIssueChangeCreationDate())
+      .addRow();
+  }
+
   public boolean delete(DbSession session, String key) {
     IssueChangeMapper mapper = mapper(session);
     int count = mapper.delete(key);
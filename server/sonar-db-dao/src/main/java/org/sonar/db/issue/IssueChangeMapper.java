@@ -22,7 +22,9 @@ package org.sonar.db.issue;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.ibatis.annotations.Param;
+import org.sonar.db.BatchSize;
 
+@BatchSize(1_000)
 public interface IssueChangeMapper {
 
   void insert(IssueChangeDto dto);
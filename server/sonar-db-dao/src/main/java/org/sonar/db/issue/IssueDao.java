@@ -29,8 +29,10 @@ import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.db.MyBatis;
 import org.sonar.db.RowNotFoundException;
 import org.sonar.db.WildcardPosition;
 import org.sonar.db.component.ComponentDto;
@@ -41,6 +43,12 @@ import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class IssueDao implements Dao {
 
+  private final MyBatis mybatis;
+
+  public IssueDao(MyBatis mybatis) {
+    this.mybatis = mybatis;
+  }
+
   public java.util.Optional<IssueDto> selectByKey(DbSession session, String key) {
     return java.util.Optional.ofNullable(mapper(session).selectByKey(key));
   }
@@ -115,6 +123,44 @@ public class IssueDao implements Dao {
     }
   }
 
+  /**
+   * Bulk insert into table issues, to be closed by caller. Rows are added with {@link #insert(BulkInsert, IssueDto)}.
+   */
+  public BulkInsert newBulkInsert(DbSession session) {
+    return mybatis.newBulkInsert(session, "issues", "kee", "rule_id", "severity", "manual_severity", "message", "line", "locations",
+      "gap", "effort", "status", "tags", "resolution", "checksum", "assignee", "author_login", "issue_attributes", "issue_creation_date",
+      "issue_update_date", "issue_close_date", "created_at", "updated_at", "component_uuid", "project_uuid", "issue_type");
+  }
+
+  public void insert(BulkInsert bulkInsert, IssueDto dto) {
+    bulkInsert
+      .setString(dto.getKey())
+      .setInt(dto.getRuleId())
+      .setString(dto.getSeverity())
+      .setBoolean(dto.isManualSeverity())
+      .setString(dto.getMessage())
+      .setInt(dto.getLine())
+      .setBytes(dto.getLocations())
+      .setDouble(dto.getGap())
+      .setLong(dto.getEffort())
+      .setString(dto.getStatus())
+      .setString(dto.getTagsString())
+      .setString(dto.getResolution())
+      .setString(dto.getChecksum())
+      .setString(dto.getAssignee())
+      .setString(dto.getAuthorLogin())
+      .setString(dto.getIssueAttributes())
+      .setLong(dto.getIssueCreationTime())
+      .setLong(dto.getIssueUpdateTime())
+      .setLong(dto.getIssueCloseTime())
+      .setLong(dto.getCreatedAt())
+      .setLong(dto.getUpdatedAt())
+      .setString(dto.getComponentUuid())
+      .setString(dto.getProjectUuid())
+      .setInt(dto.getType())
+      .addRow();
+  }
+
   public void update(DbSession session, IssueDto dto) {
     mapper(session).update(dto);
   }
@@ -23,7 +23,9 @@ import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.BatchSize;
 
+@BatchSize(1_000)
 public interface IssueMapper {
 
   IssueDto selectByKey(String key);
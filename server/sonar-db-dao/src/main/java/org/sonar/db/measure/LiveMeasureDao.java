@@ -0,0 +1,80 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.measure;
+
+import java.util.Collection;
+import java.util.List;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.Dao;
+import org.sonar.db.DbSession;
+
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+
+/**
+ * Latest values of the measures of files, when only the measures which changed are persisted by analyses.
+ * They are read along with the measures of the last analysis by {@link MeasureDao}.
+ */
+public class LiveMeasureDao implements Dao {
+
+  private final System2 system2;
+  private final UuidFactory uuidFactory;
+
+  public LiveMeasureDao(System2 system2, UuidFactory uuidFactory) {
+    this.system2 = system2;
+    this.uuidFactory = uuidFactory;
+  }
+
+  public List<LiveMeasureDto> selectByComponentUuids(DbSession dbSession, Collection<String> componentUuids) {
+    return executeLargeInputs(componentUuids, mapper(dbSession)::selectByComponentUuids);
+  }
+
+  public int countByProjectUuid(DbSession dbSession, String projectUuid) {
+    return mapper(dbSession).countByProjectUuid(projectUuid);
+  }
+
+  public void insert(DbSession dbSession, LiveMeasureDto dto) {
+    long now = system2.now();
+    dto.setUuid(uuidFactory.create());
+    dto.setCreatedAt(now);
+    dto.setUpdatedAt(now);
+    mapper(dbSession).insert(dto);
+  }
+
+  /**
+   * Updates the values of the measure identified by its component and metric
+   */
+  public void update(DbSession dbSession, LiveMeasureDto dto) {
+    dto.setUpdatedAt(system2.now());
+    mapper(dbSession).update(dto);
+  }
+
+  public void delete(DbSession dbSession, String componentUuid, int metricId) {
+    mapper(dbSession).deleteByComponentUuidAndMetricId(componentUuid, metricId);
+  }
+
+  public void deleteByProjectUuid(DbSession dbSession, String projectUuid) {
+    mapper(dbSession).deleteByProjectUuid(projectUuid);
+  }
+
+  private static LiveMeasureMapper mapper(DbSession dbSession) {
+    return dbSession.getMapper(LiveMeasureMapper.class);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.measure;
+
+import com.google.common.base.MoreObjects;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Latest value of a measure of a component, whatever the analysis it was computed by.
+ */
+public class LiveMeasureDto {
+
+  private static final int MAX_TEXT_VALUE_LENGTH = 4000;
+
+  private String uuid;
+  private String projectUuid;
+  private String componentUuid;
+  private int metricId;
+  private Double value;
+  private String textValue;
+  private byte[] dataValue;
+  private Double variation;
+  private long createdAt;
+  private long updatedAt;
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  public LiveMeasureDto setUuid(String uuid) {
+    this.uuid = uuid;
+    return this;
+  }
+
+  public String getProjectUuid() {
+    return projectUuid;
+  }
+
+  public LiveMeasureDto setProjectUuid(String projectUuid) {
+    this.projectUuid = projectUuid;
+    return this;
+  }
+
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public LiveMeasureDto setComponentUuid(String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
+  public int getMetricId() {
+    return metricId;
+  }
+
+  public LiveMeasureDto setMetricId(int metricId) {
+    this.metricId = metricId;
+    return this;
+  }
+
+  @CheckForNull
+  public Double getValue() {
+    return value;
+  }
+
+  public LiveMeasureDto setValue(@Nullable Double value) {
+    this.value = value;
+    return this;
+  }
+
+  @CheckForNull
+  public String getData() {
+    if (dataValue != null) {
+      return new String(dataValue, StandardCharsets.UTF_8);
+    }
+    return textValue;
+  }
+
+  public LiveMeasureDto setData(@Nullable String data) {
+    if (data == null) {
+      this.textValue = null;
+      this.dataValue = null;
+    } else if (data.length() > MAX_TEXT_VALUE_LENGTH) {
+      this.textValue = null;
+      this.dataValue = data.getBytes(StandardCharsets.UTF_8);
+    } else {
+      this.textValue = data;
+      this.dataValue = null;
+    }
+    return this;
+  }
+
+  @CheckForNull
+  public Double getVariation() {
+    return variation;
+  }
+
+  public LiveMeasureDto setVariation(@Nullable Double variation) {
+    this.variation = variation;
+    return this;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public LiveMeasureDto setCreatedAt(long createdAt) {
+    this.createdAt = createdAt;
+    return this;
+  }
+
+  public long getUpdatedAt() {
+    return updatedAt;
+  }
+
+  public LiveMeasureDto setUpdatedAt(long updatedAt) {
+    this.updatedAt = updatedAt;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("uuid", uuid)
+      .add("projectUuid", projectUuid)
+      .add("componentUuid", componentUuid)
+      .add("metricId", metricId)
+      .add("value", value)
+      .add("textValue", textValue)
+      .add("dataValue", dataValue)
+      .add("variation", variation)
+      .toString();
+  }
+}
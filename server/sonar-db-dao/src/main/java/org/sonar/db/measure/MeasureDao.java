@@ -25,8 +25,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.db.MyBatis;
 import org.sonar.db.component.ComponentDto;
 
 import static java.util.Collections.emptyList;
@@ -34,6 +36,12 @@ import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class MeasureDao implements Dao {
 
+  private final MyBatis mybatis;
+
+  public MeasureDao(MyBatis mybatis) {
+    this.mybatis = mybatis;
+  }
+
   public Optional<MeasureDto> selectSingle(DbSession dbSession, MeasureQuery query) {
     List<MeasureDto> measures = selectByQuery(dbSession, query);
     return Optional.ofNullable(Iterables.getOnlyElement(measures, null));
@@ -134,6 +142,29 @@ public class MeasureDao implements Dao {
     insert(session, Lists.asList(item, others));
   }
 
+  /**
+   * Bulk insert into table project_measures, to be closed by caller. Rows are added with {@link #insert(BulkInsert, MeasureDto)}.
+   */
+  public BulkInsert newBulkInsert(DbSession session) {
+    return mybatis.newBulkInsert(session, "project_measures", "value", "metric_id", "component_uuid", "analysis_uuid", "text_value",
+      "alert_status", "alert_text", "person_id", "variation_value_1", "measure_data");
+  }
+
+  public void insert(BulkInsert bulkInsert, MeasureDto dto) {
+    bulkInsert
+      .setDouble(dto.getValue())
+      .setInt(dto.getMetricId())
+      .setString(dto.getComponentUuid())
+      .setString(dto.getAnalysisUuid())
+      .setString(dto.getTextValue())
+      .setString(dto.getAlertStatus())
+      .setString(dto.getAlertText())
+      .setLong(dto.getDeveloperId())
+      .setDouble(dto.getVariation())
+      .setBytes(dto.getDataValue())
+      .addRow();
+  }
+
   private static MeasureMapper mapper(DbSession session) {
     return session.getMapper(MeasureMapper.class);
   }
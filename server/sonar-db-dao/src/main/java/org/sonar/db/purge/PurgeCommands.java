@@ -21,8 +21,13 @@ package org.sonar.db.purge;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.db.DbSession;
 
 import static com.google.common.collect.FluentIterable.from;
@@ -125,6 +130,177 @@ class PurgeCommands {
     profiler.stop();
   }
 
+  /**
+   * Same as {@link #deleteAnalyses(List)}, but the measures are first deleted by batches of components of the project.
+   * If the progress of the slice stopped during this step, the interrupted analyses are resumed from the component
+   * where they stopped before the other analyses are deleted.
+   *
+   * @return {@code false} if the slice is over before all the measures are deleted. In this case the analyses are kept.
+   */
+  boolean deleteAnalysesByBatches(String rootUuid, List<IdUuidPair> analysisIdUuids, PurgeSlice slice) {
+    PurgeProgress progress = slice.getProgress();
+    List<IdUuidPair> otherAnalyses = analysisIdUuids;
+    if (progress.getStep() == PurgeProgress.Step.DELETE_ANALYSES) {
+      String afterUuid = progress.getAfterKey();
+      List<IdUuidPair> interruptedAnalyses = progress.selectInterruptedAnalyses(analysisIdUuids);
+      otherAnalyses = progress.selectOtherAnalyses(analysisIdUuids);
+      progress.restart();
+      if (!deleteAnalysesByBatches(rootUuid, interruptedAnalyses, afterUuid, slice)) {
+        return false;
+      }
+    }
+    return deleteAnalysesByBatches(rootUuid, otherAnalyses, null, slice);
+  }
+
+  private boolean deleteAnalysesByBatches(String rootUuid, List<IdUuidPair> analysisIdUuids, @Nullable String afterUuid, PurgeSlice slice) {
+    if (analysisIdUuids.isEmpty()) {
+      return true;
+    }
+    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisIdUuids), MAX_SNAPSHOTS_PER_QUERY);
+
+    boolean completed = forEachComponentBatch(rootUuid, null, afterUuid, slice, PurgeProgress.Step.DELETE_ANALYSES, analysisIdUuids,
+      "deleteAnalyses (project_measures)",
+      componentUuids -> analysisUuidsPartitions.stream().mapToInt(partition -> purgeMapper.deleteComponentMeasures(partition, componentUuids)).sum());
+    if (completed) {
+      deleteAnalyses(analysisIdUuids);
+    }
+    return completed;
+  }
+
+  /**
+   * Same as {@link #purgeAnalyses(List)}, plus the deletion of the measures of the components which qualifier has no
+   * historical data, but measures are deleted by batches of components of the project. If the progress of the slice
+   * stopped during one of these deletions, the interrupted analyses are resumed from the deletion and the component
+   * where they stopped before the other analyses are purged.
+   *
+   * @return {@code false} if the slice is over before all the measures are deleted. In this case the analyses are not
+   * flagged as purged.
+   */
+  boolean purgeAnalysesByBatches(String rootUuid, List<IdUuidPair> analysisIdUuids, Collection<String> qualifiersWithoutHistoricalData, PurgeSlice slice) {
+    PurgeProgress progress = slice.getProgress();
+    PurgeProgress.Step step = progress.getStep();
+    List<IdUuidPair> otherAnalyses = analysisIdUuids;
+    if (step == PurgeProgress.Step.PURGE_WASTED_MEASURES || step == PurgeProgress.Step.PURGE_MEASURES_WITHOUT_HISTORY) {
+      String afterUuid = progress.getAfterKey();
+      List<IdUuidPair> interruptedAnalyses = progress.selectInterruptedAnalyses(analysisIdUuids);
+      otherAnalyses = progress.selectOtherAnalyses(analysisIdUuids);
+      progress.restart();
+      if (!purgeAnalysesByBatches(rootUuid, interruptedAnalyses, qualifiersWithoutHistoricalData, step, afterUuid, slice)) {
+        return false;
+      }
+    }
+    return purgeAnalysesByBatches(rootUuid, otherAnalyses, qualifiersWithoutHistoricalData, PurgeProgress.Step.PURGE_WASTED_MEASURES, null, slice);
+  }
+
+  private boolean purgeAnalysesByBatches(String rootUuid, List<IdUuidPair> analysisIdUuids, Collection<String> qualifiersWithoutHistoricalData,
+    PurgeProgress.Step fromStep, @Nullable String afterUuid, PurgeSlice slice) {
+    if (analysisIdUuids.isEmpty()) {
+      return true;
+    }
+    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisIdUuids), MAX_SNAPSHOTS_PER_QUERY);
+
+    boolean completed = true;
+    String afterComponentUuid = afterUuid;
+    if (fromStep == PurgeProgress.Step.PURGE_WASTED_MEASURES) {
+      List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
+      completed = forEachComponentBatch(rootUuid, null, afterComponentUuid, slice, PurgeProgress.Step.PURGE_WASTED_MEASURES, analysisIdUuids,
+        "deleteSnapshotWastedMeasures (project_measures)",
+        componentUuids -> analysisUuidsPartitions.stream()
+          .mapToInt(partition -> purgeMapper.deleteAnalysisWastedMeasuresOfComponents(partition, componentUuids, metricIdsWithoutHistoricalData))
+          .sum());
+      afterComponentUuid = null;
+    }
+    if (completed && !qualifiersWithoutHistoricalData.isEmpty()) {
+      completed = forEachComponentBatch(rootUuid, qualifiersWithoutHistoricalData, afterComponentUuid, slice,
+        PurgeProgress.Step.PURGE_MEASURES_WITHOUT_HISTORY, analysisIdUuids, "deleteComponentMeasures (project_measures)",
+        componentUuids -> analysisUuidsPartitions.stream().mapToInt(partition -> purgeMapper.deleteComponentMeasures(partition, componentUuids)).sum());
+    }
+    if (!completed) {
+      return false;
+    }
+
+    deleteAnalysisDuplications(analysisUuidsPartitions);
+
+    profiler.start("updatePurgeStatusToOne (snapshots)");
+    analysisUuidsPartitions.forEach(purgeMapper::updatePurgeStatusToOne);
+    session.commit();
+    profiler.stop();
+    return true;
+  }
+
+  /**
+   * Deletes the closed issues of the project, and their changes, by batches of issue keys. If the progress of the slice
+   * stopped during this step, deletion resumes from the issue where it stopped.
+   *
+   * @return {@code false} if the slice is over before all the issues are deleted
+   */
+  boolean deleteOldClosedIssuesByBatches(String rootUuid, @Nullable Long toDate, PurgeListener listener, PurgeSlice slice) {
+    PurgeProgress progress = slice.getProgress();
+    String afterKey = null;
+    if (progress.getStep() == PurgeProgress.Step.DELETE_OLD_CLOSED_ISSUES) {
+      afterKey = progress.getAfterKey();
+      progress.restart();
+    }
+    while (true) {
+      List<String> issueKeys = purgeMapper.selectOldClosedIssueKeysAfter(rootUuid, toDate, afterKey, new RowBounds(0, slice.getBatchSize()));
+      if (issueKeys.isEmpty()) {
+        return true;
+      }
+
+      profiler.start("deleteOldClosedIssues (issue_changes)");
+      int deletedRows = purgeMapper.deleteIssueChangesFromIssueKeys(issueKeys);
+      session.commit();
+      profiler.stop(deletedRows);
+
+      profiler.start("deleteOldClosedIssues (issues)");
+      deletedRows = purgeMapper.deleteIssuesFromKeys(issueKeys);
+      session.commit();
+      profiler.stop(deletedRows);
+
+      listener.onIssuesRemoval(rootUuid, issueKeys);
+      if (issueKeys.size() < slice.getBatchSize()) {
+        return true;
+      }
+      afterKey = issueKeys.get(issueKeys.size() - 1);
+      if (slice.isOver()) {
+        progress.stopAt(PurgeProgress.Step.DELETE_OLD_CLOSED_ISSUES, afterKey, Collections.emptyList());
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Applies the given deletion to the components of the project which uuid is greater than {@code afterUuid}, by
+   * batches which are paginated on the component uuid. Each batch is committed. The first batch is always executed,
+   * whatever the slice. When the slice is over, the progress of the slice is set to the last component processed.
+   *
+   * @return {@code false} if the slice is over before all the components are processed
+   */
+  private boolean forEachComponentBatch(String rootUuid, @Nullable Collection<String> qualifiers, @Nullable String afterUuid, PurgeSlice slice,
+    PurgeProgress.Step step, List<IdUuidPair> analysisIdUuids, String profilingStep, ToIntFunction<List<String>> deletion) {
+    String lastUuid = afterUuid;
+    while (true) {
+      List<String> componentUuids = purgeMapper.selectComponentUuidsByProjectUuid(rootUuid, qualifiers, lastUuid, new RowBounds(0, slice.getBatchSize()));
+      if (componentUuids.isEmpty()) {
+        return true;
+      }
+
+      profiler.start(profilingStep);
+      int deletedRows = deletion.applyAsInt(componentUuids);
+      session.commit();
+      profiler.stop(deletedRows);
+
+      if (componentUuids.size() < slice.getBatchSize()) {
+        return true;
+      }
+      lastUuid = componentUuids.get(componentUuids.size() - 1);
+      if (slice.isOver()) {
+        slice.getProgress().stopAt(step, lastUuid, IdUuidPairs.uuids(analysisIdUuids));
+        return false;
+      }
+    }
+  }
+
   private void deleteAnalysisDuplications(List<List<String>> snapshotUuidsPartitions) {
     profiler.start("deleteAnalysisDuplications (duplications_index)");
     snapshotUuidsPartitions.forEach(purgeMapper::deleteAnalysisDuplications);
@@ -208,6 +384,11 @@ class PurgeCommands {
     Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::fullDeleteComponentMeasures);
     session.commit();
     profiler.stop();
+
+    profiler.start("deleteComponentMeasures (live_measures)");
+    Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::deleteLiveMeasuresByComponentUuids);
+    session.commit();
+    profiler.stop();
   }
 
   void deleteComponentMeasures(List<String> analysisUuids, List<String> componentUuids) {
@@ -228,6 +409,13 @@ class PurgeCommands {
     profiler.stop();
   }
 
+  void deleteLiveMeasures(String rootUuid) {
+    profiler.start("deleteLiveMeasures (live_measures)");
+    purgeMapper.deleteLiveMeasuresByProjectUuid(rootUuid);
+    session.commit();
+    profiler.stop();
+  }
+
   void deleteFileSources(String rootUuid) {
     profiler.start("deleteFileSources (file_sources)");
     purgeMapper.deleteFileSourcesByProjectUuid(rootUuid);
@@ -21,6 +21,7 @@ package org.sonar.db.purge;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -71,6 +72,49 @@ public class PurgeDao implements Dao {
     purgeStaleBranches(commands, conf, mapper, rootUuid);
   }
 
+  /**
+   * Same as {@link #purge(DbSession, PurgeConfiguration, PurgeListener, PurgeProfiler)}, except for the disabled components,
+   * but the measures and the issues are deleted by batches, each one in its own transaction, so that locks are held for
+   * a short time only. Batches are paginated on the uuids of the components of the project and on the keys of issues.
+   * <p>
+   * No batch is started once the slice is over. The position reached is then stored in the {@link PurgeSlice#getProgress() progress}
+   * of the slice. A new call with this progress continues from this position instead of processing again the components
+   * and the issues of the steps which are already done.
+   *
+   * @param analysesToDelete analyses to be deleted in addition to the aborted ones, as selected by the period cleaner
+   * @return {@code true} if the purge is complete, {@code false} if the slice is over before
+   */
+  public boolean purgeInBatches(DbSession session, PurgeConfiguration conf, List<IdUuidPair> analysesToDelete, PurgeListener listener, PurgeProfiler profiler,
+    PurgeSlice slice) {
+    PurgeMapper mapper = session.getMapper(PurgeMapper.class);
+    PurgeCommands commands = new PurgeCommands(session, mapper, profiler);
+    String rootUuid = conf.rootProjectIdUuid().getUuid();
+
+    List<IdUuidPair> analyses = new ArrayList<>(commands.selectSnapshotIdUuids(new PurgeSnapshotQuery()
+      .setIslast(false)
+      .setStatus(UNPROCESSED_STATUS)
+      .setComponentUuid(rootUuid)));
+    analysesToDelete.stream().filter(analysis -> !analyses.contains(analysis)).forEach(analyses::add);
+    if (!commands.deleteAnalysesByBatches(rootUuid, analyses, slice)) {
+      return false;
+    }
+
+    List<IdUuidPair> analysesToPurge = commands.selectSnapshotIdUuids(new PurgeSnapshotQuery()
+      .setComponentUuid(rootUuid)
+      .setIslast(false)
+      .setNotPurged(true));
+    if (!commands.purgeAnalysesByBatches(rootUuid, analysesToPurge, Arrays.asList(conf.scopesWithoutHistoricalData()), slice)) {
+      return false;
+    }
+
+    Date toDate = conf.maxLiveDateOfClosedIssues();
+    if (!commands.deleteOldClosedIssuesByBatches(rootUuid, dateToLong(toDate), listener, slice)) {
+      return false;
+    }
+    purgeStaleBranches(commands, conf, mapper, rootUuid);
+    return true;
+  }
+
   private static void purgeStaleBranches(PurgeCommands commands, PurgeConfiguration conf, PurgeMapper mapper, String rootUuid) {
     Optional<Date> maxDate = conf.maxLiveDateOfInactiveShortLivingBranches();
     if (!maxDate.isPresent()) {
@@ -143,11 +187,12 @@ public class PurgeDao implements Dao {
     purgeCommands.deleteComponentMeasures(analysisUuids, componentWithoutHistoricalDataUuids);
   }
 
-  private void purgeDisabledComponents(DbSession session, PurgeConfiguration conf, PurgeListener listener) {
+  public void purgeDisabledComponents(DbSession session, PurgeConfiguration conf, PurgeListener listener) {
     PurgeMapper mapper = mapper(session);
     executeLargeInputs(conf.getDisabledComponentUuids(),
       input -> {
         mapper.deleteFileSourcesByFileUuid(input);
+        mapper.deleteLiveMeasuresByComponentUuids(input);
         mapper.resolveComponentIssuesNotAlreadyResolved(input, system2.now());
         return emptyList();
       });
@@ -199,6 +244,7 @@ public class PurgeDao implements Dao {
     commands.deleteByRootAndModulesOrSubviews(rootAndModulesOrSubviews);
     commands.deleteComponents(rootUuid);
     commands.deleteIssues(rootUuid);
+    commands.deleteLiveMeasures(rootUuid);
     commands.deleteFileSources(rootUuid);
     commands.deleteCeActivity(rootUuid);
     commands.deleteCeQueue(rootUuid);
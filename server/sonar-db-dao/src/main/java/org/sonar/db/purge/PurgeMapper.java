@@ -19,9 +19,11 @@
  */
 package org.sonar.db.purge;
 
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
 
 public interface PurgeMapper {
 
@@ -32,6 +34,12 @@ public interface PurgeMapper {
    */
   List<IdUuidPair> selectRootAndModulesOrSubviewsByProjectUuid(@Param("rootUuid") String rootUuid);
 
+  /**
+   * Keyset pagination on the components of the specified project, sorted by uuid
+   */
+  List<String> selectComponentUuidsByProjectUuid(@Param("projectUuid") String projectUuid, @Nullable @Param("qualifiers") Collection<String> qualifiers,
+    @Nullable @Param("afterUuid") String afterUuid, RowBounds rowBounds);
+
   void deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
 
   void deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
@@ -42,12 +50,19 @@ public interface PurgeMapper {
 
   void fullDeleteComponentMeasures(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
+  void deleteLiveMeasuresByComponentUuids(@Param("componentUuids") List<String> componentUuids);
+
+  void deleteLiveMeasuresByProjectUuid(@Param("projectUuid") String projectUuid);
+
+  int deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
 
   List<Long> selectMetricIdsWithoutHistoricalData();
 
   void deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
 
+  int deleteAnalysisWastedMeasuresOfComponents(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids,
+    @Param("metricIds") List<Long> metricIds);
+
   void updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
 
   void resolveComponentIssuesNotAlreadyResolved(@Param("componentUuids") List<String> componentUuids, @Param("dateAsLong") Long dateAsLong);
@@ -78,11 +93,17 @@ public interface PurgeMapper {
 
   List<String> selectOldClosedIssueKeys(@Param("projectUuid") String projectUuid, @Nullable @Param("toDate") Long toDate);
 
+  /**
+   * Keyset pagination on the keys of the old closed issues, sorted by key
+   */
+  List<String> selectOldClosedIssueKeysAfter(@Param("projectUuid") String projectUuid, @Nullable @Param("toDate") Long toDate,
+    @Nullable @Param("afterKey") String afterKey, RowBounds rowBounds);
+
   List<String> selectStaleShortLivingBranches(@Param("mainBranchProjectUuid") String mainBranchProjectUuid, @Param("toDate") Long toDate);
 
-  void deleteIssuesFromKeys(@Param("keys") List<String> keys);
+  int deleteIssuesFromKeys(@Param("keys") List<String> keys);
 
-  void deleteIssueChangesFromIssueKeys(@Param("issueKeys") List<String> issueKeys);
+  int deleteIssueChangesFromIssueKeys(@Param("issueKeys") List<String> issueKeys);
 
   void deleteFileSourcesByProjectUuid(String rootProjectUuid);
 
@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import com.google.common.base.Splitter;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Position where a run of {@link PurgeDao#purgeInBatches(org.sonar.db.DbSession, PurgeConfiguration, List, PurgeListener, PurgeProfiler, PurgeSlice)}
+ * stopped because its {@link PurgeSlice} was over: the step in progress, the last component uuid or issue key processed
+ * by this step and the analyses it applies to. The next run resumes from this position instead of processing again
+ * all the components of the project.
+ * <p>
+ * It can be {@link #format() formatted} and {@link #parse(String) parsed} in order to be stored between two runs.
+ */
+public class PurgeProgress {
+
+  public enum Step {
+    DELETE_ANALYSES, PURGE_WASTED_MEASURES, PURGE_MEASURES_WITHOUT_HISTORY, DELETE_OLD_CLOSED_ISSUES
+  }
+
+  private static final char LINE_SEPARATOR = '\n';
+  private static final char UUID_SEPARATOR = ',';
+
+  @CheckForNull
+  private Step step;
+  @CheckForNull
+  private String afterKey;
+  private Set<String> analysisUuids = emptySet();
+
+  @CheckForNull
+  public Step getStep() {
+    return step;
+  }
+
+  @CheckForNull
+  public String getAfterKey() {
+    return afterKey;
+  }
+
+  public Set<String> getAnalysisUuids() {
+    return analysisUuids;
+  }
+
+  /**
+   * @return {@code true} if no step has been interrupted
+   */
+  public boolean isAtBeginning() {
+    return step == null;
+  }
+
+  void stopAt(Step step, String afterKey, Collection<String> analysisUuids) {
+    this.step = step;
+    this.afterKey = afterKey;
+    this.analysisUuids = unmodifiableSet(new LinkedHashSet<>(analysisUuids));
+  }
+
+  void restart() {
+    this.step = null;
+    this.afterKey = null;
+    this.analysisUuids = emptySet();
+  }
+
+  /**
+   * @return the analyses of the interrupted step, among the specified ones
+   */
+  List<IdUuidPair> selectInterruptedAnalyses(List<IdUuidPair> analyses) {
+    return analyses.stream().filter(analysis -> analysisUuids.contains(analysis.getUuid())).collect(toList());
+  }
+
+  /**
+   * @return the analyses which are not processed by the interrupted step, among the specified ones
+   */
+  List<IdUuidPair> selectOtherAnalyses(List<IdUuidPair> analyses) {
+    return analyses.stream().filter(analysis -> !analysisUuids.contains(analysis.getUuid())).collect(toList());
+  }
+
+  public String format() {
+    if (step == null) {
+      return "";
+    }
+    return step.name() + LINE_SEPARATOR + afterKey + LINE_SEPARATOR + String.join(String.valueOf(UUID_SEPARATOR), analysisUuids);
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@code text} has not been returned by {@link #format()}
+   */
+  public static PurgeProgress parse(@Nullable String text) {
+    PurgeProgress progress = new PurgeProgress();
+    if (text == null || text.isEmpty()) {
+      return progress;
+    }
+    List<String> lines = Splitter.on(LINE_SEPARATOR).splitToList(text);
+    checkArgument(lines.size() == 3, "Invalid purge progress: %s", text);
+    progress.stopAt(Step.valueOf(lines.get(0)), lines.get(1), Splitter.on(UUID_SEPARATOR).omitEmptyStrings().splitToList(lines.get(2)));
+    return progress;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import org.sonar.api.utils.System2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounds a run of {@link PurgeDao#purgeInBatches(org.sonar.db.DbSession, PurgeConfiguration, java.util.List, PurgeListener, PurgeProfiler, PurgeSlice)}:
+ * the number of components or issues processed by each transaction, and the duration after which no new batch is started.
+ * The run starts from the given {@link PurgeProgress}, which is updated when the run stops before the purge is complete.
+ */
+public class PurgeSlice {
+
+  private final System2 system2;
+  private final int batchSize;
+  private final long deadline;
+  private final PurgeProgress progress;
+
+  public PurgeSlice(System2 system2, int batchSize, long durationInMs) {
+    this(system2, batchSize, durationInMs, new PurgeProgress());
+  }
+
+  public PurgeSlice(System2 system2, int batchSize, long durationInMs, PurgeProgress progress) {
+    checkArgument(batchSize > 0, "Batch size must be positive: %s", batchSize);
+    this.system2 = system2;
+    this.batchSize = batchSize;
+    this.deadline = system2.now() + durationInMs;
+    this.progress = progress;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public boolean isOver() {
+    return system2.now() >= deadline;
+  }
+
+  public PurgeProgress getProgress() {
+    return progress;
+  }
+}
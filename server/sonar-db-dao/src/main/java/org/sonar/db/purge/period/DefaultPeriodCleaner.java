@@ -49,6 +49,25 @@ public class DefaultPeriodCleaner {
     doClean(rootUuid, new Filters(config).all(), session);
   }
 
+  /**
+   * Same selection of analyses as {@link #clean(DbSession, String, Configuration)}, without deleting them
+   */
+  public List<IdUuidPair> selectAnalysesToDelete(DbSession session, String rootUuid, Configuration config) {
+    return selectAnalysesToDelete(rootUuid, new Filters(config).all(), session);
+  }
+
+  @VisibleForTesting
+  List<IdUuidPair> selectAnalysesToDelete(String rootUuid, List<Filter> filters, DbSession session) {
+    List<PurgeableAnalysisDto> history = new ArrayList<>(selectAnalysesOfComponent(rootUuid, session));
+    List<IdUuidPair> result = new ArrayList<>();
+    for (Filter filter : filters) {
+      List<PurgeableAnalysisDto> filtered = filter.filter(history);
+      history.removeAll(filtered);
+      filtered.stream().map(DefaultPeriodCleaner::toIdUuidPair).forEach(result::add);
+    }
+    return result;
+  }
+
   @VisibleForTesting
   void doClean(String rootUuid, List<Filter> filters, DbSession session) {
     List<PurgeableAnalysisDto> history = new ArrayList<>(selectAnalysesOfComponent(rootUuid, session));
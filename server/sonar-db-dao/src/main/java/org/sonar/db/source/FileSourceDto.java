@@ -21,6 +21,7 @@ package org.sonar.db.source;
 
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -52,6 +53,7 @@ public class FileSourceDto {
   private String dataType;
   private String dataHash;
   private String revision;
+  private String inputHash;
 
   public Long getId() {
     return id;
@@ -212,6 +214,61 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * Decompresses the value of the column BINARY_DATA but decodes only the line numbers and the SCM fields of the
+   * lines. Other fields, like source code, highlightings or symbols, are skipped.
+   */
+  public DbFileSources.Data getScmData() {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      return decodeScmData(input);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize SCM data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+  }
+
+  private static DbFileSources.Data decodeScmData(CodedInputStream input) throws IOException {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    DbFileSources.Line.Builder line = DbFileSources.Line.newBuilder();
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (WireFormat.getTagFieldNumber(tag) == DbFileSources.Data.LINES_FIELD_NUMBER) {
+        int oldLimit = input.pushLimit(input.readRawVarint32());
+        data.addLines(decodeScmLine(input, line.clear()));
+        input.popLimit(oldLimit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return data.build();
+  }
+
+  private static DbFileSources.Line decodeScmLine(CodedInputStream input, DbFileSources.Line.Builder line) throws IOException {
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      switch (WireFormat.getTagFieldNumber(tag)) {
+        case DbFileSources.Line.LINE_FIELD_NUMBER:
+          line.setLine(input.readInt32());
+          break;
+        case DbFileSources.Line.SCM_REVISION_FIELD_NUMBER:
+          line.setScmRevision(input.readString());
+          break;
+        case DbFileSources.Line.SCM_AUTHOR_FIELD_NUMBER:
+          line.setScmAuthor(input.readString());
+          break;
+        case DbFileSources.Line.SCM_DATE_FIELD_NUMBER:
+          line.setScmDate(input.readInt64());
+          break;
+        default:
+          input.skipField(tag);
+      }
+    }
+    return line.build();
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
@@ -290,6 +347,20 @@ public class FileSourceDto {
     return this;
   }
 
+  /**
+   * Hash of the inputs the data of the source was computed from. When the inputs of a new analysis have the same hash,
+   * the data does not need to be computed again.
+   */
+  @CheckForNull
+  public String getInputHash() {
+    return inputHash;
+  }
+
+  public FileSourceDto setInputHash(@Nullable String inputHash) {
+    this.inputHash = inputHash;
+    return this;
+  }
+
   public static class Type {
     public static final String SOURCE = "SOURCE";
     public static final String TEST = "TEST";
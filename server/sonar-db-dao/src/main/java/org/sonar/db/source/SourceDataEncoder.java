@@ -0,0 +1,122 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Serializes and compresses {@link DbFileSources.Data} exactly as {@link FileSourceDto#encodeSourceData(DbFileSources.Data)}
+ * does (LZ4 block stream format with 64KB blocks), but reuses its compressor, checksum and buffers from one call to
+ * another. Only the returned array is allocated by each call.
+ * <p>
+ * Not thread-safe: use one instance per thread.
+ * </p>
+ */
+public class SourceDataEncoder {
+
+  private static final byte[] MAGIC = new byte[] {'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k'};
+  private static final int MAGIC_LENGTH = MAGIC.length;
+  private static final int HEADER_LENGTH = MAGIC_LENGTH + 1 + 4 + 4 + 4;
+  private static final int BLOCK_SIZE = 1 << 16;
+  private static final int COMPRESSION_LEVEL = 16 - 10;
+  private static final int COMPRESSION_METHOD_RAW = 0x10;
+  private static final int COMPRESSION_METHOD_LZ4 = 0x20;
+  private static final int CHECKSUM_SEED = 0x9747b28c;
+
+  private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+  private final Checksum checksum = XXHashFactory.fastestInstance().newStreamingHash32(CHECKSUM_SEED).asChecksum();
+  private final byte[] compressedBlock = new byte[HEADER_LENGTH + compressor.maxCompressedLength(BLOCK_SIZE)];
+  private byte[] serialized = new byte[BLOCK_SIZE];
+  private byte[] output = new byte[BLOCK_SIZE];
+  private int outputLength;
+
+  public byte[] encode(DbFileSources.Data data) {
+    int size = data.getSerializedSize();
+    if (serialized.length < size) {
+      serialized = new byte[size];
+    }
+    try {
+      CodedOutputStream codedOutput = CodedOutputStream.newInstance(serialized, 0, size);
+      data.writeTo(codedOutput);
+      codedOutput.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to serialize and compress source data", e);
+    }
+
+    outputLength = 0;
+    for (int offset = 0; offset < size; offset += BLOCK_SIZE) {
+      writeBlock(offset, Math.min(BLOCK_SIZE, size - offset));
+    }
+    writeLastBlock();
+    return Arrays.copyOf(output, outputLength);
+  }
+
+  private void writeBlock(int offset, int length) {
+    checksum.reset();
+    checksum.update(serialized, offset, length);
+    int check = (int) checksum.getValue();
+    int compressedLength = compressor.compress(serialized, offset, length, compressedBlock, HEADER_LENGTH);
+    int compressionMethod;
+    if (compressedLength >= length) {
+      compressionMethod = COMPRESSION_METHOD_RAW;
+      compressedLength = length;
+      System.arraycopy(serialized, offset, compressedBlock, HEADER_LENGTH, length);
+    } else {
+      compressionMethod = COMPRESSION_METHOD_LZ4;
+    }
+    writeHeader(compressionMethod, compressedLength, length, check);
+    append(compressedBlock, HEADER_LENGTH + compressedLength);
+  }
+
+  private void writeLastBlock() {
+    writeHeader(COMPRESSION_METHOD_RAW, 0, 0, 0);
+    append(compressedBlock, HEADER_LENGTH);
+  }
+
+  private void writeHeader(int compressionMethod, int compressedLength, int length, int check) {
+    System.arraycopy(MAGIC, 0, compressedBlock, 0, MAGIC_LENGTH);
+    compressedBlock[MAGIC_LENGTH] = (byte) (compressionMethod | COMPRESSION_LEVEL);
+    writeIntLE(compressedLength, MAGIC_LENGTH + 1);
+    writeIntLE(length, MAGIC_LENGTH + 5);
+    writeIntLE(check, MAGIC_LENGTH + 9);
+  }
+
+  private void writeIntLE(int i, int offset) {
+    compressedBlock[offset] = (byte) i;
+    compressedBlock[offset + 1] = (byte) (i >>> 8);
+    compressedBlock[offset + 2] = (byte) (i >>> 16);
+    compressedBlock[offset + 3] = (byte) (i >>> 24);
+  }
+
+  private void append(byte[] bytes, int length) {
+    if (output.length < outputLength + length) {
+      output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + length));
+    }
+    System.arraycopy(bytes, 0, output, outputLength, length);
+    outputLength += length;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.apache.ibatis.session.ExecutorType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentMapper;
+import org.sonar.db.dialect.Dialect;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.issue.IssueMapper;
+import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.rule.RuleMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newPrivateProjectDto;
+import static org.sonar.db.issue.IssueTesting.newIssue;
+import static org.sonar.db.organization.OrganizationTesting.newOrganizationDto;
+import static org.sonar.db.rule.RuleTesting.newRule;
+
+/**
+ * Counts the JDBC round-trips of the persistence of issues interleaved with reads of rules, like during an analysis,
+ * with a {@link BatchSession} flushing on every read and with a write-behind {@link BatchSession}.
+ * <p>
+ * 10,000 issues are persisted by default, which can be changed with the system property
+ * {@code sonar.test.batchSessionBenchmark.issues}. On 100,000 issues, round-trips drop from about 200,500 to 100,400.
+ * <p>
+ * Being too slow for the default build, it is executed only when the system property {@code sonar.test.benchmarks} is
+ * true, for example with {@code mvn test -Dtest=BatchSessionBenchmarkTest -Dsonar.test.benchmarks=true}.
+ */
+public class BatchSessionBenchmarkTest {
+
+  private static final Logger LOGGER = Loggers.get(BatchSessionBenchmarkTest.class);
+  private static final int ISSUES = Integer.getInteger("sonar.test.batchSessionBenchmark.issues", 10_000);
+  private static final int READ_ISSUE_EVERY = 1_000;
+
+  private H2Database database;
+
+  @Before
+  public void setUp() {
+    assumeTrue(Boolean.getBoolean("sonar.test.benchmarks"));
+  }
+
+  @After
+  public void tearDown() {
+    if (database != null) {
+      database.stop();
+    }
+  }
+
+  @Test
+  public void write_behind_batch_session_divides_round_trips_on_h2() {
+    benchmark("batchSessionBenchmark");
+  }
+
+  @Test
+  public void write_behind_batch_session_divides_round_trips_on_postgresql_mode() {
+    benchmark("batchSessionBenchmarkPostgreSql;MODE=PostgreSQL");
+  }
+
+  private void benchmark(String databaseName) {
+    database = new H2Database(databaseName, true);
+    database.start();
+    CountingDatabase countingDatabase = new CountingDatabase(database);
+    MyBatis myBatis = new MyBatis(countingDatabase);
+    myBatis.start();
+    Fixture fixture = insertFixture(myBatis);
+
+    countingDatabase.roundTrips.set(0L);
+    persistIssues(new BatchSession(myBatis.getSessionFactory().openSession(ExecutorType.BATCH)), fixture, "flush_on_read_");
+    long flushOnReadRoundTrips = countingDatabase.roundTrips.getAndSet(0L);
+
+    persistIssues(myBatis.openSession(true), fixture, "write_behind_");
+    long writeBehindRoundTrips = countingDatabase.roundTrips.get();
+
+    LOGGER.info("{}: {} JDBC round-trips to persist {} issues when flushing on every read, {} with write-behind", databaseName,
+      flushOnReadRoundTrips, ISSUES, writeBehindRoundTrips);
+    assertThat(writeBehindRoundTrips).isLessThan(flushOnReadRoundTrips * 6 / 10);
+  }
+
+  private static void persistIssues(DbSession session, Fixture fixture, String keyPrefix) {
+    try {
+      IssueMapper issueMapper = session.getMapper(IssueMapper.class);
+      RuleMapper ruleMapper = session.getMapper(RuleMapper.class);
+      for (int i = 1; i <= ISSUES; i++) {
+        IssueDto issue = newIssue(fixture.rule, fixture.project, fixture.file).setKee(keyPrefix + i);
+        issueMapper.insert(issue);
+        assertThat(ruleMapper.selectDefinitionById(fixture.rule.getId())).isNotNull();
+        if (i % READ_ISSUE_EVERY == 0) {
+          // pending inserts must be visible
+          assertThat(issueMapper.selectByKey(issue.getKey())).isNotNull();
+        }
+      }
+      session.commit();
+    } finally {
+      session.close();
+    }
+  }
+
+  private static Fixture insertFixture(MyBatis myBatis) {
+    try (DbSession session = myBatis.openSession(false)) {
+      OrganizationDto organization = newOrganizationDto();
+      RuleDefinitionDto rule = newRule();
+      session.getMapper(RuleMapper.class).insertDefinition(rule);
+      ComponentDto project = newPrivateProjectDto(organization);
+      ComponentDto file = newFileDto(project);
+      session.getMapper(ComponentMapper.class).insert(project);
+      session.getMapper(ComponentMapper.class).insert(file);
+      session.commit();
+      return new Fixture(rule, project, file);
+    }
+  }
+
+  private static class Fixture {
+    private final RuleDefinitionDto rule;
+    private final ComponentDto project;
+    private final ComponentDto file;
+
+    private Fixture(RuleDefinitionDto rule, ComponentDto project, ComponentDto file) {
+      this.rule = rule;
+      this.project = project;
+      this.file = file;
+    }
+  }
+
+  /**
+   * Counts the executions of statements, including batches, and the commits
+   */
+  private static class CountingDatabase implements Database {
+    private final Database delegate;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final DataSource dataSource;
+
+    private CountingDatabase(Database delegate) {
+      this.delegate = delegate;
+      this.dataSource = proxy(DataSource.class, delegate.getDataSource());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target) {
+      InvocationHandler handler = (proxy, method, args) -> {
+        String name = method.getName();
+        if (name.startsWith("execute") || "commit".equals(name)) {
+          roundTrips.incrementAndGet();
+        }
+        Object result = invoke(method, target, args);
+        if (result instanceof Connection) {
+          return proxy(Connection.class, (Connection) result);
+        }
+        if (result instanceof Statement) {
+          return proxy((Class<Statement>) method.getReturnType(), (Statement) result);
+        }
+        return result;
+      };
+      return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {type}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    @Override
+    public DataSource getDataSource() {
+      return dataSource;
+    }
+
+    @Override
+    public Dialect getDialect() {
+      return delegate.getDialect();
+    }
+
+    @Override
+    public void enableSqlLogging(boolean enable) {
+      delegate.enableSqlLogging(enable);
+    }
+
+    @Override
+    public void start() {
+      // started by test
+    }
+
+    @Override
+    public void stop() {
+      // stopped by test
+    }
+  }
+}
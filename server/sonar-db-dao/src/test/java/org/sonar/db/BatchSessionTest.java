@@ -19,9 +19,12 @@
  */
 package org.sonar.db;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -70,4 +73,46 @@ public class BatchSessionTest {
     verify(mybatisSession, times(3)).commit();
     session.close();
   }
+
+  @Test
+  public void shouldCommitWhenReachingBatchSizeOfMapper() {
+    DbSession mybatisSession = mock(DbSession.class);
+    BatchSession session = new BatchSession(mybatisSession, 10, ImmutableMap.of("org.sonar.FooMapper", 3));
+
+    session.insert("org.sonar.FooMapper.insert");
+    session.insert("org.sonar.BarMapper.insert");
+    session.update("org.sonar.FooMapper.update");
+    verify(mybatisSession, never()).commit();
+
+    session.delete("org.sonar.FooMapper.delete");
+    verify(mybatisSession).commit();
+    session.close();
+  }
+
+  @Test
+  public void shouldNotResetCounterOnSelect() {
+    DbSession mybatisSession = mock(DbSession.class);
+    BatchSession session = new BatchSession(mybatisSession, 10);
+
+    for (int i = 0; i < 10; i++) {
+      session.insert("id" + i);
+      session.selectOne("select" + i);
+    }
+    verify(mybatisSession).commit();
+    session.close();
+  }
+
+  @Test
+  public void shouldFlushStatementsBeforeGivingConnection() {
+    DbSession mybatisSession = mock(DbSession.class);
+    BatchSession session = new BatchSession(mybatisSession, 10);
+
+    session.insert("id");
+    session.getConnection();
+
+    InOrder inOrder = inOrder(mybatisSession);
+    inOrder.verify(mybatisSession).flushStatements();
+    inOrder.verify(mybatisSession).getConnection();
+    session.close();
+  }
 }
@@ -0,0 +1,68 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.issue.IssueMapper;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.rule.RuleMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.issue.IssueTesting.newIssue;
+
+public class WriteBehindBatchExecutorTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private WriteBehindBatchExecutor underTest = new WriteBehindBatchExecutor(new Configuration(), mock(Transaction.class));
+
+  @Test
+  public void queries_do_not_read_pending_writes_when_there_are_none() {
+    assertThat(underTest.readsPendingWrites("select * from issues")).isFalse();
+  }
+
+  @Test
+  public void queries_read_pending_writes_of_the_tables_they_reference() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+
+    try (DbSession session = db.myBatis().openSession(true)) {
+      IssueDto issue = newIssue(rule, project, file);
+      session.getMapper(IssueMapper.class).insert(issue);
+
+      // table rules has no pending writes
+      assertThat(session.getMapper(RuleMapper.class).selectDefinitionById(rule.getId())).isNotNull();
+      // pending insert is flushed before reading table issues
+      assertThat(session.getMapper(IssueMapper.class).selectByKey(issue.getKey())).isNotNull();
+      session.commit();
+    }
+    assertThat(db.countRowsOfTable("issues")).isEqualTo(1);
+  }
+}
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
@@ -37,11 +38,16 @@ import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.AlwaysIncreasingSystem2;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.db.DbTester;
+import org.sonar.db.Pagination;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.organization.OrganizationDto;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
@@ -470,6 +476,211 @@ public class CeQueueDaoTest {
     }
   }
 
+  @Test
+  public void peek_with_batch_claims_first_task_and_reserves_one_task_per_project() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 3_000);
+    insert("TASK_4", "PROJECT_3", PENDING);
+    system2.setNow(INIT_TIME + 4_000);
+    insert("TASK_5", "PROJECT_4", PENDING);
+    system2.setNow(INIT_TIME + 5_000);
+
+    PeekResult result = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 10);
+
+    // only half of the 4 eligible tasks are selected, no more than one per project
+    assertThat(result.getConflicts()).isEqualTo(0);
+    CeQueueDto started = result.getTask().get();
+    assertThat(started.getUuid()).isEqualTo(TASK_UUID_1);
+    assertThat(started.getStatus()).isEqualTo(IN_PROGRESS);
+    assertThat(started.getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(started.getExecutionCount()).isEqualTo(1);
+    assertThat(started.getStartedAt()).isEqualTo(INIT_TIME + 5_000);
+    assertThat(result.getReserved()).extracting(EligibleTaskDto::getUuid).containsExactly(TASK_UUID_3);
+    // reserved tasks remain pending
+    CeQueueDto reserved = underTest.selectByUuid(db.getSession(), TASK_UUID_3).get();
+    assertThat(reserved.getStatus()).isEqualTo(PENDING);
+    assertThat(reserved.getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(reserved.getStartedAt()).isNull();
+    assertThat(selectReservedUntil(TASK_UUID_3)).isEqualTo(INIT_TIME + 5_000 + CeQueueDao.RESERVATION_DURATION_MS);
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_2).get().getStatus()).isEqualTo(PENDING);
+  }
+
+  @Test
+  public void peek_with_batch_selects_at_most_maxTasks_tasks() {
+    for (int i = 0; i < 10; i++) {
+      system2.setNow(INIT_TIME + i);
+      insert("TASK_" + i, "PROJECT_" + i, PENDING);
+    }
+
+    PeekResult result = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 3);
+
+    assertThat(result.getTask().get().getUuid()).isEqualTo("TASK_0");
+    assertThat(result.getReserved()).extracting(EligibleTaskDto::getUuid).containsExactly("TASK_1", "TASK_2");
+  }
+
+  @Test
+  public void peek_with_batch_returns_empty_result_if_no_pendings() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+
+    PeekResult result = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 5);
+
+    assertThat(result.getTask()).isEmpty();
+    assertThat(result.getReserved()).isEmpty();
+    assertThat(result.getConflicts()).isEqualTo(0);
+  }
+
+  @Test
+  public void selectEligibleForPeek_populates_organization_of_component() {
+    OrganizationDto organization = db.organizations().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    insert(TASK_UUID_1, project.uuid(), PENDING);
+    insert(TASK_UUID_2, "does not exist", PENDING);
+
+    List<EligibleTaskDto> eligibles = db.getSession().getMapper(CeQueueMapper.class)
+      .selectEligibleForPeek(MAX_EXECUTION_COUNT, WORKER_UUID_1, INIT_TIME, Pagination.all());
+
+    assertThat(eligibles)
+      .extracting(EligibleTaskDto::getUuid, EligibleTaskDto::getComponentUuid, EligibleTaskDto::getOrganizationUuid)
+      .containsOnly(
+        tuple(TASK_UUID_1, project.uuid(), organization.getUuid()),
+        tuple(TASK_UUID_2, "does not exist", null));
+  }
+
+  @Test
+  public void fairlyOrdered_keeps_oldest_task_of_each_component_and_interleaves_organizations() {
+    List<EligibleTaskDto> eligibles = asList(
+      eligible("t1", "c1", "org1"),
+      eligible("t2", "c1", "org1"),
+      eligible("t3", "c2", "org1"),
+      eligible("t4", "c3", "org1"),
+      eligible("t5", "c4", "org2"),
+      eligible("t6", null, null),
+      eligible("t7", "c5", "org2"),
+      eligible("t8", null, null));
+
+    assertThat(CeQueueDao.fairlyOrdered(eligibles))
+      .extracting(EligibleTaskDto::getUuid)
+      .containsExactly("t1", "t5", "t6", "t3", "t7", "t8", "t4");
+  }
+
+  @Test
+  public void tryToClaimReserved_starts_task_reserved_by_peek() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+    insert("TASK_4", "PROJECT_4", PENDING);
+    EligibleTaskDto reserved = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 2).getReserved().get(0);
+    system2.setNow(INIT_TIME + 10_000);
+
+    Optional<CeQueueDto> started = underTest.tryToClaimReserved(db.getSession(), reserved, WORKER_UUID_1);
+
+    assertThat(started.get().getUuid()).isEqualTo(TASK_UUID_2);
+    assertThat(started.get().getStatus()).isEqualTo(IN_PROGRESS);
+    assertThat(started.get().getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(started.get().getExecutionCount()).isEqualTo(1);
+    assertThat(started.get().getStartedAt()).isEqualTo(INIT_TIME + 10_000);
+    // can be claimed only once
+    assertThat(underTest.tryToClaimReserved(db.getSession(), reserved, WORKER_UUID_2)).isEmpty();
+  }
+
+  @Test
+  public void tryToClaimReserved_returns_empty_if_reservation_expired_and_task_has_been_claimed_by_another_worker() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+    insert("TASK_4", "PROJECT_4", PENDING);
+    EligibleTaskDto reserved = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 2).getReserved().get(0);
+    assertThat(underTest.peek(db.getSession(), WORKER_UUID_2, MAX_EXECUTION_COUNT).get().getUuid()).isEqualTo(TASK_UUID_3);
+    system2.setNow(INIT_TIME + CeQueueDao.RESERVATION_DURATION_MS + 1);
+    assertThat(underTest.peek(db.getSession(), WORKER_UUID_2, MAX_EXECUTION_COUNT).get().getUuid()).isEqualTo(reserved.getUuid());
+
+    assertThat(underTest.tryToClaimReserved(db.getSession(), reserved, WORKER_UUID_1)).isEmpty();
+    assertThat(underTest.selectByUuid(db.getSession(), reserved.getUuid()).get().getWorkerUuid()).isEqualTo(WORKER_UUID_2);
+  }
+
+  @Test
+  public void tryToClaimReserved_starts_task_if_reservation_expired_but_task_is_still_pending() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+    insert("TASK_4", "PROJECT_4", PENDING);
+    EligibleTaskDto reserved = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 2).getReserved().get(0);
+    system2.setNow(INIT_TIME + CeQueueDao.RESERVATION_DURATION_MS + 1);
+
+    assertThat(underTest.tryToClaimReserved(db.getSession(), reserved, WORKER_UUID_1).get().getUuid()).isEqualTo(TASK_UUID_2);
+  }
+
+  @Test
+  public void tryToClaimReserved_returns_empty_if_task_has_been_cancelled() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+    EligibleTaskDto reserved = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 2).getReserved().get(0);
+    underTest.deleteByUuid(db.getSession(), reserved.getUuid());
+    db.commit();
+
+    assertThat(underTest.tryToClaimReserved(db.getSession(), reserved, WORKER_UUID_1)).isEmpty();
+  }
+
+  @Test
+  public void peek_ignores_tasks_reserved_by_another_worker_and_other_tasks_of_their_component() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+    insert("TASK_4", "PROJECT_3", PENDING);
+    insert("TASK_5", "PROJECT_4", PENDING);
+    PeekResult result = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 2);
+    assertThat(result.getTask().get().getUuid()).isEqualTo(TASK_UUID_1);
+    assertThat(result.getReserved()).extracting(EligibleTaskDto::getUuid).containsExactly(TASK_UUID_2);
+
+    List<EligibleTaskDto> eligibles = db.getSession().getMapper(CeQueueMapper.class)
+      .selectEligibleForPeek(MAX_EXECUTION_COUNT, WORKER_UUID_2, INIT_TIME, Pagination.all());
+    assertThat(eligibles).extracting(EligibleTaskDto::getUuid).containsExactly("TASK_4", "TASK_5");
+    // the worker which reserved a task can still claim it
+    eligibles = db.getSession().getMapper(CeQueueMapper.class)
+      .selectEligibleForPeek(MAX_EXECUTION_COUNT, WORKER_UUID_1, INIT_TIME, Pagination.all());
+    assertThat(eligibles).extracting(EligibleTaskDto::getUuid).containsExactly(TASK_UUID_2, "TASK_4", "TASK_5");
+    // reservation expired
+    eligibles = db.getSession().getMapper(CeQueueMapper.class)
+      .selectEligibleForPeek(MAX_EXECUTION_COUNT, WORKER_UUID_2, INIT_TIME + CeQueueDao.RESERVATION_DURATION_MS + 1, Pagination.all());
+    assertThat(eligibles).extracting(EligibleTaskDto::getUuid).containsExactly(TASK_UUID_2, TASK_UUID_3, "TASK_4", "TASK_5");
+  }
+
+  @Test
+  public void releaseReservations_makes_tasks_reserved_by_worker_eligible_for_other_workers() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+    insert("TASK_4", "PROJECT_4", PENDING);
+    EligibleTaskDto reserved = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 2).getReserved().get(0);
+
+    assertThat(underTest.releaseReservations(db.getSession(), WORKER_UUID_2)).isEqualTo(0);
+    assertThat(underTest.releaseReservations(db.getSession(), WORKER_UUID_1)).isEqualTo(1);
+    db.commit();
+
+    CeQueueDto released = underTest.selectByUuid(db.getSession(), reserved.getUuid()).get();
+    assertThat(released.getStatus()).isEqualTo(PENDING);
+    assertThat(released.getWorkerUuid()).isNull();
+    assertThat(selectReservedUntil(reserved.getUuid())).isNull();
+    // the task claimed by the worker is not affected
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_1).get().getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(underTest.peek(db.getSession(), WORKER_UUID_2, MAX_EXECUTION_COUNT).get().getUuid()).isEqualTo(reserved.getUuid());
+  }
+
+  @CheckForNull
+  private Long selectReservedUntil(String taskUuid) {
+    Object value = db.selectFirst("select reserved_until as \"reservedUntil\" from ce_queue where uuid='" + taskUuid + "'").get("reservedUntil");
+    return value == null ? null : ((Number) value).longValue();
+  }
+
+  private static EligibleTaskDto eligible(String uuid, @Nullable String componentUuid, @Nullable String organizationUuid) {
+    return new EligibleTaskDto().setUuid(uuid).setComponentUuid(componentUuid).setOrganizationUuid(organizationUuid);
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
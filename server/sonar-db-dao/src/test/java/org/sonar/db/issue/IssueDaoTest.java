@@ -29,6 +29,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.DbTester;
 import org.sonar.db.RowNotFoundException;
 import org.sonar.db.component.ComponentDto;
@@ -97,6 +98,57 @@ public class IssueDaoTest {
     assertThat(issue.parseLocations()).isNull();
   }
 
+  @Test
+  public void insert_with_bulk_insert() {
+    db.rules().insertRule(RULE);
+    ComponentDto project = db.components().insertPrivateProject(p -> p.setUuid(PROJECT_UUID));
+    db.components().insertComponent(newFileDto(project).setUuid(FILE_UUID));
+
+    try (BulkInsert bulkInsert = underTest.newBulkInsert(db.getSession())) {
+      underTest.insert(bulkInsert, newIssueDto(ISSUE_KEY1)
+        .setMessage("the message")
+        .setRuleId(RULE.getId())
+        .setComponentUuid(FILE_UUID)
+        .setProjectUuid(PROJECT_UUID)
+        .setTags(asList("foo", "bar"))
+        .setLocations(new byte[] {1, 2, 3}));
+      underTest.insert(bulkInsert, newIssueDto(ISSUE_KEY2)
+        .setRuleId(RULE.getId())
+        .setComponentUuid(FILE_UUID)
+        .setProjectUuid(PROJECT_UUID)
+        .setLine(null)
+        .setGap(null)
+        .setIssueCloseDate(null));
+    }
+    db.commit();
+
+    IssueDto issue = underTest.selectOrFailByKey(db.getSession(), ISSUE_KEY1);
+    assertThat(issue.getRuleId()).isEqualTo(RULE.getId());
+    assertThat(issue.getComponentUuid()).isEqualTo(FILE_UUID);
+    assertThat(issue.getProjectUuid()).isEqualTo(PROJECT_UUID);
+    assertThat(issue.getSeverity()).isEqualTo("BLOCKER");
+    assertThat(issue.getType()).isEqualTo(2);
+    assertThat(issue.isManualSeverity()).isFalse();
+    assertThat(issue.getMessage()).isEqualTo("the message");
+    assertThat(issue.getLine()).isEqualTo(500);
+    assertThat(issue.getEffort()).isEqualTo(10L);
+    assertThat(issue.getGap()).isEqualTo(3.14);
+    assertThat(issue.getStatus()).isEqualTo("RESOLVED");
+    assertThat(issue.getResolution()).isEqualTo("FIXED");
+    assertThat(issue.getChecksum()).isEqualTo("123456789");
+    assertThat(issue.getAuthorLogin()).isEqualTo("morgan");
+    assertThat(issue.getAssignee()).isEqualTo("karadoc");
+    assertThat(issue.getIssueAttributes()).isEqualTo("JIRA=FOO-1234");
+    assertThat(issue.getTags()).containsOnly("foo", "bar");
+    assertThat(issue.getLocations()).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(issue.getIssueCloseDate()).isNotNull();
+    assertThat(issue.getCreatedAt()).isEqualTo(1_440_000_000_000L);
+    IssueDto issueWithNulls = underTest.selectOrFailByKey(db.getSession(), ISSUE_KEY2);
+    assertThat(issueWithNulls.getLine()).isNull();
+    assertThat(issueWithNulls.getGap()).isNull();
+    assertThat(issueWithNulls.getIssueCloseDate()).isNull();
+  }
+
   @Test
   public void selectByKeyOrFail_fails_if_key_not_found() {
     expectedException.expect(RowNotFoundException.class);
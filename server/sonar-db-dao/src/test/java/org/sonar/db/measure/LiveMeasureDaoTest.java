@@ -0,0 +1,132 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.measure;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+
+import static com.google.common.base.Strings.repeat;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class LiveMeasureDaoTest {
+
+  private static final int NCLOC_METRIC_ID = 12;
+  private static final int COVERAGE_METRIC_ID = 10;
+
+  private TestSystem2 system2 = new TestSystem2().setNow(1_000L);
+
+  @Rule
+  public DbTester db = DbTester.create(system2);
+
+  private DbSession dbSession = db.getSession();
+  private LiveMeasureDao underTest = db.getDbClient().liveMeasureDao();
+
+  @Test
+  public void insert_and_select_by_component_uuids() {
+    insert("P1", "C1", NCLOC_METRIC_ID, 10d);
+    insert("P1", "C1", COVERAGE_METRIC_ID, 80d);
+    insert("P1", "C2", NCLOC_METRIC_ID, 20d);
+    insert("P1", "C3", NCLOC_METRIC_ID, 30d);
+
+    assertThat(underTest.selectByComponentUuids(dbSession, asList("C1", "C2", "UNKNOWN")))
+      .extracting(LiveMeasureDto::getComponentUuid, LiveMeasureDto::getMetricId, LiveMeasureDto::getValue)
+      .containsOnly(tuple("C1", NCLOC_METRIC_ID, 10d), tuple("C1", COVERAGE_METRIC_ID, 80d), tuple("C2", NCLOC_METRIC_ID, 20d));
+
+    LiveMeasureDto measure = underTest.selectByComponentUuids(dbSession, singletonList("C3")).get(0);
+    assertThat(measure.getUuid()).isNotEmpty();
+    assertThat(measure.getProjectUuid()).isEqualTo("P1");
+    assertThat(measure.getCreatedAt()).isEqualTo(1_000L);
+    assertThat(measure.getUpdatedAt()).isEqualTo(1_000L);
+  }
+
+  @Test
+  public void insert_large_data() {
+    String data = repeat("x", 5_000);
+    underTest.insert(dbSession, new LiveMeasureDto().setProjectUuid("P1").setComponentUuid("C1").setMetricId(NCLOC_METRIC_ID).setData(data));
+
+    assertThat(underTest.selectByComponentUuids(dbSession, singletonList("C1")).get(0).getData()).isEqualTo(data);
+  }
+
+  @Test
+  public void update_values_of_component_and_metric() {
+    insert("P1", "C1", NCLOC_METRIC_ID, 10d);
+    insert("P1", "C1", COVERAGE_METRIC_ID, 80d);
+    system2.setNow(2_000L);
+
+    underTest.update(dbSession, new LiveMeasureDto().setComponentUuid("C1").setMetricId(NCLOC_METRIC_ID).setValue(15d).setVariation(5d).setData("foo"));
+
+    assertThat(underTest.selectByComponentUuids(dbSession, singletonList("C1")))
+      .extracting(LiveMeasureDto::getMetricId, LiveMeasureDto::getValue, LiveMeasureDto::getVariation, LiveMeasureDto::getData,
+        LiveMeasureDto::getCreatedAt, LiveMeasureDto::getUpdatedAt)
+      .containsOnly(
+        tuple(NCLOC_METRIC_ID, 15d, 5d, "foo", 1_000L, 2_000L),
+        tuple(COVERAGE_METRIC_ID, 80d, null, null, 1_000L, 1_000L));
+  }
+
+  @Test
+  public void count_measures_of_project() {
+    insert("P1", "C1", NCLOC_METRIC_ID, 10d);
+    insert("P1", "C2", NCLOC_METRIC_ID, 20d);
+    insert("P2", "C3", NCLOC_METRIC_ID, 30d);
+
+    assertThat(underTest.countByProjectUuid(dbSession, "P1")).isEqualTo(2);
+    assertThat(underTest.countByProjectUuid(dbSession, "P2")).isEqualTo(1);
+    assertThat(underTest.countByProjectUuid(dbSession, "P3")).isEqualTo(0);
+  }
+
+  @Test
+  public void delete_measure_of_component_and_metric() {
+    insert("P1", "C1", NCLOC_METRIC_ID, 10d);
+    insert("P1", "C1", COVERAGE_METRIC_ID, 80d);
+
+    underTest.delete(dbSession, "C1", NCLOC_METRIC_ID);
+
+    assertThat(underTest.selectByComponentUuids(dbSession, singletonList("C1")))
+      .extracting(LiveMeasureDto::getMetricId)
+      .containsOnly(COVERAGE_METRIC_ID);
+  }
+
+  @Test
+  public void delete_measures_of_project() {
+    insert("P1", "C1", NCLOC_METRIC_ID, 10d);
+    insert("P1", "C2", NCLOC_METRIC_ID, 20d);
+    insert("P2", "C3", NCLOC_METRIC_ID, 30d);
+
+    underTest.deleteByProjectUuid(dbSession, "P1");
+
+    assertThat(underTest.selectByComponentUuids(dbSession, asList("C1", "C2", "C3")))
+      .extracting(LiveMeasureDto::getComponentUuid)
+      .containsOnly("C3");
+  }
+
+  private void insert(String projectUuid, String componentUuid, int metricId, double value) {
+    underTest.insert(dbSession, new LiveMeasureDto()
+      .setProjectUuid(projectUuid)
+      .setComponentUuid(componentUuid)
+      .setMetricId(metricId)
+      .setValue(value));
+  }
+}
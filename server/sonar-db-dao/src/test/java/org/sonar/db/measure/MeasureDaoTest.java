@@ -19,6 +19,7 @@
  */
 package org.sonar.db.measure;
 
+import com.google.common.base.Strings;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactoryImpl;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -40,6 +42,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.resources.Qualifiers.FILE;
 import static org.sonar.api.resources.Qualifiers.UNIT_TEST_FILE;
 import static org.sonar.api.utils.DateUtils.parseDate;
@@ -103,6 +106,53 @@ public class MeasureDaoTest {
     assertThat(selected.getAlertText()).isEqualTo(inserted.getAlertText());
   }
 
+  @Test
+  public void insert_with_bulk_insert() {
+    ComponentDto project = db.components().insertPrivateProject();
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    db.components().insertComponent(newFileDto(project).setUuid("C4"));
+    MeasureDto inserted = new MeasureDto()
+      .setAnalysisUuid(LAST_ANALYSIS_UUID)
+      .setMetricId(2)
+      .setDeveloperId(3L)
+      .setComponentUuid("C4")
+      .setValue(5.0d)
+      .setData("data")
+      .setVariation(1d)
+      .setAlertStatus("alert")
+      .setAlertText("alert-text");
+    MeasureDto insertedWithLargeData = new MeasureDto()
+      .setAnalysisUuid(LAST_ANALYSIS_UUID)
+      .setMetricId(3)
+      .setComponentUuid("C4")
+      .setData(Strings.repeat("a", 5_000));
+
+    try (BulkInsert bulkInsert = underTest.newBulkInsert(db.getSession())) {
+      underTest.insert(bulkInsert, inserted);
+      underTest.insert(bulkInsert, insertedWithLargeData);
+    }
+    db.getSession().commit(true);
+
+    MeasureDto selected = underTest.selectSingle(db.getSession(), MeasureQuery.builder()
+      .setComponentUuid(inserted.getComponentUuid())
+      .setPersonId(inserted.getDeveloperId())
+      .build()).get();
+    assertThat(selected.getAnalysisUuid()).isEqualTo(inserted.getAnalysisUuid());
+    assertThat(selected.getMetricId()).isEqualTo(inserted.getMetricId());
+    assertThat(selected.getDeveloperId()).isEqualTo(inserted.getDeveloperId());
+    assertThat(selected.getValue()).isEqualTo(inserted.getValue());
+    assertThat(selected.getData()).isEqualTo(inserted.getData());
+    assertThat(selected.getVariation()).isEqualTo(inserted.getVariation());
+    assertThat(selected.getAlertStatus()).isEqualTo(inserted.getAlertStatus());
+    assertThat(selected.getAlertText()).isEqualTo(inserted.getAlertText());
+    MeasureDto selectedWithLargeData = underTest.selectSingle(db.getSession(), MeasureQuery.builder()
+      .setComponentUuid("C4")
+      .setMetricId(3)
+      .build()).get();
+    assertThat(selectedWithLargeData.getData()).isEqualTo(insertedWithLargeData.getData());
+    assertThat(selectedWithLargeData.getValue()).isNull();
+  }
+
   @Test
   public void selectByQuery() {
     ComponentDto project1 = db.components().insertPrivateProject();
@@ -375,6 +425,39 @@ public class MeasureDaoTest {
       .containsOnly("P1_M1", "P1_M2", "P2_M1", "P2_M2");
   }
 
+  @Test
+  public void live_measures_are_selected_as_measures_of_last_analysis() {
+    ComponentDto project = db.components().insertPrivateProject(db.getDefaultOrganization(), "P1");
+    ComponentDto file = db.components().insertComponent(newFileDto(project).setUuid("C1"));
+    db.components().insertComponent(newFileDto(project).setUuid("C2"));
+    db.components().insertSnapshot(project, s -> s.setUuid(LAST_ANALYSIS_UUID).setLast(true));
+    db.components().insertSnapshot(project, s -> s.setUuid(OTHER_ANALYSIS_UUID).setLast(false));
+    insertMeasure("P1_M1", LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertLiveMeasure("L1", project.uuid(), "C1", NCLOC_METRIC_ID);
+    insertLiveMeasure("L2", project.uuid(), "C1", COVERAGE_METRIC_ID);
+    insertLiveMeasure("L3", project.uuid(), "C2", NCLOC_METRIC_ID);
+    db.commit();
+
+    verifyMeasures(MeasureQuery.builder().setComponentUuid("C1"), "L1", "L2");
+    verifyMeasures(MeasureQuery.builder().setComponentUuid("C1").setMetricId(COVERAGE_METRIC_ID), "L2");
+    verifyMeasures(MeasureQuery.builder().setComponentUuid("C1").setAnalysisUuid(LAST_ANALYSIS_UUID), "L1", "L2");
+    verifyZeroMeasures(MeasureQuery.builder().setComponentUuid("C1").setAnalysisUuid(OTHER_ANALYSIS_UUID));
+    verifyZeroMeasures(MeasureQuery.builder().setComponentUuid("C1").setPersonId(A_PERSON_ID));
+    verifyMeasures(MeasureQuery.builder().setComponentUuids(project.uuid(), asList("C1", "C2")).setMetricId(NCLOC_METRIC_ID), "L1", "L3");
+    assertThat(selectSingle(MeasureQuery.builder().setComponentUuid("C2")).get().getAnalysisUuid()).isEqualTo(LAST_ANALYSIS_UUID);
+
+    verifyMeasures(project, MeasureTreeQuery.builder().setStrategy(LEAVES), "P1_M1", "L1", "L2", "L3");
+    verifyMeasures(file, MeasureTreeQuery.builder().setStrategy(CHILDREN).setMetricIds(singletonList(NCLOC_METRIC_ID)), "L1");
+
+    assertThat(underTest.selectByComponentsAndMetrics(db.getSession(), asList("C1", "C2"), singletonList(NCLOC_METRIC_ID)))
+      .extracting(MeasureDto::getData).containsOnly("L1", "L3");
+    assertThat(underTest.selectPastMeasures(db.getSession(), "C1", LAST_ANALYSIS_UUID, asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID)))
+      .extracting(PastMeasureDto::getMetricId).containsOnly(NCLOC_METRIC_ID, COVERAGE_METRIC_ID);
+    assertThat(underTest.selectPastMeasures(db.getSession(), "C1", OTHER_ANALYSIS_UUID, asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID))).isEmpty();
+    assertThat(underTest.selectPastMeasures(db.getSession(), new PastMeasureQuery("C1", singletonList(NCLOC_METRIC_ID), null, null)))
+      .extracting(MeasureDto::getData, MeasureDto::getAnalysisUuid).containsOnly(tuple("L1", LAST_ANALYSIS_UUID));
+  }
+
   private Optional<MeasureDto> selectSingle(MeasureQuery.Builder query) {
     return underTest.selectSingle(db.getSession(), query.build());
   }
@@ -410,6 +493,16 @@ public class MeasureDaoTest {
     db.getDbClient().measureDao().insert(db.getSession(), measure);
   }
 
+  private void insertLiveMeasure(String id, String projectUuid, String componentUuid, int metricId) {
+    LiveMeasureDto measure = new LiveMeasureDto()
+      .setProjectUuid(projectUuid)
+      .setComponentUuid(componentUuid)
+      .setMetricId(metricId)
+      .setValue(10d)
+      .setData(id);
+    db.getDbClient().liveMeasureDao().insert(db.getSession(), measure);
+  }
+
   private String insertComponent(String scope, String qualifier, boolean enabled) {
     String uuid = UuidFactoryImpl.INSTANCE.create();
     ComponentDto componentDto = new ComponentDto()
@@ -31,6 +31,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang.math.RandomUtils;
 import org.apache.commons.lang.time.DateUtils;
+import org.assertj.core.groups.Tuple;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -48,16 +49,25 @@ import org.sonar.db.component.BranchType;
 import org.sonar.db.component.ComponentDbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.measure.LiveMeasureDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.metric.MetricDto;
 import org.sonar.db.measure.custom.CustomMeasureDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.apache.commons.lang.RandomStringUtils.randomAlphabetic;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -188,6 +198,160 @@ public class PurgeDaoTest {
     assertThat(dbTester.countRowsOfTable("file_sources")).isZero();
   }
 
+  @Test
+  public void purgeInBatches_deletes_wasted_measures_and_flags_analyses_as_purged() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project));
+    MetricDto metricWithHistory = dbTester.measures().insertMetric(m -> m.setDeleteHistoricalData(false));
+    MetricDto metricWithoutHistory = dbTester.measures().insertMetric(m -> m.setDeleteHistoricalData(true));
+    SnapshotDto oldAnalysis = dbTester.components().insertSnapshot(project, a -> a.setLast(false));
+    SnapshotDto lastAnalysis = dbTester.components().insertSnapshot(project);
+    MeasureDto kept = dbTester.measures().insertMeasure(project, oldAnalysis, metricWithHistory);
+    dbTester.measures().insertMeasure(project, oldAnalysis, metricWithoutHistory);
+    dbTester.measures().insertMeasure(file, oldAnalysis, metricWithHistory);
+    MeasureDto lastFileMeasure = dbTester.measures().insertMeasure(file, lastAnalysis, metricWithoutHistory);
+    PurgeConfiguration conf = new PurgeConfiguration(new IdUuidPair(project.getId(), project.uuid()), new String[] {Scopes.FILE}, 30, Optional.of(30),
+      System2.INSTANCE, Collections.emptyList());
+    PurgeProfiler profiler = new PurgeProfiler();
+
+    boolean completed = underTest.purgeInBatches(dbSession, conf, emptyList(), PurgeListener.EMPTY, profiler, new PurgeSlice(System2.INSTANCE, 1, 60_000L));
+
+    assertThat(completed).isTrue();
+    assertThat(selectMeasures()).containsOnly(tuple(project.uuid(), oldAnalysis.getUuid(), kept.getMetricId()),
+      tuple(file.uuid(), lastAnalysis.getUuid(), lastFileMeasure.getMetricId()));
+    assertThat(dbTester.select("select purge_status as \"purgeStatus\" from snapshots where uuid='" + oldAnalysis.getUuid() + "'").get(0).get("purgeStatus"))
+      .isEqualTo(1L);
+  }
+
+  @Test
+  public void purgeInBatches_deletes_aborted_analyses_and_analyses_selected_by_period_cleaner() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project));
+    MetricDto metric = dbTester.measures().insertMetric(m -> m.setDeleteHistoricalData(false));
+    SnapshotDto abortedAnalysis = dbTester.components().insertSnapshot(project, a -> a.setLast(false).setStatus(SnapshotDto.STATUS_UNPROCESSED));
+    SnapshotDto oldAnalysis = dbTester.components().insertSnapshot(project, a -> a.setLast(false));
+    SnapshotDto lastAnalysis = dbTester.components().insertSnapshot(project);
+    dbTester.measures().insertMeasure(project, abortedAnalysis, metric);
+    dbTester.measures().insertMeasure(file, abortedAnalysis, metric);
+    dbTester.measures().insertMeasure(project, oldAnalysis, metric);
+    dbTester.measures().insertMeasure(file, oldAnalysis, metric);
+    dbTester.measures().insertMeasure(project, lastAnalysis, metric);
+
+    boolean completed = underTest.purgeInBatches(dbSession, newConfigurationWith30Days(System2.INSTANCE, project.uuid()),
+      singletonList(new IdUuidPair(oldAnalysis.getId(), oldAnalysis.getUuid())), PurgeListener.EMPTY, new PurgeProfiler(), new PurgeSlice(System2.INSTANCE, 1, 60_000L));
+
+    assertThat(completed).isTrue();
+    assertThat(dbTester.select("select uuid as \"uuid\" from snapshots")).extracting(row -> row.get("uuid")).containsOnly(lastAnalysis.getUuid());
+    assertThat(selectMeasures()).containsOnly(tuple(project.uuid(), lastAnalysis.getUuid(), metric.getId()));
+  }
+
+  @Test
+  public void purgeInBatches_stops_when_slice_is_over_and_resumes_on_next_call() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto file1 = dbTester.components().insertComponent(newFileDto(project));
+    ComponentDto file2 = dbTester.components().insertComponent(newFileDto(project));
+    MetricDto metric = dbTester.measures().insertMetric(m -> m.setDeleteHistoricalData(true));
+    SnapshotDto oldAnalysis = dbTester.components().insertSnapshot(project, a -> a.setLast(false));
+    dbTester.components().insertSnapshot(project);
+    dbTester.measures().insertMeasure(project, oldAnalysis, metric);
+    dbTester.measures().insertMeasure(file1, oldAnalysis, metric);
+    dbTester.measures().insertMeasure(file2, oldAnalysis, metric);
+    PurgeConfiguration conf = newConfigurationWith30Days(System2.INSTANCE, project.uuid());
+
+    PurgeSlice slice = new PurgeSlice(System2.INSTANCE, 1, 0L);
+    boolean completed = underTest.purgeInBatches(dbSession, conf, emptyList(), PurgeListener.EMPTY, new PurgeProfiler(), slice);
+
+    assertThat(completed).isFalse();
+    assertThat(dbTester.countRowsOfTable("project_measures")).isEqualTo(2);
+    assertThat(dbTester.select("select purge_status as \"purgeStatus\" from snapshots where uuid='" + oldAnalysis.getUuid() + "'").get(0).get("purgeStatus"))
+      .isNull();
+    PurgeProgress progress = slice.getProgress();
+    assertThat(progress.getStep()).isEqualTo(PurgeProgress.Step.PURGE_WASTED_MEASURES);
+    assertThat(progress.getAnalysisUuids()).containsOnly(oldAnalysis.getUuid());
+    String processedUuid = progress.getAfterKey();
+    assertThat(processedUuid).isIn(project.uuid(), file1.uuid(), file2.uuid());
+
+    // the component which is already processed is not processed again
+    ComponentDto processedComponent = dbTester.getDbClient().componentDao().selectOrFailByUuid(dbSession, processedUuid);
+    dbTester.measures().insertMeasure(processedComponent, oldAnalysis, metric);
+    completed = underTest.purgeInBatches(dbSession, conf, emptyList(), PurgeListener.EMPTY, new PurgeProfiler(),
+      new PurgeSlice(System2.INSTANCE, 1, 60_000L, PurgeProgress.parse(progress.format())));
+
+    assertThat(completed).isTrue();
+    assertThat(selectMeasures()).containsOnly(tuple(processedUuid, oldAnalysis.getUuid(), metric.getId()));
+    assertThat(dbTester.select("select purge_status as \"purgeStatus\" from snapshots where uuid='" + oldAnalysis.getUuid() + "'").get(0).get("purgeStatus"))
+      .isEqualTo(1L);
+  }
+
+  @Test
+  public void purgeInBatches_resumes_deletion_of_old_closed_issues_from_progress() {
+    when(system2.now()).thenReturn(new Date().getTime());
+    RuleDefinitionDto rule = dbTester.rules().insert();
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project));
+    Date oldDate = DateUtils.addDays(new Date(), -31);
+    for (int i = 0; i < 3; i++) {
+      dbTester.issues().insert(rule, project, file, issue -> issue.setStatus("CLOSED").setIssueCloseDate(oldDate));
+    }
+
+    PurgeSlice slice = new PurgeSlice(System2.INSTANCE, 1, 0L);
+    boolean completed = underTest.purgeInBatches(dbSession, newConfigurationWith30Days(system2, project.uuid()), emptyList(), PurgeListener.EMPTY,
+      new PurgeProfiler(), slice);
+
+    assertThat(completed).isFalse();
+    assertThat(dbTester.countRowsOfTable("issues")).isEqualTo(2);
+    assertThat(slice.getProgress().getStep()).isEqualTo(PurgeProgress.Step.DELETE_OLD_CLOSED_ISSUES);
+
+    PurgeListener listener = mock(PurgeListener.class);
+    completed = underTest.purgeInBatches(dbSession, newConfigurationWith30Days(system2, project.uuid()), emptyList(), listener, new PurgeProfiler(),
+      new PurgeSlice(System2.INSTANCE, 1, 60_000L, PurgeProgress.parse(slice.getProgress().format())));
+
+    assertThat(completed).isTrue();
+    assertThat(dbTester.countRowsOfTable("issues")).isZero();
+    verify(listener, times(2)).onIssuesRemoval(eq(project.uuid()), anyList());
+  }
+
+  @Test
+  public void purgeInBatches_deletes_old_closed_issues_by_batches() {
+    when(system2.now()).thenReturn(new Date().getTime());
+    RuleDefinitionDto rule = dbTester.rules().insert();
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project));
+    Date oldDate = DateUtils.addDays(new Date(), -31);
+    IssueDto oldClosed1 = dbTester.issues().insert(rule, project, file, issue -> issue.setStatus("CLOSED").setIssueCloseDate(oldDate));
+    IssueDto oldClosed2 = dbTester.issues().insert(rule, project, file, issue -> issue.setStatus("CLOSED").setIssueCloseDate(oldDate));
+    IssueDto oldClosed3 = dbTester.issues().insert(rule, project, file, issue -> issue.setStatus("CLOSED").setIssueCloseDate(oldDate));
+    IssueDto recentClosed = dbTester.issues().insert(rule, project, file, issue -> issue.setStatus("CLOSED").setIssueCloseDate(new Date()));
+    IssueDto open = dbTester.issues().insert(rule, project, file, issue -> issue.setStatus("OPEN").setIssueCloseDate(null));
+    PurgeListener listener = mock(PurgeListener.class);
+
+    boolean completed = underTest.purgeInBatches(dbSession, newConfigurationWith30Days(system2, project.uuid()), emptyList(), listener, new PurgeProfiler(),
+      new PurgeSlice(System2.INSTANCE, 2, 60_000L));
+
+    assertThat(completed).isTrue();
+    assertThat(dbTester.select("select kee as \"key\" from issues")).extracting(row -> row.get("key")).containsOnly(recentClosed.getKey(), open.getKey());
+    ArgumentCaptor<List> keys = ArgumentCaptor.forClass(List.class);
+    verify(listener, times(2)).onIssuesRemoval(eq(project.uuid()), keys.capture());
+    assertThat(keys.getAllValues().stream().flatMap(List<String>::stream)).containsOnly(oldClosed1.getKey(), oldClosed2.getKey(), oldClosed3.getKey());
+  }
+
+  @Test
+  public void delete_live_measures_when_deleting_project() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project));
+    ComponentDto otherProject = dbTester.components().insertPrivateProject();
+    ComponentDto otherFile = dbTester.components().insertComponent(newFileDto(otherProject));
+    insertLiveMeasure(project, file);
+    insertLiveMeasure(otherProject, otherFile);
+
+    underTest.deleteProject(dbSession, project.uuid());
+    dbSession.commit();
+
+    assertThat(dbTester.getDbClient().liveMeasureDao().selectByComponentUuids(dbSession, asList(file.uuid(), otherFile.uuid())))
+      .extracting(LiveMeasureDto::getComponentUuid)
+      .containsOnly(otherFile.uuid());
+  }
+
   @Test
   public void delete_branch_and_associated_data() {
     ComponentDto project = dbTester.components().insertMainBranch();
@@ -584,6 +748,22 @@ public class PurgeDaoTest {
       .map(row -> (String) row.get("COMPONENT_UUID"));
   }
 
+  private List<Tuple> selectMeasures() {
+    return dbTester.select("select component_uuid as \"component\", analysis_uuid as \"analysis\", metric_id as \"metric\" from project_measures")
+      .stream()
+      .map(row -> tuple(row.get("component"), row.get("analysis"), ((Long) row.get("metric")).intValue()))
+      .collect(Collectors.toList());
+  }
+
+  private void insertLiveMeasure(ComponentDto project, ComponentDto component) {
+    dbTester.getDbClient().liveMeasureDao().insert(dbSession, new LiveMeasureDto()
+      .setProjectUuid(project.uuid())
+      .setComponentUuid(component.uuid())
+      .setMetricId(RandomUtils.nextInt())
+      .setValue(RandomUtils.nextDouble()));
+    dbSession.commit();
+  }
+
   private void insertMeasureFor(ComponentDto... components) {
     Arrays.stream(components).forEach(componentDto -> dbTester.getDbClient().measureDao().insert(dbSession, new MeasureDto()
       .setMetricId(new Random().nextInt())
@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PurgeProgressTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void is_at_beginning_by_default() {
+    PurgeProgress underTest = new PurgeProgress();
+
+    assertThat(underTest.isAtBeginning()).isTrue();
+    assertThat(underTest.getStep()).isNull();
+    assertThat(underTest.getAfterKey()).isNull();
+    assertThat(underTest.getAnalysisUuids()).isEmpty();
+    assertThat(underTest.format()).isEmpty();
+  }
+
+  @Test
+  public void format_and_parse() {
+    PurgeProgress underTest = new PurgeProgress();
+    underTest.stopAt(PurgeProgress.Step.PURGE_WASTED_MEASURES, "COMPONENT_2", asList("A1", "A2"));
+
+    PurgeProgress parsed = PurgeProgress.parse(underTest.format());
+
+    assertThat(parsed.isAtBeginning()).isFalse();
+    assertThat(parsed.getStep()).isEqualTo(PurgeProgress.Step.PURGE_WASTED_MEASURES);
+    assertThat(parsed.getAfterKey()).isEqualTo("COMPONENT_2");
+    assertThat(parsed.getAnalysisUuids()).containsExactly("A1", "A2");
+  }
+
+  @Test
+  public void format_and_parse_without_analyses() {
+    PurgeProgress underTest = new PurgeProgress();
+    underTest.stopAt(PurgeProgress.Step.DELETE_OLD_CLOSED_ISSUES, "ISSUE_1", asList());
+
+    PurgeProgress parsed = PurgeProgress.parse(underTest.format());
+
+    assertThat(parsed.getStep()).isEqualTo(PurgeProgress.Step.DELETE_OLD_CLOSED_ISSUES);
+    assertThat(parsed.getAfterKey()).isEqualTo("ISSUE_1");
+    assertThat(parsed.getAnalysisUuids()).isEmpty();
+  }
+
+  @Test
+  public void parse_empty_text_as_beginning() {
+    assertThat(PurgeProgress.parse(null).isAtBeginning()).isTrue();
+    assertThat(PurgeProgress.parse("").isAtBeginning()).isTrue();
+  }
+
+  @Test
+  public void fail_to_parse_invalid_text() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Invalid purge progress: foo");
+
+    PurgeProgress.parse("foo");
+  }
+
+  @Test
+  public void select_interrupted_and_other_analyses() {
+    IdUuidPair a1 = new IdUuidPair(1L, "A1");
+    IdUuidPair a2 = new IdUuidPair(2L, "A2");
+    IdUuidPair a3 = new IdUuidPair(3L, "A3");
+    PurgeProgress underTest = new PurgeProgress();
+    underTest.stopAt(PurgeProgress.Step.DELETE_ANALYSES, "COMPONENT_2", asList("A1", "A3", "DELETED"));
+
+    assertThat(underTest.selectInterruptedAnalyses(asList(a1, a2, a3))).containsExactly(a1, a3);
+    assertThat(underTest.selectOtherAnalyses(asList(a1, a2, a3))).containsExactly(a2);
+
+    underTest.restart();
+
+    assertThat(underTest.isAtBeginning()).isTrue();
+    assertThat(underTest.getAnalysisUuids()).isEmpty();
+  }
+}
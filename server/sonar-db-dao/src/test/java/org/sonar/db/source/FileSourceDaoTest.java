@@ -21,6 +21,8 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -31,6 +33,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -59,6 +62,28 @@ public class FileSourceDaoTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("123456789");
   }
 
+  @Test
+  public void scrollSourcesByFileUuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setBinaryData("FILE2_BINARY_DATA".getBytes())
+      .setSrcHash("FILE2_HASH")
+      .setDataType(Type.TEST)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+
+    List<FileSourceDto> dtos = new ArrayList<>();
+    underTest.scrollSourcesByFileUuids(session, asList("FILE1_UUID", "FILE2_UUID", "UNKNOWN"), context -> dtos.add(context.getResultObject()));
+
+    assertThat(dtos).hasSize(1);
+    assertThat(dtos.get(0).getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(dtos.get(0).getSrcHash()).isEqualTo("FILE_HASH");
+    assertThat(dtos.get(0).getBinaryData()).isNotEmpty();
+  }
+
   @Test
   public void select_line_hashes() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -54,6 +54,37 @@ public class FileSourceDtoTest {
     assertThat(underTest.getTestData().get(0).getName()).isEqualTo("name#1");
   }
 
+  @Test
+  public void getScmData_decodes_only_line_numbers_and_scm_fields() {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    data.addLinesBuilder().setLine(1).setSource("package foo;").setScmRevision("rev1").setScmAuthor("john").setScmDate(1_000L)
+      .setHighlighting("0,3,k").setLineHits(2).addDuplication(1);
+    data.addLinesBuilder().setLine(2).setSource("").setScmRevision("rev2").setScmDate(2_000L);
+    data.addLinesBuilder().setLine(3).setSource("}");
+
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data.build());
+
+    DbFileSources.Data scmData = underTest.getScmData();
+    assertThat(scmData.getLinesList()).containsExactly(
+      DbFileSources.Line.newBuilder().setLine(1).setScmRevision("rev1").setScmAuthor("john").setScmDate(1_000L).build(),
+      DbFileSources.Line.newBuilder().setLine(2).setScmRevision("rev2").setScmDate(2_000L).build(),
+      DbFileSources.Line.newBuilder().setLine(3).build());
+  }
+
+  @Test
+  public void getScmData_throws_ISE_with_id_fileUuid_and_projectUuid_in_message_when_data_cant_be_read() {
+    FileSourceDto underTest = new FileSourceDto()
+      .setBinaryData(new byte[] {1, 2, 3, 4, 5})
+      .setId(12L)
+      .setFileUuid("file uuid")
+      .setProjectUuid("project uuid");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decompress and deserialize SCM data [id=12,fileUuid=file uuid,projectUuid=project uuid]");
+
+    underTest.getScmData();
+  }
+
   @Test
   public void getSourceData_throws_ISE_with_id_fileUuid_and_projectUuid_in_message_when_data_cant_be_read() {
     long id = 12L;
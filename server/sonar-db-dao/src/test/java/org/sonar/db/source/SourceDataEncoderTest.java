@@ -0,0 +1,74 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import java.util.Random;
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceDataEncoderTest {
+
+  private SourceDataEncoder underTest = new SourceDataEncoder();
+
+  @Test
+  public void encode_produces_same_bytes_as_FileSourceDto() {
+    DbFileSources.Data small = createData(3, new Random(1));
+    DbFileSources.Data multipleBlocks = createData(5_000, new Random(2));
+
+    assertThat(underTest.encode(small)).isEqualTo(FileSourceDto.encodeSourceData(small));
+    assertThat(underTest.encode(multipleBlocks)).isEqualTo(FileSourceDto.encodeSourceData(multipleBlocks));
+    // buffers are reused from one call to another
+    assertThat(underTest.encode(small)).isEqualTo(FileSourceDto.encodeSourceData(small));
+  }
+
+  @Test
+  public void encode_empty_data() {
+    DbFileSources.Data empty = DbFileSources.Data.newBuilder().build();
+
+    byte[] bytes = underTest.encode(empty);
+
+    assertThat(bytes).isEqualTo(FileSourceDto.encodeSourceData(empty));
+    assertThat(new FileSourceDto().decodeSourceData(bytes).getLinesCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void encoded_data_can_be_decoded() {
+    DbFileSources.Data data = createData(10_000, new Random(3));
+
+    DbFileSources.Data decoded = new FileSourceDto().decodeSourceData(underTest.encode(data));
+
+    assertThat(decoded).isEqualTo(data);
+  }
+
+  private static DbFileSources.Data createData(int lines, Random random) {
+    DbFileSources.Data.Builder builder = DbFileSources.Data.newBuilder();
+    for (int line = 1; line <= lines; line++) {
+      // mix of repetitive and random content
+      builder.addLinesBuilder()
+        .setLine(line)
+        .setSource(line % 2 == 0 ? "  private static final String FOO = \"foo\";" : Long.toHexString(random.nextLong()))
+        .setScmRevision("rev" + random.nextInt(1_000))
+        .setLineHits(random.nextInt(10));
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.version.v66;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.CoreDbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CreateTableLiveMeasuresTest {
+
+  private static final String TABLE = "live_measures";
+
+  @Rule
+  public final CoreDbTester db = CoreDbTester.createForSchema(CreateTableLiveMeasuresTest.class, "empty.sql");
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private CreateTableLiveMeasures underTest = new CreateTableLiveMeasures(db.database());
+
+  @Test
+  public void creates_table_on_empty_db() throws SQLException {
+    underTest.execute();
+
+    assertThat(db.countRowsOfTable(TABLE)).isEqualTo(0);
+
+    db.assertColumnDefinition(TABLE, "uuid", Types.VARCHAR, 40, false);
+    db.assertPrimaryKey(TABLE, "pk_live_measures", "uuid");
+    db.assertColumnDefinition(TABLE, "project_uuid", Types.VARCHAR, 50, false);
+    db.assertColumnDefinition(TABLE, "component_uuid", Types.VARCHAR, 50, false);
+    db.assertColumnDefinition(TABLE, "metric_id", Types.INTEGER, null, false);
+    db.assertColumnDefinition(TABLE, "value", Types.DOUBLE, null, true);
+    db.assertColumnDefinition(TABLE, "text_value", Types.VARCHAR, 4000, true);
+    db.assertColumnDefinition(TABLE, "variation", Types.DOUBLE, null, true);
+    db.assertColumnDefinition(TABLE, "measure_data", Types.BLOB, null, true);
+    db.assertColumnDefinition(TABLE, "created_at", Types.BIGINT, null, false);
+    db.assertColumnDefinition(TABLE, "updated_at", Types.BIGINT, null, false);
+
+    db.assertIndex(TABLE, "live_measures_project", "project_uuid");
+    db.assertUniqueIndex(TABLE, "live_measures_component", "component_uuid", "metric_id");
+  }
+
+  @Test
+  public void migration_is_not_reentrant() throws SQLException {
+    underTest.execute();
+
+    expectedException.expect(IllegalStateException.class);
+
+    underTest.execute();
+  }
+}
@@ -76,4 +76,9 @@ public final class ClusterObjectKeys {
    * {@link CeCleaningSchedulerImpl}
    */
   public static final String CE_CLEANING_JOB_LOCK = "CE_CLEANING_JOB_LOCK";
+
+  /**
+   * The key of the topic on which Compute Engines are notified that tasks have been added to the queue
+   */
+  public static final String CE_QUEUE_SIGNAL = "CE_QUEUE_SIGNAL";
 }
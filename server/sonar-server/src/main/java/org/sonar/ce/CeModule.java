@@ -20,8 +20,10 @@
 package org.sonar.ce;
 
 import org.sonar.ce.http.CeHttpClientImpl;
+import org.sonar.ce.http.CeTaskSubmitHttpNotifier;
 import org.sonar.ce.log.CeLogging;
 import org.sonar.ce.queue.CeQueueImpl;
+import org.sonar.ce.taskprocessor.ProjectPurgeTaskProcessorDeclaration;
 import org.sonar.ce.taskprocessor.ReportTaskProcessorDeclaration;
 import org.sonar.core.platform.Module;
 import org.sonar.server.computation.queue.ReportSubmitter;
@@ -31,12 +33,14 @@ public class CeModule extends Module {
   protected void configureModule() {
     add(CeLogging.class,
       CeHttpClientImpl.class,
+      CeTaskSubmitHttpNotifier.class,
 
       // Queue
       CeQueueImpl.class,
       ReportSubmitter.class,
 
       // Core tasks processors
-      ReportTaskProcessorDeclaration.class);
+      ReportTaskProcessorDeclaration.class,
+      ProjectPurgeTaskProcessorDeclaration.class);
   }
 }
@@ -29,4 +29,10 @@ public interface CeHttpClient {
   void changeLogLevel(LoggerLevel level);
 
   void refreshCeWorkerCount();
+
+  /**
+   * Informs the Compute Engine that tasks have been added to the queue so that idle workers
+   * can start processing them right away.
+   */
+  void notifyTaskSubmitted();
 }
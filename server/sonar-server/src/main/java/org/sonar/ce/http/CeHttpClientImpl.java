@@ -42,11 +42,14 @@ public class CeHttpClientImpl implements CeHttpClient {
 
   private static final String PATH_CHANGE_LOG_LEVEL = "changeLogLevel";
   private static final String PATH_SYSTEM_INFO = "systemInfo";
+  private static final String PATH_TASK_SUBMITTED = "taskSubmitted";
 
   private final File ipcSharedDir;
+  private final OkHttpClient okHttpClient;
 
-  public CeHttpClientImpl(Configuration config) {
+  public CeHttpClientImpl(Configuration config, OkHttpClient okHttpClient) {
     this.ipcSharedDir = new File(config.get(PROPERTY_SHARED_PATH).get());
+    this.okHttpClient = okHttpClient;
   }
 
   /**
@@ -158,6 +161,48 @@ public class CeHttpClientImpl implements CeHttpClient {
     }
   }
 
+  @Override
+  public void notifyTaskSubmitted() {
+    call(new TaskSubmittedActionClient(okHttpClient));
+  }
+
+  private static final class TaskSubmittedActionClient implements ActionClient<Void> {
+    private final OkHttpClient okHttpClient;
+
+    private TaskSubmittedActionClient(OkHttpClient okHttpClient) {
+      this.okHttpClient = okHttpClient;
+    }
+
+    @Override
+    public String getPath() {
+      return PATH_TASK_SUBMITTED;
+    }
+
+    @Override
+    public Void getDefault() {
+      return null;
+    }
+
+    @Override
+    public Void call(String url) throws Exception {
+      okhttp3.Request request = new okhttp3.Request.Builder()
+        .post(RequestBody.create(null, new byte[0]))
+        .url(url)
+        .build();
+      try (okhttp3.Response response = okHttpClient.newCall(request).execute()) {
+        if (response.code() != 200) {
+          throw new IOException(
+            String.format(
+              "Failed to notify Compute Engine of submitted tasks. Code was '%s' and response was '%s' for url '%s'",
+              response.code(),
+              response.body().string(),
+              url));
+        }
+      }
+      return null;
+    }
+  }
+
   private <T> T call(ActionClient<T> actionClient) {
     try (DefaultProcessCommands commands = DefaultProcessCommands.secondary(ipcSharedDir, COMPUTE_ENGINE.getIpcIndex())) {
       if (commands.isUp()) {
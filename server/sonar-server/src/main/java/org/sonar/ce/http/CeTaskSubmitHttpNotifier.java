@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.http;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.picocontainer.Startable;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskSubmitListener;
+
+/**
+ * Wakes up the workers of the Compute Engine as soon as tasks are submitted from the Web Server.
+ * <p>
+ * Notification is best-effort: if the Compute Engine can't be reached, tasks will be picked up by the
+ * periodic polling of the queue.
+ * </p>
+ * <p>
+ * The HTTP call is made by a dedicated thread so that it does not delay the web request which submitted the tasks.
+ * Submissions received while a notification is waiting to be sent are covered by that notification.
+ * </p>
+ */
+@ServerSide
+public class CeTaskSubmitHttpNotifier implements CeTaskSubmitListener, Startable {
+  private static final Logger LOG = Loggers.get(CeTaskSubmitHttpNotifier.class);
+
+  private final CeHttpClient ceHttpClient;
+  private final AtomicBoolean pending = new AtomicBoolean(false);
+  private ExecutorService executorService;
+
+  public CeTaskSubmitHttpNotifier(CeHttpClient ceHttpClient) {
+    this.ceHttpClient = ceHttpClient;
+  }
+
+  @Override
+  public void start() {
+    this.executorService = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("CeTaskSubmitNotifier-%d")
+        .build());
+  }
+
+  @Override
+  public void stop() {
+    try {
+      executorService.shutdown();
+      executorService.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void onSubmit(Collection<CeTask> tasks) {
+    if (pending.compareAndSet(false, true)) {
+      try {
+        executorService.execute(this::notifyComputeEngine);
+      } catch (RejectedExecutionException e) {
+        // server is stopping
+        pending.set(false);
+      }
+    }
+  }
+
+  private void notifyComputeEngine() {
+    pending.set(false);
+    try {
+      ceHttpClient.notifyTaskSubmitted();
+    } catch (Exception e) {
+      LOG.debug("Failed to notify Compute Engine of submitted tasks, they will be processed on next poll of the queue", e);
+    }
+  }
+}
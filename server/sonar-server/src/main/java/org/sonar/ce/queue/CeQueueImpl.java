@@ -21,6 +21,7 @@ package org.sonar.ce.queue;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -51,14 +52,24 @@ public class CeQueueImpl implements CeQueue {
   private final DbClient dbClient;
   private final UuidFactory uuidFactory;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final List<CeTaskSubmitListener> submitListeners;
 
   // state
   private AtomicBoolean submitPaused = new AtomicBoolean(false);
 
+  /**
+   * Used by Pico when there is no {@link CeTaskSubmitListener} in the container.
+   */
   public CeQueueImpl(DbClient dbClient, UuidFactory uuidFactory, DefaultOrganizationProvider defaultOrganizationProvider) {
+    this(dbClient, uuidFactory, defaultOrganizationProvider, new CeTaskSubmitListener[0]);
+  }
+
+  public CeQueueImpl(DbClient dbClient, UuidFactory uuidFactory, DefaultOrganizationProvider defaultOrganizationProvider,
+    CeTaskSubmitListener[] submitListeners) {
     this.dbClient = dbClient;
     this.uuidFactory = uuidFactory;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.submitListeners = Arrays.asList(submitListeners);
   }
 
   @Override
@@ -74,6 +85,7 @@ public class CeQueueImpl implements CeQueue {
       CeQueueDto dto = new CeTaskSubmitToInsertedCeQueueDto(dbSession, dbClient).apply(submission);
       CeTask task = loadTask(dbSession, dto);
       dbSession.commit();
+      notifySubmitListeners(singleton(task));
       return task;
     }
   }
@@ -91,10 +103,15 @@ public class CeQueueImpl implements CeQueue {
         .toList();
       List<CeTask> tasks = loadTasks(dbSession, ceQueueDtos);
       dbSession.commit();
+      notifySubmitListeners(tasks);
       return tasks;
     }
   }
 
+  private void notifySubmitListeners(Collection<CeTask> tasks) {
+    submitListeners.forEach(listener -> listener.onSubmit(tasks));
+  }
+
   protected CeTask loadTask(DbSession dbSession, CeQueueDto dto) {
     if (dto.getComponentUuid() == null) {
       return new CeQueueDtoToCeTask(defaultOrganizationProvider.get().getUuid()).apply(dto);
@@ -0,0 +1,42 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.Collection;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+
+/**
+ * Notified by {@link CeQueue} once submitted tasks have been committed to the queue, so that
+ * Compute Engine workers can start processing them without waiting for the next poll of the queue.
+ * <p>
+ * Implementations must not fail: the tasks are already persisted and any error would be reported
+ * to the submitter as a failure of the submit.
+ * </p>
+ */
+@ServerSide
+@ComputeEngineSide
+public interface CeTaskSubmitListener {
+
+  /**
+   * @param tasks the tasks which have just been submitted, never empty
+   */
+  void onSubmit(Collection<CeTask> tasks);
+}
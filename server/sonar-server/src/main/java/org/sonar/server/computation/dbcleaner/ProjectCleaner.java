@@ -20,6 +20,7 @@
 package org.sonar.server.computation.dbcleaner;
 
 import java.util.Collection;
+import java.util.List;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.config.Configuration;
@@ -33,8 +34,10 @@ import org.sonar.db.purge.PurgeConfiguration;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.purge.PurgeListener;
 import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.db.purge.PurgeSlice;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
 
+import static java.util.Collections.emptyList;
 import static org.sonar.db.purge.PurgeConfiguration.newDefaultPurgeConfiguration;
 
 @ServerSide
@@ -68,6 +71,35 @@ public class ProjectCleaner {
     return this;
   }
 
+  /**
+   * Cleans the data of the disabled components only. The history of the project is expected to be purged later by
+   * {@link #purgeInBatches(DbSession, IdUuidPair, Configuration, PurgeSlice)}.
+   */
+  public ProjectCleaner purgeDisabledComponents(DbSession session, IdUuidPair idUuidPair, Configuration projectConfig, Collection<String> disabledComponentUuids) {
+    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectConfig, idUuidPair, disabledComponentUuids);
+    purgeDao.purgeDisabledComponents(session, configuration, purgeListener);
+    return this;
+  }
+
+  /**
+   * Purges the history of the project by small transactions, until the slice is over. Unlike
+   * {@link #purge(DbSession, IdUuidPair, Configuration, Collection)}, failures are not ignored.
+   *
+   * @return {@code true} if the purge is complete, {@code false} if it must be continued by a new call
+   */
+  public boolean purgeInBatches(DbSession session, IdUuidPair idUuidPair, Configuration projectConfig, PurgeSlice slice) {
+    long start = System.currentTimeMillis();
+    profiler.reset();
+
+    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectConfig, idUuidPair, emptyList());
+    List<IdUuidPair> analysesToDelete = periodCleaner.selectAnalysesToDelete(session, idUuidPair.getUuid(), projectConfig);
+    boolean completed = purgeDao.purgeInBatches(session, configuration, analysesToDelete, purgeListener, profiler, slice);
+
+    session.commit();
+    logProfiling(start, projectConfig);
+    return completed;
+  }
+
   private void logProfiling(long start, Configuration config) {
     if (config.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY).orElse(false)) {
       long duration = System.currentTimeMillis() - start;
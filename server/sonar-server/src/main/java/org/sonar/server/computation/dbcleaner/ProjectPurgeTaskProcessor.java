@@ -0,0 +1,147 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.settings.ProjectConfigurationFactory;
+import org.sonar.ce.taskprocessor.CeTaskProcessor;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeTaskInputDao;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.purge.PurgeProgress;
+import org.sonar.db.purge.PurgeSlice;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Purges the history of a project out of the analysis of its reports. The work is done by small transactions during
+ * a limited time. When the time is over, a new task is queued to continue the purge, so that the tasks submitted
+ * meanwhile are not delayed. The {@link PurgeProgress progress} of the purge is stored as the input of the new task,
+ * which resumes from it.
+ */
+@ComputeEngineSide
+public class ProjectPurgeTaskProcessor implements CeTaskProcessor {
+
+  /**
+   * Maximum number of components, or issues, processed by each transaction
+   */
+  static final String PROPERTY_BATCH_SIZE = "sonar.ce.purge.batchSize";
+  /**
+   * Duration after which no new transaction is started by a task
+   */
+  static final String PROPERTY_TIME_SLICE = "sonar.ce.purge.timeSliceInSeconds";
+
+  private static final Logger LOG = Loggers.get(ProjectPurgeTaskProcessor.class);
+  private static final Set<String> HANDLED_TYPES = Collections.singleton(CeTaskTypes.PROJECT_PURGE);
+  private static final int DEFAULT_BATCH_SIZE = 500;
+  private static final int DEFAULT_TIME_SLICE_IN_SECONDS = 60;
+
+  private final DbClient dbClient;
+  private final ProjectCleaner projectCleaner;
+  private final ProjectConfigurationFactory projectConfigurationFactory;
+  private final CeQueue ceQueue;
+  private final System2 system2;
+  private final int batchSize;
+  private final long timeSliceInMs;
+
+  public ProjectPurgeTaskProcessor(DbClient dbClient, ProjectCleaner projectCleaner, ProjectConfigurationFactory projectConfigurationFactory, CeQueue ceQueue,
+    Configuration config, System2 system2) {
+    this.dbClient = dbClient;
+    this.projectCleaner = projectCleaner;
+    this.projectConfigurationFactory = projectConfigurationFactory;
+    this.ceQueue = ceQueue;
+    this.system2 = system2;
+    this.batchSize = config.getInt(PROPERTY_BATCH_SIZE).orElse(DEFAULT_BATCH_SIZE);
+    this.timeSliceInMs = config.getInt(PROPERTY_TIME_SLICE).orElse(DEFAULT_TIME_SLICE_IN_SECONDS) * 1_000L;
+  }
+
+  @Override
+  public Set<String> getHandledCeTaskTypes() {
+    return HANDLED_TYPES;
+  }
+
+  @Override
+  @CheckForNull
+  public CeTaskResult process(CeTask task) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      com.google.common.base.Optional<ComponentDto> root = dbClient.componentDao().selectByUuid(dbSession, task.getComponentUuid());
+      if (!root.isPresent()) {
+        LOG.debug("Component {} does not exist anymore, purge is skipped", task.getComponentUuid());
+        return null;
+      }
+      ComponentDto rootDto = root.get();
+      Configuration projectConfig = projectConfigurationFactory.newProjectConfiguration(rootDto.getKey(), Optional.empty());
+      PurgeSlice slice = new PurgeSlice(system2, batchSize, timeSliceInMs, loadProgress(dbSession, task.getUuid()));
+      boolean completed = projectCleaner.purgeInBatches(dbSession, new IdUuidPair(rootDto.getId(), rootDto.uuid()), projectConfig, slice);
+      if (!completed) {
+        LOG.debug("Purge of {} is not complete, it is queued again", rootDto.getKey());
+        submit(dbSession, rootDto.uuid(), slice.getProgress());
+      }
+    }
+    return null;
+  }
+
+  private PurgeProgress loadProgress(DbSession dbSession, String taskUuid) {
+    Optional<CeTaskInputDao.DataStream> input = dbClient.ceTaskInputDao().selectData(dbSession, taskUuid);
+    if (!input.isPresent()) {
+      return new PurgeProgress();
+    }
+    try (CeTaskInputDao.DataStream dataStream = input.get()) {
+      return PurgeProgress.parse(IOUtils.toString(dataStream.getInputStream(), UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read progress of task " + taskUuid, e);
+    }
+  }
+
+  private void submit(DbSession dbSession, String rootUuid, PurgeProgress progress) {
+    CeTaskSubmit.Builder submit = ceQueue.prepareSubmit()
+      .setType(CeTaskTypes.PROJECT_PURGE)
+      .setComponentUuid(rootUuid);
+    // the input is inserted before the task is submitted, so that the task can't be processed without it
+    dbClient.ceTaskInputDao().insert(dbSession, submit.getUuid(), new ByteArrayInputStream(progress.format().getBytes(UTF_8)));
+    dbSession.commit();
+    ceQueue.submit(submit.build());
+  }
+
+  public static void submit(CeQueue ceQueue, String rootUuid) {
+    CeTaskSubmit.Builder submit = ceQueue.prepareSubmit()
+      .setType(CeTaskTypes.PROJECT_PURGE)
+      .setComponentUuid(rootUuid);
+    ceQueue.submit(submit.build());
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
+import java.util.Optional;
 import org.sonar.ce.queue.CeTask;
 
 public interface BatchReportDirectoryHolder {
@@ -30,4 +31,10 @@ public interface BatchReportDirectoryHolder {
    */
   File getDirectory();
 
+  /**
+   * The zip file of the Batch report of the current {@link CeTask}, when the report is read straight from the zip
+   * rather than from an extracted directory. In that case, no directory is set.
+   */
+  Optional<File> getZipFile();
+
 }
@@ -36,6 +36,13 @@ public interface BatchReportReader {
   @CheckForNull
   ScannerReport.Changesets readChangesets(int componentRef);
 
+  /**
+   * Fingerprints of the sections of the report used to build the sources of the specified file, or {@code null} if
+   * the scanner did not provide them.
+   */
+  @CheckForNull
+  ScannerReport.SourceFingerprints readSourceFingerprints(int fileRef);
+
   ScannerReport.Component readComponent(int componentRef);
 
   CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef);
@@ -19,233 +19,368 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
-import com.google.common.base.Throwables;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import javax.annotation.CheckForNull;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
+import org.picocontainer.Startable;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.LineReaderIterator;
+import org.sonar.core.util.Protobuf;
+import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 
-public class BatchReportReaderImpl implements BatchReportReader {
+import static org.sonar.scanner.protocol.output.FileStructure.fileName;
+
+/**
+ * Reads the Batch report either from the directory it has been extracted to or, when
+ * {@link BatchReportDirectoryHolder#getZipFile()} is set, straight from the entries of the zip file. In the latter case,
+ * only the entries actually requested by the steps are decompressed.
+ */
+public class BatchReportReaderImpl implements BatchReportReader, Startable {
 
   private final BatchReportDirectoryHolder batchReportDirectoryHolder;
-  private org.sonar.scanner.protocol.output.ScannerReportReader delegate;
+  private final ReportBytesReadMetric bytesReadMetric;
+  private ReportEntries entries;
   // caching of metadata which are read often
   private ScannerReport.Metadata metadata;
 
+  /**
+   * Used when no {@link ReportBytesReadMetric} is available in pico container.
+   */
   public BatchReportReaderImpl(BatchReportDirectoryHolder batchReportDirectoryHolder) {
+    this(batchReportDirectoryHolder, new ReportBytesReadMetric());
+  }
+
+  public BatchReportReaderImpl(BatchReportDirectoryHolder batchReportDirectoryHolder, ReportBytesReadMetric bytesReadMetric) {
     this.batchReportDirectoryHolder = batchReportDirectoryHolder;
+    this.bytesReadMetric = bytesReadMetric;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do, report is opened lazily
+  }
+
+  @Override
+  public void stop() {
+    if (entries != null) {
+      IOUtils.closeQuietly(entries);
+      entries = null;
+    }
   }
 
-  private void ensureInitialized() {
-    if (this.delegate == null) {
-      this.delegate = new org.sonar.scanner.protocol.output.ScannerReportReader(batchReportDirectoryHolder.getDirectory());
+  private synchronized ReportEntries entries() {
+    if (this.entries == null) {
+      Optional<File> zipFile = batchReportDirectoryHolder.getZipFile();
+      if (zipFile.isPresent()) {
+        this.entries = new ZipReportEntries(zipFile.get());
+      } else {
+        this.entries = new DirectoryReportEntries(batchReportDirectoryHolder.getDirectory());
+      }
     }
+    return this.entries;
   }
 
   @Override
   public ScannerReport.Metadata readMetadata() {
-    ensureInitialized();
     if (this.metadata == null) {
-      this.metadata = delegate.readMetadata();
+      this.metadata = readMessage(FileStructure.METADATA_FILE, ScannerReport.Metadata.parser());
+      if (this.metadata == null) {
+        throw new IllegalStateException("Metadata file is missing in analysis report: " + entries().describe(FileStructure.METADATA_FILE));
+      }
     }
     return this.metadata;
   }
 
   @Override
   public CloseableIterator<String> readScannerLogs() {
-    ensureInitialized();
-    File file = delegate.getFileStructure().analysisLog();
-    if (!file.exists()) {
+    InputStream input = open(FileStructure.ANALYSIS_LOG_FILE);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
-    try {
-      InputStreamReader reader = new InputStreamReader(FileUtils.openInputStream(file), StandardCharsets.UTF_8);
-      return new LineReaderIterator(reader);
-    } catch (IOException e) {
-      throw new IllegalStateException("Fail to open file " + file, e);
-    }
+    return new LineReaderIterator(new InputStreamReader(input, StandardCharsets.UTF_8));
   }
 
   @Override
   public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    ensureInitialized();
-    return delegate.readActiveRules();
+    return readMessages(FileStructure.ACTIVE_RULES_FILE, ScannerReport.ActiveRule.parser());
   }
 
   @Override
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentMeasures(componentRef);
+    return readMessages(fileName(FileStructure.Domain.MEASURES, componentRef), ScannerReport.Measure.parser());
   }
 
   @Override
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    ensureInitialized();
-    return delegate.readChangesets(componentRef);
+    return readMessage(fileName(FileStructure.Domain.CHANGESETS, componentRef), ScannerReport.Changesets.parser());
+  }
+
+  @Override
+  @CheckForNull
+  public ScannerReport.SourceFingerprints readSourceFingerprints(int fileRef) {
+    return readMessage(fileName(FileStructure.Domain.SOURCE_FINGERPRINTS, fileRef), ScannerReport.SourceFingerprints.parser());
   }
 
   @Override
   public ScannerReport.Component readComponent(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponent(componentRef);
+    String entryName = fileName(FileStructure.Domain.COMPONENT, componentRef);
+    ScannerReport.Component component = readMessage(entryName, ScannerReport.Component.parser());
+    if (component == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + entries().describe(entryName));
+    }
+    return component;
   }
 
   @Override
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentIssues(componentRef);
+    return readMessages(fileName(FileStructure.Domain.ISSUES, componentRef), ScannerReport.Issue.parser());
   }
 
   @Override
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentDuplications(componentRef);
+    return readMessages(fileName(FileStructure.Domain.DUPLICATIONS, componentRef), ScannerReport.Duplication.parser());
   }
 
   @Override
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    ensureInitialized();
-    return delegate.readCpdTextBlocks(componentRef);
+    return readMessages(fileName(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef), ScannerReport.CpdTextBlock.parser());
   }
 
   @Override
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentSymbols(componentRef);
+    return readMessages(fileName(FileStructure.Domain.SYMBOLS, componentRef), ScannerReport.Symbol.parser());
   }
 
   @Override
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    ensureInitialized();
-    return delegate.readComponentSyntaxHighlighting(fileRef);
+    return readMessages(fileName(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef), ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   @Override
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    ensureInitialized();
-    return delegate.readComponentCoverage(fileRef);
+    return readMessages(fileName(FileStructure.Domain.COVERAGES, fileRef), ScannerReport.LineCoverage.parser());
   }
 
   @Override
   public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
-    ensureInitialized();
-    File file = delegate.readFileSource(fileRef);
-    if (file == null) {
+    String entryName = fileName(FileStructure.Domain.SOURCE, fileRef);
+    InputStream input = open(entryName);
+    if (input == null) {
       return Optional.empty();
     }
+    return Optional.of(new CloseableLineIterator(IOUtils.lineIterator(new InputStreamReader(input, StandardCharsets.UTF_8))));
+  }
 
+  @Override
+  public CloseableIterator<ScannerReport.Test> readTests(int testFileRef) {
+    return readMessages(fileName(FileStructure.Domain.TESTS, testFileRef), ScannerReport.Test.parser());
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.CoverageDetail> readCoverageDetails(int testFileRef) {
+    return readMessages(fileName(FileStructure.Domain.COVERAGE_DETAILS, testFileRef), ScannerReport.CoverageDetail.parser());
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
+    return readMessages(FileStructure.CONTEXT_PROPERTIES_FILE, ScannerReport.ContextProperty.parser());
+  }
+
+  @CheckForNull
+  private <MSG extends Message> MSG readMessage(String entryName, Parser<MSG> parser) {
+    InputStream input = open(entryName);
+    if (input == null) {
+      return null;
+    }
     try {
-      return Optional.of(new CloseableLineIterator(IOUtils.lineIterator(FileUtils.openInputStream(file), StandardCharsets.UTF_8)));
+      return Protobuf.read(input, parser);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readMessages(String entryName, Parser<MSG> parser) {
+    InputStream input = open(entryName);
+    if (input == null) {
+      return CloseableIterator.emptyCloseableIterator();
+    }
+    // the stream is closed by the CloseableIterator
+    return Protobuf.readStream(input, parser);
+  }
+
+  /**
+   * @return {@code null} if the report has no such entry
+   */
+  @CheckForNull
+  private InputStream open(String entryName) {
+    ReportEntries reportEntries = entries();
+    try {
+      InputStream input = reportEntries.open(entryName);
+      if (input == null) {
+        return null;
+      }
+      return new BufferedInputStream(new CountingInputStream(input, bytesReadMetric));
     } catch (IOException e) {
-      throw new IllegalStateException("Fail to traverse file: " + file, e);
+      throw new IllegalStateException("Fail to open " + reportEntries.describe(entryName), e);
     }
   }
 
-  private static class CloseableLineIterator extends CloseableIterator<String> {
-    private final LineIterator lineIterator;
+  /**
+   * The entries of the report, whichever the way it is stored.
+   */
+  private interface ReportEntries extends Closeable {
+    /**
+     * @return {@code null} if the report has no such entry
+     */
+    @CheckForNull
+    InputStream open(String entryName) throws IOException;
+
+    String describe(String entryName);
+  }
 
-    public CloseableLineIterator(LineIterator lineIterator) {
-      this.lineIterator = lineIterator;
+  private static class DirectoryReportEntries implements ReportEntries {
+    private final File directory;
+
+    private DirectoryReportEntries(File directory) {
+      if (!directory.isDirectory()) {
+        throw new IllegalArgumentException("Directory of analysis report does not exist: " + directory);
+      }
+      this.directory = directory;
     }
 
     @Override
-    public boolean hasNext() {
-      return lineIterator.hasNext();
+    @CheckForNull
+    public InputStream open(String entryName) throws IOException {
+      File file = new File(directory, entryName);
+      if (!file.isFile()) {
+        return null;
+      }
+      return Files.newInputStream(file.toPath());
     }
 
     @Override
-    public String next() {
-      return lineIterator.next();
+    public String describe(String entryName) {
+      return new File(directory, entryName).toString();
     }
 
     @Override
-    protected String doNext() {
-      // never called anyway
-      throw new NoSuchElementException("Empty closeable Iterator has no element");
+    public void close() {
+      // nothing to release
+    }
+  }
+
+  private static class ZipReportEntries implements ReportEntries {
+    private final File file;
+    private final ZipFile zipFile;
+
+    private ZipReportEntries(File file) {
+      this.file = file;
+      try {
+        // only the central directory is read when opening the zip
+        this.zipFile = new ZipFile(file);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open zipped analysis report " + file, e);
+      }
     }
 
     @Override
-    protected void doClose() throws Exception {
-      lineIterator.close();
+    @CheckForNull
+    public InputStream open(String entryName) throws IOException {
+      ZipEntry entry = zipFile.getEntry(entryName);
+      if (entry == null || entry.isDirectory()) {
+        return null;
+      }
+      return zipFile.getInputStream(entry);
     }
-  }
 
-  @Override
-  public CloseableIterator<ScannerReport.Test> readTests(int testFileRef) {
-    ensureInitialized();
-    File file = delegate.readTests(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
+    @Override
+    public String describe(String entryName) {
+      return file + "!/" + entryName;
     }
 
-    try {
-      return new ParserCloseableIterator<>(ScannerReport.Test.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
-      return CloseableIterator.emptyCloseableIterator();
+    @Override
+    public void close() throws IOException {
+      zipFile.close();
     }
   }
 
-  @Override
-  public CloseableIterator<ScannerReport.CoverageDetail> readCoverageDetails(int testFileRef) {
-    ensureInitialized();
-    File file = delegate.readCoverageDetails(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
+  private static class CountingInputStream extends FilterInputStream {
+    private final ReportBytesReadMetric metric;
+
+    private CountingInputStream(InputStream in, ReportBytesReadMetric metric) {
+      super(in);
+      this.metric = metric;
     }
 
-    try {
-      return new ParserCloseableIterator<>(ScannerReport.CoverageDetail.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
-      return CloseableIterator.emptyCloseableIterator();
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        metric.add(1);
+      }
+      return b;
     }
-  }
 
-  @Override
-  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
-    ensureInitialized();
-    return delegate.readContextProperties();
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      if (count > 0) {
+        metric.add(count);
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      metric.add(skipped);
+      return skipped;
+    }
   }
 
-  private static class ParserCloseableIterator<T> extends CloseableIterator<T> {
-    private final Parser<T> parser;
-    private final FileInputStream fileInputStream;
+  private static class CloseableLineIterator extends CloseableIterator<String> {
+    private final LineIterator lineIterator;
 
-    public ParserCloseableIterator(Parser<T> parser, FileInputStream fileInputStream) {
-      this.parser = parser;
-      this.fileInputStream = fileInputStream;
+    public CloseableLineIterator(LineIterator lineIterator) {
+      this.lineIterator = lineIterator;
     }
 
     @Override
-    protected T doNext() {
-      try {
-        return parser.parseDelimitedFrom(fileInputStream);
-      } catch (InvalidProtocolBufferException e) {
-        Throwables.propagate(e);
-        // actually never reached
-        return null;
-      }
+    public boolean hasNext() {
+      return lineIterator.hasNext();
+    }
+
+    @Override
+    public String next() {
+      return lineIterator.next();
+    }
+
+    @Override
+    protected String doNext() {
+      // never called anyway
+      throw new NoSuchElementException("Empty closeable Iterator has no element");
     }
 
     @Override
     protected void doClose() throws Exception {
-      fileInputStream.close();
+      lineIterator.close();
     }
   }
 }
@@ -31,4 +31,12 @@ public interface MutableBatchReportDirectoryHolder extends BatchReportDirectoryH
    * @throws NullPointerException if {@code newDirectory} is {@code null}
    */
   void setDirectory(File newDirectory);
+
+  /**
+   * Sets the zip file of the Batch report, which is then read without being extracted. It can never be set to
+   * {@code null}.
+   *
+   * @throws NullPointerException if {@code zipFile} is {@code null}
+   */
+  void setZipFile(File zipFile);
 }
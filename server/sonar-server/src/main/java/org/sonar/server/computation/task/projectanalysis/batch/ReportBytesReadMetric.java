@@ -0,0 +1,45 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.server.computation.task.step.ComputationStepMetric;
+
+/**
+ * Number of bytes of the Batch report consumed by {@link BatchReportReaderImpl}, uncompressed when the report is read
+ * straight from its zip file.
+ */
+public class ReportBytesReadMetric implements ComputationStepMetric {
+  private final AtomicLong bytesRead = new AtomicLong();
+
+  void add(long bytes) {
+    bytesRead.addAndGet(bytes);
+  }
+
+  @Override
+  public String getKey() {
+    return "reportBytesRead";
+  }
+
+  @Override
+  public long getValue() {
+    return bytesRead.get();
+  }
+}
@@ -37,6 +37,11 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p>
+ * The whole tree is visited by the calling thread. Visitors may therefore rely on repositories which are not thread-safe,
+ * such as {@link org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository} or
+ * {@link org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepository}.
+ * </p>
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
@@ -35,6 +35,7 @@ import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetada
 import org.sonar.server.computation.task.projectanalysis.api.posttask.PostProjectAnalysisTasksExecutor;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportDirectoryHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderImpl;
+import org.sonar.server.computation.task.projectanalysis.batch.ReportBytesReadMetric;
 import org.sonar.server.computation.task.projectanalysis.component.BranchLoader;
 import org.sonar.server.computation.task.projectanalysis.component.BranchPersister;
 import org.sonar.server.computation.task.projectanalysis.component.ConfigurationRepositoryImpl;
@@ -52,6 +53,7 @@ import org.sonar.server.computation.task.projectanalysis.filemove.MutableMovedFi
 import org.sonar.server.computation.task.projectanalysis.filemove.SourceSimilarityImpl;
 import org.sonar.server.computation.task.projectanalysis.filesystem.ComputationTempFolderProvider;
 import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesLoader;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.CloseIssuesOnRemovedComponentsVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesLoader;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepositoryImpl;
@@ -94,6 +96,7 @@ import org.sonar.server.computation.task.projectanalysis.issue.commonrule.Skippe
 import org.sonar.server.computation.task.projectanalysis.issue.commonrule.TestErrorRule;
 import org.sonar.server.computation.task.projectanalysis.issue.filter.IssueFilter;
 import org.sonar.server.computation.task.projectanalysis.language.LanguageRepositoryImpl;
+import org.sonar.server.computation.task.projectanalysis.measure.LiveMeasureChangesRepository;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureComputersHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureComputersVisitor;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryImpl;
@@ -174,11 +177,13 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       MeasureComputersHolderImpl.class,
       MutableTaskResultHolderImpl.class,
       BatchReportReaderImpl.class,
+      ReportBytesReadMetric.class,
       MergeBranchComponentUuids.class,
 
       // repositories
       LanguageRepositoryImpl.class,
       MeasureRepositoryImpl.class,
+      LiveMeasureChangesRepository.class,
       EventRepositoryImpl.class,
       ConfigurationRepositoryImpl.class,
       DbIdsRepositoryImpl.class,
@@ -200,6 +205,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       IssueVisitors.class,
       IssueLifecycle.class,
       ComponentsWithUnprocessedIssues.class,
+      ChangedIssuesRepository.class,
       ComponentIssuesRepositoryImpl.class,
       IssueFilter.class,
 
@@ -197,32 +197,29 @@ public class FileMoveDetectionStep implements ComputationStep {
   }
 
   private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
+    // only the pairs of files which can reach MIN_REQUIRED_SCORE are scored
+    SimilarityIndex similarityIndex = new SimilarityIndex(reportFileSourcesByKey, MIN_REQUIRED_SCORE);
+    List<ScoreMatrix.Score> scores = new ArrayList<>();
     int maxScore = 0;
 
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
       for (String removedFileKey : dbFileKeys) {
         File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
         if (fileInDb == null) {
           continue;
         }
 
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
+        for (String reportFileKey : similarityIndex.findCandidateKeys(fileInDb)) {
+          int score = fileSimilarity.score(fileInDb, reportFileSourcesByKey.get(reportFileKey));
+          scores.add(new ScoreMatrix.Score(removedFileKey, reportFileKey, score));
           if (score > maxScore) {
             maxScore = score;
           }
-          reportFileIndex++;
         }
-        dbFileIndex++;
       }
     }
 
-    return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
+    return new ScoreMatrix(scores, maxScore);
   }
 
   @CheckForNull
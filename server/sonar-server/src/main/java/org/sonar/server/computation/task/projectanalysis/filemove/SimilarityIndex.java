@@ -0,0 +1,220 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Index of the line hashes of the added files, which finds the added files that can reach a minimum score of similarity
+ * with a removed file without comparing it to all of them.
+ * <p>
+ * The score of {@link SourceSimilarityImpl} is based on the Levenshtein distance between the lists of line hashes. The
+ * distance is at least the size of the longest list minus the number of line hashes the lists have in common, so a
+ * minimum score requires a minimum count of common line hashes. Files with enough line hashes in common necessarily
+ * share one of the first line hashes of each file, when the line hashes are ordered from the rarest to the most
+ * frequent ("prefix filtering"). Only the first line hashes of the added files are indexed, and the candidates found
+ * with the first line hashes of a removed file are then filtered on their sizes and on the exact count of common line
+ * hashes. No pair which could reach the minimum score is discarded.
+ * <p>
+ * Not thread-safe.
+ */
+final class SimilarityIndex {
+  private static final int UNKNOWN_HASH = -1;
+
+  private final int minScore;
+  private final List<String> keys = new ArrayList<>();
+  private final List<HashCounts> hashCounts = new ArrayList<>();
+  private final Map<String, Integer> hashIds = new HashMap<>();
+  private final int[] frequencies;
+  private final Map<Long, List<Integer>> postings = new HashMap<>();
+  private final int[] probeStamps;
+  private int probe = 0;
+
+  SimilarityIndex(Map<String, File> filesByKey, int minScore) {
+    this.minScore = minScore;
+    for (Map.Entry<String, File> entry : filesByKey.entrySet()) {
+      List<String> lineHashes = entry.getValue().getLineHashes();
+      if (!lineHashes.isEmpty()) {
+        keys.add(entry.getKey());
+        hashCounts.add(HashCounts.of(lineHashes, this::hashIdOf));
+      }
+    }
+    this.frequencies = new int[hashIds.size()];
+    for (HashCounts counts : hashCounts) {
+      for (int i = 0; i < counts.ids.length; i++) {
+        frequencies[counts.ids[i]] += counts.counts[i];
+      }
+    }
+    for (int fileIndex = 0; fileIndex < hashCounts.size(); fileIndex++) {
+      for (long token : prefixTokens(hashCounts.get(fileIndex))) {
+        postings.computeIfAbsent(token, t -> new ArrayList<>(1)).add(fileIndex);
+      }
+    }
+    this.probeStamps = new int[keys.size()];
+  }
+
+  private int hashIdOf(String lineHash) {
+    return hashIds.computeIfAbsent(lineHash, h -> hashIds.size());
+  }
+
+  /**
+   * Keys of the indexed files which may reach the minimum score of similarity with the specified file
+   */
+  List<String> findCandidateKeys(File file) {
+    List<String> lineHashes = file.getLineHashes();
+    if (lineHashes.isEmpty()) {
+      return Collections.emptyList();
+    }
+    HashCounts counts = HashCounts.of(lineHashes, lineHash -> hashIds.getOrDefault(lineHash, UNKNOWN_HASH));
+    probe++;
+    List<String> res = new ArrayList<>();
+    for (long token : prefixTokens(counts)) {
+      List<Integer> fileIndexes = postings.get(token);
+      if (fileIndexes == null) {
+        continue;
+      }
+      for (int fileIndex : fileIndexes) {
+        if (probeStamps[fileIndex] != probe) {
+          probeStamps[fileIndex] = probe;
+          if (canReachMinScore(counts, hashCounts.get(fileIndex))) {
+            res.add(keys.get(fileIndex));
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  private boolean canReachMinScore(HashCounts left, HashCounts right) {
+    int maxSize = max(left.size, right.size);
+    return maxScore(maxSize, min(left.size, right.size)) >= minScore
+      && maxScore(maxSize, left.commonCount(right)) >= minScore;
+  }
+
+  /**
+   * Highest score of {@link SourceSimilarityImpl} between two files with the specified count of common line hashes,
+   * computed the same way so that rounding can't discard a pair
+   */
+  private static int maxScore(int maxSize, int commonCount) {
+    int minDistance = maxSize - commonCount;
+    return (int) (100 * (1.0 - ((double) minDistance) / maxSize));
+  }
+
+  /**
+   * The first line hashes of a file, from the rarest to the most frequent in the indexed files, which any file reaching
+   * the minimum score shares with it. A line hash occurring several times in the file is a distinct token for each
+   * occurrence, so that common tokens are common line hashes.
+   */
+  private long[] prefixTokens(HashCounts counts) {
+    // at least one line hash in common is required to get a score higher than 0
+    int minCommonCount = max(1, minScore * counts.size / 100);
+    int prefixSize = min(counts.size, counts.size - minCommonCount + 1);
+    long[] res = new long[prefixSize];
+    int index = 0;
+    // unknown line hashes are the rarest ones. They don't match any indexed line hash but use slots of the prefix.
+    index += min(prefixSize, counts.unknownCount);
+    // ids are sorted, so that hashes of same frequency are ordered by id in all files
+    long[] hashesByFrequency = new long[counts.ids.length];
+    for (int i = 0; i < counts.ids.length; i++) {
+      hashesByFrequency[i] = ((long) frequencies[counts.ids[i]] << 32) | i;
+    }
+    Arrays.sort(hashesByFrequency);
+    for (int i = 0; i < hashesByFrequency.length && index < prefixSize; i++) {
+      int position = (int) hashesByFrequency[i];
+      int id = counts.ids[position];
+      for (int occurrence = 0; occurrence < counts.counts[position] && index < prefixSize; occurrence++) {
+        res[index] = ((long) id << 32) | occurrence;
+        index++;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Distinct line hashes of a file, sorted by id, with the count of their occurrences
+   */
+  private static final class HashCounts {
+    private final int size;
+    private final int unknownCount;
+    private final int[] ids;
+    private final int[] counts;
+
+    private HashCounts(int size, int unknownCount, int[] ids, int[] counts) {
+      this.size = size;
+      this.unknownCount = unknownCount;
+      this.ids = ids;
+      this.counts = counts;
+    }
+
+    private static HashCounts of(List<String> lineHashes, ToIntFunction<String> idFunction) {
+      int[] sortedIds = new int[lineHashes.size()];
+      int knownCount = 0;
+      for (String lineHash : lineHashes) {
+        int id = idFunction.applyAsInt(lineHash);
+        if (id != UNKNOWN_HASH) {
+          sortedIds[knownCount] = id;
+          knownCount++;
+        }
+      }
+      Arrays.sort(sortedIds, 0, knownCount);
+      int distinct = 0;
+      int[] ids = new int[knownCount];
+      int[] counts = new int[knownCount];
+      for (int i = 0; i < knownCount; i++) {
+        if (distinct > 0 && ids[distinct - 1] == sortedIds[i]) {
+          counts[distinct - 1]++;
+        } else {
+          ids[distinct] = sortedIds[i];
+          counts[distinct] = 1;
+          distinct++;
+        }
+      }
+      return new HashCounts(lineHashes.size(), lineHashes.size() - knownCount, Arrays.copyOf(ids, distinct), Arrays.copyOf(counts, distinct));
+    }
+
+    private int commonCount(HashCounts other) {
+      int res = 0;
+      int i = 0;
+      int j = 0;
+      while (i < ids.length && j < other.ids.length) {
+        if (ids[i] < other.ids[j]) {
+          i++;
+        } else if (ids[i] > other.ids[j]) {
+          j++;
+        } else {
+          res += min(counts[i], other.counts[j]);
+          i++;
+          j++;
+        }
+      }
+      return res;
+    }
+  }
+}
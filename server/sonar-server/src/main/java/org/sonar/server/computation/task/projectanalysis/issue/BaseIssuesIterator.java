@@ -0,0 +1,160 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import javax.annotation.CheckForNull;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.ResultSetIterator;
+import org.sonar.db.protobuf.DbIssues;
+
+import static org.sonar.api.utils.DateUtils.longToDate;
+import static org.sonar.db.DatabaseUtils.getDouble;
+import static org.sonar.db.DatabaseUtils.getInt;
+import static org.sonar.db.DatabaseUtils.getLong;
+
+/**
+ * Reads the non-closed issues of a set of components through a single cursor, ordered by component. Rows are
+ * converted to {@link DefaultIssue} one by one, without the intermediate {@link org.sonar.db.issue.IssueDto}, so
+ * that only the issue being read is held in memory.
+ */
+class BaseIssuesIterator extends ResultSetIterator<DefaultIssue> {
+
+  private static final String[] FIELDS = {
+    // column 1
+    "i.kee",
+    "i.issue_type",
+    "i.status",
+    "i.resolution",
+    "i.message",
+    "i.gap",
+    "i.effort",
+    "i.line",
+    "i.checksum",
+    "i.severity",
+
+    // column 11
+    "i.manual_severity",
+    "i.assignee",
+    "i.author_login",
+    "i.tags",
+    "i.issue_attributes",
+    "i.issue_creation_date",
+    "i.issue_update_date",
+    "i.issue_close_date",
+    "i.locations",
+    "i.component_uuid",
+
+    // column 21
+    "i.project_uuid",
+    "r.plugin_name",
+    "r.plugin_rule_key",
+    "r.language",
+    "p.kee",
+    "p.module_uuid",
+    "p.module_uuid_path",
+    "root.kee"
+  };
+
+  private static final String SQL_PREFIX = "select " + StringUtils.join(FIELDS, ",") + " from issues i " +
+    "inner join rules r on r.id=i.rule_id " +
+    "inner join projects p on p.uuid=i.component_uuid " +
+    "inner join projects root on root.uuid=i.project_uuid " +
+    "where i.status <> 'CLOSED' and i.component_uuid in (";
+  private static final String SQL_SUFFIX = ") order by i.component_uuid, i.kee";
+
+  private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private final long selectedAt;
+
+  BaseIssuesIterator(PreparedStatement stmt, long selectedAt) throws SQLException {
+    super(stmt);
+    this.selectedAt = selectedAt;
+  }
+
+  /**
+   * @param componentCount number of the component UUID parameters, from 1 to {@link org.sonar.db.DatabaseUtils#PARTITION_SIZE_FOR_ORACLE}
+   */
+  static String sql(int componentCount) {
+    return SQL_PREFIX + String.join(",", Collections.nCopies(componentCount, "?")) + SQL_SUFFIX;
+  }
+
+  @Override
+  protected DefaultIssue read(ResultSet rs) throws SQLException {
+    DefaultIssue issue = new DefaultIssue();
+    String key = rs.getString(1);
+    issue.setKey(key);
+    issue.setType(RuleType.valueOf(rs.getInt(2)));
+    issue.setStatus(rs.getString(3));
+    issue.setResolution(rs.getString(4));
+    issue.setMessage(rs.getString(5));
+    issue.setGap(getDouble(rs, 6));
+    Long effort = getLong(rs, 7);
+    issue.setEffort(effort == null ? null : Duration.create(effort));
+    issue.setLine(getInt(rs, 8));
+    issue.setChecksum(rs.getString(9));
+    issue.setSeverity(rs.getString(10));
+    issue.setManualSeverity(rs.getBoolean(11));
+    issue.setAssignee(rs.getString(12));
+    issue.setAuthorLogin(rs.getString(13));
+    String tags = rs.getString(14);
+    issue.setTags(ImmutableSet.copyOf(TAGS_SPLITTER.split(tags == null ? "" : tags)));
+    String attributes = rs.getString(15);
+    issue.setAttributes(KeyValueFormat.parse(attributes == null ? "" : attributes));
+    issue.setCreationDate(longToDate(getLong(rs, 16)));
+    issue.setUpdateDate(longToDate(getLong(rs, 17)));
+    issue.setCloseDate(longToDate(getLong(rs, 18)));
+    issue.setLocations(parseLocations(key, rs.getBytes(19)));
+    issue.setComponentUuid(rs.getString(20));
+    issue.setProjectUuid(rs.getString(21));
+    issue.setRuleKey(RuleKey.of(rs.getString(22), rs.getString(23)));
+    issue.setLanguage(rs.getString(24));
+    issue.setComponentKey(rs.getString(25));
+    issue.setModuleUuid(rs.getString(26));
+    issue.setModuleUuidPath(rs.getString(27));
+    issue.setProjectKey(rs.getString(28));
+    issue.setNew(false);
+    issue.setSelectedAt(selectedAt);
+    return issue;
+  }
+
+  @CheckForNull
+  private static DbIssues.Locations parseLocations(String key, byte[] locations) {
+    if (locations == null) {
+      return null;
+    }
+    try {
+      return DbIssues.Locations.parseFrom(locations);
+    } catch (InvalidProtocolBufferException e) {
+      throw new IllegalStateException(String.format("Fail to read ISSUES.LOCATIONS [KEE=%s]", key), e);
+    }
+  }
+}
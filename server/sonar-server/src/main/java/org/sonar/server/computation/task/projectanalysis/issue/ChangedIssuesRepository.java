@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keys of the issues inserted or updated in DB during the analysis, so that only these issues are indexed once the
+ * analysis is persisted. All the issues of the branch must be indexed when changes were not recorded, or when the
+ * fields of components which are copied into the documents of their issues have changed.
+ */
+public class ChangedIssuesRepository {
+
+  private final Set<String> issueKeys = new HashSet<>();
+  private boolean complete = false;
+  private boolean componentsChanged = false;
+
+  public void addIssueKey(String issueKey) {
+    requireNonNull(issueKey, "Issue key cannot be null");
+    checkState(!complete, "Changed issues have already been recorded");
+    issueKeys.add(issueKey);
+  }
+
+  /**
+   * Must be called once all the changed issues have been added.
+   */
+  public void setComplete() {
+    this.complete = true;
+  }
+
+  /**
+   * Must be called when a field of a component which is indexed along with its issues has changed.
+   */
+  public void setComponentsChanged() {
+    this.componentsChanged = true;
+  }
+
+  /**
+   * @return {@code true} if indexing {@link #getIssueKeys()} is enough to keep the index up-to-date
+   */
+  public boolean isDeltaIndexable() {
+    return complete && !componentsChanged;
+  }
+
+  public Set<String> getIssueKeys() {
+    checkState(complete, "Changed issues have not been recorded yet");
+    return Collections.unmodifiableSet(issueKeys);
+  }
+}
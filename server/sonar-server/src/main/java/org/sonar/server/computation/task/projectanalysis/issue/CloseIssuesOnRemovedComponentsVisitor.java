@@ -19,7 +19,6 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
-import java.util.List;
 import java.util.Set;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -56,16 +55,13 @@ public class CloseIssuesOnRemovedComponentsVisitor extends TypeAwareVisitorAdapt
   private void closeIssuesForDeletedComponentUuids(Set<String> deletedComponentUuids) {
     DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
     try {
-      for (String deletedComponentUuid : deletedComponentUuids) {
-        List<DefaultIssue> issues = issuesLoader.loadForComponentUuid(deletedComponentUuid);
-        for (DefaultIssue issue : issues) {
-          issue.setBeingClosed(true);
-          // TODO should be renamed
-          issue.setOnDisabledRule(false);
-          issueLifecycle.doAutomaticTransition(issue);
-          cacheAppender.append(issue);
-        }
-      }
+      issuesLoader.loadForComponentUuids(deletedComponentUuids, issue -> {
+        issue.setBeingClosed(true);
+        // TODO should be renamed
+        issue.setOnDisabledRule(false);
+        issueLifecycle.doAutomaticTransition(issue);
+        cacheAppender.append(issue);
+      });
     } finally {
       cacheAppender.close();
     }
@@ -19,17 +19,22 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-
+import java.util.function.Consumer;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
 import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.issue.IssueMapper;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolder;
 
+import static java.util.Collections.singletonList;
+
 public class ComponentIssuesLoader {
   private final DbClient dbClient;
   private final RuleRepository ruleRepository;
@@ -42,22 +47,53 @@ public class ComponentIssuesLoader {
   }
 
   public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
+    List<DefaultIssue> result = new ArrayList<>();
+    loadForComponentUuids(singletonList(componentUuid), result::add);
+    return result;
+  }
+
+  /**
+   * Streams the non-closed issues of the specified components to {@code consumer}, ordered by component. Issues are
+   * read through a cursor, so they are not all held in memory at the same time.
+   */
+  public void loadForComponentUuids(Collection<String> componentUuids, Consumer<DefaultIssue> consumer) {
+    if (componentUuids.isEmpty()) {
+      return;
+    }
+    // FIXME
+    long selectedAt = System.currentTimeMillis();
     try (DbSession dbSession = dbClient.openSession(false)) {
-      List<DefaultIssue> result = new ArrayList<>();
-      dbSession.getMapper(IssueMapper.class).scrollNonClosedByComponentUuid(componentUuid, resultContext -> {
-        DefaultIssue issue = (resultContext.getResultObject()).toDefaultIssue();
+      for (List<String> partition : DatabaseUtils.toUniqueAndSortedPartitions(componentUuids)) {
+        scroll(dbSession, partition, selectedAt, consumer);
+      }
+    }
+  }
 
+  private void scroll(DbSession dbSession, List<String> componentUuids, long selectedAt, Consumer<DefaultIssue> consumer) {
+    PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(dbSession, BaseIssuesIterator.sql(componentUuids.size()));
+    BaseIssuesIterator issues;
+    try {
+      for (int i = 0; i < componentUuids.size(); i++) {
+        stmt.setString(i + 1, componentUuids.get(i));
+      }
+      issues = new BaseIssuesIterator(stmt, selectedAt);
+    } catch (SQLException e) {
+      DatabaseUtils.closeQuietly(stmt);
+      throw new IllegalStateException("Fail to select issues of components " + componentUuids, e);
+    }
+    try {
+      while (issues.hasNext()) {
+        DefaultIssue issue = issues.next();
         // TODO this field should be set outside this class
         if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
           issue.setOnDisabledRule(true);
           // TODO to be improved, why setOnDisabledRule(true) is not enough ?
           issue.setBeingClosed(true);
         }
-        // FIXME
-        issue.setSelectedAt(System.currentTimeMillis());
-        result.add(issue);
-      });
-      return result;
+        consumer.accept(issue);
+      }
+    } finally {
+      issues.close();
     }
   }
 
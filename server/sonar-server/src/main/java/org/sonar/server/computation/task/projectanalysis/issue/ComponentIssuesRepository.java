@@ -30,6 +30,8 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
  * to access to the issues of a component.
  *
  * This repository must NEVER contains more issues than in issues from one component order to not consume to much memory.
+ *
+ * This repository is not thread-safe: it must be accessed only by the thread visiting the component tree.
  */
 public interface ComponentIssuesRepository {
 
@@ -0,0 +1,462 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCache;
+
+/**
+ * Binary encoding of {@link DefaultIssue} for {@link IssueCache}, much more compact and faster than Java serialization.
+ * <p>
+ * Nullable values are prefixed by a flag. The current change of the issue is usually also one of its changes: it is
+ * written only once and its identity is kept.
+ */
+class DefaultIssueCodec implements DiskCache.Codec<DefaultIssue> {
+
+  private static final int NULL_STRING = -1;
+
+  private static final byte NO_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte INTEGER_VALUE = 3;
+  private static final byte DOUBLE_VALUE = 4;
+  private static final byte BOOLEAN_VALUE = 5;
+  private static final byte DATE_VALUE = 6;
+  private static final byte DB_LOCATIONS_VALUE = 7;
+  private static final byte SERIALIZED_VALUE = 8;
+
+  private static final int NO_CURRENT_CHANGE = -1;
+  private static final int CURRENT_CHANGE_NOT_IN_CHANGES = -2;
+
+  @Override
+  public void write(DefaultIssue issue, DataOutputStream out) throws IOException {
+    writeString(out, issue.key());
+    RuleType type = issue.type();
+    writeString(out, type == null ? null : type.name());
+    writeString(out, issue.componentUuid());
+    writeString(out, issue.componentKey());
+    writeString(out, issue.moduleUuid());
+    writeString(out, issue.moduleUuidPath());
+    writeString(out, issue.projectUuid());
+    writeString(out, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    writeString(out, ruleKey == null ? null : ruleKey.toString());
+    writeString(out, issue.language());
+    writeString(out, issue.severity());
+    out.writeBoolean(issue.manualSeverity());
+    writeString(out, issue.message());
+    writeNullableInt(out, issue.line());
+    writeNullableDouble(out, issue.gap());
+    writeNullableLong(out, issue.effortInMinutes());
+    writeString(out, issue.status());
+    writeString(out, issue.resolution());
+    writeString(out, issue.assignee());
+    writeString(out, issue.checksum());
+    writeStringMap(out, issue.attributes());
+    writeString(out, issue.authorLogin());
+    writeComments(out, issue.comments());
+    writeTags(out, issue.tags());
+    writeValue(out, issue.getLocations());
+    writeDate(out, issue.creationDate());
+    writeDate(out, issue.updateDate());
+    writeDate(out, issue.closeDate());
+    writeChanges(out, issue.currentChange(), issue.changes());
+    out.writeBoolean(issue.isNew());
+    out.writeBoolean(issue.isCopied());
+    out.writeBoolean(issue.isBeingClosed());
+    out.writeBoolean(issue.isOnDisabledRule());
+    out.writeBoolean(issue.isChanged());
+    out.writeBoolean(issue.mustSendNotifications());
+    writeNullableLong(out, issue.selectedAt());
+  }
+
+  @Override
+  public DefaultIssue read(DataInputStream in) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(in));
+    String type = readString(in);
+    issue.setType(type == null ? null : RuleType.valueOf(type));
+    issue.setComponentUuid(readString(in));
+    issue.setComponentKey(readString(in));
+    issue.setModuleUuid(readString(in));
+    issue.setModuleUuidPath(readString(in));
+    issue.setProjectUuid(readString(in));
+    issue.setProjectKey(readString(in));
+    String ruleKey = readString(in);
+    issue.setRuleKey(ruleKey == null ? null : RuleKey.parse(ruleKey));
+    issue.setLanguage(readString(in));
+    issue.setSeverity(readString(in));
+    issue.setManualSeverity(in.readBoolean());
+    issue.setMessage(readString(in));
+    issue.setLine(readNullableInt(in));
+    issue.setGap(readNullableDouble(in));
+    Long effort = readNullableLong(in);
+    issue.setEffort(effort == null ? null : Duration.create(effort));
+    String status = readString(in);
+    if (status != null) {
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(in));
+    issue.setAssignee(readString(in));
+    issue.setChecksum(readString(in));
+    issue.setAttributes(readStringMap(in));
+    issue.setAuthorLogin(readString(in));
+    readComments(in, issue);
+    Set<String> tags = readTags(in);
+    if (tags != null) {
+      issue.setTags(tags);
+    }
+    issue.setLocations(readValue(in));
+    issue.setCreationDate(readDate(in));
+    issue.setUpdateDate(readDate(in));
+    issue.setCloseDate(readDate(in));
+    readChanges(in, issue);
+    issue.setNew(in.readBoolean());
+    issue.setCopied(in.readBoolean());
+    issue.setBeingClosed(in.readBoolean());
+    issue.setOnDisabledRule(in.readBoolean());
+    issue.setChanged(in.readBoolean());
+    issue.setSendNotifications(in.readBoolean());
+    issue.setSelectedAt(readNullableLong(in));
+    return issue;
+  }
+
+  private static void writeComments(DataOutputStream out, List<IssueComment> comments) throws IOException {
+    out.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment defaultComment = (DefaultIssueComment) comment;
+      writeString(out, defaultComment.key());
+      writeString(out, defaultComment.issueKey());
+      writeString(out, defaultComment.userLogin());
+      writeString(out, defaultComment.markdownText());
+      writeDate(out, defaultComment.createdAt());
+      writeDate(out, defaultComment.updatedAt());
+      out.writeBoolean(defaultComment.isNew());
+    }
+  }
+
+  private static void readComments(DataInputStream in, DefaultIssue issue) throws IOException {
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      issue.addComment(new DefaultIssueComment()
+        .setKey(readString(in))
+        .setIssueKey(readString(in))
+        .setUserLogin(readString(in))
+        .setMarkdownText(readString(in))
+        .setCreatedAt(readDate(in))
+        .setUpdatedAt(readDate(in))
+        .setNew(in.readBoolean()));
+    }
+  }
+
+  private static void writeTags(DataOutputStream out, Set<String> tags) throws IOException {
+    out.writeInt(tags.size());
+    for (String tag : tags) {
+      writeString(out, tag);
+    }
+  }
+
+  @CheckForNull
+  private static Set<String> readTags(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size == 0) {
+      return null;
+    }
+    Set<String> tags = new LinkedHashSet<>(size);
+    for (int i = 0; i < size; i++) {
+      tags.add(readString(in));
+    }
+    return tags;
+  }
+
+  private static void writeChanges(DataOutputStream out, @Nullable FieldDiffs currentChange, List<FieldDiffs> changes) throws IOException {
+    out.writeInt(changes.size());
+    int currentChangeIndex = currentChange == null ? NO_CURRENT_CHANGE : CURRENT_CHANGE_NOT_IN_CHANGES;
+    for (int i = 0; i < changes.size(); i++) {
+      FieldDiffs change = changes.get(i);
+      if (currentChange != null && change == currentChange) {
+        if (currentChangeIndex == CURRENT_CHANGE_NOT_IN_CHANGES) {
+          currentChangeIndex = i;
+          out.writeBoolean(true);
+          writeFieldDiffs(out, change);
+        } else {
+          // reference to the current change, which has already been written
+          out.writeBoolean(false);
+        }
+      } else {
+        out.writeBoolean(true);
+        writeFieldDiffs(out, change);
+      }
+    }
+    out.writeInt(currentChangeIndex);
+    if (currentChangeIndex == CURRENT_CHANGE_NOT_IN_CHANGES) {
+      writeFieldDiffs(out, currentChange);
+    }
+  }
+
+  private static void readChanges(DataInputStream in, DefaultIssue issue) throws IOException {
+    int size = in.readInt();
+    List<FieldDiffs> changes = new ArrayList<>(size);
+    List<Integer> currentChangeReferences = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if (in.readBoolean()) {
+        changes.add(readFieldDiffs(in));
+      } else {
+        changes.add(null);
+        currentChangeReferences.add(i);
+      }
+    }
+    int currentChangeIndex = in.readInt();
+    FieldDiffs currentChange = null;
+    if (currentChangeIndex == CURRENT_CHANGE_NOT_IN_CHANGES) {
+      currentChange = readFieldDiffs(in);
+    } else if (currentChangeIndex != NO_CURRENT_CHANGE) {
+      currentChange = changes.get(currentChangeIndex);
+    }
+    for (Integer reference : currentChangeReferences) {
+      changes.set(reference, currentChange);
+    }
+    if (currentChange != null) {
+      // also adds the current change to the changes, which are overridden right after
+      issue.setCurrentChange(currentChange);
+    }
+    if (size > 0 || currentChange != null) {
+      issue.setChanges(changes);
+    }
+  }
+
+  private static void writeFieldDiffs(DataOutputStream out, FieldDiffs fieldDiffs) throws IOException {
+    writeString(out, fieldDiffs.issueKey());
+    writeString(out, fieldDiffs.userLogin());
+    writeDate(out, fieldDiffs.creationDate());
+    Map<String, FieldDiffs.Diff> diffs = fieldDiffs.diffs();
+    out.writeInt(diffs.size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.entrySet()) {
+      writeString(out, entry.getKey());
+      writeValue(out, entry.getValue().oldValue());
+      writeValue(out, entry.getValue().newValue());
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInputStream in) throws IOException {
+    FieldDiffs fieldDiffs = new FieldDiffs()
+      .setIssueKey(readString(in))
+      .setUserLogin(readString(in))
+      .setCreationDate(readDate(in));
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      String field = readString(in);
+      Serializable oldValue = (Serializable) readValue(in);
+      Serializable newValue = (Serializable) readValue(in);
+      fieldDiffs.diffs().put(field, new FieldDiffs.Diff<>(oldValue, newValue));
+    }
+    return fieldDiffs;
+  }
+
+  private static void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  @CheckForNull
+  private static Map<String, String> readStringMap(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size == 0) {
+      return null;
+    }
+    Map<String, String> map = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      map.put(readString(in), readString(in));
+    }
+    return map;
+  }
+
+  private static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NO_VALUE);
+    } else if (value instanceof String) {
+      out.writeByte(STRING_VALUE);
+      writeString(out, (String) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG_VALUE);
+      out.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER_VALUE);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE_VALUE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN_VALUE);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Date) {
+      out.writeByte(DATE_VALUE);
+      out.writeLong(((Date) value).getTime());
+    } else if (value instanceof DbIssues.Locations) {
+      out.writeByte(DB_LOCATIONS_VALUE);
+      byte[] bytes = ((DbIssues.Locations) value).toByteArray();
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else {
+      out.writeByte(SERIALIZED_VALUE);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+        objectOutput.writeObject(value);
+      }
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+    }
+  }
+
+  @CheckForNull
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte valueType = in.readByte();
+    switch (valueType) {
+      case NO_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(in);
+      case LONG_VALUE:
+        return in.readLong();
+      case INTEGER_VALUE:
+        return in.readInt();
+      case DOUBLE_VALUE:
+        return in.readDouble();
+      case BOOLEAN_VALUE:
+        return in.readBoolean();
+      case DATE_VALUE:
+        return new Date(in.readLong());
+      case DB_LOCATIONS_VALUE:
+        return DbIssues.Locations.parseFrom(readBytes(in));
+      case SERIALIZED_VALUE:
+        try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+          return objectInput.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IllegalStateException("Fail to deserialize value", e);
+        }
+      default:
+        throw new IllegalStateException("Unsupported value type " + valueType);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeDate(DataOutputStream out, @Nullable Date date) throws IOException {
+    writeNullableLong(out, date == null ? null : date.getTime());
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInputStream in) throws IOException {
+    Long time = readNullableLong(in);
+    return time == null ? null : new Date(time);
+  }
+
+  private static void writeNullableLong(DataOutputStream out, @Nullable Long value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value);
+    }
+  }
+
+  @CheckForNull
+  private static Long readNullableLong(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  private static void writeNullableInt(DataOutputStream out, @Nullable Integer value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeInt(value);
+    }
+  }
+
+  @CheckForNull
+  private static Integer readNullableInt(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readInt() : null;
+  }
+
+  private static void writeNullableDouble(DataOutputStream out, @Nullable Double value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeDouble(value);
+    }
+  }
+
+  @CheckForNull
+  private static Double readNullableDouble(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readDouble() : null;
+  }
+
+  /**
+   * Unlike {@link DataOutputStream#writeUTF(String)}, supports strings of any length and {@code null}.
+   */
+  private static void writeString(DataOutputStream out, @Nullable String s) throws IOException {
+    if (s == null) {
+      out.writeInt(NULL_STRING);
+      return;
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @CheckForNull
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == NULL_STRING) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
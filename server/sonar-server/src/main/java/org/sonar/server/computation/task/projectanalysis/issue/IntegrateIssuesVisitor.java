@@ -19,21 +19,56 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import static java.util.Collections.singletonList;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-import java.util.Collection;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Component.Status;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.util.cache.DiskCache;
 
+/**
+ * Tracks the issues of each component and feeds the result to the {@link IssueCache} and the {@link IssueVisitors}.
+ * <p>
+ * When {@link #PROPERTY_THREADS} is greater than 1, the base issues and line hashes of the files coming next in the
+ * tree are loaded from DB by a pool of threads while the current file is tracked. Tracking itself, the issue
+ * lifecycle and the visitors are still executed by the crawler thread, in the order of the tree.
+ * </p>
+ */
 public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
+  private static final Logger LOGGER = Loggers.get(IntegrateIssuesVisitor.class);
+
+  static final String PROPERTY_THREADS = "sonar.ce.issueTracking.threads";
+  private static final int DEFAULT_THREADS = 1;
+  /**
+   * Number of files whose base input is loaded ahead of the crawler, per thread
+   */
+  private static final int PREFETCHED_FILES_PER_THREAD = 4;
+  private static final long PREFETCH_TERMINATION_TIMEOUT_SECONDS = 30;
 
   private final IssueCache issueCache;
   private final IssueLifecycle issueLifecycle;
@@ -41,9 +76,32 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   private final ComponentIssuesLoader issuesLoader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final IssueTrackingDelegator issueTracking;
+  @CheckForNull
+  private final TreeRootHolder treeRootHolder;
+  @CheckForNull
+  private final TrackerBaseInputFactory baseInputFactory;
+  private final int threads;
+
+  @CheckForNull
+  private ExecutorService prefetchExecutor;
+  private Iterator<Component> filesToPrefetch;
+  private final Deque<PrefetchedFile> prefetchedFiles = new ArrayDeque<>();
 
   public IntegrateIssuesVisitor(IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors, ComponentIssuesLoader issuesLoader,
     AnalysisMetadataHolder analysisMetadataHolder, IssueTrackingDelegator issueTracking) {
+    this(issueCache, issueLifecycle, issueVisitors, issuesLoader, analysisMetadataHolder, issueTracking, null, null, DEFAULT_THREADS);
+  }
+
+  public IntegrateIssuesVisitor(IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors, ComponentIssuesLoader issuesLoader,
+    AnalysisMetadataHolder analysisMetadataHolder, IssueTrackingDelegator issueTracking, TreeRootHolder treeRootHolder,
+    TrackerBaseInputFactory baseInputFactory, Configuration config) {
+    this(issueCache, issueLifecycle, issueVisitors, issuesLoader, analysisMetadataHolder, issueTracking, treeRootHolder, baseInputFactory,
+      config.getInt(PROPERTY_THREADS).orElse(DEFAULT_THREADS));
+  }
+
+  private IntegrateIssuesVisitor(IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors, ComponentIssuesLoader issuesLoader,
+    AnalysisMetadataHolder analysisMetadataHolder, IssueTrackingDelegator issueTracking, @Nullable TreeRootHolder treeRootHolder,
+    @Nullable TrackerBaseInputFactory baseInputFactory, int threads) {
     super(CrawlerDepthLimit.FILE, POST_ORDER);
     this.issueCache = issueCache;
     this.issueLifecycle = issueLifecycle;
@@ -51,17 +109,33 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     this.issuesLoader = issuesLoader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.issueTracking = issueTracking;
+    this.treeRootHolder = treeRootHolder;
+    this.baseInputFactory = baseInputFactory;
+    this.threads = Math.max(1, threads);
   }
 
   @Override
   public void visitAny(Component component) {
+    try {
+      prefetch(component);
+      integrate(component);
+    } catch (RuntimeException e) {
+      stopPrefetching();
+      throw e;
+    }
+    if (treeRootHolder != null && component.equals(treeRootHolder.getRoot())) {
+      // root is the last visited component
+      stopPrefetching();
+    }
+  }
+
+  private void integrate(Component component) {
     try (DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender()) {
       issueVisitors.beforeComponent(component);
 
       if (isIncremental(component)) {
         // no tracking needed, simply re-use existing issues
-        List<DefaultIssue> issues = issuesLoader.loadForComponentUuid(component.getUuid());
-        reuseOpenIssues(component, issues, cacheAppender);
+        issuesLoader.loadForComponentUuids(singletonList(component.getUuid()), issue -> process(component, issue, cacheAppender));
       } else {
         TrackingResult tracking = issueTracking.track(component);
         fillNewOpenIssues(component, tracking.newIssues(), cacheAppender);
@@ -79,6 +153,93 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     return analysisMetadataHolder.isIncrementalAnalysis() && component.getStatus() == Status.SAME;
   }
 
+  /**
+   * Makes sure that the base input of the specified component, if it is a file, has been loaded, and that the loading
+   * of the next files of the tree has been started.
+   */
+  private void prefetch(Component component) {
+    if (component.getType() != Component.Type.FILE || !isPrefetchEnabled()) {
+      return;
+    }
+    if (prefetchExecutor == null) {
+      prefetchExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("IssueTrackingPrefetch-%d").setDaemon(true).build());
+      filesToPrefetch = filesToPrefetch(treeRootHolder.getRoot()).iterator();
+    }
+    while (prefetchedFiles.size() < threads * PREFETCHED_FILES_PER_THREAD && filesToPrefetch.hasNext()) {
+      Component file = filesToPrefetch.next();
+      prefetchedFiles.add(new PrefetchedFile(file, prefetchExecutor.submit(() -> baseInputFactory.prefetch(file))));
+    }
+    PrefetchedFile next = prefetchedFiles.peek();
+    if (next != null && next.file.equals(component)) {
+      prefetchedFiles.poll();
+      next.await();
+    }
+  }
+
+  private boolean isPrefetchEnabled() {
+    // there are no base issues on first analysis
+    return threads > 1 && treeRootHolder != null && baseInputFactory != null && !analysisMetadataHolder.isFirstAnalysis();
+  }
+
+  /**
+   * Files which are tracked, in the order they are visited
+   */
+  private List<Component> filesToPrefetch(Component root) {
+    List<Component> files = new ArrayList<>();
+    new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, POST_ORDER) {
+      @Override
+      public void visitFile(Component file) {
+        if (!isIncremental(file)) {
+          files.add(file);
+        }
+      }
+    }).visit(root);
+    return files;
+  }
+
+  /**
+   * Stops the threads loading base inputs and drops the inputs which have been loaded but not consumed, so that they are
+   * not retained until the end of the task.
+   */
+  private void stopPrefetching() {
+    if (prefetchExecutor == null) {
+      return;
+    }
+    prefetchExecutor.shutdownNow();
+    try {
+      if (!prefetchExecutor.awaitTermination(PREFETCH_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOGGER.warn("Loading of base issues is still in progress after {} seconds", PREFETCH_TERMINATION_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      prefetchExecutor = null;
+      prefetchedFiles.clear();
+      baseInputFactory.clearPrefetched();
+    }
+  }
+
+  private static class PrefetchedFile {
+    private final Component file;
+    private final Future<?> future;
+
+    private PrefetchedFile(Component file, Future<?> future) {
+      this.file = file;
+      this.future = future;
+    }
+
+    private void await() {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Interrupted while loading issues of component '%s'", file.getKey()), e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(String.format("Fail to load issues of component '%s'", file.getKey()), e.getCause());
+      }
+    }
+  }
+
   private void fillNewOpenIssues(Component component, Iterable<DefaultIssue> issues, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (DefaultIssue issue : issues) {
       issueLifecycle.initNewOpenIssue(issue);
@@ -95,12 +256,6 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void reuseOpenIssues(Component component, Collection<DefaultIssue> issues, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
-    for (DefaultIssue issue : issues) {
-      process(component, issue, cacheAppender);
-    }
-  }
-
   private void fillExistingOpenIssues(Component component, Map<DefaultIssue, DefaultIssue> matched, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (Map.Entry<DefaultIssue, DefaultIssue> entry : matched.entrySet()) {
       DefaultIssue raw = entry.getKey();
@@ -21,6 +21,8 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.core.issue.DefaultIssue;
@@ -42,6 +44,7 @@ public class TrackerBaseInputFactory {
   private final ComponentIssuesLoader issuesLoader;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
+  private final Map<String, Input<DefaultIssue>> prefetchedByComponentUuid = new ConcurrentHashMap<>();
 
   public TrackerBaseInputFactory(ComponentIssuesLoader issuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
     this.issuesLoader = issuesLoader;
@@ -50,9 +53,34 @@ public class TrackerBaseInputFactory {
   }
 
   public Input<DefaultIssue> create(Component component) {
+    Input<DefaultIssue> prefetched = prefetchedByComponentUuid.remove(component.getUuid());
+    if (prefetched != null) {
+      return prefetched;
+    }
     return new BaseLazyInput(component, movedFilesRepository.getOriginalFile(component).orNull());
   }
 
+  /**
+   * Loads from DB the issues, and the line hashes when there are issues, of the specified component so that the next
+   * call to {@link #create(Component)} for this component does not hit the DB. Can be called concurrently for
+   * different components.
+   */
+  public void prefetch(Component component) {
+    BaseLazyInput input = new BaseLazyInput(component, movedFilesRepository.getOriginalFile(component).orNull());
+    if (!input.getIssues().isEmpty()) {
+      input.getLineHashSequence();
+    }
+    prefetchedByComponentUuid.put(component.getUuid(), input);
+  }
+
+  /**
+   * Drops the inputs which have been prefetched but not consumed by {@link #create(Component)}. Must be called once no
+   * more call to {@link #prefetch(Component)} is in progress.
+   */
+  public void clearPrefetched() {
+    prefetchedByComponentUuid.clear();
+  }
+
   private class BaseLazyInput extends LazyInput<DefaultIssue> {
     private final Component component;
     @CheckForNull
@@ -0,0 +1,342 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures and stores them in one column per metric,
+ * indexed by an int identifying the component (eg. its report ref). Columns are themselves indexed by metric id.
+ * <p>
+ * Boolean, numeric and no-value measures are stored in primitive arrays, which avoids keeping a key, a map entry and a
+ * {@link Measure} per component and metric. Measures with data, a level or string value, a QualityGate status or a
+ * developer are stored as objects. As a consequence, the {@link Measure} instances returned are not the ones which were
+ * added.
+ * </p>
+ */
+public final class ColumnarRawMeasureRepository implements RawMeasureRepository {
+  private final ToIntFunction<Component> componentToIndex;
+  private Column[] columnsByMetricId = new Column[0];
+
+  public ColumnarRawMeasureRepository(ToIntFunction<Component> componentToIndex) {
+    this.componentToIndex = requireNonNull(componentToIndex);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public int loadAsRawMeasures(Collection<Component> components, Collection<Metric> metrics) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    Column column = getColumn(metric);
+    if (column == null) {
+      return Optional.absent();
+    }
+    return Optional.fromNullable(column.get(toIndex(component), null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    Column column = getOrCreateColumn(metric);
+    int index = toIndex(component);
+    if (column.contains(index, measure.getDeveloper())) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    column.put(index, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    Column column = getColumn(metric);
+    int index = toIndex(component);
+    if (column == null || !column.contains(index, measure.getDeveloper())) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    column.put(index, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    getOrCreateColumn(metric).put(toIndex(component), measure, overridePolicy);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+
+    Column column = getColumn(metric);
+    if (column == null) {
+      return ImmutableSet.of();
+    }
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    column.collect(toIndex(component), builder::add);
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int index = toIndex(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (Column column : columnsByMetricId) {
+      if (column != null) {
+        column.collect(index, measure -> builder.put(column.metricKey, measure));
+      }
+    }
+    return builder.build();
+  }
+
+  private int toIndex(Component component) {
+    int index = componentToIndex.applyAsInt(component);
+    checkArgument(index >= 0, "Component index can not be negative (key=%s)", component.getKey());
+    return index;
+  }
+
+  @CheckForNull
+  private Column getColumn(Metric metric) {
+    Column[] columns = columnsByMetricId;
+    int metricId = metric.getId();
+    if (metricId < 0 || metricId >= columns.length) {
+      return null;
+    }
+    return columns[metricId];
+  }
+
+  private Column getOrCreateColumn(Metric metric) {
+    Column column = getColumn(metric);
+    if (column != null) {
+      return column;
+    }
+    int metricId = metric.getId();
+    checkArgument(metricId >= 0, "Metric id can not be negative (key=%s)", metric.getKey());
+    if (metricId >= columnsByMetricId.length) {
+      columnsByMetricId = Arrays.copyOf(columnsByMetricId, metricId + 1);
+    }
+    column = new Column(metric.getKey());
+    columnsByMetricId[metricId] = column;
+    return column;
+  }
+
+  /**
+   * Measures of a single metric. {@code types} holds, for each component index, either {@link #ABSENT}, {@link #OBJECT}
+   * or the ordinal of the {@link Measure.ValueType} plus one.
+   */
+  private static final class Column {
+    private static final byte ABSENT = 0;
+    private static final byte OBJECT = -1;
+    private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+    private static final int MIN_CAPACITY = 16;
+
+    private final String metricKey;
+    private byte[] types = new byte[0];
+    private double[] values = new double[0];
+    // allocated the first time a measure with a variation is stored, NaN means no variation
+    @CheckForNull
+    private double[] variations;
+    private final Map<Integer, Measure> objects = new HashMap<>();
+    private final Map<Integer, Map<Developer, Measure>> developerMeasures = new HashMap<>();
+
+    private Column(String metricKey) {
+      this.metricKey = metricKey;
+    }
+
+    @CheckForNull
+    Measure get(int index, @Nullable Developer developer) {
+      if (developer != null) {
+        Map<Developer, Measure> measures = developerMeasures.get(index);
+        return measures == null ? null : measures.get(developer);
+      }
+      if (index >= types.length) {
+        return null;
+      }
+      byte type = types[index];
+      if (type == ABSENT) {
+        return null;
+      }
+      if (type == OBJECT) {
+        return objects.get(index);
+      }
+      Measure.ValueType valueType = VALUE_TYPES[type - 1];
+      Double value = valueType == Measure.ValueType.NO_VALUE ? null : values[index];
+      Double variation = variations == null || Double.isNaN(variations[index]) ? null : variations[index];
+      return Measure.createScaled(valueType, value, variation);
+    }
+
+    boolean contains(int index, @Nullable Developer developer) {
+      if (developer != null) {
+        Map<Developer, Measure> measures = developerMeasures.get(index);
+        return measures != null && measures.containsKey(developer);
+      }
+      return index < types.length && types[index] != ABSENT;
+    }
+
+    void collect(int index, Consumer<Measure> consumer) {
+      Measure measure = get(index, null);
+      if (measure != null) {
+        consumer.accept(measure);
+      }
+      Map<Developer, Measure> measures = developerMeasures.get(index);
+      if (measures != null) {
+        measures.values().forEach(consumer);
+      }
+    }
+
+    void put(int index, Measure measure, OverridePolicy overridePolicy) {
+      if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE && contains(index, measure.getDeveloper())) {
+        return;
+      }
+      if (measure.getDeveloper() != null) {
+        developerMeasures.computeIfAbsent(index, k -> new HashMap<>()).put(measure.getDeveloper(), measure);
+        return;
+      }
+
+      ensureCapacity(index);
+      if (isPrimitive(measure)) {
+        objects.remove(index);
+        types[index] = (byte) (measure.getValueType().ordinal() + 1);
+        values[index] = toDouble(measure);
+        setVariation(index, measure);
+      } else {
+        types[index] = OBJECT;
+        objects.put(index, measure);
+        if (variations != null) {
+          variations[index] = Double.NaN;
+        }
+      }
+    }
+
+    private void setVariation(int index, Measure measure) {
+      if (measure.hasVariation()) {
+        if (variations == null) {
+          variations = new double[types.length];
+          Arrays.fill(variations, Double.NaN);
+        }
+        variations[index] = measure.getVariation();
+      } else if (variations != null) {
+        variations[index] = Double.NaN;
+      }
+    }
+
+    private void ensureCapacity(int index) {
+      if (index < types.length) {
+        return;
+      }
+      int oldLength = types.length;
+      int newLength = Math.max(index + 1, Math.max(MIN_CAPACITY, oldLength * 2));
+      types = Arrays.copyOf(types, newLength);
+      values = Arrays.copyOf(values, newLength);
+      if (variations != null) {
+        variations = Arrays.copyOf(variations, newLength);
+        Arrays.fill(variations, oldLength, newLength, Double.NaN);
+      }
+    }
+
+    private static boolean isPrimitive(Measure measure) {
+      if (measure.getData() != null || measure.hasQualityGateStatus()) {
+        return false;
+      }
+      if (measure.hasVariation() && Double.isNaN(measure.getVariation())) {
+        return false;
+      }
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+        case INT:
+        case LONG:
+        case DOUBLE:
+        case NO_VALUE:
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    private static double toDouble(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          return 0.0d;
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.sonar.db.measure.LiveMeasureDto;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Changes of the live measures of files computed when the measures of the analysis are persisted. They are written to
+ * DB in the transaction which enables the analysis, because live measures are read along with the measures of the
+ * last analysis: the values of the new analysis must not be visible before it becomes the last one.
+ */
+public class LiveMeasureChangesRepository {
+
+  private final List<LiveMeasureDto> inserts = new ArrayList<>();
+  private final List<LiveMeasureDto> updates = new ArrayList<>();
+  private final List<LiveMeasureDto> deletes = new ArrayList<>();
+  private boolean deleteAll = false;
+
+  public void insert(LiveMeasureDto dto) {
+    inserts.add(requireNonNull(dto));
+  }
+
+  public void update(LiveMeasureDto dto) {
+    updates.add(requireNonNull(dto));
+  }
+
+  /**
+   * @param dto the measure to delete, identified by its component and metric
+   */
+  public void delete(LiveMeasureDto dto) {
+    deletes.add(requireNonNull(dto));
+  }
+
+  /**
+   * Must be called when the measures of files are persisted in project_measures again, so that they are not read twice.
+   */
+  public void setDeleteAll() {
+    this.deleteAll = true;
+  }
+
+  public boolean isDeleteAll() {
+    return deleteAll;
+  }
+
+  public List<LiveMeasureDto> getInserts() {
+    return Collections.unmodifiableList(inserts);
+  }
+
+  public List<LiveMeasureDto> getUpdates() {
+    return Collections.unmodifiableList(updates);
+  }
+
+  public List<LiveMeasureDto> getDeletes() {
+    return Collections.unmodifiableList(deletes);
+  }
+}
@@ -100,6 +100,14 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Creates a measure with no developer, data, level nor QualityGate status from a value which has already been scaled.
+   * Used by {@link ColumnarRawMeasureRepository} to rebuild the measures it keeps in primitive arrays.
+   */
+  static Measure createScaled(ValueType valueType, @Nullable Double value, @Nullable Double variation) {
+    return new Measure(valueType, null, value, null, null, null, variation);
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private QualityGateStatus qualityGateStatus;
@@ -29,6 +29,9 @@ import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
 
+/**
+ * Implementations are not thread-safe: they are accessed by the thread visiting the component tree only.
+ */
 public interface MeasureRepository {
 
   /**
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.sonar.api.config.Configuration;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -37,7 +38,7 @@ import org.sonar.db.measure.MeasureQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
-import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.measure.RawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricValidator;
@@ -46,7 +47,13 @@ import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
 
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+  /**
+   * When {@code true}, raw measures are stored by {@link ColumnarRawMeasureRepository} rather than by
+   * {@link MapBasedRawMeasureRepository}, which greatly reduces the heap used by projects with many components.
+   */
+  static final String PROPERTY_COLUMNAR_STORE = "sonar.ce.measures.columnarStore";
+
+  private final RawMeasureRepository delegate;
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
@@ -57,7 +64,8 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   private final Set<Integer> loadedComponents = new HashSet<>();
 
   public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository,
-    ReportMetricValidator reportMetricValidator) {
+    ReportMetricValidator reportMetricValidator, Configuration config) {
+    this.delegate = createDelegate(config);
     this.dbClient = dbClient;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
@@ -65,6 +73,13 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     this.metricRepository = metricRepository;
   }
 
+  private static RawMeasureRepository createDelegate(Configuration config) {
+    if (config.getBoolean(PROPERTY_COLUMNAR_STORE).orElse(false)) {
+      return new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef());
+    }
+    return new MapBasedRawMeasureRepository<>(toReportRef());
+  }
+
   @Override
   public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
     // fail fast
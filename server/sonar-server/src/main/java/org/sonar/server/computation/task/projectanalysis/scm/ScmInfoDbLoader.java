@@ -19,6 +19,9 @@
  */
 package org.sonar.server.computation.task.projectanalysis.scm;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -33,6 +36,8 @@ import org.sonar.server.computation.task.projectanalysis.component.MergeBranchCo
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryImpl.NoScmInfo;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 
+import static java.util.Collections.singletonList;
+
 public class ScmInfoDbLoader {
   private static final Logger LOGGER = Loggers.get(ScmInfoDbLoader.class);
 
@@ -50,20 +55,39 @@ public class ScmInfoDbLoader {
   }
 
   public ScmInfo getScmInfoFromDb(Component file) {
-    Optional<String> uuid = getFileUUid(file);
+    return getScmInfoFromDb(singletonList(file)).get(file);
+  }
 
-    if (!uuid.isPresent()) {
-      return NoScmInfo.INSTANCE;
+  /**
+   * Loads the SCM info of the specified files with one query per chunk of 1000 files. Only the SCM fields
+   * of the stored lines are decoded.
+   *
+   * @return the SCM info of each file, {@link NoScmInfo#INSTANCE} when there is none
+   */
+  public Map<Component, ScmInfo> getScmInfoFromDb(Collection<Component> files) {
+    Map<Component, ScmInfo> result = new HashMap<>();
+    Map<String, Component> filesByUuid = new HashMap<>();
+    for (Component file : files) {
+      result.put(file, NoScmInfo.INSTANCE);
+      getFileUUid(file).ifPresent(uuid -> {
+        LOGGER.trace("Reading SCM info from db for file '{}'", uuid);
+        filesByUuid.put(uuid, file);
+      });
+    }
+    if (filesByUuid.isEmpty()) {
+      return result;
     }
 
-    LOGGER.trace("Reading SCM info from db for file '{}'", uuid.get());
     try (DbSession dbSession = dbClient.openSession(false)) {
-      FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, uuid.get());
-      if (dto == null || !isDtoValid(file, dto)) {
-        return NoScmInfo.INSTANCE;
-      }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+      dbClient.fileSourceDao().scrollSourcesByFileUuids(dbSession, filesByUuid.keySet(), context -> {
+        FileSourceDto dto = context.getResultObject();
+        Component file = filesByUuid.get(dto.getFileUuid());
+        if (isDtoValid(file, dto)) {
+          result.put(file, DbScmInfo.create(file, dto.getScmData().getLinesList()).or(NoScmInfo.INSTANCE));
+        }
+      });
     }
+    return result;
   }
 
   private Optional<String> getFileUUid(Component file) {
@@ -20,27 +20,65 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 
 import static java.util.Objects.requireNonNull;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * When the component tree is available, SCM info is loaded for the requested file and for the next files of the tree,
+ * in the order of visit, so that SCM info copied from the previous analysis is read from DB with a single query for
+ * many files. The number of files kept in cache is bounded by {@link #PROPERTY_CACHE_SIZE}, the least recently
+ * used being evicted first.
+ */
 public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
+  /**
+   * Maximum number of files which SCM info is kept in memory
+   */
+  static final String PROPERTY_CACHE_SIZE = "sonar.ce.scm.cacheSize";
+  static final int PREFETCH_SIZE = 100;
+
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
+  private static final int DEFAULT_CACHE_SIZE = 10_000;
 
   private final BatchReportReader batchReportReader;
-  private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  private final Map<Component, ScmInfo> scmInfoCache;
   private final ScmInfoDbLoader scmInfoDbLoader;
+  @CheckForNull
+  private final TreeRootHolder treeRootHolder;
+  private List<Component> files;
+  private Map<Component, Integer> fileIndexes;
+
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, ScmInfoDbLoader scmInfoDbLoader, TreeRootHolder treeRootHolder, Configuration config) {
+    this(batchReportReader, scmInfoDbLoader, treeRootHolder, config.getInt(PROPERTY_CACHE_SIZE).orElse(DEFAULT_CACHE_SIZE));
+  }
 
   public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, ScmInfoDbLoader scmInfoDbLoader) {
+    this(batchReportReader, scmInfoDbLoader, null, DEFAULT_CACHE_SIZE);
+  }
+
+  private ScmInfoRepositoryImpl(BatchReportReader batchReportReader, ScmInfoDbLoader scmInfoDbLoader, @Nullable TreeRootHolder treeRootHolder, int cacheSize) {
     this.batchReportReader = batchReportReader;
     this.scmInfoDbLoader = scmInfoDbLoader;
+    this.treeRootHolder = treeRootHolder;
+    this.scmInfoCache = new LruCache(Math.max(cacheSize, PREFETCH_SIZE));
   }
 
   @Override
@@ -58,9 +96,9 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
       return optionalOf(scmInfo);
     }
 
-    scmInfo = getScmInfoForComponent(component);
-    scmInfoCache.put(component, scmInfo);
-    return optionalOf(scmInfo);
+    Map<Component, ScmInfo> loaded = loadScmInfo(filesToLoad(component));
+    scmInfoCache.putAll(loaded);
+    return optionalOf(loaded.get(component));
   }
 
   private static Optional<ScmInfo> optionalOf(ScmInfo scmInfo) {
@@ -70,16 +108,58 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     return Optional.of(scmInfo);
   }
 
-  private ScmInfo getScmInfoForComponent(Component component) {
-    ScannerReport.Changesets changesets = batchReportReader.readChangesets(component.getReportAttributes().getRef());
-    if (changesets == null) {
-      LOGGER.trace("No SCM info for file '{}'", component.getKey());
-      return NoScmInfo.INSTANCE;
+  /**
+   * The specified file, followed by the next files of the tree which are not in cache yet
+   */
+  private List<Component> filesToLoad(Component file) {
+    List<Component> result = new ArrayList<>();
+    result.add(file);
+    Integer index = treeRootHolder == null ? null : fileIndexes().get(file);
+    if (index == null) {
+      return result;
     }
-    if (changesets.getCopyFromPrevious()) {
-      return scmInfoDbLoader.getScmInfoFromDb(component);
+    for (int i = index + 1; i < files.size() && result.size() < PREFETCH_SIZE; i++) {
+      Component next = files.get(i);
+      if (!scmInfoCache.containsKey(next)) {
+        result.add(next);
+      }
     }
-    return getScmInfoFromReport(component, changesets);
+    return result;
+  }
+
+  private Map<Component, Integer> fileIndexes() {
+    if (fileIndexes == null) {
+      files = new ArrayList<>();
+      fileIndexes = new HashMap<>();
+      new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+        @Override
+        public void visitFile(Component file) {
+          fileIndexes.put(file, files.size());
+          files.add(file);
+        }
+      }).visit(treeRootHolder.getRoot());
+    }
+    return fileIndexes;
+  }
+
+  private Map<Component, ScmInfo> loadScmInfo(List<Component> components) {
+    Map<Component, ScmInfo> result = new LinkedHashMap<>();
+    List<Component> copiedFromPrevious = new ArrayList<>();
+    for (Component component : components) {
+      ScannerReport.Changesets changesets = batchReportReader.readChangesets(component.getReportAttributes().getRef());
+      if (changesets == null) {
+        LOGGER.trace("No SCM info for file '{}'", component.getKey());
+        result.put(component, NoScmInfo.INSTANCE);
+      } else if (changesets.getCopyFromPrevious()) {
+        copiedFromPrevious.add(component);
+      } else {
+        result.put(component, getScmInfoFromReport(component, changesets));
+      }
+    }
+    if (!copiedFromPrevious.isEmpty()) {
+      result.putAll(scmInfoDbLoader.getScmInfoFromDb(copiedFromPrevious));
+    }
+    return result;
   }
 
   private static ScmInfo getScmInfoFromReport(Component file, ScannerReport.Changesets changesets) {
@@ -87,6 +167,20 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     return new ReportScmInfo(changesets);
   }
 
+  private static class LruCache extends LinkedHashMap<Component, ScmInfo> {
+    private final int maxSize;
+
+    private LruCache(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Component, ScmInfo> eldest) {
+      return size() > maxSize;
+    }
+  }
+
   /**
    * Internally used to populate cache when no ScmInfo exist.
    */
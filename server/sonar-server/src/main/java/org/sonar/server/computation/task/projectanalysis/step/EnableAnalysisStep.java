@@ -21,9 +21,11 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.measure.LiveMeasureDao;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.measure.LiveMeasureChangesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 public class EnableAnalysisStep implements ComputationStep {
@@ -31,23 +33,38 @@ public class EnableAnalysisStep implements ComputationStep {
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final LiveMeasureChangesRepository liveMeasureChangesRepository;
 
-  public EnableAnalysisStep(DbClient dbClient, TreeRootHolder treeRootHolder, AnalysisMetadataHolder analysisMetadataHolder) {
+  public EnableAnalysisStep(DbClient dbClient, TreeRootHolder treeRootHolder, AnalysisMetadataHolder analysisMetadataHolder,
+    LiveMeasureChangesRepository liveMeasureChangesRepository) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.liveMeasureChangesRepository = liveMeasureChangesRepository;
   }
 
   @Override
   public void execute() {
-    try (DbSession dbSession = dbClient.openSession(false)) {
+    try (DbSession dbSession = dbClient.openSession(true)) {
       Component project = treeRootHolder.getRoot();
+      // live measures are read along with the last analysis, so they change in the same transaction
+      persistLiveMeasureChanges(dbSession, project.getUuid());
       dbClient.snapshotDao().switchIsLastFlagAndSetProcessedStatus(dbSession, project.getUuid(), analysisMetadataHolder.getUuid());
       dbClient.componentDao().applyBChangesForRootComponentUuid(dbSession, project.getUuid());
       dbSession.commit();
     }
   }
 
+  private void persistLiveMeasureChanges(DbSession dbSession, String projectUuid) {
+    LiveMeasureDao liveMeasureDao = dbClient.liveMeasureDao();
+    if (liveMeasureChangesRepository.isDeleteAll()) {
+      liveMeasureDao.deleteByProjectUuid(dbSession, projectUuid);
+    }
+    liveMeasureChangesRepository.getInserts().forEach(dto -> liveMeasureDao.insert(dbSession, dto));
+    liveMeasureChangesRepository.getUpdates().forEach(dto -> liveMeasureDao.update(dbSession, dto));
+    liveMeasureChangesRepository.getDeletes().forEach(dto -> liveMeasureDao.delete(dbSession, dto.getComponentUuid(), dto.getMetricId()));
+  }
+
   @Override
   public String getDescription() {
     return "Enable analysis";
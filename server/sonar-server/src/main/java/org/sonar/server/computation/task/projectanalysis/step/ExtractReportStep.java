@@ -24,6 +24,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.ZipUtils;
@@ -37,37 +39,49 @@ import org.sonar.server.computation.task.step.ComputationStep;
 /**
  * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
  * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * When {@link #PROPERTY_READ_FROM_ZIP} is enabled, the zip file is only copied from the database to a temp file,
+ * without being extracted. The entries of the report are then decompressed on demand when steps read them.
+ * </p>
  */
 public class ExtractReportStep implements ComputationStep {
+  static final String PROPERTY_READ_FROM_ZIP = "sonar.ce.report.readFromZip";
 
   private final DbClient dbClient;
   private final CeTask task;
   private final TempFolder tempFolder;
   private final MutableBatchReportDirectoryHolder reportDirectoryHolder;
+  private final Configuration config;
 
   public ExtractReportStep(DbClient dbClient, CeTask task, TempFolder tempFolder,
-    MutableBatchReportDirectoryHolder reportDirectoryHolder) {
+    MutableBatchReportDirectoryHolder reportDirectoryHolder, Configuration config) {
     this.dbClient = dbClient;
     this.task = task;
     this.tempFolder = tempFolder;
     this.reportDirectoryHolder = reportDirectoryHolder;
+    this.config = config;
   }
 
   @Override
   public void execute() {
     try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
-      if (opt.isPresent()) {
-        File unzippedDir = tempFolder.newDir();
-        try (CeTaskInputDao.DataStream reportStream = opt.get();
-             InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
+      if (!opt.isPresent()) {
+        throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
+      }
+      try (CeTaskInputDao.DataStream reportStream = opt.get();
+        InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
+        if (config.getBoolean(PROPERTY_READ_FROM_ZIP).orElse(false)) {
+          File zipFile = tempFolder.newFile("report", ".zip");
+          FileUtils.copyInputStreamToFile(zipStream, zipFile);
+          reportDirectoryHolder.setZipFile(zipFile);
+        } else {
+          File unzippedDir = tempFolder.newDir();
           ZipUtils.unzip(zipStream, unzippedDir);
-        } catch (IOException e) {
-          throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
+          reportDirectoryHolder.setDirectory(unzippedDir);
         }
-        reportDirectoryHolder.setDirectory(unzippedDir);
-      } else {
-        throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
       }
     }
   }
@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
 
@@ -30,19 +31,27 @@ public class IndexAnalysisStep implements ComputationStep {
   private static final Logger LOGGER = Loggers.get(IndexAnalysisStep.class);
 
   private final TreeRootHolder treeRootHolder;
+  private final ChangedIssuesRepository changedIssuesRepository;
   private final ProjectIndexer[] indexers;
 
-  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ProjectIndexer... indexers) {
+  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ChangedIssuesRepository changedIssuesRepository, ProjectIndexer... indexers) {
     this.treeRootHolder = treeRootHolder;
+    this.changedIssuesRepository = changedIssuesRepository;
     this.indexers = indexers;
   }
 
   @Override
   public void execute() {
     String branchUuid = treeRootHolder.getRoot().getUuid();
+    boolean deltaIndexable = changedIssuesRepository.isDeltaIndexable();
     for (ProjectIndexer indexer : indexers) {
       LOGGER.debug("Call {}", indexer);
-      indexer.indexOnAnalysis(branchUuid);
+      if (deltaIndexable) {
+        // only the issues changed by the analysis are out-of-date in the index
+        indexer.indexOnAnalysis(branchUuid, changedIssuesRepository.getIssueKeys());
+      } else {
+        indexer.indexOnAnalysis(branchUuid);
+      }
     }
   }
 
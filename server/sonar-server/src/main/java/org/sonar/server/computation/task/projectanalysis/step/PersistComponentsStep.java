@@ -60,6 +60,7 @@ import org.sonar.server.computation.task.projectanalysis.component.PathAwareCraw
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import com.google.common.base.Predicate;
@@ -76,11 +77,12 @@ public class PersistComponentsStep implements ComputationStep {
   private final MutableDisabledComponentsHolder disabledComponentsHolder;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final BranchPersister branchPersister;
+  private final ChangedIssuesRepository changedIssuesRepository;
 
   public PersistComponentsStep(DbClient dbClient, TreeRootHolder treeRootHolder,
     MutableDbIdsRepository dbIdsRepository, System2 system2,
     MutableDisabledComponentsHolder disabledComponentsHolder, AnalysisMetadataHolder analysisMetadataHolder,
-    BranchPersister branchPersister) {
+    BranchPersister branchPersister, ChangedIssuesRepository changedIssuesRepository) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.dbIdsRepository = dbIdsRepository;
@@ -88,6 +90,7 @@ public class PersistComponentsStep implements ComputationStep {
     this.disabledComponentsHolder = disabledComponentsHolder;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.branchPersister = branchPersister;
+    this.changedIssuesRepository = changedIssuesRepository;
   }
 
   @Override
@@ -261,6 +264,11 @@ public class PersistComponentsStep implements ComputationStep {
       if (update.isPresent()) {
         ComponentUpdateDto updateDto = update.get();
         dbClient.componentDao().update(dbSession, updateDto);
+        if (!StringUtils.equals(existingComponent.moduleUuidPath(), updateDto.getBModuleUuidPath())
+          || !StringUtils.equals(existingComponent.path(), updateDto.getBPath())) {
+          // these fields are copied into the documents of the issues of the component
+          changedIssuesRepository.setComponentsChanged();
+        }
 
         // update the fields in memory in order the PathAwareVisitor.Path
         // to be up-to-date
@@ -21,21 +21,30 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
+import org.sonar.db.source.SourceDataEncoder;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
@@ -45,7 +54,12 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
@@ -62,8 +76,32 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Persists sources of files as a pipeline: data of files is read from the report and computed by the current thread,
+ * then serialized and compressed in parallel by {@link #PROPERTY_THREADS} threads, while the results are inserted or
+ * updated, in the order of the tree, by the current thread in a batch session. The report and the repositories are
+ * read by the current thread only.
+ * <p>
+ * Files whose inputs did not change since the previous analysis are skipped without computing their data. The inputs
+ * are identified by a hash of the fingerprints of the report sections written by the scanner, of the SCM changesets and
+ * of the duplications. This hash is stored along with the data of the file.
+ * </p>
+ */
 public class PersistFileSourcesStep implements ComputationStep {
 
+  static final String PROPERTY_THREADS = "sonar.ce.persistSources.threads";
+  private static final int DEFAULT_THREADS = 2;
+  /**
+   * Sources are committed as soon as the size of uncommitted binary data exceeds this threshold, in order to not keep
+   * the data of too many big files in memory
+   */
+  private static final long MAX_UNCOMMITTED_BYTES = 8L * 1024 * 1024;
+  /**
+   * Part of the input hash of each file. Must be changed when the way data is computed from the inputs changes, so that
+   * sources of all files are computed again.
+   */
+  private static final String INPUT_HASH_VERSION = "2";
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -72,9 +110,10 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final Configuration config;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, AnalysisMetadataHolder analysisMetadataHolder) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, AnalysisMetadataHolder analysisMetadataHolder, Configuration config) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -83,27 +122,42 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.config = config;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
+    int threads = Math.max(1, config.getInt(PROPERTY_THREADS).orElse(DEFAULT_THREADS));
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("PersistFileSources-%d").setDaemon(true).build());
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      FileSourceVisitor visitor = new FileSourceVisitor(dbSession, executor, 2 * threads);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.persistPendingSources();
+      dbSession.commit();
+    } finally {
+      executor.shutdownNow();
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final ExecutorService executor;
+    private final int maxPendingFiles;
+    private final Deque<Future<FileSource>> pendingFileSources = new ArrayDeque<>();
+    private final ThreadLocal<SourceDataEncoder> encoders = ThreadLocal.withInitial(SourceDataEncoder::new);
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private long uncommittedBytes = 0;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, ExecutorService executor, int maxPendingFiles) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.executor = executor;
+      this.maxPendingFiles = maxPendingFiles;
     }
 
     @Override
@@ -122,23 +176,136 @@ public class PersistFileSourcesStep implements ComputationStep {
         return;
       }
 
+      Iterable<Duplication> duplications = duplicationRepository.getDuplications(file);
+      String inputHash = computeInputHash(file, duplications);
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+      if (inputHash != null && previousDto != null && inputHash.equals(previousDto.getInputHash())) {
+        // data would be the same as the one already persisted
+        return;
+      }
+      Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      pendingFileSources.add(computeFileSource(file, scmInfo, duplications, inputHash));
+      while (pendingFileSources.size() > maxPendingFiles) {
+        persistSource(pendingFileSources.poll());
+      }
+    }
+
+    private void persistPendingSources() {
+      while (!pendingFileSources.isEmpty()) {
+        persistSource(pendingFileSources.poll());
+      }
+    }
+
+    /**
+     * @return {@code null} if the scanner did not provide the fingerprints of the sources of the file
+     */
+    @CheckForNull
+    private String computeInputHash(Component file, Iterable<Duplication> duplications) {
+      int ref = file.getReportAttributes().getRef();
+      ScannerReport.SourceFingerprints fingerprints = reportReader.readSourceFingerprints(ref);
+      if (fingerprints == null) {
+        return null;
+      }
+      StringBuilder inputs = new StringBuilder()
+        .append(INPUT_HASH_VERSION)
+        .append('|').append(fingerprints.getSource())
+        .append('|').append(fingerprints.getCoverage())
+        .append('|').append(fingerprints.getSyntaxHighlighting())
+        .append('|').append(fingerprints.getSymbols())
+        .append('|').append(scmFingerprint(reportReader.readChangesets(ref)));
+      List<String> sortedDuplications = new ArrayList<>();
+      duplications.forEach(duplication -> sortedDuplications.add(duplicationFingerprint(duplication)));
+      Collections.sort(sortedDuplications);
+      sortedDuplications.forEach(duplication -> inputs.append('|').append(duplication));
+      return DigestUtils.md5Hex(inputs.toString());
+    }
+
+    /**
+     * Only the key of the files and the lines of the blocks are part of the fingerprint, as references of components
+     * in the report change from one analysis to another.
+     */
+    private String duplicationFingerprint(Duplication duplication) {
+      StringBuilder fingerprint = new StringBuilder();
+      appendTextBlock(fingerprint, duplication.getOriginal());
+      for (Duplicate duplicate : duplication.getDuplicates()) {
+        fingerprint.append(';');
+        if (duplicate instanceof InProjectDuplicate) {
+          fingerprint.append(((InProjectDuplicate) duplicate).getFile().getKey());
+        } else if (duplicate instanceof CrossProjectDuplicate) {
+          fingerprint.append(((CrossProjectDuplicate) duplicate).getFileKey());
+        }
+        fingerprint.append(':');
+        appendTextBlock(fingerprint, duplicate.getTextBlock());
+      }
+      return fingerprint.toString();
+    }
+
+    private void appendTextBlock(StringBuilder fingerprint, TextBlock textBlock) {
+      fingerprint.append(textBlock.getStart()).append('-').append(textBlock.getEnd());
+    }
+
+    private String scmFingerprint(@Nullable ScannerReport.Changesets changesets) {
+      if (changesets == null) {
+        return "";
+      }
+      if (changesets.getCopyFromPrevious()) {
+        // changesets are copied from the data already persisted for the file
+        return "previous";
+      }
+      return DigestUtils.md5Hex(changesets.toByteArray());
+    }
+
+    /**
+     * Computes the data of the file and submits its encoding to the executor.
+     */
+    private Future<FileSource> computeFileSource(Component file, Optional<ScmInfo> scmInfo, Iterable<Duplication> duplications, @Nullable String inputHash) {
       try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-           LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file)) {
+        LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplications, file)) {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        String revision = computeRevision(lineReaders.getLatestChange());
+        return executor.submit(() -> encode(file.getUuid(), fileSourceData, revision, inputHash));
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    private FileSource encode(String componentUuid, ComputeFileSourceData.Data fileSourceData, @Nullable String revision, @Nullable String inputHash) {
+      byte[] data = encoders.get().encode(fileSourceData.getFileSourceData());
+      return new FileSource(componentUuid, data, DigestUtils.md5Hex(data), fileSourceData.getSrcHash(), fileSourceData.getLineHashes(), revision, inputHash);
+    }
+
+    private void persistSource(Future<FileSource> future) {
+      FileSource fileSource;
+      try {
+        fileSource = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while persisting sources", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+      if (persistSource(fileSource)) {
+        uncommittedBytes += fileSource.data.length;
+        if (uncommittedBytes > MAX_UNCOMMITTED_BYTES) {
+          session.commit();
+          uncommittedBytes = 0;
+        }
+      }
+    }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
+    private boolean persistSource(FileSource fileSource) {
+      String componentUuid = fileSource.componentUuid;
+      byte[] data = fileSource.data;
+      String dataHash = fileSource.dataHash;
+      String srcHash = fileSource.srcHash;
+      String lineHashes = fileSource.lineHashes;
+      String revision = fileSource.revision;
+      String inputHash = fileSource.inputHash;
       FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
@@ -152,27 +319,29 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setLineHashes(lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(revision)
+          .setInputHash(inputHash);
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
-      } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
-        }
+        return true;
       }
+      // Update only if data_hash has changed or if src_hash, revision or input_hash is missing (progressive migration)
+      boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
+      boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
+      boolean inputHashUpdated = !ObjectUtils.equals(inputHash, previousDto.getInputHash());
+      if (binaryDataUpdated || srcHashUpdated || revisionUpdated || inputHashUpdated) {
+        previousDto
+          .setBinaryData(data)
+          .setDataHash(dataHash)
+          .setSrcHash(srcHash)
+          .setLineHashes(lineHashes)
+          .setRevision(revision)
+          .setInputHash(inputHash)
+          .setUpdatedAt(system2.now());
+        dbClient.fileSourceDao().update(session, previousDto);
+        return true;
+      }
+      return false;
     }
 
     @CheckForNull
@@ -184,19 +353,41 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  private static final class FileSource {
+    private final String componentUuid;
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
+    @CheckForNull
+    private final String revision;
+    @CheckForNull
+    private final String inputHash;
+
+    private FileSource(String componentUuid, byte[] data, String dataHash, String srcHash, String lineHashes, @Nullable String revision,
+      @Nullable String inputHash) {
+      this.componentUuid = componentUuid;
+      this.data = data;
+      this.dataHash = dataHash;
+      this.srcHash = srcHash;
+      this.lineHashes = lineHashes;
+      this.revision = revision;
+      this.inputHash = inputHash;
+    }
+  }
+
   private static class LineReaders implements AutoCloseable {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, Iterable<Duplication> duplications, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<ScannerReport.LineCoverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -212,7 +403,7 @@ public class PersistFileSourcesStep implements ComputationStep {
       CloseableIterator<ScannerReport.Symbol> symbolsIt = reportReader.readComponentSymbols(componentRef);
       closeables.add(symbolsIt);
       readers.add(new SymbolsLineReader(component, symbolsIt, rangeOffsetConverter));
-      readers.add(new DuplicationLineReader(duplicationRepository.getDuplications(component)));
+      readers.add(new DuplicationLineReader(duplications));
     }
 
     List<LineReader> readers() {
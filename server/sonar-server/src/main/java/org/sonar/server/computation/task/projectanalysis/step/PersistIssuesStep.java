@@ -25,12 +25,15 @@ import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.FieldDiffs;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.issue.IssueChangeDao;
 import org.sonar.db.issue.IssueChangeDto;
-import org.sonar.db.issue.IssueChangeMapper;
+import org.sonar.db.issue.IssueDao;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
@@ -43,14 +46,16 @@ public class PersistIssuesStep implements ComputationStep {
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final ChangedIssuesRepository changedIssuesRepository;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, ChangedIssuesRepository changedIssuesRepository) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.changedIssuesRepository = changedIssuesRepository;
   }
 
   @Override
@@ -59,22 +64,29 @@ public class PersistIssuesStep implements ComputationStep {
       CloseableIterator<DefaultIssue> issues = issueCache.traverse()) {
 
       IssueMapper mapper = dbSession.getMapper(IssueMapper.class);
-      IssueChangeMapper changeMapper = dbSession.getMapper(IssueChangeMapper.class);
-      while (issues.hasNext()) {
-        DefaultIssue issue = issues.next();
-        boolean saved = persistIssueIfRequired(mapper, issue);
-        if (saved) {
-          insertChanges(changeMapper, issue);
+      IssueDao issueDao = dbClient.issueDao();
+      IssueChangeDao issueChangeDao = dbClient.issueChangeDao();
+      try (BulkInsert issueInsert = issueDao.newBulkInsert(dbSession);
+        BulkInsert changeInsert = issueChangeDao.newBulkInsert(dbSession)) {
+        while (issues.hasNext()) {
+          DefaultIssue issue = issues.next();
+          boolean saved = persistIssueIfRequired(mapper, issueInsert, issue);
+          if (saved) {
+            insertChanges(issueChangeDao, changeInsert, issue);
+            changedIssuesRepository.addIssueKey(issue.key());
+          }
         }
       }
       dbSession.flushStatements();
-      dbSession.commit();
+      // new issues and changes are written on the connection, out of the statements tracked by the session
+      dbSession.commit(true);
     }
+    changedIssuesRepository.setComplete();
   }
 
-  private boolean persistIssueIfRequired(IssueMapper mapper, DefaultIssue issue) {
+  private boolean persistIssueIfRequired(IssueMapper mapper, BulkInsert issueInsert, DefaultIssue issue) {
     if (issue.isNew() || issue.isCopied()) {
-      persistNewIssue(mapper, issue);
+      persistNewIssue(issueInsert, issue);
       return true;
     }
 
@@ -85,10 +97,10 @@ public class PersistIssuesStep implements ComputationStep {
     return false;
   }
 
-  private void persistNewIssue(IssueMapper mapper, DefaultIssue issue) {
+  private void persistNewIssue(BulkInsert issueInsert, DefaultIssue issue) {
     Integer ruleId = ruleRepository.getByKey(issue.ruleKey()).getId();
     IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now());
-    mapper.insert(dto);
+    dbClient.issueDao().insert(issueInsert, dto);
   }
 
   private void persistChangedIssue(IssueMapper mapper, DefaultIssue issue) {
@@ -101,18 +113,18 @@ public class PersistIssuesStep implements ComputationStep {
     }
   }
 
-  private static void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
+  private static void insertChanges(IssueChangeDao issueChangeDao, BulkInsert changeInsert, DefaultIssue issue) {
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
       if (c.isNew()) {
         IssueChangeDto changeDto = IssueChangeDto.of(c);
-        mapper.insert(changeDto);
+        issueChangeDao.insert(changeInsert, changeDto);
       }
     }
     FieldDiffs diffs = issue.currentChange();
     if (!issue.isNew() && diffs != null) {
       IssueChangeDto changeDto = IssueChangeDto.of(issue.key(), diffs);
-      mapper.insert(changeDto);
+      issueChangeDao.insert(changeInsert, changeDto);
     }
   }
 
@@ -23,12 +23,21 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Configuration;
+import org.sonar.db.BulkInsert;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.measure.LiveMeasureDao;
+import org.sonar.db.measure.LiveMeasureDto;
 import org.sonar.db.measure.MeasureDao;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -37,6 +46,7 @@ import org.sonar.server.computation.task.projectanalysis.component.DepthTraversa
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.measure.BestValueOptimization;
+import org.sonar.server.computation.task.projectanalysis.measure.LiveMeasureChangesRepository;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureToMeasureDto;
@@ -60,19 +70,35 @@ public class PersistMeasuresStep implements ComputationStep {
     FUNCTION_COMPLEXITY_DISTRIBUTION_KEY,
     CLASS_COMPLEXITY_DISTRIBUTION_KEY);
 
+  /**
+   * When {@code true}, the measures of files are not inserted in project_measures by every analysis. Their latest values
+   * are kept in live_measures, where only the values which changed since the previous analysis are written.
+   */
+  static final String PROPERTY_DELTA_STORAGE = "sonar.ce.measures.deltaStorage";
+
+  /**
+   * Number of files which live measures are loaded at once to be compared with the measures of the analysis
+   */
+  private static final int LIVE_MEASURES_FILE_BATCH_SIZE = 500;
+
   private final DbClient dbClient;
   private final MetricRepository metricRepository;
   private final MeasureToMeasureDto measureToMeasureDto;
   private final TreeRootHolder treeRootHolder;
   private final MeasureRepository measureRepository;
+  private final LiveMeasureChangesRepository liveMeasureChangesRepository;
+  private final boolean deltaStorage;
 
   public PersistMeasuresStep(DbClient dbClient, MetricRepository metricRepository, MeasureToMeasureDto measureToMeasureDto,
-    TreeRootHolder treeRootHolder, MeasureRepository measureRepository) {
+    TreeRootHolder treeRootHolder, MeasureRepository measureRepository, LiveMeasureChangesRepository liveMeasureChangesRepository,
+    Configuration config) {
     this.dbClient = dbClient;
     this.metricRepository = metricRepository;
     this.measureToMeasureDto = measureToMeasureDto;
     this.treeRootHolder = treeRootHolder;
     this.measureRepository = measureRepository;
+    this.liveMeasureChangesRepository = liveMeasureChangesRepository;
+    this.deltaStorage = config.getBoolean(PROPERTY_DELTA_STORAGE).orElse(false);
   }
 
   @Override
@@ -82,30 +108,56 @@ public class PersistMeasuresStep implements ComputationStep {
 
   @Override
   public void execute() {
-    DbSession dbSession = dbClient.openSession(true);
-    try {
-      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(dbSession)).visit(treeRootHolder.getRoot());
-      dbSession.commit();
-    } finally {
-      dbSession.close();
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      String rootUuid = treeRootHolder.getRoot().getUuid();
+      LiveMeasures liveMeasures = deltaStorage ? new LiveMeasures(dbSession, rootUuid) : null;
+      try (BulkInsert bulkInsert = dbClient.measureDao().newBulkInsert(dbSession)) {
+        new DepthTraversalTypeAwareCrawler(new MeasureVisitor(bulkInsert, liveMeasures)).visit(treeRootHolder.getRoot());
+      }
+      if (liveMeasures != null) {
+        liveMeasures.flush();
+      } else if (dbClient.liveMeasureDao().countByProjectUuid(dbSession, rootUuid) > 0) {
+        // measures of files are back in project_measures, they must not be read twice
+        liveMeasureChangesRepository.setDeleteAll();
+      }
+      // rows are written on the connection, out of the statements tracked by the session
+      dbSession.commit(true);
     }
   }
 
   private class MeasureVisitor extends TypeAwareVisitorAdapter {
-    private final DbSession session;
+    private final BulkInsert bulkInsert;
+    @Nullable
+    private final LiveMeasures liveMeasures;
 
-    private MeasureVisitor(DbSession session) {
+    private MeasureVisitor(BulkInsert bulkInsert, @Nullable LiveMeasures liveMeasures) {
       super(CrawlerDepthLimit.LEAVES, PRE_ORDER);
-      this.session = session;
+      this.bulkInsert = bulkInsert;
+      this.liveMeasures = liveMeasures;
     }
 
     @Override
     public void visitAny(Component component) {
       Multimap<String, Measure> measures = measureRepository.getRawMeasures(component);
-      persistMeasures(component, measures);
+      List<MeasureDto> measureDtos = toMeasureDtos(component, measures);
+      MeasureDao measureDao = dbClient.measureDao();
+      if (liveMeasures == null || component.getType() != Component.Type.FILE) {
+        measureDtos.forEach(measureDto -> measureDao.insert(bulkInsert, measureDto));
+        return;
+      }
+      List<MeasureDto> fileMeasures = new ArrayList<>(measureDtos.size());
+      for (MeasureDto measureDto : measureDtos) {
+        if (isLive(measureDto)) {
+          fileMeasures.add(measureDto);
+        } else {
+          measureDao.insert(bulkInsert, measureDto);
+        }
+      }
+      liveMeasures.add(component.getUuid(), fileMeasures);
     }
 
-    private void persistMeasures(Component component, Multimap<String, Measure> batchReportMeasures) {
+    private List<MeasureDto> toMeasureDtos(Component component, Multimap<String, Measure> batchReportMeasures) {
+      List<MeasureDto> measureDtos = new ArrayList<>();
       for (Map.Entry<String, Collection<Measure>> measures : batchReportMeasures.asMap().entrySet()) {
         String metricKey = measures.getKey();
         if (NOT_TO_PERSIST_ON_FILE_METRIC_KEYS.contains(metricKey) && component.getType() == Component.Type.FILE) {
@@ -114,14 +166,87 @@ public class PersistMeasuresStep implements ComputationStep {
 
         Metric metric = metricRepository.getByKey(metricKey);
         Predicate<Measure> notBestValueOptimized = Predicates.not(BestValueOptimization.from(metric, component));
-        MeasureDao measureDao = dbClient.measureDao();
         for (Measure measure : from(measures.getValue()).filter(NonEmptyMeasure.INSTANCE).filter(notBestValueOptimized)) {
-          MeasureDto measureDto = measureToMeasureDto.toMeasureDto(measure, metric, component);
-          measureDao.insert(session, measureDto);
+          measureDtos.add(measureToMeasureDto.toMeasureDto(measure, metric, component));
+        }
+      }
+      return measureDtos;
+    }
+
+  }
+
+  /**
+   * Compares the measures of files with the live measures persisted by the previous analysis and records the changes
+   * in {@link LiveMeasureChangesRepository}. They are written by {@link EnableAnalysisStep}. Files are processed by
+   * batches of {@link #LIVE_MEASURES_FILE_BATCH_SIZE}.
+   */
+  private class LiveMeasures {
+    private final DbSession dbSession;
+    private final String projectUuid;
+    private final LiveMeasureDao liveMeasureDao;
+    private final Map<String, List<MeasureDto>> measuresByFileUuid = new LinkedHashMap<>();
+
+    private LiveMeasures(DbSession dbSession, String projectUuid) {
+      this.dbSession = dbSession;
+      this.projectUuid = projectUuid;
+      this.liveMeasureDao = dbClient.liveMeasureDao();
+    }
+
+    /**
+     * @param measures all the measures of the file. Live measures of the file which are not in the list are deleted.
+     */
+    private void add(String fileUuid, List<MeasureDto> measures) {
+      measuresByFileUuid.put(fileUuid, measures);
+      if (measuresByFileUuid.size() >= LIVE_MEASURES_FILE_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (measuresByFileUuid.isEmpty()) {
+        return;
+      }
+      Map<String, Map<Integer, LiveMeasureDto>> persistedByFileUuid = new HashMap<>();
+      for (LiveMeasureDto persisted : liveMeasureDao.selectByComponentUuids(dbSession, measuresByFileUuid.keySet())) {
+        persistedByFileUuid.computeIfAbsent(persisted.getComponentUuid(), uuid -> new HashMap<>()).put(persisted.getMetricId(), persisted);
+      }
+      for (Map.Entry<String, List<MeasureDto>> entry : measuresByFileUuid.entrySet()) {
+        Map<Integer, LiveMeasureDto> persistedByMetricId = persistedByFileUuid.getOrDefault(entry.getKey(), new HashMap<>());
+        for (MeasureDto measure : entry.getValue()) {
+          LiveMeasureDto persisted = persistedByMetricId.remove(measure.getMetricId());
+          if (persisted == null) {
+            liveMeasureChangesRepository.insert(toLiveMeasureDto(projectUuid, measure));
+          } else if (!hasSameValues(persisted, measure)) {
+            liveMeasureChangesRepository.update(toLiveMeasureDto(projectUuid, measure));
+          }
         }
+        persistedByMetricId.values().forEach(liveMeasureChangesRepository::delete);
       }
+      measuresByFileUuid.clear();
     }
+  }
+
+  /**
+   * Measures of developers and quality gate statuses are not supported by live_measures
+   */
+  private static boolean isLive(MeasureDto measureDto) {
+    return measureDto.getDeveloperId() == null && measureDto.getAlertStatus() == null;
+  }
+
+  private static boolean hasSameValues(LiveMeasureDto persisted, MeasureDto measure) {
+    return Objects.equals(persisted.getValue(), measure.getValue())
+      && Objects.equals(persisted.getVariation(), measure.getVariation())
+      && Objects.equals(persisted.getData(), measure.getData());
+  }
 
+  private static LiveMeasureDto toLiveMeasureDto(String projectUuid, MeasureDto measure) {
+    return new LiveMeasureDto()
+      .setProjectUuid(projectUuid)
+      .setComponentUuid(measure.getComponentUuid())
+      .setMetricId(measure.getMetricId())
+      .setValue(measure.getValue())
+      .setVariation(measure.getVariation())
+      .setData(measure.getData());
   }
 
   private enum NonEmptyMeasure implements Predicate<Measure> {
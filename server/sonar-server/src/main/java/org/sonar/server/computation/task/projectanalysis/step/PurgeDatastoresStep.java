@@ -19,8 +19,12 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import org.sonar.api.config.Configuration;
+import org.sonar.ce.queue.CeQueue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.DbIdsRepository;
@@ -30,6 +34,7 @@ import org.sonar.server.computation.task.projectanalysis.component.Configuration
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
+import org.sonar.server.computation.dbcleaner.ProjectPurgeTaskProcessor;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
@@ -39,21 +44,31 @@ import static org.sonar.server.computation.task.projectanalysis.component.Crawle
 
 public class PurgeDatastoresStep implements ComputationStep {
 
+  /**
+   * When enabled, only the disabled components are purged by the analysis. The history of the project is purged
+   * by a {@link CeTaskTypes#PROJECT_PURGE} task.
+   */
+  static final String PROPERTY_OUT_OF_BAND = "sonar.ce.purge.outOfBand";
+
   private final ProjectCleaner projectCleaner;
   private final DbClient dbClient;
   private final DbIdsRepository dbIdsRepository;
   private final TreeRootHolder treeRootHolder;
   private final ConfigurationRepository configRepository;
   private final DisabledComponentsHolder disabledComponentsHolder;
+  private final CeQueue ceQueue;
+  private final boolean outOfBand;
 
   public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder,
-    ConfigurationRepository configRepository, DisabledComponentsHolder disabledComponentsHolder) {
+    ConfigurationRepository configRepository, DisabledComponentsHolder disabledComponentsHolder, CeQueue ceQueue, Configuration config) {
     this.projectCleaner = projectCleaner;
     this.dbClient = dbClient;
     this.dbIdsRepository = dbIdsRepository;
     this.treeRootHolder = treeRootHolder;
     this.configRepository = configRepository;
     this.disabledComponentsHolder = disabledComponentsHolder;
+    this.ceQueue = ceQueue;
+    this.outOfBand = config.getBoolean(PROPERTY_OUT_OF_BAND).orElse(false);
   }
 
   @Override
@@ -75,8 +90,22 @@ public class PurgeDatastoresStep implements ComputationStep {
   private void execute(Component root) {
     try (DbSession dbSession = dbClient.openSession(true)) {
       IdUuidPair idUuidPair = new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid());
-      projectCleaner.purge(dbSession, idUuidPair, configRepository.getConfiguration(), disabledComponentsHolder.getUuids());
-      dbSession.commit();
+      if (outOfBand) {
+        projectCleaner.purgeDisabledComponents(dbSession, idUuidPair, configRepository.getConfiguration(), disabledComponentsHolder.getUuids());
+        dbSession.commit();
+        submitPurgeIfNotPending(dbSession, root.getUuid());
+      } else {
+        projectCleaner.purge(dbSession, idUuidPair, configRepository.getConfiguration(), disabledComponentsHolder.getUuids());
+        dbSession.commit();
+      }
+    }
+  }
+
+  private void submitPurgeIfNotPending(DbSession dbSession, String rootUuid) {
+    boolean pending = dbClient.ceQueueDao().selectByComponentUuid(dbSession, rootUuid).stream()
+      .anyMatch(task -> CeTaskTypes.PROJECT_PURGE.equals(task.getTaskType()) && task.getStatus() == CeQueueDto.Status.PENDING);
+    if (!pending) {
+      ProjectPurgeTaskProcessor.submit(ceQueue, rootUuid);
     }
   }
 
@@ -31,6 +31,7 @@ public final class ComputationStepExecutor {
   private final ComputationSteps steps;
   @CheckForNull
   private final Listener listener;
+  private final ComputationStepMetric[] metrics;
 
   /**
    * Used when no {@link ComputationStepExecutor.Listener} is available in pico
@@ -40,9 +41,17 @@ public final class ComputationStepExecutor {
     this(steps, null);
   }
 
+  /**
+   * Used when no {@link ComputationStepMetric} is available in pico container.
+   */
   public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener) {
+    this(steps, listener, new ComputationStepMetric[0]);
+  }
+
+  public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener, ComputationStepMetric[] metrics) {
     this.steps = steps;
     this.listener = listener;
+    this.metrics = metrics;
   }
 
   public void execute() {
@@ -59,13 +68,27 @@ public final class ComputationStepExecutor {
   }
 
   private void executeSteps(Profiler stepProfiler) {
+    long[] valuesBeforeStep = new long[metrics.length];
     for (ComputationStep step : steps.instances()) {
+      for (int i = 0; i < metrics.length; i++) {
+        valuesBeforeStep[i] = metrics[i].getValue();
+      }
       stepProfiler.start();
       step.execute();
+      addMetricsToContext(stepProfiler, valuesBeforeStep);
       stepProfiler.stopDebug(step.getDescription());
     }
   }
 
+  private void addMetricsToContext(Profiler stepProfiler, long[] valuesBeforeStep) {
+    for (int i = 0; i < metrics.length; i++) {
+      long delta = metrics[i].getValue() - valuesBeforeStep[i];
+      if (delta > 0) {
+        stepProfiler.addContext(metrics[i].getKey(), delta);
+      }
+    }
+  }
+
   private void executeListener(boolean allStepsExecuted) {
     try {
       listener.finished(allStepsExecuted);
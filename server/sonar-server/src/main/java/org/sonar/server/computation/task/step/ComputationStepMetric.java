@@ -0,0 +1,39 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+/**
+ * A cumulative counter sampled by {@link ComputationStepExecutor} before and after each {@link ComputationStep}. The
+ * part of the counter attributable to a step is logged along with the duration of this step.
+ * <p>
+ * Implementations must be safe to read from the thread running the steps while being updated by other threads.
+ * </p>
+ */
+public interface ComputationStepMetric {
+  /**
+   * Key under which the value is added to the log of each step, for example {@code "reportBytesRead"}.
+   */
+  String getKey();
+
+  /**
+   * Current value of the counter, never decreasing during the execution of the steps.
+   */
+  long getValue();
+}
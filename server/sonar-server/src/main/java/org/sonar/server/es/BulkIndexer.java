@@ -21,10 +21,14 @@ package org.sonar.server.es;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -56,7 +60,8 @@ import static java.lang.String.format;
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than 1Mb, or than an adaptive size in
+ *   {@link Size#CONCURRENT} mode</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  * </ul>
  */
@@ -70,10 +75,19 @@ public class BulkIndexer {
 
   private final EsClient client;
   private final IndexType indexType;
+  @CheckForNull
   private final BulkProcessor bulkProcessor;
+  @CheckForNull
+  private final ConcurrentBulkProcessor concurrentBulkProcessor;
+  /**
+   * Responses of the bulk requests executed by {@link #concurrentBulkProcessor}, not yet notified to
+   * {@link #indexingListener}
+   */
+  private final Queue<List<BulkItemResponse>> completedItems = new ConcurrentLinkedQueue<>();
   private final IndexingResult result = new IndexingResult();
   private final IndexingListener indexingListener;
   private final SizeHandler sizeHandler;
+  private final BulkIndexingMetrics.IndexMetrics metrics;
 
   public BulkIndexer(EsClient client, IndexType indexType, Size size) {
     this(client, indexType, size, IndexingListener.NOOP);
@@ -84,13 +98,20 @@ public class BulkIndexer {
     this.indexType = indexType;
     this.sizeHandler = size.createHandler(Runtime2.INSTANCE);
     this.indexingListener = indexingListener;
-    BulkProcessorListener bulkProcessorListener = new BulkProcessorListener();
-    this.bulkProcessor = BulkProcessor.builder(client.nativeClient(), bulkProcessorListener)
-      .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
-      .setBulkSize(FLUSH_BYTE_SIZE)
-      .setBulkActions(FLUSH_ACTIONS)
-      .setConcurrentRequests(sizeHandler.getConcurrentRequests())
-      .build();
+    this.metrics = client.getBulkIndexingMetrics().forIndex(indexType.getIndex());
+    if (size == Size.CONCURRENT) {
+      this.bulkProcessor = null;
+      this.concurrentBulkProcessor = new ConcurrentBulkProcessor(client.nativeClient(), indexType.getIndex(), sizeHandler.getConcurrentRequests(),
+        new ConcurrentBulkProcessorListener(), metrics, BackoffPolicy.exponentialBackoff());
+    } else {
+      this.bulkProcessor = BulkProcessor.builder(client.nativeClient(), new BulkProcessorListener())
+        .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
+        .setBulkSize(FLUSH_BYTE_SIZE)
+        .setBulkActions(FLUSH_ACTIONS)
+        .setConcurrentRequests(sizeHandler.getConcurrentRequests())
+        .build();
+      this.concurrentBulkProcessor = null;
+    }
   }
 
   public IndexType getIndexType() {
@@ -107,7 +128,12 @@ public class BulkIndexer {
    */
   public IndexingResult stop() {
     try {
-      bulkProcessor.awaitClose(1, TimeUnit.MINUTES);
+      if (concurrentBulkProcessor != null) {
+        concurrentBulkProcessor.awaitClose(1, TimeUnit.MINUTES);
+        notifyCompletedItems();
+      } else {
+        bulkProcessor.awaitClose(1, TimeUnit.MINUTES);
+      }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new IllegalStateException("Elasticsearch bulk requests still being executed after 1 minute", e);
@@ -119,18 +145,21 @@ public class BulkIndexer {
   }
 
   public void add(IndexRequest request) {
-    result.incrementRequests();
-    bulkProcessor.add(request);
+    add((DocWriteRequest) request);
   }
 
   public void add(DeleteRequest request) {
-    result.incrementRequests();
-    bulkProcessor.add(request);
+    add((DocWriteRequest) request);
   }
 
   public void add(DocWriteRequest request) {
     result.incrementRequests();
-    bulkProcessor.add(request);
+    if (concurrentBulkProcessor != null) {
+      concurrentBulkProcessor.add(request);
+      notifyCompletedItems();
+    } else {
+      bulkProcessor.add(request);
+    }
   }
 
   public void addDeletion(SearchRequestBuilder searchRequest) {
@@ -189,6 +218,30 @@ public class BulkIndexer {
     return bulk.stop();
   }
 
+  /**
+   * Notifies the listener, from the thread feeding this indexer, of the responses received by
+   * {@link #concurrentBulkProcessor}
+   */
+  private void notifyCompletedItems() {
+    List<BulkItemResponse> items;
+    while ((items = completedItems.poll()) != null) {
+      onBulkItems(items);
+    }
+  }
+
+  private void onBulkItems(Iterable<BulkItemResponse> items) {
+    List<DocId> successDocIds = new ArrayList<>();
+    for (BulkItemResponse item : items) {
+      if (item.isFailed()) {
+        LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+      } else {
+        result.incrementSuccess();
+        successDocIds.add(new DocId(item.getIndex(), item.getType(), item.getId()));
+      }
+    }
+    indexingListener.onSuccess(successDocIds);
+  }
+
   private final class BulkProcessorListener implements Listener {
     @Override
     public void beforeBulk(long executionId, BulkRequest request) {
@@ -197,24 +250,31 @@ public class BulkIndexer {
 
     @Override
     public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
-      List<DocId> successDocIds = new ArrayList<>();
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
-        } else {
-          result.incrementSuccess();
-          successDocIds.add(new DocId(item.getIndex(), item.getType(), item.getId()));
-        }
-      }
-      indexingListener.onSuccess(successDocIds);
+      long failures = Arrays.stream(response.getItems()).filter(BulkItemResponse::isFailed).count();
+      metrics.onBulk(response.getTookInMillis(), response.getItems().length - failures, failures);
+      onBulkItems(Arrays.asList(response.getItems()));
     }
 
     @Override
     public void afterBulk(long executionId, BulkRequest req, Throwable e) {
+      metrics.onBulk(0L, 0L, req.numberOfActions());
       LOGGER.error("Fail to execute bulk index request: " + req, e);
     }
   }
 
+  private final class ConcurrentBulkProcessorListener implements ConcurrentBulkProcessor.Listener {
+    @Override
+    public void afterBulk(BulkRequest request, List<BulkItemResponse> items) {
+      completedItems.add(items);
+    }
+
+    @Override
+    public void afterBulk(BulkRequest request, Throwable e) {
+      metrics.onBulk(0L, 0L, request.numberOfActions());
+      LOGGER.error("Fail to execute bulk index request: " + request, e);
+    }
+  }
+
   public enum Size {
     /** Use this size for a limited number of documents. */
     REGULAR {
@@ -234,6 +294,19 @@ public class BulkIndexer {
       SizeHandler createHandler(Runtime2 runtime2) {
         return new LargeSizeHandler(runtime2);
       }
+    },
+
+    /**
+     * Bulk requests are executed by a bounded pool of threads while the caller goes on adding requests, and their size
+     * is adapted to the response times of Elasticsearch. The caller is blocked when too many bulk requests are
+     * pending. Use this size for documents read from DB faster than they are indexed, for example after an analysis.
+     * Index settings are not changed.
+     */
+    CONCURRENT {
+      @Override
+      SizeHandler createHandler(Runtime2 runtime2) {
+        return new ConcurrentSizeHandler(runtime2);
+      }
     };
 
     abstract SizeHandler createHandler(Runtime2 runtime2);
@@ -266,6 +339,20 @@ public class BulkIndexer {
     }
   }
 
+  static class ConcurrentSizeHandler extends SizeHandler {
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private final Runtime2 runtime2;
+
+    ConcurrentSizeHandler(Runtime2 runtime2) {
+      this.runtime2 = runtime2;
+    }
+
+    @Override
+    int getConcurrentRequests() {
+      return Math.max(2, Math.min(MAX_CONCURRENT_REQUESTS, runtime2.getCores() / 2));
+    }
+  }
+
   static class LargeSizeHandler extends SizeHandler {
 
     private final Map<String, Object> initialSettings = new HashMap<>();
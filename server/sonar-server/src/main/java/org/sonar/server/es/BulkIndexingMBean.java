@@ -0,0 +1,53 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+/**
+ * Throughput of the bulk requests sent to an index, exported in JMX bean
+ * {@link #OBJECT_NAME_PREFIX}&lt;index&gt;
+ */
+public interface BulkIndexingMBean {
+
+  String OBJECT_NAME_PREFIX = "SonarQube:name=ElasticsearchBulkIndexing,index=";
+
+  /**
+   * Number of bulk requests sent, including the retries of rejected requests
+   */
+  long getBulkRequests();
+
+  /**
+   * Number of bulk requests, or of parts of bulk requests, rejected by Elasticsearch because its queues were full
+   */
+  long getRejectedBulkRequests();
+
+  long getIndexedDocuments();
+
+  long getFailedDocuments();
+
+  /**
+   * Cumulated time spent by Elasticsearch to process the bulk requests
+   */
+  long getBulkTimeMillis();
+
+  /**
+   * Number of documents successfully indexed per second of {@link #getBulkTimeMillis()}
+   */
+  double getDocumentsPerSecond();
+}
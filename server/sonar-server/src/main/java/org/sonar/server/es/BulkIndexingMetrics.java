@@ -0,0 +1,127 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+
+/**
+ * Metrics of the bulk requests executed by {@link BulkIndexer}, by index. Metrics of each index are exported as a
+ * {@link BulkIndexingMBean} once this component is started.
+ */
+public class BulkIndexingMetrics implements Startable {
+
+  private final ConcurrentMap<String, IndexMetrics> metricsByIndex = new ConcurrentHashMap<>();
+  private boolean exported = false;
+
+  IndexMetrics forIndex(String index) {
+    IndexMetrics metrics = metricsByIndex.get(index);
+    if (metrics == null) {
+      metrics = createForIndex(index);
+    }
+    return metrics;
+  }
+
+  private synchronized IndexMetrics createForIndex(String index) {
+    return metricsByIndex.computeIfAbsent(index, i -> {
+      IndexMetrics metrics = new IndexMetrics(i);
+      if (exported) {
+        Jmx.register(metrics.getObjectName(), metrics);
+      }
+      return metrics;
+    });
+  }
+
+  @Override
+  public synchronized void start() {
+    metricsByIndex.values().forEach(metrics -> Jmx.register(metrics.getObjectName(), metrics));
+    exported = true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (exported) {
+      metricsByIndex.values().forEach(metrics -> Jmx.unregister(metrics.getObjectName()));
+      exported = false;
+    }
+  }
+
+  static class IndexMetrics implements BulkIndexingMBean {
+    private final String index;
+    private final LongAdder bulkRequests = new LongAdder();
+    private final LongAdder rejectedBulkRequests = new LongAdder();
+    private final LongAdder indexedDocuments = new LongAdder();
+    private final LongAdder failedDocuments = new LongAdder();
+    private final LongAdder bulkTimeMillis = new LongAdder();
+
+    private IndexMetrics(String index) {
+      this.index = index;
+    }
+
+    String getObjectName() {
+      return OBJECT_NAME_PREFIX + index;
+    }
+
+    void onBulk(long tookMillis, long successes, long failures) {
+      bulkRequests.increment();
+      bulkTimeMillis.add(tookMillis);
+      indexedDocuments.add(successes);
+      failedDocuments.add(failures);
+    }
+
+    void onRejection() {
+      rejectedBulkRequests.increment();
+    }
+
+    @Override
+    public long getBulkRequests() {
+      return bulkRequests.sum();
+    }
+
+    @Override
+    public long getRejectedBulkRequests() {
+      return rejectedBulkRequests.sum();
+    }
+
+    @Override
+    public long getIndexedDocuments() {
+      return indexedDocuments.sum();
+    }
+
+    @Override
+    public long getFailedDocuments() {
+      return failedDocuments.sum();
+    }
+
+    @Override
+    public long getBulkTimeMillis() {
+      return bulkTimeMillis.sum();
+    }
+
+    @Override
+    public double getDocumentsPerSecond() {
+      long millis = getBulkTimeMillis();
+      return millis == 0 ? 0.0 : (1000.0 * getIndexedDocuments() / millis);
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * Sends bulk requests to Elasticsearch from a pool of threads:
+ * <ul>
+ *   <li>at most {@code concurrentRequests} bulk requests are executed at the same time, and as many are waiting
+ *   for a thread. When this limit is reached, {@link #add(DocWriteRequest)} blocks until a request completes.</li>
+ *   <li>the size of bulk requests is decreased when Elasticsearch is slow to respond or rejects requests, and is
+ *   increased while it responds quickly</li>
+ *   <li>requests rejected because Elasticsearch queues are full are retried with an exponential backoff</li>
+ * </ul>
+ * Must be fed by a single thread.
+ */
+class ConcurrentBulkProcessor {
+
+  @VisibleForTesting
+  static final long MIN_BULK_BYTES = 256L * 1024;
+  @VisibleForTesting
+  static final long INITIAL_BULK_BYTES = 1024L * 1024;
+  @VisibleForTesting
+  static final long MAX_BULK_BYTES = 16L * 1024 * 1024;
+  private static final long BULK_BYTES_INCREMENT = 256L * 1024;
+  /**
+   * Bulk requests taking more time are considered as a sign of an overloaded cluster
+   */
+  @VisibleForTesting
+  static final long TARGET_LATENCY_MS = 2_000L;
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+  interface Listener {
+    /**
+     * Called by the thread which executed the bulk request, once per response. Items rejected and retried later are
+     * not part of the response.
+     */
+    void afterBulk(BulkRequest request, List<BulkItemResponse> items);
+
+    void afterBulk(BulkRequest request, Throwable failure);
+  }
+
+  private final Client client;
+  private final Listener listener;
+  private final BulkIndexingMetrics.IndexMetrics metrics;
+  private final BackoffPolicy backoffPolicy;
+  private final ThreadPoolExecutor executor;
+  private final Semaphore pendingRequests;
+
+  private BulkRequest bulkRequest = new BulkRequest();
+  private volatile long bulkBytes = INITIAL_BULK_BYTES;
+
+  ConcurrentBulkProcessor(Client client, String index, int concurrentRequests, Listener listener, BulkIndexingMetrics.IndexMetrics metrics,
+    BackoffPolicy backoffPolicy) {
+    this.client = client;
+    this.listener = listener;
+    this.metrics = metrics;
+    this.backoffPolicy = backoffPolicy;
+    this.executor = new ThreadPoolExecutor(concurrentRequests, concurrentRequests, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat("BulkIndexer[" + index + "]-%d").setDaemon(true).build());
+    // idle threads of a processor which is never closed, for example because indexing failed, must not leak
+    this.executor.allowCoreThreadTimeOut(true);
+    // requests being executed plus requests waiting for a thread
+    this.pendingRequests = new Semaphore(2 * concurrentRequests);
+  }
+
+  void add(DocWriteRequest request) {
+    bulkRequest.add(request);
+    if (bulkRequest.estimatedSizeInBytes() >= bulkBytes) {
+      flush();
+    }
+  }
+
+  @VisibleForTesting
+  long getBulkBytes() {
+    return bulkBytes;
+  }
+
+  /**
+   * Sends the pending requests and waits for all the bulk requests to complete. The pool of threads is shut down
+   * even if the pending requests can not be sent.
+   *
+   * @return {@code false} if some bulk requests are still being executed after the timeout
+   */
+  boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+    try {
+      flush();
+    } finally {
+      executor.shutdown();
+    }
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  @VisibleForTesting
+  boolean isClosed() {
+    return executor.isShutdown();
+  }
+
+  private void flush() {
+    if (bulkRequest.numberOfActions() == 0) {
+      return;
+    }
+    BulkRequest request = bulkRequest;
+    bulkRequest = new BulkRequest();
+    try {
+      pendingRequests.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for Elasticsearch bulk requests to complete", e);
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          execute(request);
+        } finally {
+          pendingRequests.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      pendingRequests.release();
+      throw e;
+    }
+  }
+
+  private void execute(BulkRequest request) {
+    Iterator<TimeValue> backoff = backoffPolicy.iterator();
+    BulkRequest toSend = request;
+    while (true) {
+      long start = System.currentTimeMillis();
+      BulkResponse response;
+      try {
+        response = client.bulk(toSend).actionGet();
+      } catch (Exception e) {
+        if (isRejection(e) && backoff.hasNext()) {
+          metrics.onRejection();
+          adaptBulkBytes(System.currentTimeMillis() - start, true);
+          sleep(backoff.next());
+          continue;
+        }
+        listener.afterBulk(request, e);
+        return;
+      }
+
+      BulkRequest rejected = new BulkRequest();
+      List<BulkItemResponse> items = new ArrayList<>(response.getItems().length);
+      boolean retry = backoff.hasNext();
+      long failures = 0;
+      for (BulkItemResponse item : response.getItems()) {
+        if (retry && item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+          rejected.add(toSend.requests().get(item.getItemId()));
+        } else {
+          items.add(item);
+          failures += item.isFailed() ? 1 : 0;
+        }
+      }
+      metrics.onBulk(response.getTookInMillis(), items.size() - failures, failures);
+      adaptBulkBytes(response.getTookInMillis(), rejected.numberOfActions() > 0);
+      listener.afterBulk(request, items);
+
+      if (rejected.numberOfActions() == 0) {
+        return;
+      }
+      metrics.onRejection();
+      sleep(backoff.next());
+      toSend = rejected;
+    }
+  }
+
+  private static boolean isRejection(Exception e) {
+    return ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+  }
+
+  /**
+   * Additive increase, multiplicative decrease
+   */
+  private synchronized void adaptBulkBytes(long tookMillis, boolean rejected) {
+    long bytes = bulkBytes;
+    if (rejected) {
+      bytes /= 2;
+    } else if (tookMillis > TARGET_LATENCY_MS) {
+      bytes = bytes * 3 / 4;
+    } else if (tookMillis < TARGET_LATENCY_MS / 2) {
+      bytes += BULK_BYTES_INCREMENT;
+    }
+    bulkBytes = Math.max(MIN_BULK_BYTES, Math.min(MAX_BULK_BYTES, bytes));
+  }
+
+  private static void sleep(TimeValue delay) {
+    try {
+      Thread.sleep(delay.millis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while retrying Elasticsearch bulk request", e);
+    }
+  }
+}
@@ -77,13 +77,20 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final BulkIndexingMetrics bulkIndexingMetrics;
 
   public EsClient(Client nativeClient) {
+    this(nativeClient, new BulkIndexingMetrics());
+  }
+
+  public EsClient(Client nativeClient, BulkIndexingMetrics bulkIndexingMetrics) {
     this.nativeClient = requireNonNull(nativeClient);
+    this.bulkIndexingMetrics = bulkIndexingMetrics;
   }
 
   public EsClient() {
     this.nativeClient = null;
+    this.bulkIndexingMetrics = new BulkIndexingMetrics();
   }
 
   public RefreshRequestBuilder prepareRefresh(String... indices) {
@@ -196,6 +203,10 @@ public class EsClient implements Closeable {
     return nativeClient;
   }
 
+  BulkIndexingMetrics getBulkIndexingMetrics() {
+    return bulkIndexingMetrics;
+  }
+
   /**
    * Checks whether there is any document in any mentioned type.
    */
@@ -47,7 +47,7 @@ public class EsClientProvider extends ProviderAdapter {
 
   private EsClient cache;
 
-  public EsClient provide(Configuration config) {
+  public EsClient provide(Configuration config, BulkIndexingMetrics bulkIndexingMetrics) {
     if (cache == null) {
       org.elasticsearch.common.settings.Settings.Builder esSettings = org.elasticsearch.common.settings.Settings.builder();
 
@@ -69,7 +69,7 @@ public class EsClientProvider extends ProviderAdapter {
         LOGGER.info("Connected to local Elasticsearch: [{}]", displayedAddresses(nativeClient));
       }
 
-      cache = new EsClient(nativeClient);
+      cache = new EsClient(nativeClient, bulkIndexingMetrics);
     }
     return cache;
   }
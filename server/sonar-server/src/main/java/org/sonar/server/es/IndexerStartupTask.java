@@ -19,7 +19,16 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
 import org.elasticsearch.client.Client;
@@ -30,11 +39,19 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.metadata.MetadataIndex;
 
+import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
+import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toSet;
 
 public class IndexerStartupTask {
 
+  /**
+   * Number of threads used to index on startup. Indexers of different indices are executed concurrently when greater
+   * than 1. Startup indexers may also use it to read DB concurrently.
+   */
+  public static final String PROPERTY_THREADS = "sonar.internal.es.startupIndexing.threads";
+
   private static final Logger LOG = Loggers.get(IndexerStartupTask.class);
 
   private final EsClient esClient;
@@ -51,9 +68,53 @@ public class IndexerStartupTask {
 
   public void execute() {
     if (indexesAreEnabled()) {
-      stream(indexers)
-        .forEach(this::indexUninitializedTypes);
+      int threads = config.getInt(PROPERTY_THREADS).orElse(1);
+      if (threads > 1) {
+        executeInParallel(threads);
+      } else {
+        stream(indexers)
+          .forEach(this::indexUninitializedTypes);
+      }
+    }
+  }
+
+  /**
+   * Indexers sharing an index are executed sequentially, as large indexing temporarily changes the settings of the
+   * index.
+   */
+  private void executeInParallel(int threads) {
+    List<List<StartupIndexer>> groups = groupBySharedIndices(indexers);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, groups.size())),
+      new ThreadFactoryBuilder().setNameFormat("IndexerStartup-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = groups.stream()
+        .map(group -> executor.submit(() -> group.forEach(this::indexUninitializedTypes)))
+        .collect(Collectors.toList());
+      futures.forEach(Futures::getUnchecked);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static List<List<StartupIndexer>> groupBySharedIndices(StartupIndexer... indexers) {
+    List<List<StartupIndexer>> groups = new ArrayList<>();
+    List<Set<String>> indicesOfGroups = new ArrayList<>();
+    List<StartupIndexer> registrationOrder = asList(indexers);
+    for (StartupIndexer indexer : indexers) {
+      List<StartupIndexer> group = new ArrayList<>();
+      group.add(indexer);
+      Set<String> indices = indexer.getIndexTypes().stream().map(IndexType::getIndex).collect(Collectors.toCollection(HashSet::new));
+      for (int i = groups.size() - 1; i >= 0; i--) {
+        if (!Collections.disjoint(indicesOfGroups.get(i), indices)) {
+          group.addAll(groups.remove(i));
+          indices.addAll(indicesOfGroups.remove(i));
+        }
+      }
+      group.sort(comparing(registrationOrder::indexOf));
+      groups.add(group);
+      indicesOfGroups.add(indices);
     }
+    return groups;
   }
 
   private boolean indexesAreEnabled() {
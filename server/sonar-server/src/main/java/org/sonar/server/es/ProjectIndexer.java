@@ -51,5 +51,17 @@ public interface ProjectIndexer extends ResilientIndexer {
    */
   void indexOnAnalysis(String branchUuid);
 
+  /**
+   * This method is called instead of {@link #indexOnAnalysis(String)} when the analysis changed only
+   * the specified issues of the branch. Indexers which documents do not contain issues index the
+   * whole branch.
+   *
+   * @param branchUuid non-null UUID of branch in table "projects"
+   * @param changedIssueKeys keys of the issues inserted or updated by the analysis
+   */
+  default void indexOnAnalysis(String branchUuid, Collection<String> changedIssueKeys) {
+    indexOnAnalysis(branchUuid);
+  }
+
   Collection<EsQueueDto> prepareForRecovery(DbSession dbSession, Collection<String> projectUuids, ProjectIndexer.Cause cause);
 }
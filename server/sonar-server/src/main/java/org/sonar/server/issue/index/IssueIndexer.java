@@ -23,24 +23,33 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
 import org.sonar.db.es.EsQueueDto;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.IndexerStartupTask;
 import org.sonar.server.es.IndexingListener;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToManyResilientIndexingListener;
@@ -50,6 +59,7 @@ import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.sonar.server.es.DefaultIndexSettings.REFRESH_NONE;
@@ -73,11 +83,21 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
   private final EsClient esClient;
   private final DbClient dbClient;
   private final IssueIteratorFactory issueIteratorFactory;
+  private final int startupThreads;
 
   public IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory) {
+    this(esClient, dbClient, issueIteratorFactory, 1);
+  }
+
+  public IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory, Configuration config) {
+    this(esClient, dbClient, issueIteratorFactory, config.getInt(IndexerStartupTask.PROPERTY_THREADS).orElse(1));
+  }
+
+  private IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory, int startupThreads) {
     this.esClient = esClient;
     this.dbClient = dbClient;
     this.issueIteratorFactory = issueIteratorFactory;
+    this.startupThreads = startupThreads;
   }
 
   @Override
@@ -92,15 +112,90 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
 
   @Override
   public void indexOnStartup(Set<IndexType> uninitializedIndexTypes) {
-    try (IssueIterator issues = issueIteratorFactory.createForAll()) {
-      doIndex(issues, Size.LARGE, IndexingListener.NOOP);
+    if (startupThreads > 1) {
+      indexOnStartupByProject();
+    } else {
+      try (IssueIterator issues = issueIteratorFactory.createForAll()) {
+        doIndex(issues, Size.LARGE, IndexingListener.NOOP);
+      }
+    }
+  }
+
+  /**
+   * Issues are read with one DB cursor per project, from a pool of threads, and are all sent to the same bulk indexer.
+   */
+  private void indexOnStartupByProject() {
+    List<String> projectUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      // branches are included
+      projectUuids = dbClient.componentDao().selectComponentsByQualifiers(dbSession, singleton(Qualifiers.PROJECT)).stream()
+        .map(ComponentDto::uuid)
+        .collect(MoreCollectors.toList());
+    }
+
+    BulkIndexer bulk = createBulkIndexer(Size.LARGE, IndexingListener.NOOP);
+    bulk.start();
+    ExecutorService executor = Executors.newFixedThreadPool(startupThreads,
+      new ThreadFactoryBuilder().setNameFormat("IssueIndexer-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = projectUuids.stream()
+        .map(projectUuid -> executor.submit(() -> indexProjectOnStartup(bulk, projectUuid)))
+        .collect(MoreCollectors.toList(projectUuids.size()));
+      futures.forEach(Futures::getUnchecked);
+    } finally {
+      executor.shutdownNow();
+    }
+    bulk.stop();
+  }
+
+  private void indexProjectOnStartup(BulkIndexer bulk, String projectUuid) {
+    try (IssueIterator issues = issueIteratorFactory.createForProject(projectUuid)) {
+      while (issues.hasNext()) {
+        IndexRequest request = newIndexRequest(issues.next());
+        synchronized (bulk) {
+          bulk.add(request);
+        }
+      }
     }
   }
 
   @Override
   public void indexOnAnalysis(String branchUuid) {
     try (IssueIterator issues = issueIteratorFactory.createForProject(branchUuid)) {
-      doIndex(issues, Size.REGULAR, IndexingListener.NOOP);
+      doIndex(issues, Size.CONCURRENT, IndexingListener.NOOP);
+    }
+  }
+
+  /**
+   * Indexes only the specified issues of a branch, which have been inserted or updated by an analysis. The issues
+   * which do not exist anymore in DB are deleted from index.
+   * <p>
+   * If indexing fails, then all the issues of the branch are indexed again later by the recovery daemon.
+   */
+  @Override
+  public void indexOnAnalysis(String branchUuid, Collection<String> issueKeys) {
+    if (issueKeys.isEmpty()) {
+      return;
+    }
+    Set<String> remainingKeys = new HashSet<>(issueKeys);
+    BulkIndexer bulkIndexer = createBulkIndexer(Size.CONCURRENT, IndexingListener.NOOP);
+    bulkIndexer.start();
+    try (IssueIterator issues = issueIteratorFactory.createForIssueKeys(issueKeys)) {
+      while (issues.hasNext()) {
+        IssueDoc issue = issues.next();
+        bulkIndexer.add(newIndexRequest(issue));
+        remainingKeys.remove(issue.key());
+      }
+    }
+    remainingKeys.forEach(issueKey -> bulkIndexer.addDeletion(INDEX_TYPE_ISSUE, issueKey, branchUuid));
+    IndexingResult result = bulkIndexer.stop();
+
+    if (!result.isSuccess()) {
+      LOGGER.warn("Fail to index {} issues of branch {}. All its issues will be indexed again later.", result.getFailures(), branchUuid);
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        dbClient.esQueueDao().insert(dbSession, createQueueDto(branchUuid, ID_TYPE_PROJECT_UUID, branchUuid));
+        dbSession.commit();
+      }
     }
   }
 
@@ -173,7 +268,7 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
       return new IndexingResult();
     }
     IndexingListener listener = new OneToOneResilientIndexingListener(dbClient, dbSession, itemsByIssueKey.values());
-    BulkIndexer bulkIndexer = createBulkIndexer(Size.REGULAR, listener);
+    BulkIndexer bulkIndexer = createBulkIndexer(Size.CONCURRENT, listener);
     bulkIndexer.start();
 
     try (IssueIterator issues = issueIteratorFactory.createForIssueKeys(itemsByIssueKey.keySet())) {
@@ -199,7 +294,7 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
 
     // one project, referenced by es_queue.doc_id = many issues
     IndexingListener listener = new OneToManyResilientIndexingListener(dbClient, dbSession, itemsByProjectUuid.values());
-    BulkIndexer bulkIndexer = createBulkIndexer(Size.REGULAR, listener);
+    BulkIndexer bulkIndexer = createBulkIndexer(Size.CONCURRENT, listener);
     bulkIndexer.start();
 
     for (String projectUuid : itemsByProjectUuid.keySet()) {
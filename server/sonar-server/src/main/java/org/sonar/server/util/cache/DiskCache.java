@@ -19,47 +19,58 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import org.apache.commons.io.FileUtils;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p>
+ * Objects are written by a {@link Codec} as length-prefixed records. Each {@link DiskAppender} writes a new section
+ * of records at the end of the file, which is optionally compressed by blocks with LZ4.
+ * By default objects are written with Java serialization.
  */
 public class DiskCache<O extends Serializable> {
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   private final File file;
   private final System2 system2;
+  private final Codec<O> codec;
+  private final boolean compressed;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, new JavaSerializationCodec<>(), false);
+  }
+
+  public DiskCache(File file, System2 system2, Codec<O> codec, boolean compressed) {
     this.system2 = system2;
     this.file = file;
-    OutputStream output = null;
-    boolean threw = true;
+    this.codec = codec;
+    this.compressed = compressed;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
-      output.flush();
-      threw = false;
+      // create or truncate the file
+      FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING).close();
     } catch (IOException e) {
       throw new IllegalStateException("Fail to write into file: " + file, e);
-    } finally {
-      if (threw) {
-        // do not hide initial exception
-        IOUtils.closeQuietly(output);
-      } else {
-        // raise an exception if can't close
-        system2.close(output);
-      }
     }
   }
 
@@ -69,32 +80,46 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      return new RecordIterator();
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
+  /**
+   * Writes and reads the objects of a {@link DiskCache}.
+   */
+  public interface Codec<O> {
+    void write(O object, DataOutputStream output) throws IOException;
+
+    O read(DataInputStream input) throws IOException;
+  }
+
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
 
     private DiskAppender() {
+      OutputStream out = null;
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        out = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)), BUFFER_SIZE);
+        if (compressed) {
+          out = new LZ4BlockOutputStream(out, BUFFER_SIZE);
+        }
+        this.output = new DataOutputStream(out);
       } catch (IOException e) {
+        IOUtils.closeQuietly(out);
         throw new IllegalStateException("Fail to open file " + file, e);
       }
     }
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        record.reset();
+        codec.write(object, recordOutput);
+        output.writeInt(record.size());
+        record.writeTo(output);
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -106,4 +131,82 @@ public class DiskCache<O extends Serializable> {
       system2.close(output);
     }
   }
+
+  private class RecordIterator extends CloseableIterator<O> {
+    private final InputStream fileInput;
+    private DataInputStream input;
+    private byte[] record = new byte[1024];
+
+    private RecordIterator() throws IOException {
+      this.fileInput = new BufferedInputStream(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ)), BUFFER_SIZE);
+    }
+
+    @Override
+    protected O doNext() {
+      try {
+        int length = readRecordLength();
+        if (length < 0) {
+          return null;
+        }
+        if (length > record.length) {
+          record = new byte[Math.max(length, 2 * record.length)];
+        }
+        input.readFully(record, 0, length);
+        return codec.read(new DataInputStream(new ByteArrayInputStream(record, 0, length)));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    /**
+     * @return length of next record or -1 if end of file is reached
+     */
+    private int readRecordLength() throws IOException {
+      int firstByte = -1;
+      while (firstByte < 0) {
+        if (input == null) {
+          if (!hasMoreSections()) {
+            return -1;
+          }
+          input = new DataInputStream(compressed ? new LZ4BlockInputStream(fileInput) : fileInput);
+        }
+        firstByte = input.read();
+        if (firstByte < 0) {
+          // end of the section written by an appender, next one (if any) has been written by another appender
+          input = null;
+        }
+      }
+      return (firstByte << 24) | (input.readUnsignedByte() << 16) | (input.readUnsignedByte() << 8) | input.readUnsignedByte();
+    }
+
+    private boolean hasMoreSections() throws IOException {
+      fileInput.mark(1);
+      boolean hasMore = fileInput.read() >= 0;
+      fileInput.reset();
+      return hasMore;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(fileInput);
+    }
+  }
+
+  private static class JavaSerializationCodec<O extends Serializable> implements Codec<O> {
+    @Override
+    public void write(O object, DataOutputStream output) throws IOException {
+      ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+      objectOutput.writeObject(object);
+      objectOutput.flush();
+    }
+
+    @Override
+    public O read(DataInputStream input) throws IOException {
+      try {
+        return (O) new ObjectInputStream(input).readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Fail to deserialize object", e);
+      }
+    }
+  }
 }
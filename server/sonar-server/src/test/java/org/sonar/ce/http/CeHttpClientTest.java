@@ -22,6 +22,7 @@ package org.sonar.ce.http;
 import java.io.File;
 import java.io.IOException;
 import java.util.Optional;
+import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okio.Buffer;
@@ -57,7 +58,7 @@ public class CeHttpClientTest {
     ipcSharedDir = temp.newFolder();
     MapSettings settings = new MapSettings();
     settings.setProperty(ProcessEntryPoint.PROPERTY_SHARED_PATH, ipcSharedDir.getAbsolutePath());
-    underTest = new CeHttpClientImpl(settings.asConfig());
+    underTest = new CeHttpClientImpl(settings.asConfig(), new OkHttpClient());
   }
 
   @Test
@@ -158,6 +159,36 @@ public class CeHttpClientTest {
     underTest.refreshCeWorkerCount();
   }
 
+  @Test
+  public void notifyTaskSubmitted_throws_ISE_if_http_error() {
+    server.enqueue(new MockResponse().setResponseCode(500).setBody("blah"));
+    // initialize registration of process
+    setUpWithHttpUrl(ProcessId.COMPUTE_ENGINE);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Failed to call HTTP server of process " + ProcessId.COMPUTE_ENGINE);
+    expectedException.expectCause(hasType(IOException.class)
+      .andMessage(format("Failed to notify Compute Engine of submitted tasks. Code was '500' and response was 'blah' for url " +
+        "'http://%s:%s/taskSubmitted'", server.getHostName(), server.getPort())));
+
+    underTest.notifyTaskSubmitted();
+  }
+
+  @Test
+  public void notifyTaskSubmitted_does_not_fail_when_http_code_is_200() throws InterruptedException {
+    server.enqueue(new MockResponse().setResponseCode(200));
+
+    setUpWithHttpUrl(ProcessId.COMPUTE_ENGINE);
+
+    underTest.notifyTaskSubmitted();
+    assertThat(server.takeRequest().getPath()).isEqualTo("/taskSubmitted");
+  }
+
+  @Test
+  public void notifyTaskSubmitted_does_not_fail_if_process_is_down() {
+    underTest.notifyTaskSubmitted();
+  }
+
   private void setUpWithHttpUrl(ProcessId processId) {
     try (DefaultProcessCommands processCommands = DefaultProcessCommands.secondary(ipcSharedDir, processId.getIpcIndex())) {
       processCommands.setUp();
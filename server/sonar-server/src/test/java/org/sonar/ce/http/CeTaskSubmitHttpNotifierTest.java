@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.ce.queue.CeTask;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class CeTaskSubmitHttpNotifierTest {
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private CeHttpClient ceHttpClient = mock(CeHttpClient.class);
+  private CeTaskSubmitHttpNotifier underTest = new CeTaskSubmitHttpNotifier(ceHttpClient);
+
+  @Before
+  public void setUp() {
+    underTest.start();
+  }
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void onSubmit_notifies_Compute_Engine() {
+    underTest.onSubmit(singletonList(mock(CeTask.class)));
+
+    verify(ceHttpClient, timeout(5_000)).notifyTaskSubmitted();
+  }
+
+  @Test
+  public void onSubmit_does_not_fail_if_Compute_Engine_can_not_be_notified() {
+    logTester.setLevel(LoggerLevel.DEBUG);
+    doThrow(new IllegalStateException("Failed to call HTTP server")).when(ceHttpClient).notifyTaskSubmitted();
+
+    underTest.onSubmit(singletonList(mock(CeTask.class)));
+    underTest.stop();
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG))
+      .containsOnly("Failed to notify Compute Engine of submitted tasks, they will be processed on next poll of the queue");
+  }
+}
@@ -40,8 +40,16 @@ import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class CeQueueImplTest {
 
@@ -127,6 +135,41 @@ public class CeQueueImplTest {
     verifyCeTask(taskSubmit2, tasks.get(1), null);
   }
 
+  @Test
+  public void submit_notifies_listeners_once_task_is_committed() {
+    CeTaskSubmitListener listener = mock(CeTaskSubmitListener.class);
+    doAnswer(invocation -> {
+      assertThat(dbTester.countRowsOfTable("ce_queue")).isEqualTo(1);
+      return null;
+    }).when(listener).onSubmit(anyCollection());
+    underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeTaskSubmitListener[] {listener});
+
+    CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    verify(listener).onSubmit(singleton(task));
+  }
+
+  @Test
+  public void massSubmit_notifies_listeners_once_with_all_tasks() {
+    CeTaskSubmitListener listener = mock(CeTaskSubmitListener.class);
+    underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeTaskSubmitListener[] {listener});
+
+    List<CeTask> tasks = underTest.massSubmit(asList(createTaskSubmit(CeTaskTypes.REPORT, "PROJECT_1", null), createTaskSubmit("some type")));
+
+    verify(listener).onSubmit(tasks);
+    verifyNoMoreInteractions(listener);
+  }
+
+  @Test
+  public void massSubmit_does_not_notify_listeners_when_there_is_no_task() {
+    CeTaskSubmitListener listener = mock(CeTaskSubmitListener.class);
+    underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeTaskSubmitListener[] {listener});
+
+    underTest.massSubmit(emptyList());
+
+    verifyZeroInteractions(listener);
+  }
+
   @Test
   public void cancel_pending() throws Exception {
     CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -34,16 +34,21 @@ import org.sonar.db.purge.PurgeConfiguration;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.purge.PurgeListener;
 import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.db.purge.PurgeSlice;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
 
 import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class ProjectCleanerTest {
 
@@ -104,4 +109,26 @@ public class ProjectCleanerTest {
 
     verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Configuration.class));
   }
+
+  @Test
+  public void purgeDisabledComponents_does_not_purge_history() {
+    underTest.purgeDisabledComponents(mock(DbSession.class), mock(IdUuidPair.class), settings.asConfig(), emptyList());
+
+    verify(dao).purgeDisabledComponents(any(DbSession.class), any(PurgeConfiguration.class), eq(purgeListener));
+    verify(dao, never()).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(periodCleaner, never()).clean(any(DbSession.class), anyString(), any(Configuration.class));
+  }
+
+  @Test
+  public void purgeInBatches_returns_completion_of_purge_dao() {
+    PurgeSlice slice = mock(PurgeSlice.class);
+    when(dao.purgeInBatches(any(DbSession.class), any(PurgeConfiguration.class), anyList(), any(PurgeListener.class), any(PurgeProfiler.class), eq(slice)))
+      .thenReturn(false);
+
+    boolean completed = underTest.purgeInBatches(mock(DbSession.class), new IdUuidPair(1L, "PROJECT"), settings.asConfig(), slice);
+
+    assertThat(completed).isFalse();
+    verify(periodCleaner).selectAnalysesToDelete(any(DbSession.class), eq("PROJECT"), any(Configuration.class));
+    verify(periodCleaner, never()).clean(any(DbSession.class), anyString(), any(Configuration.class));
+  }
 }
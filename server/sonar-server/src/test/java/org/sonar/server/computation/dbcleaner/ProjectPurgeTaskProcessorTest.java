@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import java.io.ByteArrayInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.settings.ProjectConfigurationFactory;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.purge.PurgeProgress;
+import org.sonar.db.purge.PurgeSlice;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class ProjectPurgeTaskProcessorTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private MapSettings settings = new MapSettings();
+  private ProjectCleaner projectCleaner = mock(ProjectCleaner.class);
+  private CeQueue ceQueue = mock(CeQueue.class);
+
+  private ProjectPurgeTaskProcessor underTest = new ProjectPurgeTaskProcessor(db.getDbClient(), projectCleaner,
+    new ProjectConfigurationFactory(settings, db.getDbClient()), ceQueue, settings.asConfig(), System2.INSTANCE);
+
+  @Test
+  public void handles_PROJECT_PURGE_tasks() {
+    assertThat(underTest.getHandledCeTaskTypes()).containsOnly(CeTaskTypes.PROJECT_PURGE);
+  }
+
+  @Test
+  public void purge_project_in_batches() {
+    ComponentDto project = db.components().insertPrivateProject();
+    when(projectCleaner.purgeInBatches(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), any(PurgeSlice.class))).thenReturn(true);
+
+    assertThat(underTest.process(newTask(project.uuid()))).isNull();
+
+    ArgumentCaptor<IdUuidPair> idUuidPair = ArgumentCaptor.forClass(IdUuidPair.class);
+    verify(projectCleaner).purgeInBatches(any(DbSession.class), idUuidPair.capture(), any(Configuration.class), any(PurgeSlice.class));
+    assertThat(idUuidPair.getValue().getId()).isEqualTo(project.getId());
+    assertThat(idUuidPair.getValue().getUuid()).isEqualTo(project.uuid());
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
+  @Test
+  public void submit_a_new_task_when_purge_is_not_complete() {
+    ComponentDto project = db.components().insertPrivateProject();
+    when(projectCleaner.purgeInBatches(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), any(PurgeSlice.class))).thenReturn(false);
+    when(ceQueue.prepareSubmit()).thenReturn(new CeTaskSubmit.Builder("TASK_2"));
+
+    underTest.process(newTask(project.uuid()));
+
+    ArgumentCaptor<CeTaskSubmit> submit = ArgumentCaptor.forClass(CeTaskSubmit.class);
+    verify(ceQueue).submit(submit.capture());
+    assertThat(submit.getValue().getUuid()).isEqualTo("TASK_2");
+    assertThat(submit.getValue().getType()).isEqualTo(CeTaskTypes.PROJECT_PURGE);
+    assertThat(submit.getValue().getComponentUuid()).isEqualTo(project.uuid());
+    assertThat(db.getDbClient().ceTaskInputDao().selectData(db.getSession(), "TASK_2")).isPresent();
+  }
+
+  @Test
+  public void resume_purge_from_progress_stored_by_previous_task() {
+    ComponentDto project = db.components().insertPrivateProject();
+    PurgeProgress progress = PurgeProgress.parse("DELETE_OLD_CLOSED_ISSUES\nISSUE_1\n");
+    db.getDbClient().ceTaskInputDao().insert(db.getSession(), "TASK_1", new ByteArrayInputStream(progress.format().getBytes(UTF_8)));
+    db.commit();
+    when(projectCleaner.purgeInBatches(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), any(PurgeSlice.class))).thenReturn(true);
+
+    underTest.process(newTask(project.uuid()));
+
+    ArgumentCaptor<PurgeSlice> slice = ArgumentCaptor.forClass(PurgeSlice.class);
+    verify(projectCleaner).purgeInBatches(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), slice.capture());
+    assertThat(slice.getValue().getProgress().getStep()).isEqualTo(PurgeProgress.Step.DELETE_OLD_CLOSED_ISSUES);
+    assertThat(slice.getValue().getProgress().getAfterKey()).isEqualTo("ISSUE_1");
+  }
+
+  @Test
+  public void do_nothing_when_project_does_not_exist() {
+    underTest.process(newTask("DELETED"));
+
+    verifyZeroInteractions(projectCleaner, ceQueue);
+  }
+
+  private static CeTask newTask(String componentUuid) {
+    return new CeTask.Builder()
+      .setOrganizationUuid("org1")
+      .setUuid("TASK_1")
+      .setType(CeTaskTypes.PROJECT_PURGE)
+      .setComponentUuid(componentUuid)
+      .build();
+  }
+}
@@ -25,8 +25,11 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 
@@ -53,6 +56,8 @@ public class BatchReportReaderImplTest {
 
   @Rule
   public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   private ScannerReportWriter writer;
   private BatchReportReaderImpl underTest;
@@ -314,4 +319,62 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void bytes_read_are_added_to_metric() {
+    ReportBytesReadMetric metric = new ReportBytesReadMetric();
+    underTest = new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(writer.getFileStructure().root()), metric);
+    writer.writeComponent(COMPONENT);
+
+    underTest.readComponent(COMPONENT_REF);
+    underTest.readComponentIssues(COMPONENT_REF).close();
+
+    assertThat(metric.getKey()).isEqualTo("reportBytesRead");
+    assertThat(metric.getValue()).isEqualTo(writer.getFileStructure().fileFor(FileStructure.Domain.COMPONENT, COMPONENT_REF).length());
+  }
+
+  @Test
+  public void read_entries_straight_from_zip_file() throws IOException {
+    ScannerReport.Metadata metadata = ScannerReport.Metadata.newBuilder().setProjectKey("P1").build();
+    writer.writeMetadata(metadata);
+    writer.writeComponent(COMPONENT);
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log1\nlog2");
+    ReportBytesReadMetric metric = new ReportBytesReadMetric();
+    underTest = new BatchReportReaderImpl(zipReport(), metric);
+
+    assertThat(underTest.readMetadata()).isEqualTo(metadata);
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    assertThat(underTest.readComponentIssues(COMPONENT_REF)).containsExactly(ISSUE);
+    assertThat(underTest.readComponentMeasures(COMPONENT_REF)).isEmpty();
+    assertThat(underTest.readChangesets(COMPONENT_REF)).isNull();
+    assertThat(underTest.readScannerLogs()).containsExactly("log1", "log2");
+    try (CloseableIterator<String> lines = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(lines).containsExactly("1", "2", "3");
+    }
+    assertThat(underTest.readFileSource(COMPONENT_REF + 1)).isEmpty();
+    assertThat(metric.getValue()).isPositive();
+
+    underTest.stop();
+  }
+
+  @Test
+  public void readComponent_throws_ISE_if_entry_does_not_exist_in_zip_file() throws IOException {
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().build());
+    underTest = new BatchReportReaderImpl(zipReport());
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Unable to find report for component #" + COMPONENT_REF);
+
+    underTest.readComponent(COMPONENT_REF);
+  }
+
+  private BatchReportDirectoryHolder zipReport() throws IOException {
+    File zip = tempFolder.newFile("report", ".zip");
+    ZipUtils.zipDir(writer.getFileStructure().root(), zip);
+    MutableBatchReportDirectoryHolder holder = new BatchReportDirectoryHolderImpl();
+    holder.setZipFile(zip);
+    return holder;
+  }
 }
@@ -42,6 +42,7 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
   private List<ScannerReport.ContextProperty> contextProperties = new ArrayList<>();
   private Map<Integer, List<ScannerReport.Measure>> measures = new HashMap<>();
   private Map<Integer, ScannerReport.Changesets> changesets = new HashMap<>();
+  private Map<Integer, ScannerReport.SourceFingerprints> sourceFingerprints = new HashMap<>();
   private Map<Integer, ScannerReport.Component> components = new HashMap<>();
   private Map<Integer, List<ScannerReport.Issue>> issues = new HashMap<>();
   private Map<Integer, List<ScannerReport.Duplication>> duplications = new HashMap<>();
@@ -72,6 +73,7 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     this.scannerLogs = null;
     this.measures.clear();
     this.changesets.clear();
+    this.sourceFingerprints.clear();
     this.components.clear();
     this.issues.clear();
     this.duplications.clear();
@@ -158,6 +160,17 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     return this;
   }
 
+  @Override
+  @CheckForNull
+  public ScannerReport.SourceFingerprints readSourceFingerprints(int fileRef) {
+    return sourceFingerprints.get(fileRef);
+  }
+
+  public BatchReportReaderRule putSourceFingerprints(ScannerReport.SourceFingerprints fingerprints) {
+    this.sourceFingerprints.put(fingerprints.getComponentRef(), fingerprints);
+    return this;
+  }
+
   @Override
   public ScannerReport.Component readComponent(int componentRef) {
     return components.get(componentRef);
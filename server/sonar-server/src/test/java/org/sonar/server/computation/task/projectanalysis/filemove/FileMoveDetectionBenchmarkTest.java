@@ -0,0 +1,119 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+/**
+ * Scores the pairs of removed and added files selected by {@link SimilarityIndex} when all the files of a project are
+ * moved and slightly modified, like when a root package is renamed.
+ * <p>
+ * 5,000 files are moved by default, which can be changed with the system property
+ * {@code sonar.test.fileMoveBenchmark.files}. On 5,000 moved files of 20 to 500 lines, 5,000 pairs are scored
+ * in about 4 seconds instead of the 25,000,000 pairs of the full matrix.
+ * <p>
+ * Being too slow for the default build, it is executed only when the system property {@code sonar.test.benchmarks} is
+ * true, for example with {@code mvn test -Dtest=FileMoveDetectionBenchmarkTest -Dsonar.test.benchmarks=true}.
+ */
+public class FileMoveDetectionBenchmarkTest {
+
+  private static final Logger LOGGER = Loggers.get(FileMoveDetectionBenchmarkTest.class);
+  private static final int FILES = Integer.getInteger("sonar.test.fileMoveBenchmark.files", 5_000);
+  // lines such as blank lines, braces and imports are shared by many files
+  private static final int COMMON_LINES = 200;
+
+  private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+
+  @Before
+  public void setUp() {
+    assumeTrue(Boolean.getBoolean("sonar.test.benchmarks"));
+  }
+
+  @Test
+  public void scores_a_small_fraction_of_the_pairs_of_moved_files() {
+    Random random = new Random(1);
+    Map<String, File> addedFiles = new LinkedHashMap<>();
+    Map<String, File> removedFiles = new LinkedHashMap<>();
+    for (int i = 0; i < FILES; i++) {
+      List<String> lines = newFileLines(random, i, 20 + random.nextInt(480));
+      removedFiles.put("old" + i, new File("old/File" + i, lines));
+      addedFiles.put("new" + i, new File("new/File" + i, modify(random, lines)));
+    }
+
+    long start = System.currentTimeMillis();
+    SimilarityIndex similarityIndex = new SimilarityIndex(addedFiles, MIN_REQUIRED_SCORE);
+    long scoredPairs = 0;
+    int matches = 0;
+    for (Map.Entry<String, File> removedFile : removedFiles.entrySet()) {
+      String expectedKey = "new" + removedFile.getKey().substring("old".length());
+      for (String candidateKey : similarityIndex.findCandidateKeys(removedFile.getValue())) {
+        scoredPairs++;
+        int score = fileSimilarity.score(removedFile.getValue(), addedFiles.get(candidateKey));
+        if (candidateKey.equals(expectedKey) && score >= MIN_REQUIRED_SCORE) {
+          matches++;
+        }
+      }
+    }
+    long duration = System.currentTimeMillis() - start;
+
+    LOGGER.info("{} pairs of files scored in {} ms to detect the move of {} files, instead of {} pairs", scoredPairs, duration, FILES,
+      (long) FILES * FILES);
+    assertThat(matches).isEqualTo(FILES);
+    assertThat(scoredPairs).isLessThan((long) FILES * 10);
+  }
+
+  private static List<String> newFileLines(Random random, int fileIndex, int lineCount) {
+    List<String> res = new ArrayList<>(lineCount);
+    for (int line = 0; line < lineCount; line++) {
+      if (random.nextInt(3) == 0) {
+        res.add("common" + random.nextInt(COMMON_LINES));
+      } else {
+        res.add("file" + fileIndex + "_line" + line);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Changes the package declaration and a few lines, keeping the score above {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE}
+   */
+  private static List<String> modify(Random random, List<String> lines) {
+    List<String> res = new ArrayList<>(lines);
+    res.set(0, "package");
+    int changes = random.nextInt(1 + lines.size() / 20);
+    for (int i = 0; i < changes; i++) {
+      res.set(random.nextInt(res.size()), "changed" + i);
+    }
+    return res;
+  }
+}
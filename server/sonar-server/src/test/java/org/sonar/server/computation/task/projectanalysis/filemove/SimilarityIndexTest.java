@@ -0,0 +1,153 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+public class SimilarityIndexTest {
+
+  private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+
+  @Test
+  public void finds_identical_file() {
+    SimilarityIndex underTest = new SimilarityIndex(ImmutableMap.of(
+      "1", file("a", "b", "c"),
+      "2", file("d", "e", "f")), MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.findCandidateKeys(file("a", "b", "c"))).containsExactly("1");
+    assertThat(underTest.findCandidateKeys(file("c", "b", "a"))).containsExactly("1");
+  }
+
+  @Test
+  public void finds_file_with_a_few_changed_lines() {
+    List<String> lines = lines("line", 20);
+    List<String> changedLines = new ArrayList<>(lines);
+    changedLines.set(3, "changed");
+    changedLines.add("added");
+
+    SimilarityIndex underTest = new SimilarityIndex(ImmutableMap.of("1", file(lines)), MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.findCandidateKeys(file(changedLines))).containsExactly("1");
+  }
+
+  @Test
+  public void does_not_find_files_without_enough_common_lines() {
+    List<String> lines = lines("line", 20);
+    List<String> changedLines = new ArrayList<>(lines.subList(0, 16));
+    changedLines.addAll(lines("other", 4));
+
+    SimilarityIndex underTest = new SimilarityIndex(ImmutableMap.of("1", file(lines)), MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.findCandidateKeys(file(changedLines))).isEmpty();
+    assertThat(underTest.findCandidateKeys(file(lines.subList(0, 16)))).isEmpty();
+    assertThat(underTest.findCandidateKeys(file(lines("other", 20)))).isEmpty();
+  }
+
+  @Test
+  public void ignores_empty_files() {
+    SimilarityIndex underTest = new SimilarityIndex(ImmutableMap.of("1", file(), "2", file("a")), MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.findCandidateKeys(file())).isEmpty();
+    assertThat(underTest.findCandidateKeys(file("a"))).containsExactly("2");
+  }
+
+  @Test
+  public void finds_all_the_pairs_reaching_min_score() {
+    Random random = new Random(42);
+    Map<String, File> addedFiles = new LinkedHashMap<>();
+    List<File> removedFiles = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      // small alphabet of lines so that files have many lines in common
+      List<String> lines = randomLines(random, 5 + random.nextInt(40), 30);
+      addedFiles.put("file" + i, file(lines));
+      removedFiles.add(file(edit(random, lines, random.nextInt(8))));
+    }
+    SimilarityIndex underTest = new SimilarityIndex(addedFiles, MIN_REQUIRED_SCORE);
+
+    for (File removedFile : removedFiles) {
+      Set<String> expected = new HashSet<>();
+      addedFiles.forEach((key, addedFile) -> {
+        if (fileSimilarity.score(removedFile, addedFile) >= MIN_REQUIRED_SCORE) {
+          expected.add(key);
+        }
+      });
+      assertThat(underTest.findCandidateKeys(removedFile)).containsAll(expected);
+    }
+  }
+
+  private static List<String> randomLines(Random random, int count, int distinctLines) {
+    List<String> res = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      res.add("line" + random.nextInt(distinctLines));
+    }
+    return res;
+  }
+
+  private static List<String> edit(Random random, List<String> lines, int edits) {
+    List<String> res = new ArrayList<>(lines);
+    for (int i = 0; i < edits; i++) {
+      int index = random.nextInt(res.size() + 1);
+      switch (random.nextInt(3)) {
+        case 0:
+          res.add(index, "added" + i);
+          break;
+        case 1:
+          if (index < res.size()) {
+            res.remove(index);
+          }
+          break;
+        default:
+          if (index < res.size()) {
+            res.set(index, "changed" + i);
+          }
+      }
+    }
+    return res;
+  }
+
+  private static List<String> lines(String prefix, int count) {
+    List<String> res = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      res.add(prefix + i);
+    }
+    return res;
+  }
+
+  private static File file(String... lineHashes) {
+    return file(Arrays.asList(lineHashes));
+  }
+
+  private static File file(List<String> lineHashes) {
+    return new File("path", lineHashes);
+  }
+}
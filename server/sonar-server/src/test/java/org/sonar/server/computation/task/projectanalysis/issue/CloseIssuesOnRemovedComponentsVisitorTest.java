@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.function.Consumer;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -34,6 +35,9 @@ import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawl
 
 import static com.google.common.collect.Sets.newHashSet;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -67,7 +71,10 @@ public class CloseIssuesOnRemovedComponentsVisitorTest {
 
     when(componentsWithUnprocessedIssues.getUuids()).thenReturn(newHashSet(fileUuid));
     DefaultIssue issue = new DefaultIssue().setKey(issueUuid);
-    when(issuesLoader.loadForComponentUuid(fileUuid)).thenReturn(Collections.singletonList(issue));
+    doAnswer(invocation -> {
+      ((Consumer<DefaultIssue>) invocation.getArguments()[1]).accept(issue);
+      return null;
+    }).when(issuesLoader).loadForComponentUuids(eq(newHashSet(fileUuid)), any(Consumer.class));
 
     underTest.visit(ReportComponent.builder(PROJECT, 1).build());
 
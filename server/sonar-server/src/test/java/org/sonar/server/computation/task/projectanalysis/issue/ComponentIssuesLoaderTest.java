@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRule;
+import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolderRule;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+
+public class ComponentIssuesLoaderTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public ActiveRulesHolderRule activeRulesHolder = new ActiveRulesHolderRule();
+  @Rule
+  public RuleRepositoryRule ruleRepository = new RuleRepositoryRule();
+
+  private ComponentIssuesLoader underTest = new ComponentIssuesLoader(db.getDbClient(), ruleRepository, activeRulesHolder);
+
+  @Test
+  public void loadForComponentUuid_reads_all_fields_of_non_closed_issues() {
+    RuleDefinitionDto rule = insertActiveRule();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    IssueDto issue = db.issues().insert(rule, project, file, i -> i
+      .setGap(1.5)
+      .setManualSeverity(true)
+      .setIssueAttributes("JIRA=FOO-123")
+      .setLocations(DbIssues.Locations.newBuilder().setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(4)).build()));
+    db.issues().insert(rule, project, file, i -> i.setStatus(Issue.STATUS_CLOSED));
+
+    List<DefaultIssue> issues = underTest.loadForComponentUuid(file.uuid());
+
+    assertThat(issues).hasSize(1);
+    DefaultIssue expected = db.getDbClient().issueDao().selectOrFailByKey(db.getSession(), issue.getKey()).toDefaultIssue();
+    assertThat(issues.get(0)).isEqualToIgnoringGivenFields(expected, "selectedAt");
+    assertThat(issues.get(0).isOnDisabledRule()).isFalse();
+    assertThat(issues.get(0).isBeingClosed()).isFalse();
+  }
+
+  @Test
+  public void loadForComponentUuids_streams_issues_of_components_ordered_by_component() {
+    RuleDefinitionDto rule = insertActiveRule();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project).setUuid("FILE_1"));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(project).setUuid("FILE_2"));
+    ComponentDto file3 = db.components().insertComponent(newFileDto(project).setUuid("FILE_3"));
+    db.issues().insert(rule, project, file2);
+    db.issues().insert(rule, project, file1);
+    db.issues().insert(rule, project, file2);
+    db.issues().insert(rule, project, file3);
+
+    List<String> componentUuids = new ArrayList<>();
+    underTest.loadForComponentUuids(asList("FILE_2", "FILE_1"), issue -> componentUuids.add(issue.componentUuid()));
+
+    assertThat(componentUuids).containsExactly("FILE_1", "FILE_2", "FILE_2");
+  }
+
+  @Test
+  public void loadForComponentUuids_does_nothing_when_there_are_no_components() {
+    List<DefaultIssue> issues = new ArrayList<>();
+
+    underTest.loadForComponentUuids(emptyList(), issues::add);
+
+    assertThat(issues).isEmpty();
+  }
+
+  @Test
+  public void issues_on_inactive_rules_are_being_closed() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ruleRepository.add(rule.getKey());
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.issues().insert(rule, project, file);
+
+    List<DefaultIssue> issues = underTest.loadForComponentUuid(file.uuid());
+
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).isOnDisabledRule()).isTrue();
+    assertThat(issues.get(0).isBeingClosed()).isTrue();
+  }
+
+  private RuleDefinitionDto insertActiveRule() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ruleRepository.add(rule.getKey());
+    activeRulesHolder.put(new ActiveRule(rule.getKey(), Severity.MAJOR, emptyMap(), 1_000L, null));
+    return rule;
+  }
+}
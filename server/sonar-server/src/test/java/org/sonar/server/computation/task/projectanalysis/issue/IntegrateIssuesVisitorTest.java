@@ -22,21 +22,29 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
@@ -57,7 +65,9 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.Component.Status;
 import org.sonar.server.computation.task.projectanalysis.component.DefaultBranchImpl;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.MergeBranchComponentUuids;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
@@ -123,6 +133,7 @@ public class IntegrateIssuesVisitorTest {
   TrackerExecution tracker;
   ShortBranchTrackerExecution shortBranchTracker;
   MergeBranchTrackerExecution mergeBranchTracker;
+  TrackerBaseInputFactory baseInputFactory;
   IssueCache issueCache;
 
   TypeAwareVisitor underTest;
@@ -135,7 +146,7 @@ public class IntegrateIssuesVisitorTest {
     when(movedFilesRepository.getOriginalFile(any(Component.class))).thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
 
     TrackerRawInputFactory rawInputFactory = new TrackerRawInputFactory(treeRootHolder, reportReader, fileSourceRepository, new CommonRuleEngineImpl(), issueFilter);
-    TrackerBaseInputFactory baseInputFactory = new TrackerBaseInputFactory(issuesLoader, dbTester.getDbClient(), movedFilesRepository);
+    baseInputFactory = new TrackerBaseInputFactory(issuesLoader, dbTester.getDbClient(), movedFilesRepository);
     TrackerMergeBranchInputFactory mergeInputFactory = new TrackerMergeBranchInputFactory(issuesLoader, mergeBranchComponentsUuids, dbTester.getDbClient());
     tracker = new TrackerExecution(baseInputFactory, rawInputFactory, new Tracker<>());
     shortBranchTracker = new ShortBranchTrackerExecution(baseInputFactory, rawInputFactory, mergeInputFactory, new Tracker<>());
@@ -268,6 +279,77 @@ public class IntegrateIssuesVisitorTest {
     underTest.visitAny(FILE);
   }
 
+  @Test
+  public void load_base_issues_of_next_files_in_parallel_and_process_files_in_order() {
+    List<Component> files = initFilesWithOneBaseIssue(20);
+    TrackerBaseInputFactory spiedBaseInputFactory = spy(baseInputFactory);
+
+    IssueVisitors issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
+    underTest = new IntegrateIssuesVisitor(issueCache, issueLifecycle, issueVisitors, issuesLoader, analysisMetadataHolder, trackingDelegator,
+      treeRootHolder, spiedBaseInputFactory, new MapSettings().setProperty("sonar.ce.issueTracking.threads", 4).asConfig());
+    new DepthTraversalTypeAwareCrawler(underTest).visit(treeRootHolder.getRoot());
+
+    InOrder inOrder = inOrder(issueVisitor);
+    for (Component file : files) {
+      inOrder.verify(issueVisitor).beforeComponent(file);
+      inOrder.verify(issueVisitor).onIssue(eq(file), defaultIssueCaptor.capture());
+      assertThat(defaultIssueCaptor.getValue().key()).isEqualTo("ISSUE_" + file.getKey().substring("FILE_KEY_".length()));
+      assertThat(defaultIssueCaptor.getValue().isBeingClosed()).isTrue();
+      inOrder.verify(issueVisitor).afterComponent(file);
+    }
+    inOrder.verify(issueVisitor).beforeComponent(treeRootHolder.getRoot());
+    assertThat(newArrayList(issueCache.traverse())).extracting(DefaultIssue::key)
+      .containsExactlyElementsOf(files.stream().map(f -> "ISSUE_" + f.getKey().substring("FILE_KEY_".length())).collect(Collectors.toList()));
+    verify(spiedBaseInputFactory).clearPrefetched();
+  }
+
+  @Test
+  public void drop_prefetched_base_issues_when_processing_of_a_file_fails() {
+    List<Component> files = initFilesWithOneBaseIssue(20);
+    TrackerBaseInputFactory spiedBaseInputFactory = spy(baseInputFactory);
+    doThrow(new IllegalStateException("BOOM")).when(issueVisitor).beforeComponent(files.get(0));
+
+    IssueVisitors issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
+    underTest = new IntegrateIssuesVisitor(issueCache, issueLifecycle, issueVisitors, issuesLoader, analysisMetadataHolder, trackingDelegator,
+      treeRootHolder, spiedBaseInputFactory, new MapSettings().setProperty("sonar.ce.issueTracking.threads", 4).asConfig());
+    try {
+      underTest.visitAny(files.get(0));
+      fail("An IllegalStateException should have been raised");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to process issues of component 'FILE_KEY_0'");
+    }
+
+    verify(spiedBaseInputFactory).clearPrefetched();
+  }
+
+  private List<Component> initFilesWithOneBaseIssue(int nbFiles) {
+    ReportComponent.Builder projectBuilder = builder(Component.Type.PROJECT, PROJECT_REF).setKey(PROJECT_KEY).setUuid(PROJECT_UUID);
+    List<Component> files = new ArrayList<>();
+    for (int i = 0; i < nbFiles; i++) {
+      Component file = builder(Component.Type.FILE, 10 + i).setKey("FILE_KEY_" + i).setUuid("FILE_UUID_" + i).build();
+      files.add(file);
+      projectBuilder.addChildren(file);
+    }
+    treeRootHolder.setRoot(projectBuilder.build());
+    when(issueFilter.accept(any(DefaultIssue.class), any(Component.class))).thenReturn(true);
+
+    ComponentDto projectDto = ComponentTesting.newPrivateProjectDto(dbTester.organizations().insert(), PROJECT_UUID).setDbKey(PROJECT_KEY);
+    dbTester.getDbClient().componentDao().insert(dbTester.getSession(), projectDto);
+    RuleDto ruleDto = RuleTesting.newDto(RuleTesting.XOO_X1);
+    dbTester.rules().insertRule(ruleDto);
+    ruleRepositoryRule.add(RuleTesting.XOO_X1);
+    for (int i = 0; i < nbFiles; i++) {
+      ComponentDto fileDto = ComponentTesting.newFileDto(projectDto, null, "FILE_UUID_" + i).setDbKey("FILE_KEY_" + i);
+      dbTester.getDbClient().componentDao().insert(dbTester.getSession(), fileDto);
+      dbTester.getDbClient().issueDao().insert(dbTester.getSession(), IssueTesting.newDto(ruleDto, fileDto, projectDto)
+        .setKee("ISSUE_" + i)
+        .setStatus(Issue.STATUS_OPEN)
+        .setSeverity(Severity.MAJOR));
+    }
+    dbTester.getSession().commit();
+    return files;
+  }
+
   private void addBaseIssue(RuleKey ruleKey) {
     ComponentDto project = ComponentTesting.newPrivateProjectDto(dbTester.organizations().insert(), PROJECT_UUID).setDbKey(PROJECT_KEY);
     ComponentDto file = ComponentTesting.newFileDto(project, null, FILE_UUID).setDbKey(FILE_KEY);
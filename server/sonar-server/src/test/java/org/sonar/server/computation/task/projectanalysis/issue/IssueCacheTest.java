@@ -0,0 +1,209 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.Date;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class IssueCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void write_and_read_issue_with_all_fields() throws Exception {
+    Date now = new Date(1_500_000_000_000L);
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1).setEndLine(2).setStartOffset(3).setEndOffset(4))
+      .addFlow(DbIssues.Flow.newBuilder().addLocation(DbIssues.Location.newBuilder().setComponentId("C1").setMsg("flow message")))
+      .build();
+    FieldDiffs previousChange = new FieldDiffs().setIssueKey("ISSUE_1").setUserLogin("john").setCreationDate(new Date(1_400_000_000_000L));
+    previousChange.setDiff("severity", Severity.MINOR, Severity.MAJOR);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_1")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_1")
+      .setComponentKey("PROJECT:file")
+      .setModuleUuid("MODULE_1")
+      .setModuleUuidPath(".MODULE_1.")
+      .setProjectUuid("PROJECT_1")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("java", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(true)
+      .setMessage("message with accents éà")
+      .setLine(12)
+      .setGap(3.5)
+      .setEffort(Duration.create(42L))
+      .setStatus("REOPENED")
+      .setResolution("FIXED")
+      .setAssignee("simon")
+      .setChecksum("abcd")
+      .setAttribute("jira", "SONAR-1")
+      .setAuthorLogin("julien")
+      .setTags(newArrayList("security", "cwe"))
+      .setLocations(locations)
+      .setCreationDate(now)
+      .setUpdateDate(now)
+      .setCloseDate(now)
+      .setNew(false)
+      .setCopied(true)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L)
+      .addChange(previousChange)
+      .addComment(new DefaultIssueComment().setKey("COMMENT_1").setIssueKey("ISSUE_1").setUserLogin("john").setMarkdownText("a comment")
+        .setCreatedAt(now).setUpdatedAt(now).setNew(true));
+    IssueChangeContext context = IssueChangeContext.createScan(now);
+    issue.setFieldChange(context, "effort", 10L, 42L);
+    issue.setFieldChange(context, "line", null, 12);
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ISSUE_1");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE_1");
+    assertThat(read.componentKey()).isEqualTo("PROJECT:file");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE_1");
+    assertThat(read.moduleUuidPath()).isEqualTo(".MODULE_1.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT_1");
+    assertThat(read.projectKey()).isEqualTo("PROJECT");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("java", "S001"));
+    assertThat(read.language()).isEqualTo("java");
+    assertThat(read.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("message with accents éà");
+    assertThat(read.line()).isEqualTo(12);
+    assertThat(read.gap()).isEqualTo(3.5);
+    assertThat(read.effort()).isEqualTo(Duration.create(42L));
+    assertThat(read.status()).isEqualTo("REOPENED");
+    assertThat(read.resolution()).isEqualTo("FIXED");
+    assertThat(read.assignee()).isEqualTo("simon");
+    assertThat(read.checksum()).isEqualTo("abcd");
+    assertThat(read.attributes()).containsOnly(entry("jira", "SONAR-1"));
+    assertThat(read.authorLogin()).isEqualTo("julien");
+    assertThat(read.tags()).containsExactly("security", "cwe");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(locations);
+    assertThat(read.creationDate()).isEqualTo(now);
+    assertThat(read.updateDate()).isEqualTo(now);
+    assertThat(read.closeDate()).isEqualTo(now);
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isCopied()).isTrue();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.selectedAt()).isEqualTo(1_000L);
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT_1");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE_1");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.createdAt()).isEqualTo(now);
+    assertThat(comment.updatedAt()).isEqualTo(now);
+    assertThat(comment.isNew()).isTrue();
+
+    List<FieldDiffs> changes = read.changes();
+    assertThat(changes).hasSize(issue.changes().size());
+    assertThat(changes.get(0).issueKey()).isEqualTo("ISSUE_1");
+    assertThat(changes.get(0).userLogin()).isEqualTo("john");
+    assertThat(changes.get(0).creationDate()).isEqualTo(new Date(1_400_000_000_000L));
+    assertThat(changes.get(0).toString()).isEqualTo("severity=MINOR|MAJOR");
+    FieldDiffs currentChange = read.currentChange();
+    assertThat(currentChange.creationDate()).isEqualTo(now);
+    assertThat(currentChange.diffs()).containsOnlyKeys("effort", "line");
+    assertThat(currentChange.get("effort").oldValue()).isEqualTo(10L);
+    assertThat(currentChange.get("effort").newValue()).isEqualTo(42L);
+    assertThat(currentChange.get("line").oldValue()).isNull();
+    assertThat(currentChange.get("line").newValue()).isEqualTo(12);
+    // identity of the current change is kept
+    for (int i = 1; i < changes.size(); i++) {
+      assertThat(changes.get(i)).isSameAs(currentChange);
+    }
+  }
+
+  @Test
+  public void write_and_read_issue_with_no_optional_field() throws Exception {
+    DefaultIssue read = writeAndRead(new DefaultIssue().setKey("ISSUE_1"));
+
+    assertThat(read.key()).isEqualTo("ISSUE_1");
+    assertThat(read.type()).isNull();
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.status()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.effort()).isNull();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat((Object) read.getLocations()).isNull();
+    assertThat(read.creationDate()).isNull();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.isNew()).isTrue();
+    assertThat(read.selectedAt()).isNull();
+  }
+
+  @Test
+  public void current_change_which_is_not_in_changes_is_kept() throws Exception {
+    FieldDiffs currentChange = new FieldDiffs().setCreationDate(new Date(1_000L));
+    currentChange.setDiff("status", "OPEN", "CLOSED");
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_1").setCurrentChange(currentChange);
+    issue.setChanges(newArrayList());
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange().toString()).isEqualTo("status=OPEN|CLOSED");
+  }
+
+  private DefaultIssue writeAndRead(DefaultIssue issue) throws Exception {
+    IssueCache underTest = new IssueCache(temp.newFile(), System2.INSTANCE);
+    underTest.newAppender().append(issue).close();
+    try (CloseableIterator<DefaultIssue> issues = underTest.traverse()) {
+      DefaultIssue read = issues.next();
+      assertThat(issues.hasNext()).isFalse();
+      return read;
+    }
+  }
+}
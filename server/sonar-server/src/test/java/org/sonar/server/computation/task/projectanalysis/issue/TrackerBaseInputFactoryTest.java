@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import com.google.common.base.Optional;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.core.issue.DefaultIssue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDao;
@@ -29,10 +30,12 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 
+import static java.util.Collections.singletonList;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class TrackerBaseInputFactoryTest {
@@ -95,4 +98,36 @@ public class TrackerBaseInputFactoryTest {
     verify(issuesLoader).loadForComponentUuid(originalUuid);
     verify(issuesLoader, times(0)).loadForComponentUuid(FILE_UUID);
   }
+
+  @Test
+  public void create_returns_prefetched_Input_once_without_loading_it_again() {
+    when(issuesLoader.loadForComponentUuid(FILE_UUID)).thenReturn(singletonList(new DefaultIssue()));
+
+    underTest.prefetch(FILE);
+    verify(issuesLoader).loadForComponentUuid(FILE_UUID);
+    verify(fileSourceDao).selectLineHashes(dbSession, FILE_UUID);
+
+    underTest.create(FILE).getIssues();
+    underTest.create(FILE).getLineHashSequence();
+    verify(issuesLoader).loadForComponentUuid(FILE_UUID);
+    verify(fileSourceDao, times(2)).selectLineHashes(dbSession, FILE_UUID);
+  }
+
+  @Test
+  public void prefetch_does_not_load_lines_hashes_when_there_are_no_issues() {
+    underTest.prefetch(FILE);
+
+    verify(issuesLoader).loadForComponentUuid(FILE_UUID);
+    verifyZeroInteractions(fileSourceDao);
+  }
+
+  @Test
+  public void create_loads_Input_again_once_prefetched_inputs_are_cleared() {
+    underTest.prefetch(FILE);
+    underTest.clearPrefetched();
+
+    underTest.create(FILE).getIssues();
+
+    verify(issuesLoader, times(2)).loadForComponentUuid(FILE_UUID);
+  }
 }
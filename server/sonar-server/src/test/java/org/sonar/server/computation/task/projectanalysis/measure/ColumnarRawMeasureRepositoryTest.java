@@ -0,0 +1,209 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.RawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final Component FILE_1 = ReportComponent.builder(Component.Type.FILE, 1).build();
+  private static final Component FILE_2 = ReportComponent.builder(Component.Type.FILE, 2).build();
+  private static final Metric INT_METRIC = new MetricImpl(1, "int_metric", "int metric", Metric.MetricType.INT);
+  private static final Metric LONG_METRIC = new MetricImpl(2, "long_metric", "long metric", Metric.MetricType.WORK_DUR);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(3, "double_metric", "double metric", Metric.MetricType.FLOAT);
+  private static final Metric BOOLEAN_METRIC = new MetricImpl(4, "boolean_metric", "boolean metric", Metric.MetricType.BOOL);
+  private static final Metric STRING_METRIC = new MetricImpl(5, "string_metric", "string metric", Metric.MetricType.STRING);
+  private static final Metric LEVEL_METRIC = new MetricImpl(6, "level_metric", "level metric", Metric.MetricType.LEVEL);
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef());
+
+  @Test
+  public void primitive_measures_are_rebuilt_with_their_value_and_variation() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().setVariation(-2d).create(12));
+    underTest.add(FILE_1, LONG_METRIC, newMeasureBuilder().create(123_456_789_012L));
+    underTest.add(FILE_1, DOUBLE_METRIC, newMeasureBuilder().create(1.23456d, 2));
+    underTest.add(FILE_1, BOOLEAN_METRIC, newMeasureBuilder().create(true));
+    underTest.add(FILE_2, INT_METRIC, newMeasureBuilder().createNoValue());
+
+    Measure intMeasure = underTest.getRawMeasure(FILE_1, INT_METRIC).get();
+    assertThat(intMeasure.getIntValue()).isEqualTo(12);
+    assertThat(intMeasure.getVariation()).isEqualTo(-2d);
+    assertThat(underTest.getRawMeasure(FILE_1, LONG_METRIC).get().getLongValue()).isEqualTo(123_456_789_012L);
+    assertThat(underTest.getRawMeasure(FILE_1, LONG_METRIC).get().hasVariation()).isFalse();
+    assertThat(underTest.getRawMeasure(FILE_1, DOUBLE_METRIC).get().getDoubleValue()).isEqualTo(1.23d);
+    assertThat(underTest.getRawMeasure(FILE_1, BOOLEAN_METRIC).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(FILE_2, INT_METRIC).get().getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+    assertThat(underTest.getRawMeasure(FILE_2, LONG_METRIC)).isAbsent();
+  }
+
+  @Test
+  public void other_measures_are_stored_as_objects() {
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    Measure levelMeasure = newMeasureBuilder().create(Measure.Level.OK);
+    Measure intMeasureWithData = newMeasureBuilder().create(3, "data");
+    Measure intMeasureWithQualityGateStatus = newMeasureBuilder().setQualityGateStatus(new QualityGateStatus(Measure.Level.ERROR)).create(4);
+    underTest.add(FILE_1, STRING_METRIC, stringMeasure);
+    underTest.add(FILE_1, LEVEL_METRIC, levelMeasure);
+    underTest.add(FILE_1, INT_METRIC, intMeasureWithData);
+    underTest.add(FILE_2, INT_METRIC, intMeasureWithQualityGateStatus);
+
+    assertThat(underTest.getRawMeasure(FILE_1, STRING_METRIC).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_1, LEVEL_METRIC).get()).isSameAs(levelMeasure);
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get()).isSameAs(intMeasureWithData);
+    assertThat(underTest.getRawMeasure(FILE_2, INT_METRIC).get()).isSameAs(intMeasureWithQualityGateStatus);
+  }
+
+  @Test
+  public void update_replaces_object_measure_by_primitive_one() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(3, "data"));
+
+    underTest.update(FILE_1, INT_METRIC, newMeasureBuilder().create(5));
+
+    Measure measure = underTest.getRawMeasure(FILE_1, INT_METRIC).get();
+    assertThat(measure.getIntValue()).isEqualTo(5);
+    assertThat(measure.getData()).isNull();
+  }
+
+  @Test
+  public void add_throws_UOE_if_measure_already_exists() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component");
+
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    underTest.add(FILE_2, INT_METRIC, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be updated only if one already exists for a specific Component");
+
+    underTest.update(FILE_1, INT_METRIC, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void add_throws_IAE_if_value_type_is_not_consistent_with_metric() {
+    expectedException.expect(IllegalArgumentException.class);
+
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create("foo"));
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(1));
+
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get().getIntValue()).isEqualTo(1);
+
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(3), OverridePolicy.OVERRIDE);
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void developer_measures_are_returned_only_with_all_measures_of_metric() {
+    Measure developerMeasure = newMeasureBuilder().forDeveloper(new DumbDeveloper("dev")).create(7);
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE_1, INT_METRIC, developerMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasures(FILE_1, INT_METRIC)).hasSize(2).contains(developerMeasure);
+    assertThat(underTest.getRawMeasures(FILE_2, INT_METRIC)).isEmpty();
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_component_by_metric_key() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE_1, STRING_METRIC, newMeasureBuilder().create("foo"));
+    underTest.add(FILE_2, LONG_METRIC, newMeasureBuilder().create(2L));
+
+    assertThat(underTest.getRawMeasures(FILE_1).keySet()).containsOnly(INT_METRIC.getKey(), STRING_METRIC.getKey());
+    assertThat(underTest.getRawMeasures(FILE_2).get(LONG_METRIC.getKey()).iterator().next().getLongValue()).isEqualTo(2L);
+  }
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_1, INT_METRIC);
+  }
+
+  /**
+   * Rough memory benchmark: 10 numeric metrics on a synthetic tree of 100k components.
+   */
+  @Test
+  public void uses_less_heap_than_MapBasedRawMeasureRepository_on_100k_components() {
+    List<Component> components = new ArrayList<>();
+    for (int ref = 1; ref <= 100_000; ref++) {
+      components.add(ReportComponent.builder(Component.Type.FILE, ref).setUuid("uuid_" + ref).setKey("key_" + ref).build());
+    }
+    List<Metric> metrics = new ArrayList<>();
+    for (int id = 1; id <= 10; id++) {
+      metrics.add(new MetricImpl(id, "metric_" + id, "metric " + id, Metric.MetricType.INT));
+    }
+
+    long mapBasedHeap = measureRetainedHeap(new MapBasedRawMeasureRepository<>(toReportRef()), components, metrics);
+    long columnarHeap = measureRetainedHeap(new ColumnarRawMeasureRepository(c -> c.getReportAttributes().getRef()), components, metrics);
+
+    assertThat(columnarHeap).isLessThan(mapBasedHeap / 4);
+  }
+
+  private static long measureRetainedHeap(RawMeasureRepository repository, List<Component> components, List<Metric> metrics) {
+    long before = usedHeap();
+    for (Component component : components) {
+      for (Metric metric : metrics) {
+        repository.add(component, metric, newMeasureBuilder().create(component.getReportAttributes().getRef() + metric.getId()));
+      }
+    }
+    long after = usedHeap();
+    assertThat(repository.getRawMeasure(components.get(0), metrics.get(0)).get().getIntValue()).isEqualTo(2);
+    return after - before;
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      memoryMXBean.gc();
+    }
+    return memoryMXBean.getHeapMemoryUsage().getUsed();
+  }
+}
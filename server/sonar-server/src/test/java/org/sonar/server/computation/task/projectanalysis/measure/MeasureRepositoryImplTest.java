@@ -34,6 +34,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -89,11 +90,11 @@ public class MeasureRepositoryImplTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator, new MapSettings().asConfig());
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator, new MapSettings().asConfig());
 
   private DbSession dbSession = dbTester.getSession();
 
@@ -322,6 +323,21 @@ public class MeasureRepositoryImplTest {
     assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric2)).isAbsent();
   }
 
+  @Test
+  public void getRawMeasure_returns_measure_stored_by_columnar_store_when_enabled() {
+    MapSettings settings = new MapSettings().setProperty("sonar.ce.measures.columnarStore", true);
+    MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator, settings.asConfig());
+    Metric intMetric = new MetricImpl(3, "int metric", "int metric", Metric.MetricType.INT);
+    Measure measure = Measure.newMeasureBuilder().create(12);
+    underTest.add(FILE_COMPONENT, intMetric, measure);
+
+    Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, intMetric);
+
+    assertThat(res.get()).isNotSameAs(measure);
+    assertThat(res.get().getIntValue()).isEqualTo(12);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric)).isAbsent();
+  }
+
   @Test
   public void getRawMeasure_returns_measure_from_batch_if_not_added_through_add_method() {
     String value = "trololo";
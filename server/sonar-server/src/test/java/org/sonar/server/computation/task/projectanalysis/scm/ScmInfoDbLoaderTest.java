@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.scm;
 import com.google.common.collect.ImmutableList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
@@ -43,6 +44,7 @@ import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryIm
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryImpl;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -106,6 +108,26 @@ public class ScmInfoDbLoaderTest {
     assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from db for file 'FILE_UUID'");
   }
 
+  @Test
+  public void returns_ScmInfo_of_many_files() {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    analysisMetadataHolder.setBranch(null);
+    analysisMetadataHolder.setIncrementalAnalysis(true);
+
+    addFileSourceInDb("henry", DATE_1, "rev-1", computeSourceHash(1), "FILE_1");
+    addFileSourceInDb("john", DATE_2, "rev-2", computeSourceHash(1), "FILE_2");
+    Component file1 = builder(Component.Type.FILE, 2).setKey("FILE_1").setUuid("FILE_1").setStatus(Status.SAME).build();
+    Component file2 = builder(Component.Type.FILE, 3).setKey("FILE_2").setUuid("FILE_2").setStatus(Status.SAME).build();
+    Component file3 = builder(Component.Type.FILE, 4).setKey("FILE_3").setUuid("FILE_3").setStatus(Status.SAME).build();
+
+    Map<Component, ScmInfo> scmInfos = underTest.getScmInfoFromDb(asList(file1, file2, file3));
+
+    assertThat(scmInfos).hasSize(3);
+    assertThat(scmInfos.get(file1).getLatestChangeset().getAuthor()).isEqualTo("henry");
+    assertThat(scmInfos.get(file2).getLatestChangeset().getAuthor()).isEqualTo("john");
+    assertThat(scmInfos.get(file3)).isEqualTo(NoScmInfo.INSTANCE);
+  }
+
   @Test
   public void read_from_merge_branch_if_no_base() {
     analysisMetadataHolder.setBaseAnalysis(null);
@@ -20,26 +20,34 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.sonar.api.utils.log.LoggerLevel.TRACE;
@@ -58,6 +66,8 @@ public class ScmInfoRepositoryImplTest {
   public LogTester logTester = new LogTester();
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
 
   private ScmInfoDbLoader dbLoader = mock(ScmInfoDbLoader.class);
 
@@ -97,7 +107,7 @@ public class ScmInfoRepositoryImplTest {
   @Test
   public void read_from_db_even_if_data_in_report_exists_when_CopyFromPrevious_is_true() throws Exception {
     ScmInfo info = mock(ScmInfo.class);
-    when(dbLoader.getScmInfoFromDb(FILE)).thenReturn(info);
+    when(dbLoader.getScmInfoFromDb(singletonList(FILE))).thenReturn(ImmutableMap.of(FILE, info));
 
     addFileSourceInReport(1);
     addChangesetInReport("john", DATE_2, "rev-2", true);
@@ -164,6 +174,66 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).isEmpty();
   }
 
+  @Test
+  public void load_scm_info_of_next_files_of_the_tree_with_a_single_db_query() {
+    Component file1 = builder(Component.Type.FILE, 2).setKey("FILE_1").setUuid("FILE_1").build();
+    Component file2 = builder(Component.Type.FILE, 3).setKey("FILE_2").setUuid("FILE_2").build();
+    Component file3 = builder(Component.Type.FILE, 4).setKey("FILE_3").setUuid("FILE_3").build();
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 1).addChildren(file1, file2, file3).build());
+    addChangesetInReport(2, true);
+    addChangesetInReport(3, false);
+    addChangesetInReport(4, true);
+    ScmInfo info1 = mock(ScmInfo.class);
+    ScmInfo info3 = mock(ScmInfo.class);
+    when(dbLoader.getScmInfoFromDb(asList(file1, file3))).thenReturn(ImmutableMap.of(file1, info1, file3, info3));
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, dbLoader, treeRootHolder, new MapSettings().asConfig());
+
+    assertThat(underTest.getScmInfo(file1).get()).isSameAs(info1);
+    assertThat(underTest.getScmInfo(file2).get().getAllChangesets()).hasSize(1);
+    assertThat(underTest.getScmInfo(file3).get()).isSameAs(info3);
+
+    verify(dbLoader).getScmInfoFromDb(asList(file1, file3));
+    verifyNoMoreInteractions(dbLoader);
+  }
+
+  @Test
+  public void evict_least_recently_used_files_when_cache_is_full() {
+    List<Component> files = new ArrayList<>();
+    for (int i = 0; i < ScmInfoRepositoryImpl.PREFETCH_SIZE + 1; i++) {
+      files.add(builder(Component.Type.FILE, i + 2).setKey("FILE_" + i).setUuid("FILE_" + i).build());
+      addChangesetInReport(i + 2, false);
+    }
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 1).addChildren(files.toArray(new Component[0])).build());
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, dbLoader, treeRootHolder,
+      new MapSettings().setProperty("sonar.ce.scm.cacheSize", 1).asConfig());
+
+    underTest.getScmInfo(files.get(0));
+    assertThat(logTester.logs(TRACE)).hasSize(ScmInfoRepositoryImpl.PREFETCH_SIZE);
+    logTester.clear();
+
+    // last file was not prefetched
+    underTest.getScmInfo(files.get(ScmInfoRepositoryImpl.PREFETCH_SIZE));
+    assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from report for file 'FILE_" + ScmInfoRepositoryImpl.PREFETCH_SIZE + "'");
+    logTester.clear();
+
+    // first file has been evicted
+    underTest.getScmInfo(files.get(0));
+    assertThat(logTester.logs(TRACE)).contains("Reading SCM info from report for file 'FILE_0'");
+  }
+
+  private void addChangesetInReport(int ref, boolean copyFromPrevious) {
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(ref)
+      .setCopyFromPrevious(copyFromPrevious)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor("john")
+        .setDate(DATE_1)
+        .setRevision("rev-1")
+        .build())
+      .addChangesetIndexByLine(0)
+      .build());
+  }
+
   private void addChangesetInReport(String author, Long date, String revision) {
     addChangesetInReport(author, date, revision, false);
   }
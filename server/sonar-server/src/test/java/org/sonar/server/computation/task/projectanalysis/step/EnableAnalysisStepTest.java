@@ -28,12 +28,17 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.component.SnapshotTesting;
+import org.sonar.db.measure.LiveMeasureDto;
+import org.sonar.db.measure.LiveMeasureMapper;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.LiveMeasureChangesRepository;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 
 public class EnableAnalysisStepTest {
@@ -51,7 +56,9 @@ public class EnableAnalysisStepTest {
   @Rule
   public MutableAnalysisMetadataHolderRule analysisMetadataHolder = new MutableAnalysisMetadataHolderRule();
 
-  EnableAnalysisStep underTest = new EnableAnalysisStep(db.getDbClient(), treeRootHolder, analysisMetadataHolder);
+  private LiveMeasureChangesRepository liveMeasureChangesRepository = new LiveMeasureChangesRepository();
+
+  EnableAnalysisStep underTest = new EnableAnalysisStep(db.getDbClient(), treeRootHolder, analysisMetadataHolder, liveMeasureChangesRepository);
 
   @Test
   public void switch_islast_flag_and_mark_analysis_as_processed() {
@@ -84,6 +91,61 @@ public class EnableAnalysisStepTest {
     verifyAnalysis(CURRENT_ANALYSIS_UUID, SnapshotDto.STATUS_PROCESSED, true);
   }
 
+  @Test
+  public void write_live_measure_changes() {
+    ComponentDto project = insertProjectWithCurrentAnalysis();
+    insertLiveMeasure(project, "F1", 1, 10d);
+    insertLiveMeasure(project, "F1", 2, 20d);
+    liveMeasureChangesRepository.insert(newLiveMeasure(project, "F2", 1, 30d));
+    liveMeasureChangesRepository.update(newLiveMeasure(project, "F1", 1, 11d));
+    liveMeasureChangesRepository.delete(newLiveMeasure(project, "F1", 2, null));
+
+    underTest.execute();
+
+    verifyAnalysis(CURRENT_ANALYSIS_UUID, SnapshotDto.STATUS_PROCESSED, true);
+    assertThat(db.getDbClient().liveMeasureDao().selectByComponentUuids(db.getSession(), asList("F1", "F2")))
+      .extracting(LiveMeasureDto::getComponentUuid, LiveMeasureDto::getMetricId, LiveMeasureDto::getValue)
+      .containsOnly(tuple("F1", 1, 11d), tuple("F2", 1, 30d));
+  }
+
+  @Test
+  public void delete_all_live_measures_of_project() {
+    ComponentDto project = insertProjectWithCurrentAnalysis();
+    insertLiveMeasure(project, "F1", 1, 10d);
+    liveMeasureChangesRepository.setDeleteAll();
+
+    underTest.execute();
+
+    verifyAnalysis(CURRENT_ANALYSIS_UUID, SnapshotDto.STATUS_PROCESSED, true);
+    assertThat(db.countRowsOfTable("live_measures")).isZero();
+  }
+
+  private ComponentDto insertProjectWithCurrentAnalysis() {
+    ComponentDto project = ComponentTesting.newPrivateProjectDto(db.getDefaultOrganization(), REPORT_PROJECT.getUuid());
+    db.getDbClient().componentDao().insert(db.getSession(), project);
+    insertAnalysis(project, CURRENT_ANALYSIS_UUID, SnapshotDto.STATUS_UNPROCESSED, false);
+    db.commit();
+    treeRootHolder.setRoot(REPORT_PROJECT);
+    analysisMetadataHolder.setUuid(CURRENT_ANALYSIS_UUID);
+    return project;
+  }
+
+  private void insertLiveMeasure(ComponentDto project, String componentUuid, int metricId, Double value) {
+    db.getSession().getMapper(LiveMeasureMapper.class).insert(newLiveMeasure(project, componentUuid, metricId, value)
+      .setUuid(componentUuid + "-" + metricId)
+      .setCreatedAt(1L)
+      .setUpdatedAt(1L));
+    db.commit();
+  }
+
+  private static LiveMeasureDto newLiveMeasure(ComponentDto project, String componentUuid, int metricId, Double value) {
+    return new LiveMeasureDto()
+      .setProjectUuid(project.uuid())
+      .setComponentUuid(componentUuid)
+      .setMetricId(metricId)
+      .setValue(value);
+  }
+
   private void verifyAnalysis(String uuid, String expectedStatus, boolean expectedLastFlag) {
     Optional<SnapshotDto> analysis = db.getDbClient().snapshotDao().selectByUuid(db.getSession(), uuid);
     assertThat(analysis.get().getStatus()).isEqualTo(expectedStatus);
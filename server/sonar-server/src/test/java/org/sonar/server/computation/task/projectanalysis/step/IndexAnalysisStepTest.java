@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
@@ -26,10 +27,15 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
 
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.VIEW;
@@ -45,7 +51,7 @@ public class IndexAnalysisStepTest extends BaseStepTest {
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
 
   private ProjectIndexer componentIndexer = mock(ProjectIndexer.class);
-  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, componentIndexer);
+  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, new ChangedIssuesRepository(), componentIndexer);
 
   @Test
   public void call_indexByProjectUuid_of_indexer_for_project() {
@@ -67,6 +73,49 @@ public class IndexAnalysisStepTest extends BaseStepTest {
     verify(componentIndexer).indexOnAnalysis(PROJECT_UUID);
   }
 
+  @Test
+  public void index_only_changed_issues_when_they_have_been_recorded() {
+    Component project = ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
+    changedIssuesRepository.addIssueKey("ISSUE_1");
+    changedIssuesRepository.setComplete();
+    IssueIndexer issueIndexer = mock(IssueIndexer.class);
+
+    new IndexAnalysisStep(treeRootHolder, changedIssuesRepository, componentIndexer, issueIndexer).execute();
+
+    verify(componentIndexer).indexOnAnalysis(PROJECT_UUID, ImmutableSet.of("ISSUE_1"));
+    verify(issueIndexer).indexOnAnalysis(PROJECT_UUID, ImmutableSet.of("ISSUE_1"));
+    verify(issueIndexer, never()).indexOnAnalysis(PROJECT_UUID);
+  }
+
+  @Test
+  public void index_all_issues_when_fields_of_components_have_changed() {
+    Component project = ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
+    changedIssuesRepository.addIssueKey("ISSUE_1");
+    changedIssuesRepository.setComplete();
+    changedIssuesRepository.setComponentsChanged();
+    IssueIndexer issueIndexer = mock(IssueIndexer.class);
+
+    new IndexAnalysisStep(treeRootHolder, changedIssuesRepository, issueIndexer).execute();
+
+    verify(issueIndexer).indexOnAnalysis(PROJECT_UUID);
+    verify(issueIndexer, never()).indexOnAnalysis(eq(PROJECT_UUID), anyCollectionOf(String.class));
+  }
+
+  @Test
+  public void index_all_issues_when_changed_issues_have_not_been_recorded() {
+    Component project = ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    IssueIndexer issueIndexer = mock(IssueIndexer.class);
+
+    new IndexAnalysisStep(treeRootHolder, new ChangedIssuesRepository(), issueIndexer).execute();
+
+    verify(issueIndexer).indexOnAnalysis(PROJECT_UUID);
+  }
+
   @Override
   protected ComputationStep step() {
     return underTest;
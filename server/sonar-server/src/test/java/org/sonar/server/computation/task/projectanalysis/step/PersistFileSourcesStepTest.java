@@ -20,7 +20,9 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -30,6 +32,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -49,7 +52,9 @@ import org.sonar.server.computation.task.projectanalysis.component.ReportCompone
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.InProjectDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
@@ -96,7 +101,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public void setup() {
     when(system2.now()).thenReturn(NOW);
     underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
-      duplicationRepository, analysisMetadataHolder);
+      duplicationRepository, analysisMetadataHolder, new MapSettings().asConfig());
   }
 
   @Override
@@ -128,6 +133,32 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_of_many_files_in_parallel() {
+    int numberOfFiles = 25;
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    for (int i = 1; i <= numberOfFiles; i++) {
+      int ref = 100 + i;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, i)).build());
+      for (int line = 1; line <= i; line++) {
+        fileSourceRepository.addLine(ref, "file" + i + " line" + line);
+      }
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
+      duplicationRepository, analysisMetadataHolder, new MapSettings().setProperty("sonar.ce.persistSources.threads", 3).asConfig());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(numberOfFiles);
+    for (int i = 1; i <= numberOfFiles; i++) {
+      DbFileSources.Data data = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i).getSourceData();
+      assertThat(data.getLinesCount()).isEqualTo(i);
+      assertThat(data.getLines(i - 1).getSource()).isEqualTo("file" + i + " line" + i);
+    }
+  }
+
   @Test
   public void dont_persist_unchanged_sources_if_incremental() {
     analysisMetadataHolder.setIncrementalAnalysis(true);
@@ -330,6 +361,110 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
   }
 
+  @Test
+  public void skip_file_when_its_inputs_did_not_change() {
+    initBasicReport(1);
+    reportReader.putSourceFingerprints(newSourceFingerprints("symbols1"));
+    underTest.execute();
+    FileSourceDto firstDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(firstDto.getInputHash()).isNotEmpty();
+
+    // SCM info is not part of the inputs as long as changesets are not in the report
+    scmInfoRepository.setScmInfo(FILE1_REF, Changeset.newChangesetBuilder().setAuthor("john").setDate(123456789L).setRevision("rev-1").build());
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(fileSourceDto.getRevision()).isNull();
+    assertThat(fileSourceDto.getInputHash()).isEqualTo(firstDto.getInputHash());
+    assertThat(fileSourceDto.getDataHash()).isEqualTo(firstDto.getDataHash());
+  }
+
+  @Test
+  public void update_file_when_one_of_its_inputs_changed() {
+    initBasicReport(1);
+    reportReader.putSourceFingerprints(newSourceFingerprints("symbols1"));
+    underTest.execute();
+    String firstInputHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getInputHash();
+
+    reportReader.putSourceFingerprints(newSourceFingerprints("symbols2"));
+    scmInfoRepository.setScmInfo(FILE1_REF, Changeset.newChangesetBuilder().setAuthor("john").setDate(123456789L).setRevision("rev-1").build());
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+    assertThat(fileSourceDto.getRevision()).isEqualTo("rev-1");
+    assertThat(fileSourceDto.getInputHash()).isNotEmpty().isNotEqualTo(firstInputHash);
+  }
+
+  @Test
+  public void update_file_when_its_duplications_changed() {
+    initBasicReport(2);
+    reportReader.putSourceFingerprints(newSourceFingerprints("symbols1"));
+    underTest.execute();
+    String firstInputHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getInputHash();
+
+    duplicationRepository.addDuplication(FILE1_REF, new TextBlock(1, 1), new TextBlock(2, 2));
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+    assertThat(fileSourceDto.getInputHash()).isNotEqualTo(firstInputHash);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getDuplicationList()).hasSize(1);
+  }
+
+  @Test
+  public void input_hash_depends_on_key_of_duplicated_files_but_not_on_their_ref() {
+    initBasicReport(2);
+    reportReader.putSourceFingerprints(newSourceFingerprints("symbols1"));
+    executeWithInProjectDuplication(FILE2_REF, "MODULE_KEY:src/Bar.java");
+    String firstInputHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getInputHash();
+
+    when(system2.now()).thenReturn(NOW + 1);
+    executeWithInProjectDuplication(FILE2_REF + 10, "MODULE_KEY:src/Bar.java");
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(fileSourceDto.getInputHash()).isEqualTo(firstInputHash);
+
+    executeWithInProjectDuplication(FILE2_REF, "MODULE_KEY:src/Baz.java");
+
+    fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+    assertThat(fileSourceDto.getInputHash()).isNotEqualTo(firstInputHash);
+  }
+
+  private void executeWithInProjectDuplication(int otherFileRef, String otherFileKey) {
+    Component otherFile = ReportComponent.builder(Component.Type.FILE, otherFileRef).setUuid(FILE2_UUID).setKey(otherFileKey).build();
+    DuplicationRepository duplications = mock(DuplicationRepository.class);
+    when(duplications.getDuplications(any(Component.class))).thenReturn(singletonList(
+      new Duplication(new TextBlock(1, 1), singletonList(new InProjectDuplicate(otherFile, new TextBlock(2, 2))))));
+    new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
+      duplications, analysisMetadataHolder, new MapSettings().asConfig()).execute();
+  }
+
+  @Test
+  public void do_not_persist_input_hash_when_report_has_no_fingerprints() {
+    initBasicReport(1);
+
+    underTest.execute();
+
+    assertThat(dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getInputHash()).isNull();
+  }
+
+  private static ScannerReport.SourceFingerprints newSourceFingerprints(String symbols) {
+    return ScannerReport.SourceFingerprints.newBuilder()
+      .setComponentRef(FILE1_REF)
+      .setSource("source")
+      .setCoverage("coverage")
+      .setSyntaxHighlighting("highlighting")
+      .setSymbols(symbols)
+      .build();
+  }
+
   @Test
   public void update_sources_when_source_updated() {
     // Existing sources
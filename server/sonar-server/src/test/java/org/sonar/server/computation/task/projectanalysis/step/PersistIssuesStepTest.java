@@ -44,10 +44,12 @@ import org.sonar.db.rule.RuleTesting;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.util.cache.DiskCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -71,6 +73,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
   private DbClient dbClient = dbTester.getDbClient();
   private System2 system2;
   private IssueCache issueCache;
+  private ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
   private ComputationStep step;
 
   @Override
@@ -85,7 +88,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(NOW);
     reportReader.setMetadata(ScannerReport.Metadata.getDefaultInstance());
 
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient, analysisMetadataHolder), issueCache);
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient, analysisMetadataHolder), issueCache,
+      changedIssuesRepository);
   }
 
   @After
@@ -128,6 +132,37 @@ public class PersistIssuesStepTest extends BaseStepTest {
     assertThat(result.getType()).isEqualTo(RuleType.BUG.getDbConstant());
   }
 
+  @Test
+  public void insert_new_issues_in_bulk() {
+    RuleDefinitionDto rule = RuleTesting.newRule(RuleKey.of("xoo", "S01"));
+    dbTester.rules().insert(rule);
+    OrganizationDto organizationDto = dbTester.organizations().insert();
+    ComponentDto project = ComponentTesting.newPrivateProjectDto(organizationDto);
+    dbClient.componentDao().insert(session, project);
+    ComponentDto file = ComponentTesting.newFileDto(project, null);
+    dbClient.componentDao().insert(session, file);
+    session.commit();
+
+    DiskCache<DefaultIssue>.DiskAppender appender = issueCache.newAppender();
+    for (int i = 0; i < 250; i++) {
+      appender.append(new DefaultIssue()
+        .setKey("ISSUE_" + i)
+        .setType(RuleType.CODE_SMELL)
+        .setRuleKey(rule.getKey())
+        .setComponentUuid(file.uuid())
+        .setProjectUuid(project.uuid())
+        .setSeverity(Severity.BLOCKER)
+        .setStatus(Issue.STATUS_OPEN)
+        .setNew(true));
+    }
+    appender.close();
+
+    step.execute();
+
+    assertThat(dbTester.countRowsOfTable("issues")).isEqualTo(250);
+    assertThat(dbClient.issueDao().selectOrFailByKey(session, "ISSUE_249").getSeverity()).isEqualTo(Severity.BLOCKER);
+  }
+
   @Test
   public void insert_new_issue() {
     RuleDefinitionDto rule = RuleTesting.newRule(RuleKey.of("xoo", "S01"));
@@ -182,6 +217,31 @@ public class PersistIssuesStepTest extends BaseStepTest {
     step.execute();
 
     dbTester.assertDbUnit(getClass(), "close_issue-result.xml", "issues");
+    assertThat(changedIssuesRepository.getIssueKeys()).containsExactly("ISSUE");
+  }
+
+  @Test
+  public void record_only_keys_of_inserted_or_updated_issues() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    issueCache.newAppender()
+      .append(new DefaultIssue()
+        .setKey("ISSUE")
+        .setType(RuleType.CODE_SMELL)
+        .setRuleKey(RuleKey.of("xoo", "S01"))
+        .setComponentUuid("COMPONENT")
+        .setProjectUuid("PROJECT")
+        .setSeverity(Severity.BLOCKER)
+        .setStatus(Issue.STATUS_OPEN)
+        .setNew(false)
+        .setChanged(false))
+      .close();
+    assertThat(changedIssuesRepository.isDeltaIndexable()).isFalse();
+
+    step.execute();
+
+    assertThat(changedIssuesRepository.isDeltaIndexable()).isTrue();
+    assertThat(changedIssuesRepository.getIssueKeys()).isEmpty();
   }
 
   @Test
@@ -24,11 +24,14 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.measure.LiveMeasureDto;
+import org.sonar.db.measure.LiveMeasureMapper;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -38,12 +41,15 @@ import org.sonar.server.computation.task.projectanalysis.component.MutableDbIdsR
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.LiveMeasureChangesRepository;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureToMeasureDto;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.measures.CoreMetrics.CLASS_COMPLEXITY_DISTRIBUTION;
 import static org.sonar.api.measures.CoreMetrics.CLASS_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.api.measures.CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION;
@@ -92,6 +98,7 @@ public class PersistMeasuresStepTest extends BaseStepTest {
   @Rule
   public MutableAnalysisMetadataHolderRule analysisMetadataHolder = new MutableAnalysisMetadataHolderRule();
 
+  LiveMeasureChangesRepository liveMeasureChangesRepository = new LiveMeasureChangesRepository();
   DbClient dbClient = dbTester.getDbClient();
   RuleDto rule;
   ComponentDto rootDto;
@@ -103,10 +110,15 @@ public class PersistMeasuresStepTest extends BaseStepTest {
 
   @Before
   public void setUp() {
-    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository);
+    underTest = createStep(new MapSettings());
     analysisMetadataHolder.setUuid(ANALYSIS_UUID);
   }
 
+  private PersistMeasuresStep createStep(MapSettings settings) {
+    return new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository,
+      liveMeasureChangesRepository, settings.asConfig());
+  }
+
   private void setupReportComponents() {
     Component project = ReportComponent.builder(PROJECT, ROOT_REF).setUuid("root-uuid")
       .addChildren(
@@ -379,6 +391,100 @@ public class PersistMeasuresStepTest extends BaseStepTest {
     assertThat(dto.get("developerId")).isEqualTo(10L);
   }
 
+  @Test
+  public void record_insertion_of_file_measures_in_live_measures_in_delta_mode() {
+    setupReportComponents();
+    underTest = createStep(new MapSettings().setProperty(PersistMeasuresStep.PROPERTY_DELTA_STORAGE, true));
+    metricRepository.add(1, STRING_METRIC);
+    metricRepository.add(2, DOUBLE_METRIC);
+    metricRepository.add(3, INT_METRIC);
+
+    measureRepository.addRawMeasure(ROOT_REF, STRING_METRIC_KEY, newMeasureBuilder().create("measure-data"));
+    measureRepository.addRawMeasure(LEAF_REF, DOUBLE_METRIC_KEY, newMeasureBuilder().setVariation(1.1d).create(123.1d, 1));
+    measureRepository.addRawMeasure(LEAF_REF, INT_METRIC_KEY, newMeasureBuilder().create(12));
+
+    underTest.execute();
+
+    assertThat(selectSnapshots()).extracting(dto -> dto.get("componentUuid")).containsExactly(rootDto.uuid());
+    assertThat(liveMeasureChangesRepository.getInserts())
+      .extracting(LiveMeasureDto::getProjectUuid, LiveMeasureDto::getMetricId, LiveMeasureDto::getValue, LiveMeasureDto::getVariation)
+      .containsOnly(tuple(rootDto.uuid(), 2, 123.1d, 1.1d), tuple(rootDto.uuid(), 3, 12d, null));
+    // written when the analysis is enabled
+    assertThat(selectLiveMeasures()).isEmpty();
+  }
+
+  @Test
+  public void record_only_changed_file_measures_in_delta_mode() {
+    setupReportComponents();
+    underTest = createStep(new MapSettings().setProperty(PersistMeasuresStep.PROPERTY_DELTA_STORAGE, true));
+    metricRepository.add(1, STRING_METRIC);
+    metricRepository.add(2, DOUBLE_METRIC);
+    metricRepository.add(3, INT_METRIC);
+    insertLiveMeasure(1, null, "old-data");
+    insertLiveMeasure(2, 10d, null);
+    insertLiveMeasure(3, 12d, null);
+
+    measureRepository.addRawMeasure(LEAF_REF, DOUBLE_METRIC_KEY, newMeasureBuilder().create(20d, 1));
+    measureRepository.addRawMeasure(LEAF_REF, INT_METRIC_KEY, newMeasureBuilder().create(12));
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("project_measures")).isZero();
+    assertThat(liveMeasureChangesRepository.getInserts()).isEmpty();
+    assertThat(liveMeasureChangesRepository.getUpdates())
+      .extracting(LiveMeasureDto::getComponentUuid, LiveMeasureDto::getMetricId, LiveMeasureDto::getValue)
+      .containsExactly(tuple(leafDto.uuid(), 2, 20d));
+    assertThat(liveMeasureChangesRepository.getDeletes())
+      .extracting(LiveMeasureDto::getComponentUuid, LiveMeasureDto::getMetricId)
+      .containsExactly(tuple(leafDto.uuid(), 1));
+    assertThat(liveMeasureChangesRepository.isDeleteAll()).isFalse();
+    assertThat(selectLiveMeasures()).extracting(LiveMeasureDto::getValue).containsOnly(null, 10d, 12d);
+  }
+
+  @Test
+  public void record_deletion_of_live_measures_when_delta_mode_is_disabled() {
+    setupReportComponents();
+    metricRepository.add(3, INT_METRIC);
+    insertLiveMeasure(3, 12d, null);
+
+    measureRepository.addRawMeasure(LEAF_REF, INT_METRIC_KEY, newMeasureBuilder().create(12));
+
+    underTest.execute();
+
+    assertThat(liveMeasureChangesRepository.isDeleteAll()).isTrue();
+    assertThat(selectLiveMeasures()).hasSize(1);
+    assertThat(selectSnapshots()).extracting(dto -> dto.get("componentUuid")).containsExactly(leafDto.uuid());
+  }
+
+  @Test
+  public void do_not_delete_live_measures_when_project_has_none() {
+    setupReportComponents();
+    metricRepository.add(3, INT_METRIC);
+
+    measureRepository.addRawMeasure(LEAF_REF, INT_METRIC_KEY, newMeasureBuilder().create(12));
+
+    underTest.execute();
+
+    assertThat(liveMeasureChangesRepository.isDeleteAll()).isFalse();
+  }
+
+  private void insertLiveMeasure(int metricId, Double value, String data) {
+    dbTester.getSession().getMapper(LiveMeasureMapper.class).insert(new LiveMeasureDto()
+      .setUuid("live-" + metricId)
+      .setProjectUuid(rootDto.uuid())
+      .setComponentUuid(leafDto.uuid())
+      .setMetricId(metricId)
+      .setValue(value)
+      .setData(data)
+      .setCreatedAt(1L)
+      .setUpdatedAt(1L));
+    dbTester.commit();
+  }
+
+  private List<LiveMeasureDto> selectLiveMeasures() {
+    return dbClient.liveMeasureDao().selectByComponentUuids(dbTester.getSession(), singletonList(leafDto.uuid()));
+  }
+
   private ComponentDto addComponent(String key, String uuid) {
     ComponentDto componentDto = new ComponentDto()
       .setOrganizationUuid("org1")
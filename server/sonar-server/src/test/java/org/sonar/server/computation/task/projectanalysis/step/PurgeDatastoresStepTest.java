@@ -31,8 +31,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.config.internal.MapSettings;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -46,11 +50,14 @@ import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.util.WrapInSingleElementArray;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -71,8 +78,11 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
   private ConfigurationRepository settingsRepository = mock(ConfigurationRepository.class);
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
 
-  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS), projectCleaner, dbIdsRepository, treeRootHolder,
-    settingsRepository, disabledComponentsHolder);
+  private DbClient dbClient = mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS);
+  private CeQueue ceQueue = mock(CeQueue.class);
+
+  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(dbClient, projectCleaner, dbIdsRepository, treeRootHolder,
+    settingsRepository, disabledComponentsHolder, ceQueue, new MapSettings().asConfig());
 
   @Test
   public void call_purge_method_of_the_purge_task_for_project() {
@@ -124,6 +134,45 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
     verify_do_not_call_purge_method_of_the_purge_task(component);
   }
 
+  @Test
+  public void out_of_band_purge_submits_a_task_and_purges_only_disabled_components() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    when(settingsRepository.getConfiguration()).thenReturn(new MapSettings().asConfig());
+    dbIdsRepository.setComponentId(project, PROJECT_ID);
+    when(ceQueue.prepareSubmit()).thenReturn(new CeTaskSubmit.Builder("TASK_1"));
+
+    newOutOfBandStep().execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), anyList());
+    verify(projectCleaner, never()).purge(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), anyList());
+    ArgumentCaptor<CeTaskSubmit> submit = ArgumentCaptor.forClass(CeTaskSubmit.class);
+    verify(ceQueue).submit(submit.capture());
+    assertThat(submit.getValue().getType()).isEqualTo(CeTaskTypes.PROJECT_PURGE);
+    assertThat(submit.getValue().getComponentUuid()).isEqualTo(PROJECT_UUID);
+  }
+
+  @Test
+  public void out_of_band_purge_does_not_submit_a_task_when_one_is_pending() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    when(settingsRepository.getConfiguration()).thenReturn(new MapSettings().asConfig());
+    dbIdsRepository.setComponentId(project, PROJECT_ID);
+    CeQueueDto pendingPurge = new CeQueueDto().setUuid("TASK_0").setTaskType(CeTaskTypes.PROJECT_PURGE).setComponentUuid(PROJECT_UUID)
+      .setStatus(CeQueueDto.Status.PENDING);
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(singletonList(pendingPurge));
+
+    newOutOfBandStep().execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), any(IdUuidPair.class), any(Configuration.class), anyList());
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
+  private PurgeDatastoresStep newOutOfBandStep() {
+    return new PurgeDatastoresStep(dbClient, projectCleaner, dbIdsRepository, treeRootHolder, settingsRepository, disabledComponentsHolder, ceQueue,
+      new MapSettings().setProperty("sonar.ce.purge.outOfBand", true).asConfig());
+  }
+
   private void verify_do_not_call_purge_method_of_the_purge_task(Component component) {
     treeRootHolder.setRoot(component);
 
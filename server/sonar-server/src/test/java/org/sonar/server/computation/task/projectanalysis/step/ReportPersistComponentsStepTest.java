@@ -48,6 +48,7 @@ import org.sonar.server.computation.task.projectanalysis.component.MutableDbIdsR
 import org.sonar.server.computation.task.projectanalysis.component.MutableDisabledComponentsHolder;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.apache.commons.lang.StringUtils.isEmpty;
@@ -87,6 +88,7 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
   private DbClient dbClient = db.getDbClient();
   private Date now;
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
+  private ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
   private PersistComponentsStep underTest;
   private BranchPersister branchPersister;
 
@@ -97,7 +99,8 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
 
     db.organizations().insertForUuid(ORGANIZATION_UUID);
     branchPersister = mock(BranchPersister.class);
-    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, branchPersister);
+    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, branchPersister,
+      changedIssuesRepository);
   }
 
   @Override
@@ -596,6 +599,8 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     underTest.execute();
 
     assertThat(dbClient.componentDao().selectByKey(db.getSession(), MODULE_KEY).get().path()).isEqualTo("path");
+    changedIssuesRepository.setComplete();
+    assertThat(changedIssuesRepository.isDeltaIndexable()).isFalse();
 
     // commit the functional transaction
     dbClient.componentDao().applyBChangesForRootComponentUuid(db.getSession(), project.uuid());
@@ -46,6 +46,7 @@ import org.sonar.server.computation.task.projectanalysis.component.SubViewAttrib
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -94,6 +95,7 @@ public class ViewsPersistComponentsStepTest extends BaseStepTest {
   private Date now;
   private ComponentDbTester componentDbTester = new ComponentDbTester(dbTester);
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
+  private ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
   private PersistComponentsStep underTest;
   private BranchPersister branchPersister;
 
@@ -105,7 +107,8 @@ public class ViewsPersistComponentsStepTest extends BaseStepTest {
     dbTester.organizations().insertForUuid(ORGANIZATION_UUID);
     analysisMetadataHolder.setBranch(new DefaultBranchImpl());
     branchPersister = mock(BranchPersister.class);
-    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, branchPersister);
+    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, branchPersister,
+      changedIssuesRepository);
   }
 
   @Override
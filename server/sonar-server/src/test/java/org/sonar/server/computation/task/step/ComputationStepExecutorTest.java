@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.step;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -32,6 +33,7 @@ import org.sonar.server.computation.task.ChangeLogLevel;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
@@ -96,6 +98,34 @@ public class ComputationStepExecutorTest {
     assertThat(infoLogs.get(1)).contains("step2 | time=");
   }
 
+  @Test
+  public void execute_logs_part_of_ComputationStepMetric_attributable_to_each_ComputationStep() {
+    AtomicLong counter = new AtomicLong();
+    ComputationStepMetric metric = new ComputationStepMetric() {
+      @Override
+      public String getKey() {
+        return "bytesRead";
+      }
+
+      @Override
+      public long getValue() {
+        return counter.get();
+      }
+    };
+    counter.set(5);
+    doAnswer(invocation -> counter.addAndGet(12)).when(computationStep1).execute();
+
+    try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, LoggerLevel.DEBUG)) {
+      new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), null, new ComputationStepMetric[] {metric})
+        .execute();
+    }
+
+    List<String> logs = logTester.logs(LoggerLevel.DEBUG);
+    assertThat(logs).hasSize(2);
+    assertThat(logs.get(0)).startsWith("step1 | time=").endsWith(" | bytesRead=12");
+    assertThat(logs.get(1)).startsWith("step2 | time=").doesNotContain("bytesRead");
+  }
+
   @Test
   public void execute_logs_end_timing_for_each_ComputationStep_called_when_level_is_TRACE() {
     List<String> infoLogs = execute_logs_end_timing_for_each_ComputationStep_called_when_(LoggerLevel.TRACE);
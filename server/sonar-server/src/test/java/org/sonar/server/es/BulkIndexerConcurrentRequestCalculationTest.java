@@ -49,6 +49,18 @@ public class BulkIndexerConcurrentRequestCalculationTest {
       .isEqualTo(18);
   }
 
+  @Test
+  public void should_send_at_least_two_requests_in_parallel_if_concurrent_indexing() {
+    assertConcurrentRequests(BulkIndexer.Size.CONCURRENT, cores(1))
+      .isEqualTo(2);
+  }
+
+  @Test
+  public void should_send_at_most_four_requests_in_parallel_if_concurrent_indexing() {
+    assertConcurrentRequests(BulkIndexer.Size.CONCURRENT, cores(96))
+      .isEqualTo(4);
+  }
+
   private AbstractIntegerAssert<?> assertConcurrentRequests(BulkIndexer.Size size, BulkIndexer.Runtime2 runtime2) {
     return assertThat(size.createHandler(runtime2).getConcurrentRequests());
   }
@@ -96,6 +96,56 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void concurrent_indexing() {
+    FakeListener listener = new FakeListener();
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, Size.CONCURRENT, listener);
+    indexer.start();
+    for (int i = 0; i < 1_000; i++) {
+      indexer.add(newIndexRequestWithDocId("doc" + i));
+    }
+    IndexingResult result = indexer.stop();
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.getSuccess()).isEqualTo(1_000);
+    assertThat(result.getTotal()).isEqualTo(1_000);
+    assertThat(count()).isEqualTo(1_000);
+    assertThat(listener.calledDocIds).hasSize(1_000).contains(new DocId(INDEX_TYPE_FAKE, "doc0"), new DocId(INDEX_TYPE_FAKE, "doc999"));
+    assertThat(listener.calledResult.getSuccess()).isEqualTo(1_000);
+  }
+
+  @Test
+  public void concurrent_indexing_counts_errors() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, Size.CONCURRENT);
+    indexer.start();
+    indexer.add(newIndexRequestWithDocId("foo"));
+    indexer.add(new IndexRequest("index_does_not_exist", "index_does_not_exist", "bar").source(emptyMap()));
+    IndexingResult result = indexer.stop();
+
+    assertThat(result.isSuccess()).isFalse();
+    assertThat(result.getSuccess()).isEqualTo(1);
+    assertThat(result.getFailures()).isEqualTo(1);
+    assertThat(count()).isEqualTo(1);
+  }
+
+  @Test
+  public void bulk_requests_are_recorded_in_metrics() {
+    EsClient client = esTester.client();
+    BulkIndexingMetrics.IndexMetrics metrics = client.getBulkIndexingMetrics().forIndex(INDEX);
+
+    for (Size size : new Size[] {Size.REGULAR, Size.CONCURRENT}) {
+      BulkIndexer indexer = new BulkIndexer(client, INDEX_TYPE_FAKE, size);
+      indexer.start();
+      indexer.add(newIndexRequest(1));
+      indexer.add(newIndexRequest(2));
+      indexer.stop();
+    }
+
+    assertThat(metrics.getIndexedDocuments()).isEqualTo(4);
+    assertThat(metrics.getBulkRequests()).isEqualTo(2);
+    assertThat(metrics.getFailedDocuments()).isEqualTo(0);
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
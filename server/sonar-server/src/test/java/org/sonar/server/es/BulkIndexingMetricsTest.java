@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkIndexingMetricsTest {
+
+  private BulkIndexingMetrics underTest = new BulkIndexingMetrics();
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void metrics_are_exported_as_mbeans_while_started() throws Exception {
+    underTest.forIndex("foos");
+    assertThat(isRegistered("foos")).isFalse();
+
+    underTest.start();
+    underTest.forIndex("bars");
+    assertThat(isRegistered("foos")).isTrue();
+    assertThat(isRegistered("bars")).isTrue();
+
+    underTest.stop();
+    assertThat(isRegistered("foos")).isFalse();
+    assertThat(isRegistered("bars")).isFalse();
+  }
+
+  @Test
+  public void same_metrics_are_returned_for_an_index() {
+    assertThat(underTest.forIndex("foos")).isSameAs(underTest.forIndex("foos"));
+    assertThat(underTest.forIndex("foos")).isNotSameAs(underTest.forIndex("bars"));
+  }
+
+  @Test
+  public void compute_documents_per_second() {
+    BulkIndexingMetrics.IndexMetrics metrics = underTest.forIndex("foos");
+    assertThat(metrics.getDocumentsPerSecond()).isEqualTo(0.0);
+
+    metrics.onBulk(200L, 90L, 10L);
+    metrics.onBulk(300L, 60L, 0L);
+    metrics.onRejection();
+
+    assertThat(metrics.getBulkRequests()).isEqualTo(2);
+    assertThat(metrics.getRejectedBulkRequests()).isEqualTo(1);
+    assertThat(metrics.getIndexedDocuments()).isEqualTo(150);
+    assertThat(metrics.getFailedDocuments()).isEqualTo(10);
+    assertThat(metrics.getBulkTimeMillis()).isEqualTo(500);
+    assertThat(metrics.getDocumentsPerSecond()).isEqualTo(300.0);
+  }
+
+  private static boolean isRegistered(String index) throws Exception {
+    return ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(BulkIndexingMBean.OBJECT_NAME_PREFIX + index));
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.es.ConcurrentBulkProcessor.INITIAL_BULK_BYTES;
+import static org.sonar.server.es.ConcurrentBulkProcessor.MIN_BULK_BYTES;
+import static org.sonar.server.es.ConcurrentBulkProcessor.TARGET_LATENCY_MS;
+
+public class ConcurrentBulkProcessorTest {
+
+  private static final String INDEX = "foos";
+
+  private Client client = mock(Client.class);
+  private FakeListener listener = new FakeListener();
+  private BulkIndexingMetrics.IndexMetrics metrics = new BulkIndexingMetrics().forIndex(INDEX);
+  private ConcurrentBulkProcessor underTest = new ConcurrentBulkProcessor(client, INDEX, 2, listener, metrics,
+    BackoffPolicy.constantBackoff(TimeValue.timeValueMillis(1), 3));
+
+  @Test
+  public void bulk_size_is_increased_when_elasticsearch_responds_quickly() throws Exception {
+    when(client.bulk(any(BulkRequest.class))).thenAnswer(invocation -> success((BulkRequest) invocation.getArguments()[0], 10L));
+
+    underTest.add(newRequest("foo"));
+    underTest.add(newRequest("bar"));
+    assertThat(underTest.awaitClose(1, TimeUnit.MINUTES)).isTrue();
+
+    assertThat(underTest.getBulkBytes()).isGreaterThan(INITIAL_BULK_BYTES);
+    assertThat(listener.successes).isEqualTo(2);
+    assertThat(metrics.getBulkRequests()).isEqualTo(1);
+    assertThat(metrics.getIndexedDocuments()).isEqualTo(2);
+  }
+
+  @Test
+  public void bulk_size_is_decreased_when_elasticsearch_responds_slowly() throws Exception {
+    when(client.bulk(any(BulkRequest.class))).thenAnswer(invocation -> success((BulkRequest) invocation.getArguments()[0], TARGET_LATENCY_MS + 1));
+
+    underTest.add(newRequest("foo"));
+    assertThat(underTest.awaitClose(1, TimeUnit.MINUTES)).isTrue();
+
+    assertThat(underTest.getBulkBytes()).isLessThan(INITIAL_BULK_BYTES);
+    assertThat(listener.successes).isEqualTo(1);
+  }
+
+  @Test
+  public void rejected_bulk_request_is_retried_and_bulk_size_is_decreased() throws Exception {
+    ActionFuture<BulkResponse> rejected = mock(ActionFuture.class);
+    when(rejected.actionGet()).thenThrow(new EsRejectedExecutionException("queue is full"));
+    when(client.bulk(any(BulkRequest.class)))
+      .thenReturn(rejected)
+      .thenAnswer(invocation -> success((BulkRequest) invocation.getArguments()[0], 10L));
+
+    underTest.add(newRequest("foo"));
+    assertThat(underTest.awaitClose(1, TimeUnit.MINUTES)).isTrue();
+
+    verify(client, times(2)).bulk(any(BulkRequest.class));
+    assertThat(listener.successes).isEqualTo(1);
+    assertThat(listener.failures).isEmpty();
+    assertThat(metrics.getRejectedBulkRequests()).isEqualTo(1);
+    assertThat(underTest.getBulkBytes()).isLessThan(INITIAL_BULK_BYTES);
+  }
+
+  @Test
+  public void listener_is_notified_of_failure_when_retries_are_exhausted() throws Exception {
+    ActionFuture<BulkResponse> rejected = mock(ActionFuture.class);
+    when(rejected.actionGet()).thenThrow(new EsRejectedExecutionException("queue is full"));
+    when(client.bulk(any(BulkRequest.class))).thenReturn(rejected);
+
+    underTest.add(newRequest("foo"));
+    assertThat(underTest.awaitClose(1, TimeUnit.MINUTES)).isTrue();
+
+    verify(client, times(4)).bulk(any(BulkRequest.class));
+    assertThat(listener.successes).isEqualTo(0);
+    assertThat(listener.failures).hasSize(1);
+    assertThat(underTest.getBulkBytes()).isEqualTo(MIN_BULK_BYTES);
+  }
+
+  @Test
+  public void awaitClose_shuts_down_threads_even_if_pending_requests_can_not_be_sent() throws Exception {
+    underTest.add(newRequest("foo"));
+    Thread.currentThread().interrupt();
+
+    try {
+      underTest.awaitClose(1, TimeUnit.MINUTES);
+      fail("An IllegalStateException should have been raised");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Interrupted while waiting for Elasticsearch bulk requests to complete");
+    } finally {
+      Thread.interrupted();
+    }
+
+    assertThat(underTest.isClosed()).isTrue();
+    verify(client, never()).bulk(any(BulkRequest.class));
+  }
+
+  private static IndexRequest newRequest(String id) {
+    return new IndexRequest(INDEX, "foo", id).source(singletonMap("key", id));
+  }
+
+  private static ActionFuture<BulkResponse> success(BulkRequest request, long tookMillis) {
+    List<DocWriteRequest> requests = request.requests();
+    BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+    for (int i = 0; i < items.length; i++) {
+      DocWriteRequest docRequest = requests.get(i);
+      items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.INDEX,
+        new IndexResponse(new ShardId(INDEX, "uuid", 0), docRequest.type(), docRequest.id(), 1L, true));
+    }
+    ActionFuture<BulkResponse> future = mock(ActionFuture.class);
+    when(future.actionGet()).thenReturn(new BulkResponse(items, tookMillis));
+    return future;
+  }
+
+  private static class FakeListener implements ConcurrentBulkProcessor.Listener {
+    private volatile int successes = 0;
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    @Override
+    public synchronized void afterBulk(BulkRequest request, List<BulkItemResponse> items) {
+      successes += items.size();
+    }
+
+    @Override
+    public void afterBulk(BulkRequest request, Throwable failure) {
+      failures.add(failure);
+    }
+  }
+}
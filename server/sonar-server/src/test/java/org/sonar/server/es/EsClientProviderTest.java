@@ -61,7 +61,7 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.SEARCH_HOST, localhost);
     settings.setProperty(ProcessProperties.SEARCH_PORT, 8080);
 
-    EsClient client = underTest.provide(settings.asConfig());
+    EsClient client = underTest.provide(settings.asConfig(), new BulkIndexingMetrics());
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(1);
     TransportAddress address = transportClient.transportAddresses().get(0);
@@ -70,7 +70,7 @@ public class EsClientProviderTest {
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to local Elasticsearch: [" + localhost + ":8080]"), ""));
 
     // keep in cache
-    assertThat(underTest.provide(settings.asConfig())).isSameAs(client);
+    assertThat(underTest.provide(settings.asConfig(), new BulkIndexingMetrics())).isSameAs(client);
   }
 
   @Test
@@ -79,7 +79,7 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.CLUSTER_NODE_TYPE, "application");
     settings.setProperty(ProcessProperties.CLUSTER_SEARCH_HOSTS, format("%s:8080,%s:8081", localhost, localhost));
 
-    EsClient client = underTest.provide(settings.asConfig());
+    EsClient client = underTest.provide(settings.asConfig(), new BulkIndexingMetrics());
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(2);
     TransportAddress address = transportClient.transportAddresses().get(0);
@@ -91,7 +91,7 @@ public class EsClientProviderTest {
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to remote Elasticsearch: [" + localhost + ":8080, " + localhost + ":8081]"), ""));
 
     // keep in cache
-    assertThat(underTest.provide(settings.asConfig())).isSameAs(client);
+    assertThat(underTest.provide(settings.asConfig(), new BulkIndexingMetrics())).isSameAs(client);
   }
 
   @Test
@@ -103,7 +103,7 @@ public class EsClientProviderTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage(format("Port number out of range: %s:100000", localhost));
 
-    underTest.provide(settings.asConfig());
+    underTest.provide(settings.asConfig(), new BulkIndexingMetrics());
   }
 
   @Test
@@ -116,7 +116,7 @@ public class EsClientProviderTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Port out of range: 100000");
 
-    underTest.provide(settings.asConfig());
+    underTest.provide(settings.asConfig(), new BulkIndexingMetrics());
   }
 
   @Test
@@ -125,7 +125,7 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.CLUSTER_NODE_TYPE, "application");
     settings.setProperty(ProcessProperties.CLUSTER_SEARCH_HOSTS, format("%s,%s:8081", localhost, localhost));
 
-    EsClient client = underTest.provide(settings.asConfig());
+    EsClient client = underTest.provide(settings.asConfig(), new BulkIndexingMetrics());
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(2);
     TransportAddress address = transportClient.transportAddresses().get(0);
@@ -137,6 +137,6 @@ public class EsClientProviderTest {
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to remote Elasticsearch: [" + localhost + ":9001, " + localhost + ":8081]"), ""));
 
     // keep in cache
-    assertThat(underTest.provide(settings.asConfig())).isSameAs(client);
+    assertThat(underTest.provide(settings.asConfig(), new BulkIndexingMetrics())).isSameAs(client);
   }
 }
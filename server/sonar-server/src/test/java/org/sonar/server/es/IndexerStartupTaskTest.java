@@ -23,27 +23,36 @@ import com.google.common.collect.ImmutableSet;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.mockito.Mockito;
 import org.sonar.api.config.internal.MapSettings;
 import org.sonar.server.es.metadata.MetadataIndex;
 
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
+import static org.sonar.server.es.NewIndex.SettingsConfiguration.newBuilder;
 
 public class IndexerStartupTaskTest {
 
   @Rule
-  public EsTester es = new EsTester(new FakeIndexDefinition());
+  public EsTester es = new EsTester(new FakeIndexDefinition(), context -> context.create("others", newBuilder(new MapSettings().asConfig()).build()).createType("other"));
 
   private final MapSettings settings = new MapSettings();
   private final MetadataIndex metadataIndex = mock(MetadataIndex.class);
   private final StartupIndexer indexer = mock(StartupIndexer.class);
   private final IndexerStartupTask underTest = new IndexerStartupTask(es.client(), settings.asConfig(), metadataIndex, indexer);
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Before
   public void setUp() throws Exception {
     doReturn(ImmutableSet.of(INDEX_TYPE_FAKE)).when(indexer).getIndexTypes();
@@ -78,6 +87,45 @@ public class IndexerStartupTaskTest {
     verifyNoMoreInteractions(indexer);
   }
 
+  @Test
+  public void index_in_parallel_indexers_of_different_indices() throws Exception {
+    settings.setProperty(IndexerStartupTask.PROPERTY_THREADS, 4);
+    StartupIndexer otherIndexer = mock(StartupIndexer.class);
+    IndexType otherIndexType = new IndexType("others", "other");
+    doReturn(ImmutableSet.of(otherIndexType)).when(otherIndexer).getIndexTypes();
+    IndexerStartupTask underTest = new IndexerStartupTask(es.client(), settings.asConfig(), metadataIndex, indexer, otherIndexer);
+
+    underTest.execute();
+
+    verify(indexer).indexOnStartup(ImmutableSet.of(INDEX_TYPE_FAKE));
+    verify(otherIndexer).indexOnStartup(ImmutableSet.of(otherIndexType));
+    verify(metadataIndex).setInitialized(INDEX_TYPE_FAKE, true);
+    verify(metadataIndex).setInitialized(otherIndexType, true);
+  }
+
+  @Test
+  public void group_indexers_sharing_an_index_in_registration_order() {
+    StartupIndexer fooIndexer = newIndexer(new IndexType("foos", "foo"));
+    StartupIndexer barIndexer = newIndexer(new IndexType("bars", "bar"));
+    StartupIndexer bazIndexer = newIndexer(new IndexType("bazs", "baz"));
+    StartupIndexer fooAndBazIndexer = newIndexer(new IndexType("foos", "auth"), new IndexType("bazs", "auth"));
+
+    assertThat(IndexerStartupTask.groupBySharedIndices(fooIndexer, barIndexer, bazIndexer, fooAndBazIndexer))
+      .containsExactlyInAnyOrder(
+        asList(barIndexer),
+        asList(fooIndexer, bazIndexer, fooAndBazIndexer));
+  }
+
+  @Test
+  public void fail_if_an_indexer_fails_in_parallel_mode() throws Exception {
+    settings.setProperty(IndexerStartupTask.PROPERTY_THREADS, 4);
+    doThrow(new IllegalStateException("BOOM")).when(indexer).indexOnStartup(anySetOf(IndexType.class));
+
+    expectedException.expectMessage("BOOM");
+
+    underTest.execute();
+  }
+
   @Test
   public void do_not_index_if_indexes_are_disabled() throws Exception {
     settings.setProperty("sonar.internal.es.disableIndexes", "true");
@@ -88,4 +136,10 @@ public class IndexerStartupTaskTest {
     // do not index
     verifyNoMoreInteractions(indexer);
   }
+
+  private static StartupIndexer newIndexer(IndexType... indexTypes) {
+    StartupIndexer indexer = mock(StartupIndexer.class);
+    doReturn(ImmutableSet.copyOf(indexTypes)).when(indexer).getIndexTypes();
+    return indexer;
+  }
 }
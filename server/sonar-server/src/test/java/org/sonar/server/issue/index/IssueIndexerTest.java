@@ -44,6 +44,7 @@ import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.es.IndexerStartupTask;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
@@ -52,7 +53,9 @@ import org.sonar.server.permission.index.PermissionIndexerDao;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.server.issue.IssueDocTesting.newDoc;
 import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE;
@@ -105,6 +108,22 @@ public class IssueIndexerTest {
     assertThatIndexHasOnly(issue1, issue2);
   }
 
+  @Test
+  public void indexOnStartup_with_several_threads_adds_issues_of_all_projects_and_branches_to_index() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    ComponentDto branch = db.components().insertProjectBranch(project);
+    IssueDto issue1 = db.issues().insertIssue(organization);
+    IssueDto issue2 = db.issues().insertIssue(IssueTesting.newIssue(rule, project, db.components().insertComponent(newFileDto(project))));
+    IssueDto issue3 = db.issues().insertIssue(IssueTesting.newIssue(rule, branch, db.components().insertComponent(newFileDto(branch))));
+    IssueIndexer underTest = new IssueIndexer(es.client(), db.getDbClient(), new IssueIteratorFactory(db.getDbClient()),
+      new MapSettings().setProperty(IndexerStartupTask.PROPERTY_THREADS, 2).asConfig());
+
+    underTest.indexOnStartup(emptySet());
+
+    assertThatIndexHasOnly(issue1, issue2, issue3);
+  }
+
   @Test
   public void verify_indexed_fields() {
     RuleDefinitionDto rule = db.rules().insert();
@@ -193,6 +212,36 @@ public class IssueIndexerTest {
     assertThatEsQueueTableHasSize(0);
   }
 
+  @Test
+  public void indexOnAnalysis_with_issue_keys_indexes_only_the_specified_issues_and_deletes_missing_ones() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    IssueDto changedIssue = db.issues().insertIssue(IssueTesting.newIssue(rule, project, file));
+    // not changed by analysis
+    db.issues().insertIssue(IssueTesting.newIssue(rule, project, file));
+    addIssueToIndex(project.uuid(), "purged");
+
+    underTest.indexOnAnalysis(project.uuid(), asList(changedIssue.getKey(), "purged"));
+
+    assertThatIndexHasOnly(changedIssue);
+    assertThatEsQueueTableHasSize(0);
+  }
+
+  @Test
+  public void indexOnAnalysis_with_issue_keys_enables_recovery_of_whole_branch_on_errors() {
+    IssueDto issue = db.issues().insertIssue(organization);
+    es.lockWrites(INDEX_TYPE_ISSUE);
+
+    underTest.indexOnAnalysis(issue.getProjectUuid(), singletonList(issue.getKey()));
+
+    assertThatIndexHasSize(0);
+    assertThatEsQueueTableHasSize(1);
+    assertThat(db.getDbClient().esQueueDao().selectForRecovery(db.getSession(), Long.MAX_VALUE, 10))
+      .extracting(EsQueueDto::getDocId, EsQueueDto::getDocIdType)
+      .containsExactly(tuple(issue.getProjectUuid(), "projectUuid"));
+  }
+
   @Test
   public void index_is_not_updated_when_creating_project() {
     // it's impossible to already have an issue on a project
@@ -19,15 +19,19 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
@@ -52,6 +56,69 @@ public class DiskCacheTest {
     }
   }
 
+  @Test
+  public void write_and_read_with_multiple_appenders() throws Exception {
+    verifyMultipleAppenders(new DiskCache<>(temp.newFile(), System2.INSTANCE));
+  }
+
+  @Test
+  public void write_and_read_compressed_with_multiple_appenders() throws Exception {
+    verifyMultipleAppenders(new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), true));
+  }
+
+  private static void verifyMultipleAppenders(DiskCache<String> cache) {
+    cache.newAppender().append("foo").close();
+    cache.newAppender().close();
+    cache.newAppender().append("bar").append("baz").close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+    // can be traversed multiple times
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  @Test
+  public void write_and_read_with_codec() throws Exception {
+    String large = StringUtils.repeat("a", 60_000);
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), false);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append(large)
+      .append("")
+      .append("bar")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", large, "", "bar");
+    }
+  }
+
+  @Test
+  public void compressed_file_is_smaller() throws Exception {
+    File file = temp.newFile();
+    File compressedFile = temp.newFile();
+    DiskCache<String> cache = new DiskCache<>(file, System2.INSTANCE, new StringCodec(), false);
+    DiskCache<String> compressedCache = new DiskCache<>(compressedFile, System2.INSTANCE, new StringCodec(), true);
+    try (DiskCache<String>.DiskAppender appender = cache.newAppender();
+      DiskCache<String>.DiskAppender compressedAppender = compressedCache.newAppender()) {
+      for (int i = 0; i < 1_000; i++) {
+        appender.append("some repeated string " + i);
+        compressedAppender.append("some repeated string " + i);
+      }
+    }
+
+    try (CloseableIterator<String> traverse = compressedCache.traverse()) {
+      assertThat(traverse).hasSize(1_000);
+    }
+    assertThat(compressedFile.length()).isLessThan(file.length());
+  }
+
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
@@ -77,4 +144,16 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  private static class StringCodec implements DiskCache.Codec<String> {
+    @Override
+    public void write(String object, DataOutputStream output) throws IOException {
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInputStream input) throws IOException {
+      return input.readUTF();
+    }
+  }
 }
@@ -0,0 +1,234 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Indices of raw and base issues used by the matching passes of {@link Tracker}.
+ * <p>
+ * The fields compared by the passes (rule, line, line hash and message) are converted once to integer identifiers,
+ * so that no key has to be allocated per issue and per pass. The bases sharing the same key of a pass are chained in
+ * their original order: a raw issue is matched with the first unmatched base of its chain, exactly as if bases were
+ * searched in a multimap.
+ * </p>
+ */
+class TrackingIndex<RAW extends Trackable, BASE extends Trackable> {
+
+  private static final int NO_LINE = 0;
+  private static final int NONE = -1;
+  /**
+   * Head of a slot whose chain became empty. The slot is still used, so that probing of other keys is not broken.
+   */
+  private static final int EMPTY_CHAIN = -2;
+
+  enum Pass {
+    LINE_AND_LINE_HASH(true, true, false),
+    LINE_HASH_AND_MESSAGE(false, true, true),
+    LINE_AND_MESSAGE(true, false, true),
+    LINE_HASH(false, true, false);
+
+    private final boolean line;
+    private final boolean lineHash;
+    private final boolean message;
+
+    Pass(boolean line, boolean lineHash, boolean message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.message = message;
+    }
+  }
+
+  private final Tracking<RAW, BASE> tracking;
+  private final List<RAW> raws;
+  private final List<BASE> bases;
+  private final IssueFields rawFields;
+  private final IssueFields baseFields;
+
+  TrackingIndex(Tracking<RAW, BASE> tracking, Collection<RAW> raws, Collection<BASE> bases) {
+    this.tracking = tracking;
+    this.raws = new ArrayList<>(raws);
+    this.bases = new ArrayList<>(bases);
+    Map<Object, Integer> ids = new HashMap<>();
+    this.rawFields = new IssueFields(this.raws, ids);
+    this.baseFields = new IssueFields(this.bases, ids);
+  }
+
+  void match(Pass pass) {
+    Chains chains = new Chains(pass);
+    for (int raw = 0; raw < raws.size(); raw++) {
+      RAW rawIssue = raws.get(raw);
+      if (tracking.baseFor(rawIssue) == null) {
+        int base = chains.pollFirstUnmatched(raw);
+        if (base != NONE) {
+          tracking.match(rawIssue, bases.get(base));
+        }
+      }
+    }
+  }
+
+  private static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static long key(Pass pass, IssueFields fields, int i) {
+    long key = fields.rules[i];
+    key = 31L * key + (pass.line ? fields.lines[i] : 0);
+    key = 31L * key + (pass.lineHash ? fields.lineHashes[i] : 0);
+    key = 31L * key + (pass.message ? fields.messages[i] : 0);
+    return key;
+  }
+
+  private static class IssueFields {
+    private final int[] rules;
+    private final int[] lines;
+    private final int[] lineHashes;
+    private final int[] messages;
+
+    private IssueFields(List<? extends Trackable> issues, Map<Object, Integer> ids) {
+      int size = issues.size();
+      this.rules = new int[size];
+      this.lines = new int[size];
+      this.lineHashes = new int[size];
+      this.messages = new int[size];
+      for (int i = 0; i < size; i++) {
+        Trackable issue = issues.get(i);
+        Integer line = issue.getLine();
+        rules[i] = id(ids, issue.getRuleKey());
+        lines[i] = line == null ? NO_LINE : line;
+        lineHashes[i] = id(ids, StringUtils.defaultString(issue.getLineHash(), ""));
+        messages[i] = id(ids, issue.getMessage());
+      }
+    }
+
+    private static int id(Map<Object, Integer> ids, Object value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = ids.size();
+        ids.put(value, id);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Open addressing hash table whose slots are the heads of the chains of bases having the same key.
+   */
+  private class Chains {
+    private final Pass pass;
+    private final int mask;
+    private final long[] slotKeys;
+    private final int[] heads;
+    private final int[] tails;
+    private final int[] next;
+
+    private Chains(Pass pass) {
+      this.pass = pass;
+      int capacity = Integer.highestOneBit(Math.max(2, bases.size()) * 2 - 1) << 1;
+      this.mask = capacity - 1;
+      this.slotKeys = new long[capacity];
+      this.heads = new int[capacity];
+      this.tails = new int[capacity];
+      this.next = new int[bases.size()];
+      Arrays.fill(heads, NONE);
+      for (int base = 0; base < bases.size(); base++) {
+        if (tracking.containsUnmatchedBase(bases.get(base))) {
+          append(base);
+        }
+      }
+    }
+
+    private void append(int base) {
+      int slot = slot(key(pass, baseFields, base));
+      next[base] = NONE;
+      if (heads[slot] == NONE) {
+        heads[slot] = base;
+      } else {
+        next[tails[slot]] = base;
+      }
+      tails[slot] = base;
+    }
+
+    private int slot(long key) {
+      int slot = mix(key) & mask;
+      while (heads[slot] != NONE && slotKeys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      slotKeys[slot] = key;
+      return slot;
+    }
+
+    private int find(long key) {
+      int slot = mix(key) & mask;
+      while (heads[slot] != NONE) {
+        if (slotKeys[slot] == key) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return NONE;
+    }
+
+    /**
+     * Removes from its chain and returns the first base which is not matched yet and which has the same fields as
+     * the raw. Bases matched in the meantime (by code move detection for example) are removed on the way.
+     */
+    private int pollFirstUnmatched(int raw) {
+      int slot = find(key(pass, rawFields, raw));
+      if (slot == NONE) {
+        return NONE;
+      }
+      int previous = NONE;
+      int base = heads[slot];
+      while (base >= 0) {
+        int following = next[base];
+        boolean unmatched = tracking.containsUnmatchedBase(bases.get(base));
+        if (!unmatched || sameFields(raw, base)) {
+          if (previous == NONE) {
+            heads[slot] = following == NONE ? EMPTY_CHAIN : following;
+          } else {
+            next[previous] = following;
+          }
+          if (unmatched) {
+            return base;
+          }
+        } else {
+          previous = base;
+        }
+        base = following;
+      }
+      return NONE;
+    }
+
+    private boolean sameFields(int raw, int base) {
+      return rawFields.rules[raw] == baseFields.rules[base]
+        && (!pass.line || rawFields.lines[raw] == baseFields.lines[base])
+        && (!pass.lineHash || rawFields.lineHashes[raw] == baseFields.lineHashes[base])
+        && (!pass.message || rawFields.messages[raw] == baseFields.messages[base]);
+    }
+  }
+}
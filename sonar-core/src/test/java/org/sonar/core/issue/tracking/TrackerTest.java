@@ -19,9 +19,13 @@
  */
 package org.sonar.core.issue.tracking;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Rule;
@@ -381,6 +385,99 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw1)).isEqualTo(base1);
   }
 
+  @Test
+  public void matching_is_the_same_as_searching_bases_in_multimaps() {
+    Random random = new Random(42);
+    RuleKey[] rules = {RULE_SYSTEM_PRINT, RULE_UNUSED_LOCAL_VARIABLE, RULE_USE_DIAMOND};
+    for (int run = 0; run < 200; run++) {
+      FakeInput baseInput = randomInput(random, rules);
+      FakeInput rawInput = randomInput(random, rules);
+
+      Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+      Tracking<Issue, Issue> expected = trackWithMultimaps(rawInput, baseInput);
+
+      assertThat(tracking.getMatchedRaws()).hasSameSizeAs(expected.getMatchedRaws());
+      for (Issue raw : rawInput.getIssues()) {
+        assertThat(tracking.baseFor(raw)).isSameAs(expected.baseFor(raw));
+      }
+    }
+  }
+
+  @Test
+  public void track_many_issues_on_similar_lines() {
+    // generated code: few distinct lines, many issues of the same rule
+    String[] baseHashes = new String[20_000];
+    String[] rawHashes = new String[20_001];
+    rawHashes[0] = "new first line";
+    for (int i = 0; i < baseHashes.length; i++) {
+      baseHashes[i] = "H" + (i % 10);
+      rawHashes[i + 1] = baseHashes[i];
+    }
+    FakeInput baseInput = new FakeInput(baseHashes);
+    FakeInput rawInput = new FakeInput(rawHashes);
+    for (int line = 1; line <= baseHashes.length; line++) {
+      baseInput.createIssueOnLine(line, RULE_SYSTEM_PRINT, "msg" + (line % 3));
+      rawInput.createIssueOnLine(line + 1, RULE_SYSTEM_PRINT, "msg" + (line % 3));
+    }
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    assertThat(tracking.getMatchedRaws()).hasSize(baseHashes.length);
+    assertThat(tracking.getUnmatchedBases()).isEmpty();
+  }
+
+  private static FakeInput randomInput(Random random, RuleKey[] rules) {
+    String[] hashes = new String[1 + random.nextInt(30)];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = "H" + random.nextInt(6);
+    }
+    FakeInput input = new FakeInput(hashes);
+    int issues = random.nextInt(40);
+    for (int i = 0; i < issues; i++) {
+      RuleKey rule = rules[random.nextInt(rules.length)];
+      String message = "msg" + random.nextInt(3);
+      if (random.nextInt(10) == 0) {
+        input.createIssue(rule, message);
+      } else {
+        input.createIssueOnLine(1 + random.nextInt(hashes.length), rule, message);
+      }
+    }
+    return input;
+  }
+
+  /**
+   * Straightforward implementation of the matching passes, to which the indices of {@link Tracker} are compared
+   */
+  private static Tracking<Issue, Issue> trackWithMultimaps(FakeInput rawInput, FakeInput baseInput) {
+    Tracking<Issue, Issue> tracking = new Tracking<>(rawInput, baseInput);
+    matchWithMultimap(tracking, i -> asList(i.getRuleKey(), i.getLine(), i.getLineHash()));
+    if (!tracking.isComplete()) {
+      new BlockRecognizer<Issue, Issue>().match(rawInput, baseInput, tracking);
+    }
+    matchWithMultimap(tracking, i -> asList(i.getRuleKey(), i.getMessage(), i.getLineHash()));
+    matchWithMultimap(tracking, i -> asList(i.getRuleKey(), i.getLine(), i.getMessage()));
+    matchWithMultimap(tracking, i -> asList(i.getRuleKey(), i.getLineHash()));
+    return tracking;
+  }
+
+  private static void matchWithMultimap(Tracking<Issue, Issue> tracking, Function<Issue, List<Object>> key) {
+    if (tracking.isComplete()) {
+      return;
+    }
+    Multimap<List<Object>, Issue> baseSearch = ArrayListMultimap.create();
+    for (Issue base : tracking.getUnmatchedBases()) {
+      baseSearch.put(key.apply(base), base);
+    }
+    for (Issue raw : tracking.getUnmatchedRaws()) {
+      Collection<Issue> bases = baseSearch.get(key.apply(raw));
+      if (!bases.isEmpty()) {
+        Issue match = bases.iterator().next();
+        tracking.match(raw, match);
+        baseSearch.remove(key.apply(raw), match);
+      }
+    }
+  }
+
   private static class Issue implements Trackable {
     private final RuleKey ruleKey;
     private final Integer line;
@@ -28,6 +28,10 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -142,6 +146,43 @@ public class PackedMemoryCloneIndexTest {
     index.getBySequenceHash(new ByteArray(1L));
   }
 
+  /**
+   * Given: sorted index.
+   * Expected: same results when queried concurrently by several threads.
+   */
+  @Test
+  public void should_be_queried_concurrently() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("r" + (i % 10), i % 100));
+    }
+    index.getBySequenceHash(new ByteArray(0L));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executorService.submit(() -> {
+          for (int i = 0; i < 1000; i++) {
+            ByteArray hash = new ByteArray((long) i % 100);
+            Collection<Block> blocks = index.getBySequenceHash(hash);
+            if (blocks.size() != 10 || blocks.stream().anyMatch(block -> !block.getBlockHash().equals(hash))) {
+              return false;
+            }
+            if (index.getByResourceId("r" + (i % 10)).size() != 100) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertThat(future.get(), is(true));
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   private static Block newBlock(String resourceId, long hash) {
     return Block.builder()
         .setResourceId(resourceId)
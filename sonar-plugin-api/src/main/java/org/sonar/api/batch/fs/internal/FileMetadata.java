@@ -27,6 +27,7 @@ import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
@@ -41,6 +42,9 @@ import org.sonar.api.batch.fs.internal.charhandler.LineOffsetCounter;
 /**
  * Computes hash of files. Ends of Lines are ignored, so files with
  * same content but different EOL encoding have the same hash.
+ * <p>
+ * Files encoded in UTF-8, US-ASCII or ISO-8859-1 are read in a single pass over their bytes by {@link FusedMetadataReader},
+ * other files are decoded and given char by char to {@link CharHandler}s.
  */
 @ScannerSide
 @Immutable
@@ -53,16 +57,25 @@ public class FileMetadata {
    * Maximum performance is needed.
    */
   public Metadata readMetadata(InputStream stream, Charset encoding, String filePath, @Nullable CharHandler otherHandler) {
+    InputStream remainingStream = stream;
+    if (otherHandler == null && FusedMetadataReader.supports(encoding)) {
+      FusedMetadataReader fusedReader = FusedMetadataReader.forMetadata(encoding);
+      remainingStream = readFused(fusedReader, stream, encoding, filePath);
+      if (remainingStream == null) {
+        return fusedReader.toMetadata();
+      }
+    }
+
     LineCounter lineCounter = new LineCounter(filePath, encoding);
     FileHashComputer fileHashComputer = new FileHashComputer(filePath);
     LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
 
     if (otherHandler != null) {
       CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter, otherHandler};
-      readFile(stream, encoding, filePath, handlers);
+      readFile(remainingStream, encoding, filePath, handlers);
     } else {
       CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter};
-      readFile(stream, encoding, filePath, handlers);
+      readFile(remainingStream, encoding, filePath, handlers);
     }
     return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
       lineOffsetCounter.getLastValidOffset());
@@ -98,6 +111,18 @@ public class FileMetadata {
     }
   }
 
+  /**
+   * @return {@code null} if the file is read by the given reader, otherwise the stream to be read char by char
+   */
+  @CheckForNull
+  private static InputStream readFused(FusedMetadataReader fusedReader, InputStream stream, Charset encoding, String filePath) {
+    try {
+      return fusedReader.read(stream);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", filePath, encoding), e);
+    }
+  }
+
   private static void read(Reader reader, CharHandler[] handlers) throws IOException {
     char c;
     int i = reader.read();
@@ -155,7 +180,14 @@ public class FileMetadata {
    */
   public static void computeLineHashesForIssueTracking(InputFile f, LineHashConsumer consumer) {
     try {
-      readFile(f.inputStream(), f.charset(), f.absolutePath(), new CharHandler[] {new LineHashComputer(consumer, f.file())});
+      InputStream stream = f.inputStream();
+      if (FusedMetadataReader.supports(f.charset())) {
+        stream = readFused(FusedMetadataReader.forLineHashes(f.charset(), consumer), stream, f.charset(), f.absolutePath());
+        if (stream == null) {
+          return;
+        }
+      }
+      readFile(stream, f.charset(), f.absolutePath(), new CharHandler[] {new LineHashComputer(consumer, f.file())});
     } catch (IOException e) {
       throw new IllegalStateException("Failed to compute line hashes for " + f.absolutePath(), e);
     }
@@ -0,0 +1,346 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
+import org.sonar.api.batch.fs.internal.charhandler.FileHashComputer;
+import org.sonar.api.batch.fs.internal.charhandler.LineCounter;
+import org.sonar.api.batch.fs.internal.charhandler.LineHashComputer;
+import org.sonar.api.batch.fs.internal.charhandler.LineOffsetCounter;
+
+/**
+ * Computes in a single loop over the bytes of a file what {@link LineCounter}, {@link FileHashComputer} and
+ * {@link LineOffsetCounter}, or {@link LineHashComputer}, compute from the chars of the file. Bytes are read in bulk and
+ * are not decoded to chars, except the few ones which are not ASCII.
+ * <p>
+ * Only the files encoded in one of the {@link #supports(Charset) supported charsets}, with bytes which are valid in
+ * this charset, are read. Other files are left to the char handlers, as the decoder replaces their invalid bytes.
+ */
+final class FusedMetadataReader {
+
+  // larger files are left to the char handlers, which don't load them in memory
+  private static final int MAX_FILE_SIZE = 32 * 1024 * 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte LINE_FEED = '\n';
+  private static final byte CARRIAGE_RETURN = '\r';
+  private static final boolean[] WHITESPACES = new boolean[256];
+
+  static {
+    for (char c = 0; c < WHITESPACES.length; c++) {
+      WHITESPACES[c] = Character.isWhitespace(c);
+    }
+  }
+
+  private final Charset charset;
+  @Nullable
+  private final LineHashConsumer lineHashConsumer;
+  @Nullable
+  private final ByteSink fileHash;
+  @Nullable
+  private final ByteSink lineHash;
+
+  private int lines = 1;
+  private int nonBlankLines = 0;
+  private boolean blankLine = true;
+  private int[] lineOffsets = new int[64];
+  private long offset = 0;
+
+  private FusedMetadataReader(Charset charset, @Nullable LineHashConsumer lineHashConsumer) {
+    this.charset = charset;
+    this.lineHashConsumer = lineHashConsumer;
+    this.fileHash = lineHashConsumer == null ? new ByteSink() : null;
+    this.lineHash = lineHashConsumer == null ? null : new ByteSink();
+  }
+
+  static boolean supports(Charset charset) {
+    return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Reader of the lines, the offsets of lines and the hash of a file
+   */
+  static FusedMetadataReader forMetadata(Charset charset) {
+    return new FusedMetadataReader(charset, null);
+  }
+
+  /**
+   * Reader of the hashes of the lines of a file, given to the consumer once the whole file is known to be supported
+   */
+  static FusedMetadataReader forLineHashes(Charset charset, LineHashConsumer consumer) {
+    return new FusedMetadataReader(charset, consumer);
+  }
+
+  /**
+   * Reads the file if it is supported, then closes the stream.
+   *
+   * @return {@code null} if the file is read, otherwise a stream of the whole file to be read by the char handlers
+   */
+  @CheckForNull
+  InputStream read(InputStream stream) throws IOException {
+    byte[] bytes = new byte[BUFFER_SIZE];
+    int length = 0;
+    try {
+      int read = stream.read(bytes);
+      while (read != -1) {
+        length += read;
+        if (length == bytes.length) {
+          if (length >= MAX_FILE_SIZE) {
+            return new SequenceInputStream(new ByteArrayInputStream(bytes, 0, length), stream);
+          }
+          bytes = Arrays.copyOf(bytes, Math.min(length * 2, MAX_FILE_SIZE));
+        }
+        read = stream.read(bytes, length, bytes.length - length);
+      }
+    } catch (IOException | RuntimeException e) {
+      stream.close();
+      throw e;
+    }
+    stream.close();
+    if (!isValid(bytes, length)) {
+      return new ByteArrayInputStream(bytes, 0, length);
+    }
+    read(bytes, length);
+    return null;
+  }
+
+  private boolean isValid(byte[] bytes, int length) {
+    if (charset.equals(StandardCharsets.ISO_8859_1)) {
+      return true;
+    }
+    if (charset.equals(StandardCharsets.US_ASCII)) {
+      for (int i = 0; i < length; i++) {
+        if (bytes[i] < 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+    int i = 0;
+    while (i < length) {
+      if (bytes[i] >= 0) {
+        i++;
+      } else {
+        int sequenceLength = utf8SequenceLength(bytes, i, length);
+        // U+FFFD is left to LineCounter, which logs it as an invalid char
+        if (sequenceLength == 0 || isReplacementChar(bytes, i, sequenceLength)) {
+          return false;
+        }
+        i += sequenceLength;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the length of the well-formed UTF-8 sequence of several bytes which starts at the given index, or 0 if the
+   * sequence is malformed
+   */
+  private static int utf8SequenceLength(byte[] bytes, int i, int length) {
+    int b = bytes[i] & 0xFF;
+    if (b >= 0xC2 && b <= 0xDF) {
+      return i + 1 < length && isContinuation(bytes[i + 1]) ? 2 : 0;
+    }
+    if (b >= 0xE0 && b <= 0xEF) {
+      if (i + 2 >= length || !isContinuation(bytes[i + 1]) || !isContinuation(bytes[i + 2])) {
+        return 0;
+      }
+      int second = bytes[i + 1] & 0xFF;
+      // no overlong encodings nor surrogates
+      return (b == 0xE0 && second < 0xA0) || (b == 0xED && second > 0x9F) ? 0 : 3;
+    }
+    if (b >= 0xF0 && b <= 0xF4) {
+      if (i + 3 >= length || !isContinuation(bytes[i + 1]) || !isContinuation(bytes[i + 2]) || !isContinuation(bytes[i + 3])) {
+        return 0;
+      }
+      int second = bytes[i + 1] & 0xFF;
+      // no overlong encodings nor code points above U+10FFFF
+      return (b == 0xF0 && second < 0x90) || (b == 0xF4 && second > 0x8F) ? 0 : 4;
+    }
+    return 0;
+  }
+
+  private static boolean isContinuation(byte b) {
+    return (b & 0xC0) == 0x80;
+  }
+
+  private static boolean isReplacementChar(byte[] bytes, int i, int sequenceLength) {
+    return sequenceLength == 3 && bytes[i] == (byte) 0xEF && bytes[i + 1] == (byte) 0xBF && bytes[i + 2] == (byte) 0xBD;
+  }
+
+  private void read(byte[] bytes, int length) {
+    boolean latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+    boolean afterCR = false;
+    int i = 0;
+    while (i < length) {
+      byte b = bytes[i];
+      if (b == LINE_FEED) {
+        // also ends the line of a preceding CR
+        offset++;
+        newLine();
+        afterCR = false;
+        i++;
+        continue;
+      }
+      if (afterCR) {
+        newLine();
+        afterCR = false;
+      }
+      if (b == CARRIAGE_RETURN) {
+        offset++;
+        afterCR = true;
+        i++;
+      } else if (b >= 0) {
+        append(b, WHITESPACES[b]);
+        offset++;
+        i++;
+      } else if (latin1) {
+        appendLatin1(b & 0xFF);
+        offset++;
+        i++;
+      } else {
+        i += appendUtf8(bytes, i);
+      }
+    }
+    if (afterCR) {
+      newLine();
+    }
+    eof();
+  }
+
+  private void append(byte b, boolean whitespace) {
+    if (!whitespace) {
+      blankLine = false;
+    }
+    if (fileHash != null) {
+      fileHash.add(b);
+    }
+    if (lineHash != null && !whitespace) {
+      lineHash.add(b);
+    }
+  }
+
+  private void appendLatin1(int c) {
+    boolean whitespace = WHITESPACES[c];
+    // hashes are computed on UTF-8
+    append((byte) (0xC0 | (c >> 6)), whitespace);
+    append((byte) (0x80 | (c & 0x3F)), whitespace);
+  }
+
+  private int appendUtf8(byte[] bytes, int i) {
+    int sequenceLength = utf8SequenceLength(bytes, i, bytes.length);
+    int codePoint;
+    if (sequenceLength == 2) {
+      codePoint = ((bytes[i] & 0x1F) << 6) | (bytes[i + 1] & 0x3F);
+    } else if (sequenceLength == 3) {
+      codePoint = ((bytes[i] & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F);
+    } else {
+      codePoint = ((bytes[i] & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12) | ((bytes[i + 2] & 0x3F) << 6) | (bytes[i + 3] & 0x3F);
+    }
+    boolean whitespace = Character.isWhitespace(codePoint);
+    for (int j = 0; j < sequenceLength; j++) {
+      append(bytes[i + j], whitespace);
+    }
+    // chars out of the BMP are made of two UTF-16 chars
+    offset += Character.charCount(codePoint);
+    return sequenceLength;
+  }
+
+  private void newLine() {
+    if (offset > Integer.MAX_VALUE) {
+      throw new IllegalStateException("File is too big: " + offset);
+    }
+    if (lines == lineOffsets.length) {
+      lineOffsets = Arrays.copyOf(lineOffsets, lines * 2);
+    }
+    lineOffsets[lines] = (int) offset;
+    if (!blankLine) {
+      nonBlankLines++;
+    }
+    blankLine = true;
+    if (fileHash != null) {
+      fileHash.add(LINE_FEED);
+    }
+    consumeLineHash();
+    lines++;
+  }
+
+  private void eof() {
+    if (offset > Integer.MAX_VALUE) {
+      throw new IllegalStateException("File is too big: " + offset);
+    }
+    if (!blankLine) {
+      nonBlankLines++;
+    }
+    consumeLineHash();
+  }
+
+  private void consumeLineHash() {
+    if (lineHash != null && !lineHash.isEmpty()) {
+      lineHashConsumer.consume(lines, lineHash.digest());
+    }
+  }
+
+  Metadata toMetadata() {
+    return new Metadata(lines, nonBlankLines, Hex.encodeHexString(fileHash.digest()), Arrays.copyOf(lineOffsets, lines), (int) offset);
+  }
+
+  /**
+   * Bytes to be hashed, given to the digest by blocks rather than one by one
+   */
+  private static class ByteSink {
+    private final MessageDigest md5 = DigestUtils.getMd5Digest();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int size = 0;
+    private boolean empty = true;
+
+    void add(byte b) {
+      if (size == buffer.length) {
+        md5.update(buffer, 0, size);
+        size = 0;
+      }
+      buffer[size] = b;
+      size++;
+      empty = false;
+    }
+
+    boolean isEmpty() {
+      return empty;
+    }
+
+    byte[] digest() {
+      md5.update(buffer, 0, size);
+      size = 0;
+      empty = true;
+      return md5.digest();
+    }
+  }
+}
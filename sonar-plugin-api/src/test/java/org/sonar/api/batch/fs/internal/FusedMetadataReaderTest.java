@@ -0,0 +1,145 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+import org.sonar.api.batch.fs.internal.charhandler.CharHandler;
+import org.sonar.api.batch.fs.internal.charhandler.LineHashComputer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FusedMetadataReaderTest {
+
+  // line ends, whitespaces, ASCII, latin-1, BMP and supplementary chars
+  private static final String[] TOKENS = {"\n", "\r", "\r\n", " ", "\t", "\u000b", "\u001c", "a", "{", "0", "\u00e9", "\u00a0", "\u0085",
+    "\u2003", "\u3000", "\u65e5\u672c", "\ud83d\ude00", "\ufeff"};
+
+  @Test
+  public void supported_charsets() {
+    assertThat(FusedMetadataReader.supports(StandardCharsets.UTF_8)).isTrue();
+    assertThat(FusedMetadataReader.supports(StandardCharsets.US_ASCII)).isTrue();
+    assertThat(FusedMetadataReader.supports(StandardCharsets.ISO_8859_1)).isTrue();
+    assertThat(FusedMetadataReader.supports(StandardCharsets.UTF_16)).isFalse();
+    assertThat(FusedMetadataReader.supports(Charset.forName("windows-1252"))).isFalse();
+  }
+
+  @Test
+  public void compute_same_metadata_as_char_handlers() throws IOException {
+    Random random = new Random(1);
+    for (int i = 0; i < 300; i++) {
+      String content = randomContent(random);
+      for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII}) {
+        byte[] bytes = content.getBytes(charset);
+        FusedMetadataReader reader = FusedMetadataReader.forMetadata(charset);
+        if (reader.read(new ByteArrayInputStream(bytes)) == null) {
+          assertSameMetadata(reader.toMetadata(), readWithCharHandlers(bytes, charset));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void compute_same_line_hashes_as_char_handlers() throws IOException {
+    Random random = new Random(2);
+    for (int i = 0; i < 300; i++) {
+      byte[] bytes = randomContent(random).getBytes(StandardCharsets.UTF_8);
+      List<String> fusedHashes = new ArrayList<>();
+      assertThat(FusedMetadataReader.forLineHashes(StandardCharsets.UTF_8, (line, hash) -> fusedHashes.add(line + ":" + Hex.encodeHexString(hash)))
+        .read(new ByteArrayInputStream(bytes))).isNull();
+
+      List<String> expectedHashes = new ArrayList<>();
+      FileMetadata.readFile(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, "file",
+        new CharHandler[] {new LineHashComputer((line, hash) -> expectedHashes.add(line + ":" + Hex.encodeHexString(hash)), new File("file"))});
+      assertThat(fusedHashes).isEqualTo(expectedHashes);
+    }
+  }
+
+  @Test
+  public void leave_invalid_bytes_to_char_handlers() throws IOException {
+    byte[][] invalidUtf8 = {
+      {'a', (byte) 0xC3},
+      {(byte) 0xC0, (byte) 0xAF},
+      {(byte) 0xE0, (byte) 0x80, (byte) 0xAF},
+      {(byte) 0xED, (byte) 0xA0, (byte) 0x80},
+      {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+      {(byte) 0x80},
+      // replacement char, which is logged by the char handlers
+      {(byte) 0xEF, (byte) 0xBF, (byte) 0xBD}};
+    for (byte[] bytes : invalidUtf8) {
+      assertThat(readRemaining(StandardCharsets.UTF_8, bytes)).isEqualTo(bytes);
+    }
+    byte[] latin1 = {'a', (byte) 0xE9};
+    assertThat(readRemaining(StandardCharsets.US_ASCII, latin1)).isEqualTo(latin1);
+    assertThat(FusedMetadataReader.forMetadata(StandardCharsets.ISO_8859_1).read(new ByteArrayInputStream(latin1))).isNull();
+  }
+
+  @Test
+  public void read_files_larger_than_buffer() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20_000; i++) {
+      sb.append("line ").append(i).append(" \u00e9\r\n");
+    }
+    byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    FusedMetadataReader reader = FusedMetadataReader.forMetadata(StandardCharsets.UTF_8);
+
+    assertThat(reader.read(new ByteArrayInputStream(bytes))).isNull();
+    assertSameMetadata(reader.toMetadata(), readWithCharHandlers(bytes, StandardCharsets.UTF_8));
+    assertThat(reader.toMetadata().lines()).isEqualTo(20_001);
+  }
+
+  private static byte[] readRemaining(Charset charset, byte[] bytes) throws IOException {
+    ByteArrayInputStream remaining = (ByteArrayInputStream) FusedMetadataReader.forMetadata(charset).read(new ByteArrayInputStream(bytes));
+    byte[] res = new byte[remaining.available()];
+    remaining.read(res);
+    return res;
+  }
+
+  private static Metadata readWithCharHandlers(byte[] bytes, Charset charset) {
+    // another handler disables the fused reader
+    return new FileMetadata().readMetadata(new ByteArrayInputStream(bytes), charset, "file", new CharHandler() {
+    });
+  }
+
+  private static void assertSameMetadata(Metadata metadata, Metadata expected) {
+    assertThat(metadata.lines()).isEqualTo(expected.lines());
+    assertThat(metadata.nonBlankLines()).isEqualTo(expected.nonBlankLines());
+    assertThat(metadata.hash()).isEqualTo(expected.hash());
+    assertThat(metadata.originalLineOffsets()).isEqualTo(expected.originalLineOffsets());
+    assertThat(metadata.lastValidOffset()).isEqualTo(expected.lastValidOffset());
+  }
+
+  private static String randomContent(Random random) {
+    StringBuilder sb = new StringBuilder();
+    int tokens = random.nextInt(200);
+    for (int i = 0; i < tokens; i++) {
+      sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+    }
+    return sb.toString();
+  }
+}
@@ -23,11 +23,18 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -177,6 +184,52 @@ public class ScannerExtensionDictionnary {
       .collect(Collectors.toList());
   }
 
+  /**
+   * For each of the given extensions, the extensions among them which must be executed before it, as ordered by
+   * {@link #sort(Collection)}. Extensions which don't depend on each other, directly or through other objects, can
+   * be executed concurrently.
+   */
+  public <T> Map<T, Collection<T>> executionDependencies(Collection<T> extensions) {
+    Map<Object, Set<Object>> dependenciesByObject = new HashMap<>();
+    for (T extension : extensions) {
+      dependenciesOf(dependenciesByObject, extension).addAll(getDependencies(extension));
+      for (Object generates : getDependents(extension)) {
+        dependenciesOf(dependenciesByObject, generates).add(extension);
+      }
+      Phase.Name phase = evaluatePhase(extension);
+      dependenciesOf(dependenciesByObject, extension).add(phase);
+      for (Phase.Name name : Phase.Name.values()) {
+        if (phase.compareTo(name) < 0) {
+          dependenciesOf(dependenciesByObject, name).add(extension);
+        } else if (phase.compareTo(name) > 0) {
+          dependenciesOf(dependenciesByObject, extension).add(name);
+        }
+      }
+    }
+
+    Map<T, Collection<T>> result = new LinkedHashMap<>();
+    for (T extension : extensions) {
+      Set<Object> visited = new HashSet<>();
+      Deque<Object> toVisit = new ArrayDeque<>(dependenciesOf(dependenciesByObject, extension));
+      List<T> extensionDependencies = new ArrayList<>();
+      while (!toVisit.isEmpty()) {
+        Object dependency = toVisit.pop();
+        if (visited.add(dependency)) {
+          if (!dependency.equals(extension) && extensions.contains(dependency)) {
+            extensionDependencies.add((T) dependency);
+          }
+          toVisit.addAll(dependenciesOf(dependenciesByObject, dependency));
+        }
+      }
+      result.put(extension, extensionDependencies);
+    }
+    return result;
+  }
+
+  private static Set<Object> dependenciesOf(Map<Object, Set<Object>> dependenciesByObject, Object object) {
+    return dependenciesByObject.computeIfAbsent(object, o -> new HashSet<>());
+  }
+
   /**
    * Extension dependencies
    */
@@ -22,14 +22,19 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -55,6 +60,9 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection is executed concurrently for several files, on the index which is not modified anymore. Duplications are
+ * written to the report in the order of the files in the index, whatever the number of threads.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -92,27 +100,42 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void execute(long timeout) {
+    execute(timeout, Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  void execute(long timeout, int threads) {
     total = index.noResources();
     int filesWithoutBlocks = index.noIndexedFiles() - total;
     if (filesWithoutBlocks > 0) {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CpdExecutor-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
-
-      while (it.hasNext()) {
-        ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
-        count++;
+      // detections are submitted ahead of the file being saved, without keeping all the results in memory
+      Deque<CpdTask> pendingTasks = new ArrayDeque<>();
+      while (it.hasNext() || !pendingTasks.isEmpty()) {
+        while (it.hasNext() && pendingTasks.size() < 2 * threads) {
+          ResourceBlocks resourceBlocks = it.next();
+          CpdTask task = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+          if (task != null) {
+            pendingTasks.add(task);
+          }
+          count++;
+        }
+        CpdTask task = pendingTasks.poll();
+        if (task != null) {
+          saveCpdAnalysis(task, timeout);
+        }
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
@@ -122,24 +145,44 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    CpdTask task = submitCpdAnalysis(executorService, componentKey, fileBlocks);
+    if (task != null) {
+      saveCpdAnalysis(task, timeout);
+    }
+  }
+
+  @CheckForNull
+  private CpdTask submitCpdAnalysis(ExecutorService executorService, String componentKey, Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
+    CpdTask task = new CpdTask(component);
+    task.future = executorService.submit(() -> {
+      task.startTime = System.currentTimeMillis();
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    });
+    return task;
+  }
+
+  private void saveCpdAnalysis(CpdTask task, long timeout) {
+    InputFile inputFile = (InputFile) task.component;
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = waitFor(task, timeout);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      task.future.cancel(true);
       return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
     }
@@ -153,7 +196,28 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(task.component, filtered);
+  }
+
+  /**
+   * The timeout applies to the detection of the file from the moment it's started by a thread of the pool, or from now
+   * if it's not started yet
+   */
+  private static List<CloneGroup> waitFor(CpdTask task, long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+    long now = System.currentTimeMillis();
+    long startTime = task.startTime;
+    long deadline = startTime < 0 ? (now + timeout) : (startTime + timeout);
+    return task.future.get(Math.max(0L, deadline - now), TimeUnit.MILLISECONDS);
+  }
+
+  private static class CpdTask {
+    private final DefaultInputComponent component;
+    private volatile long startTime = -1L;
+    private Future<List<CloneGroup>> future;
+
+    private CpdTask(DefaultInputComponent component) {
+      this.component = component;
+    }
   }
 
   @VisibleForTesting
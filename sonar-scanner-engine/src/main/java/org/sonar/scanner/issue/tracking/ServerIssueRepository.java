@@ -32,7 +32,7 @@ import org.sonar.core.component.ComponentKeys;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonar.scanner.repository.ServerIssuesLoader;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
-import org.sonar.scanner.storage.Storage;
+import org.sonar.scanner.storage.OffHeapStorage;
 import org.sonar.scanner.storage.Storages;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
@@ -43,7 +43,7 @@ public class ServerIssueRepository {
   private static final String LOG_MSG = "Load server issues";
 
   private final Storages caches;
-  private Storage<ServerIssue> issuesCache;
+  private OffHeapStorage<ServerIssue> issuesCache;
   private final ServerIssuesLoader previousIssuesLoader;
   private final InputComponentStore componentStore;
 
@@ -55,8 +55,7 @@ public class ServerIssueRepository {
 
   public void load() {
     Profiler profiler = Profiler.create(LOG).startInfo(LOG_MSG);
-    this.issuesCache = caches.createCache("previousIssues");
-    caches.registerValueCoder(ServerIssue.class, new ServerIssueValueCoder());
+    this.issuesCache = caches.createOffHeapStorage("previousIssues", new ServerIssueValueCoder());
     DefaultInputModule root = (DefaultInputModule) componentStore.root();
     previousIssuesLoader.load(root.getKeyWithBranch(), this::store);
     profiler.stopInfo();
@@ -73,12 +72,12 @@ public class ServerIssueRepository {
       String componentKeyWithoutBranch = ComponentKeys.createEffectiveKey(module.key(), issue.hasPath() ? issue.getPath() : null);
       DefaultInputComponent r = (DefaultInputComponent) componentStore.getByKey(componentKeyWithoutBranch);
       if (r != null) {
-        issuesCache.put(r.batchId(), issue.getKey(), issue);
+        issuesCache.put(r.batchId(), issue);
         return;
       }
     }
     // Deleted resource
-    issuesCache.put(0, issue.getKey(), issue);
+    issuesCache.put(0, issue);
   }
 
   public Iterable<ServerIssue> issuesOnMissingComponents() {
@@ -19,25 +19,22 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
-import java.io.IOException;
+import com.google.protobuf.InvalidProtocolBufferException;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.storage.OffHeapStorage;
 
-public class ServerIssueValueCoder implements ValueCoder {
+public class ServerIssueValueCoder implements OffHeapStorage.Codec<ServerIssue> {
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
-    ServerIssue issue = (ServerIssue) object;
-    value.putByteArray(issue.toByteArray());
+  public byte[] encode(ServerIssue issue) {
+    return issue.toByteArray();
   }
 
   @Override
-  public Object get(Value value, Class<?> clazz, CoderContext context) {
+  public ServerIssue decode(byte[] bytes) {
     try {
-      return ServerIssue.parseFrom(value.getByteArray());
-    } catch (IOException e) {
+      return ServerIssue.parseFrom(bytes);
+    } catch (InvalidProtocolBufferException e) {
       throw new IllegalStateException("Unable to read issue from cache", e);
     }
   }
@@ -19,6 +19,12 @@
  */
 package org.sonar.scanner.phases;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.events.SensorExecutionHandler;
@@ -30,11 +36,20 @@ import org.sonar.scanner.bootstrap.ScannerPluginRepository;
 import org.sonar.scanner.sensor.SensorWrapper;
 import org.sonar.scanner.util.ScannerUtils;
 
+/**
+ * Logs the execution time of each sensor, including its CPU time when the JVM supports it. Sensors may be executed
+ * concurrently (see {@link SensorsExecutor}), so the timeline of the sensors of the phase is logged at its end, in debug.
+ * Events are expected to be dispatched one at a time, by the thread executing the sensor.
+ */
 public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseHandler {
 
   private static final Logger LOG = Loggers.get(PhasesTimeProfiler.class);
-  private Profiler profiler = Profiler.create(LOG);
+  private static final long NANOS_PER_MILLI = 1_000_000L;
   private final ScannerPluginRepository pluginRepo;
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final Map<Sensor, SensorTiming> runningSensors = new HashMap<>();
+  private final List<SensorTiming> executedSensors = new ArrayList<>();
+  private long phaseStart;
 
   public PhasesTimeProfiler(ScannerPluginRepository pluginRepo) {
     this.pluginRepo = pluginRepo;
@@ -44,24 +59,60 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
   public void onSensorsPhase(SensorsPhaseEvent event) {
     if (event.isStart()) {
       LOG.debug("Sensors : {}", StringUtils.join(event.getSensors(), " -> "));
+      phaseStart = System.nanoTime();
+      executedSensors.clear();
+    } else if (LOG.isDebugEnabled() && !executedSensors.isEmpty()) {
+      logTimeline();
     }
   }
 
   @Override
   public void onSensorExecution(SensorExecutionEvent event) {
+    Sensor sensor = event.getSensor();
     if (event.isStart()) {
-      ClassLoader cl = getSensorClassLoader(event.getSensor());
+      ClassLoader cl = getSensorClassLoader(sensor);
       String pluginKey = pluginRepo.getPluginKey(cl);
       String suffix = "";
       if (pluginKey != null) {
         suffix = " [" + pluginKey + "]";
       }
-      profiler.startInfo("Sensor " + ScannerUtils.describe(event.getSensor()) + suffix);
+      SensorTiming timing = new SensorTiming("Sensor " + ScannerUtils.describe(sensor) + suffix, System.nanoTime(), currentThreadCpuTime());
+      timing.profiler.startInfo(timing.name);
+      runningSensors.put(sensor, timing);
     } else {
-      profiler.stopInfo();
+      SensorTiming timing = runningSensors.remove(sensor);
+      if (timing == null) {
+        return;
+      }
+      timing.wallTime = System.nanoTime() - timing.wallStart;
+      long cpuTime = currentThreadCpuTime();
+      if (cpuTime >= 0 && timing.cpuStart >= 0) {
+        timing.cpuTime = cpuTime - timing.cpuStart;
+        timing.profiler.addContext("cpu", timing.cpuTime / NANOS_PER_MILLI + "ms");
+      }
+      timing.profiler.stopInfo();
+      executedSensors.add(timing);
+    }
+  }
+
+  private void logTimeline() {
+    LOG.debug("Sensors timeline (start, wall-clock time, CPU time, thread):");
+    for (SensorTiming timing : executedSensors) {
+      LOG.debug("  {} | start={}ms | time={}ms | cpu={} | thread={}", timing.name, (timing.wallStart - phaseStart) / NANOS_PER_MILLI,
+        timing.wallTime / NANOS_PER_MILLI, timing.cpuTime >= 0 ? (timing.cpuTime / NANOS_PER_MILLI + "ms") : "n/a", timing.thread);
     }
   }
 
+  /**
+   * @return CPU time of the current thread in nanoseconds, or -1 if not supported
+   */
+  private long currentThreadCpuTime() {
+    if (threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled()) {
+      return threadMXBean.getCurrentThreadCpuTime();
+    }
+    return -1L;
+  }
+
   private static ClassLoader getSensorClassLoader(Sensor sensor) {
     if (sensor instanceof SensorWrapper) {
       SensorWrapper wrapper = (SensorWrapper) sensor;
@@ -71,4 +122,19 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
     }
   }
 
+  private static class SensorTiming {
+    private final String name;
+    private final Profiler profiler = Profiler.create(LOG);
+    private final String thread = Thread.currentThread().getName();
+    private final long wallStart;
+    private final long cpuStart;
+    private long wallTime;
+    private long cpuTime = -1L;
+
+    private SensorTiming(String name, long wallStart, long cpuStart) {
+      this.name = name;
+      this.wallStart = wallStart;
+      this.cpuStart = cpuStart;
+    }
+  }
 }
@@ -20,33 +20,55 @@
 package org.sonar.scanner.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
 
+/**
+ * Executes the sensors of a module, in the order given by {@link ScannerExtensionDictionnary}. When the property
+ * {@link #THREADS_PROP_KEY} is greater than 1, sensors which don't depend on each other are executed concurrently
+ * on a pool of this size. Global sensors are executed after the other sensors of the root module.
+ * Concurrent sensors share {@link org.sonar.scanner.sensor.DefaultSensorStorage}, which serializes the writes to the
+ * caches and to the report.
+ */
 @ScannerSide
 public class SensorsExecutor {
+  static final String THREADS_PROP_KEY = "sonar.scanner.sensorThreads";
+
   private final ScannerExtensionDictionnary selector;
   private final DefaultInputModule module;
   private final EventBus eventBus;
   private final SensorStrategy strategy;
   private final boolean isRoot;
+  private final int threads;
 
-  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy) {
+  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy,
+    Configuration settings) {
     this.selector = selector;
     this.module = module;
     this.eventBus = eventBus;
     this.strategy = strategy;
     this.isRoot = hierarchy.isRoot(module);
+    this.threads = Math.max(1, settings.getInt(THREADS_PROP_KEY).orElse(1));
   }
 
   public void execute(SensorContext context) {
@@ -78,14 +100,81 @@ public class SensorsExecutor {
   }
 
   private void execute(SensorContext context, Collection<Sensor> sensors) {
-    for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+    if (threads == 1 || sensors.size() <= 1) {
+      for (Sensor sensor : sensors) {
+        executeSensor(context, sensor);
+      }
+    } else {
+      executeConcurrently(context, sensors);
+    }
+  }
+
+  /**
+   * Submits each sensor as soon as the sensors it depends on are executed. Stops at the first failure.
+   */
+  private void executeConcurrently(SensorContext context, Collection<Sensor> sensors) {
+    Map<Sensor, Collection<Sensor>> dependencies = selector.executionDependencies(sensors);
+    Map<Sensor, Integer> pendingDependencies = new HashMap<>();
+    Map<Sensor, List<Sensor>> dependents = new HashMap<>();
+    dependencies.forEach((sensor, sensorDependencies) -> {
+      pendingDependencies.put(sensor, sensorDependencies.size());
+      sensorDependencies.forEach(dependency -> dependents.computeIfAbsent(dependency, s -> new ArrayList<>()).add(sensor));
+    });
+
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, sensors.size()),
+      new ThreadFactoryBuilder().setNameFormat("SensorsExecutor-%d").build());
+    try {
+      CompletionService<Sensor> completionService = new ExecutorCompletionService<>(executorService);
+      for (Sensor sensor : sensors) {
+        if (pendingDependencies.get(sensor) == 0) {
+          submit(completionService, context, sensor);
+        }
+      }
+      for (int executed = 0; executed < sensors.size(); executed++) {
+        Sensor sensor = completionService.take().get();
+        for (Sensor dependent : dependents.getOrDefault(sensor, Collections.emptyList())) {
+          int pending = pendingDependencies.merge(dependent, -1, Integer::sum);
+          if (pending == 0) {
+            submit(completionService, context, dependent);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing sensors", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to execute sensors", cause);
+    } finally {
+      executorService.shutdownNow();
     }
   }
 
+  private void submit(CompletionService<Sensor> completionService, SensorContext context, Sensor sensor) {
+    completionService.submit(() -> {
+      executeSensor(context, sensor);
+      return sensor;
+    });
+  }
+
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(new Project(module), context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Event handlers are not thread-safe, so events of concurrent sensors are dispatched one at a time
+   */
+  private void fireEvent(SensorExecutionEvent event) {
+    synchronized (eventBus) {
+      eventBus.fireEvent(event);
+    }
   }
 }
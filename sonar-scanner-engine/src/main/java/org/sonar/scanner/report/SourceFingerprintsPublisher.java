@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.scanner.protocol.output.FileStructure;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
+
+/**
+ * Writes the fingerprints of the report sections which the Compute Engine uses to build the sources of each file, so
+ * that it can skip files whose sources did not change since the previous analysis. Must be the last publisher to run,
+ * as it fingerprints sections written by other publishers.
+ */
+public class SourceFingerprintsPublisher implements ReportPublisherStep {
+
+  private final InputComponentStore componentStore;
+
+  public SourceFingerprintsPublisher(InputComponentStore componentStore) {
+    this.componentStore = componentStore;
+  }
+
+  @Override
+  public void publish(ScannerReportWriter writer) {
+    FileStructure fileStructure = writer.getFileStructure();
+    for (DefaultInputFile inputFile : componentStore.allFilesToPublish()) {
+      int ref = inputFile.batchId();
+      writer.writeSourceFingerprints(ScannerReport.SourceFingerprints.newBuilder()
+        .setComponentRef(ref)
+        .setSource(fingerprint(fileStructure.fileFor(FileStructure.Domain.SOURCE, ref)))
+        .setCoverage(fingerprint(fileStructure.fileFor(FileStructure.Domain.COVERAGES, ref)))
+        .setSyntaxHighlighting(fingerprint(fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, ref)))
+        .setSymbols(fingerprint(fileStructure.fileFor(FileStructure.Domain.SYMBOLS, ref)))
+        .build());
+    }
+  }
+
+  private static String fingerprint(File file) {
+    if (!file.exists()) {
+      return "";
+    }
+    try (InputStream input = Files.newInputStream(file.toPath())) {
+      return DigestUtils.md5Hex(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compute fingerprint of " + file, e);
+    }
+  }
+}
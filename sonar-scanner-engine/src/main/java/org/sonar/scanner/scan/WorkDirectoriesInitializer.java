@@ -28,10 +28,12 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.core.util.FileUtils;
 import org.sonar.home.cache.DirectoryLock;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 /**
  * Clean and create working directories of each module.
  * Be careful that sub module work dir might be nested in parent working directory.
+ * The lock file and the {@link FileMetadataCache} file are kept.
  */
 public class WorkDirectoriesInitializer {
 
@@ -79,6 +81,9 @@ public class WorkDirectoriesInitializer {
   }
 
   private static DirectoryStream<Path> list(Path dir) throws IOException {
-    return Files.newDirectoryStream(dir, entry -> !DirectoryLock.LOCK_FILE_NAME.equals(entry.getFileName().toString()));
+    return Files.newDirectoryStream(dir, entry -> {
+      String fileName = entry.getFileName().toString();
+      return !DirectoryLock.LOCK_FILE_NAME.equals(fileName) && !FileMetadataCache.FILE_NAME.equals(fileName);
+    });
   }
 }
@@ -0,0 +1,231 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.concurrent.Immutable;
+import org.picocontainer.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Metadata of the files read by the previous analysis, stored in the work directory of the root module, so that files
+ * which are not modified since are not read again. A file is considered as not modified when its size and its last
+ * modification time are the same.
+ * <p>
+ * Only the metadata of the files read or reused by the current analysis are kept for the next one.
+ *
+ * @since 6.6
+ */
+@ScannerSide
+public class FileMetadataCache implements Startable {
+
+  static final String ENABLED_PROP_KEY = "sonar.scanner.fileMetadataCache";
+  public static final String FILE_NAME = "file-metadata.cache";
+  private static final Logger LOG = Loggers.get(FileMetadataCache.class);
+  private static final int FORMAT_VERSION = 1;
+  // a file modified shortly before being read could be modified again without its last modification time to change
+  private static final long MODIFICATION_TIME_PRECISION_MS = 2_000L;
+
+  private final Path cacheFile;
+  private final boolean enabled;
+  private final System2 system2;
+  private Map<String, Entry> previousEntries = Collections.emptyMap();
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public FileMetadataCache(InputModuleHierarchy moduleHierarchy, Configuration settings, System2 system2) {
+    this.cacheFile = moduleHierarchy.root().getWorkDir().resolve(FILE_NAME);
+    this.enabled = settings.getBoolean(ENABLED_PROP_KEY).orElse(true);
+    this.system2 = system2;
+  }
+
+  @Override
+  public void start() {
+    if (enabled && Files.exists(cacheFile)) {
+      try {
+        previousEntries = load(cacheFile);
+      } catch (IOException | RuntimeException e) {
+        LOG.debug("Fail to load file metadata from " + cacheFile + ", all files will be read", e);
+      }
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (enabled) {
+      try {
+        save(cacheFile);
+      } catch (IOException e) {
+        LOG.debug("Fail to save file metadata to " + cacheFile, e);
+      }
+    }
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param attributes the attributes of the file when it is about to be read
+   * @return the metadata of the file computed by the previous analysis, or {@code null} if the file may have been modified since
+   */
+  @CheckForNull
+  Entry get(Path file, BasicFileAttributes attributes, Charset defaultEncoding) {
+    String key = file.toString();
+    Entry entry = previousEntries.get(key);
+    if (entry == null || entry.size != attributes.size() || entry.lastModified != attributes.lastModifiedTime().toMillis()
+      || !entry.defaultEncoding.equals(defaultEncoding.name())) {
+      return null;
+    }
+    entries.put(key, entry);
+    return entry;
+  }
+
+  /**
+   * @param attributes the attributes of the file read before it was read
+   */
+  void put(Path file, BasicFileAttributes attributes, Charset defaultEncoding, Charset charset, Metadata metadata) {
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    if (lastModified < system2.now() - MODIFICATION_TIME_PRECISION_MS) {
+      entries.put(file.toString(), new Entry(attributes.size(), lastModified, defaultEncoding.name(), charset.name(), metadata));
+    }
+  }
+
+  private static Map<String, Entry> load(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return Collections.emptyMap();
+      }
+      int count = in.readInt();
+      Map<String, Entry> res = new HashMap<>(2 * count);
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String defaultEncoding = in.readUTF();
+        String charset = in.readUTF();
+        int lines = in.readInt();
+        int nonBlankLines = in.readInt();
+        String hash = in.readUTF();
+        int lastValidOffset = in.readInt();
+        int[] lineOffsets = new int[lines];
+        for (int line = 1; line < lines; line++) {
+          lineOffsets[line] = lineOffsets[line - 1] + readVarInt(in);
+        }
+        res.put(path, new Entry(size, lastModified, defaultEncoding, charset, new Metadata(lines, nonBlankLines, hash, lineOffsets, lastValidOffset)));
+      }
+      return res;
+    }
+  }
+
+  private void save(Path file) throws IOException {
+    Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(entries.size());
+      for (Map.Entry<String, Entry> e : entries.entrySet()) {
+        Entry entry = e.getValue();
+        Metadata metadata = entry.metadata;
+        out.writeUTF(e.getKey());
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModified);
+        out.writeUTF(entry.defaultEncoding);
+        out.writeUTF(entry.charset);
+        out.writeInt(metadata.lines());
+        out.writeInt(metadata.nonBlankLines());
+        out.writeUTF(metadata.hash());
+        out.writeInt(metadata.lastValidOffset());
+        // line offsets are written as line lengths, which are small
+        int[] lineOffsets = metadata.originalLineOffsets();
+        for (int line = 1; line < metadata.lines(); line++) {
+          writeVarInt(out, lineOffsets[line] - lineOffsets[line - 1]);
+        }
+      }
+    }
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      out.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  @Immutable
+  static final class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String defaultEncoding;
+    private final String charset;
+    private final Metadata metadata;
+
+    Entry(long size, long lastModified, String defaultEncoding, String charset, Metadata metadata) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.defaultEncoding = defaultEncoding;
+      this.charset = charset;
+      this.metadata = metadata;
+    }
+
+    Charset charset() {
+      return Charset.forName(charset);
+    }
+
+    Metadata metadata() {
+      return metadata;
+    }
+  }
+}
@@ -20,8 +20,12 @@
 package org.sonar.scanner.scan.filesystem;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import javax.annotation.CheckForNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile.Type;
@@ -29,6 +33,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.batch.fs.internal.charhandler.CharHandler;
 import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
 
 class MetadataGenerator {
@@ -43,12 +48,15 @@ class MetadataGenerator {
   private final FileMetadata fileMetadata;
   private final DefaultInputModule inputModule;
   private final IssueExclusionsLoader exclusionsScanner;
+  private final FileMetadataCache cache;
 
-  MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner) {
+  MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner,
+    FileMetadataCache cache) {
     this.inputModule = inputModule;
     this.statusDetection = statusDetection;
     this.fileMetadata = fileMetadata;
     this.exclusionsScanner = exclusionsScanner;
+    this.cache = cache;
   }
 
   /**
@@ -56,8 +64,19 @@ class MetadataGenerator {
    * It is an expensive computation, reading the entire file.
    */
   public void setMetadata(final DefaultInputFile inputFile, Charset defaultEncoding) {
-    CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding);
+    CharHandler exclusionsHandler = exclusionsScanner.createCharHandlerFor(inputFile.key());
     try {
+      // the exclusions handler needs the content of the file
+      BasicFileAttributes attributes = cache.isEnabled() && exclusionsHandler == null ? readAttributes(inputFile) : null;
+      if (attributes != null) {
+        FileMetadataCache.Entry cached = cache.get(inputFile.path(), attributes, defaultEncoding);
+        if (cached != null) {
+          setMetadata(inputFile, cached.charset(), cached.metadata());
+          return;
+        }
+      }
+
+      CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding);
       Charset charset;
       if (charsetDetector.run()) {
         charset = charsetDetector.charset();
@@ -66,14 +85,33 @@ class MetadataGenerator {
         charset = defaultEncoding;
       }
       InputStream is = charsetDetector.inputStream();
-      inputFile.setCharset(charset);
-      Metadata metadata = fileMetadata.readMetadata(is, charset, inputFile.absolutePath(), exclusionsScanner.createCharHandlerFor(inputFile.key()));
-      inputFile.setMetadata(metadata);
-      inputFile.setStatus(statusDetection.status(inputModule.definition().getKeyWithBranch(), inputFile.relativePath(), metadata.hash()));
-      LOG.debug("'{}' generated metadata {} with charset '{}'", inputFile.relativePath(), inputFile.type() == Type.TEST ? "as test " : "", charset);
+      Metadata metadata = fileMetadata.readMetadata(is, charset, inputFile.absolutePath(), exclusionsHandler);
+      if (attributes != null) {
+        cache.put(inputFile.path(), attributes, defaultEncoding, charset, metadata);
+      }
+      setMetadata(inputFile, charset, metadata);
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
   }
 
+  /**
+   * @return {@code null} if the attributes can't be read, in which case the file is read as if it was not in cache
+   */
+  @CheckForNull
+  private static BasicFileAttributes readAttributes(DefaultInputFile inputFile) {
+    try {
+      return Files.readAttributes(inputFile.path(), BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void setMetadata(DefaultInputFile inputFile, Charset charset, Metadata metadata) {
+    inputFile.setCharset(charset);
+    inputFile.setMetadata(metadata);
+    inputFile.setStatus(statusDetection.status(inputModule.definition().getKeyWithBranch(), inputFile.relativePath(), metadata.hash()));
+    LOG.debug("'{}' generated metadata {} with charset '{}'", inputFile.relativePath(), inputFile.type() == Type.TEST ? "as test " : "", charset);
+  }
+
 }
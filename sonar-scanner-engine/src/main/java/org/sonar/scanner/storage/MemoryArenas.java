@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Memory in which {@link OffHeapStorage} writes its records. Memory is allocated by arenas out of the heap, then
+ * in memory-mapped files of the given directory once the given amount of memory is allocated. Records are never freed
+ * individually: all the arenas are released by {@link #close()}.
+ * <p>
+ * A record is located by an address made of the index of its arena and of its offset in the arena.
+ * <p>
+ * Not thread-safe.
+ */
+class MemoryArenas {
+
+  static final int DEFAULT_ARENA_SIZE = 1024 * 1024;
+  private static final Logger LOG = Loggers.get(MemoryArenas.class);
+
+  private final long maxMemory;
+  private final int arenaSize;
+  private final File spillDir;
+  private final List<ByteBuffer> arenas = new ArrayList<>();
+  private final List<File> spillFiles = new ArrayList<>();
+  private long allocatedMemory = 0L;
+  private ByteBuffer current;
+
+  MemoryArenas(long maxMemory, int arenaSize, File spillDir) {
+    this.maxMemory = maxMemory;
+    this.arenaSize = arenaSize;
+    this.spillDir = spillDir;
+  }
+
+  /**
+   * @return the address of {@code size} bytes, which can be read and written through {@link #arena(long)}
+   */
+  long allocate(int size) {
+    if (current == null || current.remaining() < size) {
+      current = newArena(Math.max(size, arenaSize));
+      arenas.add(current);
+    }
+    int offset = current.position();
+    current.position(offset + size);
+    return ((long) (arenas.size() - 1) << 32) | offset;
+  }
+
+  ByteBuffer arena(long address) {
+    return arenas.get((int) (address >>> 32));
+  }
+
+  static int offset(long address) {
+    return (int) address;
+  }
+
+  long allocatedMemory() {
+    return allocatedMemory;
+  }
+
+  int spillFileCount() {
+    return spillFiles.size();
+  }
+
+  private ByteBuffer newArena(int size) {
+    if (allocatedMemory + size <= maxMemory) {
+      allocatedMemory += size;
+      return ByteBuffer.allocateDirect(size);
+    }
+    if (spillFiles.isEmpty()) {
+      LOG.debug("Storage memory of {} bytes is full, spilling to {}", maxMemory, spillDir);
+    }
+    try {
+      File file = Files.createTempFile(spillDir.toPath(), "arena", ".tmp").toFile();
+      spillFiles.add(file);
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        FileChannel channel = randomAccessFile.getChannel()) {
+        // the mapping stays valid once the channel is closed
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create a storage file in " + spillDir, e);
+    }
+  }
+
+  /**
+   * Releases the arenas. Memory and mappings are freed once the arenas are garbage collected.
+   * <p>
+   * Files which are still mapped can't be deleted on Windows. They are then deleted when the JVM exits, or with the
+   * temporary directory of {@link StoragesManager}.
+   */
+  void close() {
+    arenas.clear();
+    current = null;
+    allocatedMemory = 0L;
+    for (File file : spillFiles) {
+      if (!file.delete() && file.exists()) {
+        file.deleteOnExit();
+      }
+    }
+    spillFiles.clear();
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.StreamSupport;
+
+/**
+ * Values grouped by an int key, like the ids of the components they relate to. Values are serialized into the
+ * {@link MemoryArenas} of {@link Storages}, so that they don't weigh on the heap until they are read. Groups are
+ * indexed by a hash table of primitive keys.
+ * <p>
+ * Contrary to {@link Storage}, values can't be updated nor removed. Values of a group are iterated in the order
+ * they were added.
+ * <p>
+ * Not thread-safe.
+ *
+ * @since 6.6
+ */
+public class OffHeapStorage<V> {
+
+  public interface Codec<V> {
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+  }
+
+  private static final long NO_RECORD = -1L;
+  // length of the value, then address of the next record of the group
+  private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String name;
+  private final Codec<V> codec;
+  private final MemoryArenas arenas;
+  private int[] groups;
+  private long[] heads;
+  private long[] tails;
+  private int groupCount = 0;
+  private int size = 0;
+
+  OffHeapStorage(String name, Codec<V> codec, MemoryArenas arenas) {
+    this.name = name;
+    this.codec = codec;
+    this.arenas = arenas;
+    initIndex(INITIAL_CAPACITY);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public OffHeapStorage<V> put(int group, V value) {
+    byte[] bytes = codec.encode(value);
+    long address = arenas.allocate(HEADER_SIZE + bytes.length);
+    ByteBuffer arena = arenas.arena(address).duplicate();
+    int offset = MemoryArenas.offset(address);
+    arena.putInt(offset, bytes.length);
+    arena.putLong(offset + Integer.BYTES, NO_RECORD);
+    arena.position(offset + HEADER_SIZE);
+    arena.put(bytes);
+
+    int slot = slot(group);
+    if (heads[slot] == NO_RECORD) {
+      groups[slot] = group;
+      heads[slot] = address;
+      groupCount++;
+    } else {
+      long tail = tails[slot];
+      arenas.arena(tail).putLong(MemoryArenas.offset(tail) + Integer.BYTES, address);
+    }
+    tails[slot] = address;
+    size++;
+    if (groupCount > groups.length * 3 / 4) {
+      resize();
+    }
+    return this;
+  }
+
+  /**
+   * Lazy-loading values of a group, in the order they were added
+   */
+  public Iterable<V> values(int group) {
+    int slot = slot(group);
+    long head = heads[slot];
+    return () -> new ValueIterator(head);
+  }
+
+  /**
+   * Lazy-loading values of all the groups, sorted by group
+   */
+  public Iterable<V> values() {
+    int[] sortedGroups = new int[groupCount];
+    int i = 0;
+    for (int slot = 0; slot < groups.length; slot++) {
+      if (heads[slot] != NO_RECORD) {
+        sortedGroups[i] = groups[slot];
+        i++;
+      }
+    }
+    Arrays.sort(sortedGroups);
+    return () -> Arrays.stream(sortedGroups)
+      .mapToObj(this::values)
+      .flatMap(values -> StreamSupport.stream(values.spliterator(), false))
+      .iterator();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the slot of the group in the index, which is free if the group has no values
+   */
+  private int slot(int group) {
+    int mask = groups.length - 1;
+    int slot = hash(group) & mask;
+    while (heads[slot] != NO_RECORD && groups[slot] != group) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void initIndex(int capacity) {
+    groups = new int[capacity];
+    heads = new long[capacity];
+    tails = new long[capacity];
+    Arrays.fill(heads, NO_RECORD);
+  }
+
+  private void resize() {
+    int[] oldGroups = groups;
+    long[] oldHeads = heads;
+    long[] oldTails = tails;
+    initIndex(oldGroups.length * 2);
+    for (int i = 0; i < oldGroups.length; i++) {
+      if (oldHeads[i] != NO_RECORD) {
+        int slot = slot(oldGroups[i]);
+        groups[slot] = oldGroups[i];
+        heads[slot] = oldHeads[i];
+        tails[slot] = oldTails[i];
+      }
+    }
+  }
+
+  private class ValueIterator implements Iterator<V> {
+    private long next;
+
+    ValueIterator(long head) {
+      this.next = head;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != NO_RECORD;
+    }
+
+    @Override
+    public V next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      ByteBuffer arena = arenas.arena(next).duplicate();
+      int offset = MemoryArenas.offset(next);
+      byte[] bytes = new byte[arena.getInt(offset)];
+      next = arena.getLong(offset + Integer.BYTES);
+      arena.position(offset + HEADER_SIZE);
+      arena.get(bytes);
+      return codec.decode(bytes);
+    }
+  }
+}
@@ -32,7 +32,8 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * The {@link com.persistit.Exchange} of this storage is not thread-safe, so all its operations are synchronized. Iterators
+ * get their own exchange, but a given iterator must not be shared by several threads.
  * </p>
  */
 public class Storage<V> {
@@ -45,22 +46,22 @@ public class Storage<V> {
     this.exchange = exchange;
   }
 
-  public Storage<V> put(Object key, V value) {
+  public synchronized Storage<V> put(Object key, V value) {
     resetKey(key);
     return doPut(value);
   }
 
-  public Storage<V> put(Object firstKey, Object secondKey, V value) {
+  public synchronized Storage<V> put(Object firstKey, Object secondKey, V value) {
     resetKey(firstKey, secondKey);
     return doPut(value);
   }
 
-  public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+  public synchronized Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
     resetKey(firstKey, secondKey, thirdKey);
     return doPut(value);
   }
 
-  public Storage<V> put(Object[] key, V value) {
+  public synchronized Storage<V> put(Object[] key, V value) {
     resetKey(key);
     return doPut(value);
   }
@@ -78,7 +79,7 @@ public class Storage<V> {
   /**
    * Returns the value object associated with keys, or null if not found.
    */
-  public V get(Object key) {
+  public synchronized V get(Object key) {
     resetKey(key);
     return doGet();
   }
@@ -87,7 +88,7 @@ public class Storage<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object firstKey, Object secondKey) {
+  public synchronized V get(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doGet();
   }
@@ -96,7 +97,7 @@ public class Storage<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized V get(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doGet();
   }
@@ -105,7 +106,7 @@ public class Storage<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object[] key) {
+  public synchronized V get(Object[] key) {
     resetKey(key);
     return doGet();
   }
@@ -125,22 +126,22 @@ public class Storage<V> {
     }
   }
 
-  public boolean containsKey(Object key) {
+  public synchronized boolean containsKey(Object key) {
     resetKey(key);
     return doContainsKey();
   }
 
-  public boolean containsKey(Object firstKey, Object secondKey) {
+  public synchronized boolean containsKey(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doContainsKey();
   }
 
-  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doContainsKey();
   }
 
-  public boolean containsKey(Object[] key) {
+  public synchronized boolean containsKey(Object[] key) {
     resetKey(key);
     return doContainsKey();
   }
@@ -155,22 +156,22 @@ public class Storage<V> {
     }
   }
 
-  public boolean remove(Object key) {
+  public synchronized boolean remove(Object key) {
     resetKey(key);
     return doRemove();
   }
 
-  public boolean remove(Object firstKey, Object secondKey) {
+  public synchronized boolean remove(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doRemove();
   }
 
-  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doRemove();
   }
 
-  public boolean remove(Object[] key) {
+  public synchronized boolean remove(Object[] key) {
     resetKey(key);
     return doRemove();
   }
@@ -189,22 +190,22 @@ public class Storage<V> {
    *
    * @param group The group name.
    */
-  public Storage<V> clear(Object key) {
+  public synchronized Storage<V> clear(Object key) {
     resetKey(key);
     return doClear();
   }
 
-  public Storage<V> clear(Object firstKey, Object secondKey) {
+  public synchronized Storage<V> clear(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doClear();
   }
 
-  public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doClear();
   }
 
-  public Storage<V> clear(Object[] key) {
+  public synchronized Storage<V> clear(Object[] key) {
     resetKey(key);
     return doClear();
   }
@@ -223,7 +224,7 @@ public class Storage<V> {
   /**
    * Clears the default as well as all group caches.
    */
-  public void clear() {
+  public synchronized void clear() {
     try {
       exchange.clear();
       exchange.removeAll();
@@ -240,7 +241,7 @@ public class Storage<V> {
    * @return The set of cache keys for this group.
    */
   @SuppressWarnings("rawtypes")
-  public Set keySet(Object key) {
+  public synchronized Set keySet(Object key) {
     try {
       Set<Object> keys = new LinkedHashSet<>();
       exchange.clear();
@@ -257,7 +258,7 @@ public class Storage<V> {
   }
 
   @SuppressWarnings("rawtypes")
-  public Set keySet(Object firstKey, Object secondKey) {
+  public synchronized Set keySet(Object firstKey, Object secondKey) {
     try {
       Set<Object> keys = new LinkedHashSet<>();
       exchange.clear();
@@ -279,7 +280,7 @@ public class Storage<V> {
    *
    * @return The set containing the keys for this cache.
    */
-  public Set<Object> keySet() {
+  public synchronized Set<Object> keySet() {
     try {
       Set<Object> keys = new LinkedHashSet<>();
       exchange.clear();
@@ -298,29 +299,46 @@ public class Storage<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return new ValueIterable<>(this, firstKey, secondKey);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return new ValueIterable<>(this, firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
+    return new ValueIterable<>(this);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
+    return new EntryIterable<>(this);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
+    return new EntryIterable<>(this, firstKey);
+  }
+
+  /**
+   * Returns a new exchange positioned before the first element of the given group
+   */
+  private synchronized Exchange iteratorExchange(Object[] keys) {
+    resetKey(keys);
+    exchange.append(Key.BEFORE);
+    return new Exchange(exchange);
+  }
+
+  private static KeyFilter keyFilter(Object[] keys) {
+    KeyFilter filter = new KeyFilter();
+    for (Object key : keys) {
+      filter = filter.append(KeyFilter.simpleTerm(key));
+    }
+    return filter;
   }
 
   private void resetKey(Object key) {
@@ -350,25 +368,17 @@ public class Storage<V> {
   //
 
   private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
+    private final Storage<?> storage;
     private final Object[] keys;
 
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private ValueIterable(Storage<?> storage, Object... keys) {
+      this.storage = storage;
       this.keys = keys;
     }
 
     @Override
     public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<>(iteratorExchange, filter);
+      return new ValueIterator<>(storage.iteratorExchange(keys), keyFilter(keys));
     }
   }
 
@@ -411,25 +421,17 @@ public class Storage<V> {
   }
 
   private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
+    private final Storage<?> storage;
     private final Object[] keys;
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private EntryIterable(Storage<?> storage, Object... keys) {
+      this.storage = storage;
       this.keys = keys;
     }
 
     @Override
     public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<>(iteratorExchange, filter);
+      return new EntryIterator<>(storage.iteratorExchange(keys), keyFilter(keys));
     }
   }
 
@@ -32,15 +32,26 @@ import java.util.Map;
 import java.util.Map.Entry;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.config.Configuration;
 
 @ScannerSide
 public class Storages implements Startable {
+  /**
+   * Memory in MB that {@link OffHeapStorage}s can allocate before spilling to memory-mapped files
+   */
+  static final String MEMORY_PROP_KEY = "sonar.scanner.storageMemoryMb";
+  private static final int DEFAULT_MEMORY_MB = 128;
+
   private final Map<String, Exchange> cacheMap = new HashMap<>();
+  private final Map<String, OffHeapStorage<?>> offHeapStorages = new HashMap<>();
+  private final MemoryArenas arenas;
   private Persistit persistit;
   private Volume volume;
 
-  public Storages(StoragesManager storagesManager) {
+  public Storages(StoragesManager storagesManager, Configuration settings) {
     persistit = storagesManager.persistit();
+    long maxMemory = settings.getInt(MEMORY_PROP_KEY).orElse(DEFAULT_MEMORY_MB) * 1024L * 1024L;
+    arenas = new MemoryArenas(maxMemory, MemoryArenas.DEFAULT_ARENA_SIZE, storagesManager.tempDir());
     doStart();
   }
 
@@ -65,7 +76,7 @@ public class Storages implements Startable {
 
   public <V> Storage<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
-    Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
+    checkNotCreated(cacheName);
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
@@ -77,8 +88,26 @@ public class Storages implements Startable {
     }
   }
 
+  /**
+   * Creates a storage of values grouped by int keys, which are kept out of the heap and don't go through Persistit.
+   * Memory is released once these storages are stopped and garbage collected.
+   */
+  public <V> OffHeapStorage<V> createOffHeapStorage(String storageName, OffHeapStorage.Codec<V> codec) {
+    checkNotCreated(storageName);
+    OffHeapStorage<V> storage = new OffHeapStorage<>(storageName, codec, arenas);
+    offHeapStorages.put(storageName, storage);
+    return storage;
+  }
+
+  private void checkNotCreated(String name) {
+    Preconditions.checkState(!cacheMap.containsKey(name) && !offHeapStorages.containsKey(name), "Cache is already created: %s", name);
+  }
+
   @Override
   public void stop() {
+    offHeapStorages.clear();
+    arenas.close();
+
     for (Entry<String, Exchange> e : cacheMap.entrySet()) {
       persistit.releaseExchange(e.getValue());
     }
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -311,6 +312,29 @@ public class ScannerExtensionDictionnaryTest {
     assertThat(extensions).containsExactly(pre, analyze, post);
   }
 
+  @Test
+  public void executionDependencies_are_the_extensions_which_must_be_executed_before() {
+    BatchExtension pre = new PreSensor();
+    BatchExtension a = new MethodDependentOf(null);
+    BatchExtension b = new MethodDependentOf(a);
+    BatchExtension generates = new GeneratesSomething("something");
+    BatchExtension dependsUpon = new MethodDependentOf("something");
+    BatchExtension independent = new MethodDependentOf(null);
+    BatchExtension post = new PostSensor();
+
+    ScannerExtensionDictionnary selector = newSelector();
+    Map<BatchExtension, Collection<BatchExtension>> dependencies = selector
+      .executionDependencies(Arrays.asList(pre, a, b, generates, dependsUpon, independent, post));
+
+    assertThat(dependencies.get(pre)).isEmpty();
+    assertThat(dependencies.get(a)).containsOnly(pre);
+    assertThat(dependencies.get(b)).containsOnly(pre, a);
+    assertThat(dependencies.get(generates)).containsOnly(pre);
+    assertThat(dependencies.get(dependsUpon)).containsOnly(pre, generates);
+    assertThat(dependencies.get(independent)).containsOnly(pre);
+    assertThat(dependencies.get(post)).containsOnly(pre, a, b, generates, dependsUpon, independent);
+  }
+
   @Test
   public void buildStatusCheckersAreExecutedAfterOtherPostJobs() {
     BuildBreaker checker = new BuildBreaker() {
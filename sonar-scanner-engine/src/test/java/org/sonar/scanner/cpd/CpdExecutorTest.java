@@ -236,6 +236,50 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void report_same_duplications_whatever_the_number_of_threads() throws IOException {
+    List<DefaultInputFile> files = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      DefaultInputFile file = createComponent("src/Dup" + i + ".php", 100);
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 20; j++) {
+        // each file shares its blocks with the file before and the file after
+        blocks.add(Block.builder()
+          .setResourceId(file.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray(String.format("%04d%04d", (i + j % 2) / 2, j).getBytes()))
+          .build());
+      }
+      index.insert((InputFile) file, blocks);
+      files.add(file);
+    }
+
+    executor.execute(60_000, 1);
+    List<List<Duplication>> sequentialDuplications = readAllDuplications(files);
+
+    File outputDir = temp.newFolder();
+    when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
+    reader = new ScannerReportReader(outputDir);
+    new CpdExecutor(settings, index, publisher, componentStore, branchConfig).execute(60_000, 4);
+
+    assertThat(sequentialDuplications.stream().mapToInt(List::size).sum()).isGreaterThan(0);
+    assertThat(readAllDuplications(files)).isEqualTo(sequentialDuplications);
+  }
+
+  private List<List<Duplication>> readAllDuplications(List<DefaultInputFile> files) {
+    List<List<Duplication>> result = new ArrayList<>();
+    for (DefaultInputFile file : files) {
+      List<Duplication> duplications = new ArrayList<>();
+      try (CloseableIterator<Duplication> it = reader.readComponentDuplications(file.batchId())) {
+        it.forEachRemaining(duplications::add);
+      }
+      result.add(duplications);
+    }
+    return result;
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
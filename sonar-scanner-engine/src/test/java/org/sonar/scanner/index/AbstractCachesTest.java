@@ -28,6 +28,7 @@ import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.bootstrap.GlobalTempFolderProvider;
 import org.sonar.scanner.storage.Storages;
@@ -55,7 +56,7 @@ public abstract class AbstractCachesTest {
 
   @Before
   public void start() {
-    caches = new Storages(cachesManager);
+    caches = new Storages(cachesManager, new MapSettings().asConfig());
     caches.start();
   }
 
@@ -20,10 +20,20 @@
 package org.sonar.scanner.phases;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -32,6 +42,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
@@ -45,6 +56,8 @@ import static org.mockito.Mockito.when;
 public class SensorsExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   private SensorsExecutor rootModuleExecutor;
   private SensorsExecutor subModuleExecutor;
@@ -94,8 +107,8 @@ public class SensorsExecutorTest {
     InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
     when(hierarchy.isRoot(rootModule)).thenReturn(true);
 
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy);
-    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy);
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
+    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
   }
 
   @Test
@@ -116,4 +129,101 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  @Test
+  public void should_execute_independent_sensors_concurrently_after_their_dependencies() throws IOException {
+    CountDownLatch bothIndependentSensorsStarted = new CountDownLatch(2);
+    List<String> executions = Collections.synchronizedList(new ArrayList<>());
+    Sensor first = new RecordingSensor("first", executions, null);
+    Sensor independent1 = new RecordingSensor("independent1", executions, bothIndependentSensorsStarted);
+    Sensor independent2 = new RecordingSensor("independent2", executions, bothIndependentSensorsStarted);
+    Sensor last = new RecordingSensor("last", executions, null);
+    List<Sensor> sensors = Arrays.asList(first, independent1, independent2, last);
+
+    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(sensors);
+    Map<Sensor, Collection<Sensor>> dependencies = new HashMap<>();
+    dependencies.put(first, Collections.emptyList());
+    dependencies.put(independent1, Collections.singletonList(first));
+    dependencies.put(independent2, Collections.singletonList(first));
+    dependencies.put(last, Arrays.asList(first, independent1, independent2));
+    when(selector.executionDependencies(sensors)).thenReturn(dependencies);
+    DefaultInputModule module = TestInputFileBuilder.newDefaultInputModule(ProjectDefinition.create().setKey("module")
+      .setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder()));
+
+    new SensorsExecutor(selector, module, mock(InputModuleHierarchy.class), mock(EventBus.class), strategy,
+      new MapSettings().setProperty("sonar.scanner.sensorThreads", 2).asConfig()).execute(context);
+
+    assertThat(executions).hasSize(4);
+    assertThat(executions.get(0)).isEqualTo("first");
+    assertThat(executions.subList(1, 3)).containsOnly("independent1", "independent2");
+    assertThat(executions.get(3)).isEqualTo("last");
+  }
+
+  @Test
+  public void should_fail_with_exception_of_sensor_executed_concurrently() throws IOException {
+    Sensor failing = new Sensor() {
+      @Override
+      public boolean shouldExecuteOnProject(Project project) {
+        return true;
+      }
+
+      @Override
+      public void analyse(Project module, SensorContext context) {
+        throw new IllegalArgumentException("failure");
+      }
+    };
+    List<Sensor> sensors = Arrays.asList(failing, perModuleSensor);
+    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(sensors);
+    Map<Sensor, Collection<Sensor>> dependencies = new HashMap<>();
+    dependencies.put(failing, Collections.emptyList());
+    dependencies.put(perModuleSensor, Collections.singletonList(failing));
+    when(selector.executionDependencies(sensors)).thenReturn(dependencies);
+    DefaultInputModule module = TestInputFileBuilder.newDefaultInputModule(ProjectDefinition.create().setKey("module")
+      .setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder()));
+    SensorsExecutor underTest = new SensorsExecutor(selector, module, mock(InputModuleHierarchy.class), mock(EventBus.class), strategy,
+      new MapSettings().setProperty("sonar.scanner.sensorThreads", 2).asConfig());
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("failure");
+
+    try {
+      underTest.execute(context);
+    } finally {
+      assertThat(perModuleSensor.called).isFalse();
+    }
+  }
+
+  private static class RecordingSensor implements Sensor {
+    private final String name;
+    private final List<String> executions;
+    private final CountDownLatch latch;
+
+    RecordingSensor(String name, List<String> executions, @Nullable CountDownLatch latch) {
+      this.name = name;
+      this.executions = executions;
+      this.latch = latch;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+
+    @Override
+    public void analyse(Project module, SensorContext context) {
+      if (latch != null) {
+        // blocks until the other independent sensor is started, so both must be executed at the same time
+        latch.countDown();
+        try {
+          assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+      }
+      executions.add(name);
+    }
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
+import org.sonar.scanner.protocol.output.FileStructure;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.scan.branch.BranchConfiguration;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
+
+import static com.google.common.collect.ImmutableList.of;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SourceFingerprintsPublisherTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private DefaultInputFile inputFile;
+  private SourceFingerprintsPublisher underTest;
+  private File outputDir;
+  private ScannerReportWriter writer;
+
+  @Before
+  public void prepare() throws IOException {
+    File baseDir = temp.newFolder();
+    inputFile = new TestInputFileBuilder("foo", "src/Foo.php").setLines(5).setModuleBaseDir(baseDir.toPath()).build();
+    DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule("foo", baseDir);
+    InputComponentStore componentStore = new InputComponentStore(rootModule, mock(DefaultAnalysisMode.class), mock(BranchConfiguration.class));
+    componentStore.put(inputFile);
+
+    underTest = new SourceFingerprintsPublisher(componentStore);
+    outputDir = temp.newFolder();
+    writer = new ScannerReportWriter(outputDir);
+  }
+
+  @Test
+  public void fingerprint_sections_written_in_report() throws IOException {
+    FileUtils.write(writer.getSourceFile(inputFile.batchId()), "1\n2\n3\n4\n5");
+    writer.writeComponentCoverage(inputFile.batchId(), of(ScannerReport.LineCoverage.newBuilder().setLine(2).setHits(true).build()));
+
+    underTest.publish(writer);
+
+    ScannerReport.SourceFingerprints fingerprints = new ScannerReportReader(outputDir).readSourceFingerprints(inputFile.batchId());
+    assertThat(fingerprints.getComponentRef()).isEqualTo(inputFile.batchId());
+    assertThat(fingerprints.getSource()).isEqualTo(DigestUtils.md5Hex("1\n2\n3\n4\n5"));
+    assertThat(fingerprints.getCoverage())
+      .isEqualTo(DigestUtils.md5Hex(FileUtils.readFileToByteArray(writer.getFileStructure().fileFor(FileStructure.Domain.COVERAGES, inputFile.batchId()))));
+    assertThat(fingerprints.getSyntaxHighlighting()).isEmpty();
+    assertThat(fingerprints.getSymbols()).isEmpty();
+  }
+
+  @Test
+  public void fingerprint_changes_with_section_content() throws IOException {
+    FileUtils.write(writer.getSourceFile(inputFile.batchId()), "1\n2");
+    underTest.publish(writer);
+    String before = new ScannerReportReader(outputDir).readSourceFingerprints(inputFile.batchId()).getSource();
+
+    FileUtils.write(writer.getSourceFile(inputFile.batchId()), "1\n3");
+    underTest.publish(writer);
+
+    assertThat(new ScannerReportReader(outputDir).readSourceFingerprints(inputFile.batchId()).getSource()).isNotEqualTo(before);
+  }
+}
@@ -29,6 +29,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.home.cache.DirectoryLock;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -81,6 +82,15 @@ public class WorkDirectoriesInitializerTest {
     assertThat(rootWorkDir.list()).containsOnly(DirectoryLock.LOCK_FILE_NAME);
   }
 
+  @Test
+  public void should_keep_file_metadata_cache() throws IOException {
+    new File(rootWorkDir, FileMetadataCache.FILE_NAME).createNewFile();
+
+    initializer.execute();
+
+    assertThat(rootWorkDir.list()).containsOnly(DirectoryLock.LOCK_FILE_NAME, FileMetadataCache.FILE_NAME);
+  }
+
   @Test
   public void cleaningRootModuleShouldNotDeleteChildrenWorkDir() throws IOException {
     DefaultInputModule moduleA = mock(DefaultInputModule.class);
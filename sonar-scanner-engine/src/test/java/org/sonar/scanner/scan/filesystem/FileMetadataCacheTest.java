@@ -0,0 +1,142 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileMetadataCacheTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
+  private System2 system2 = mock(System2.class);
+  private MapSettings settings = new MapSettings();
+  private Path workDir;
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = temp.newFolder().toPath();
+    DefaultInputModule root = mock(DefaultInputModule.class);
+    when(root.getWorkDir()).thenReturn(workDir);
+    when(hierarchy.root()).thenReturn(root);
+    when(system2.now()).thenReturn(NOW);
+    file = temp.newFile().toPath();
+    Files.write(file, "foo\nbar\r\n\nbaz".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 60_000L));
+  }
+
+  @Test
+  public void reuse_metadata_of_previous_analysis() throws IOException {
+    Metadata metadata = new Metadata(4, 3, "hash", new int[] {0, 4, 9, 10}, 13);
+    FileMetadataCache cache = newCache();
+    assertThat(cache.get(file, attributes(), StandardCharsets.UTF_8)).isNull();
+    cache.put(file, attributes(), StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, metadata);
+    cache.stop();
+
+    cache = newCache();
+    FileMetadataCache.Entry entry = cache.get(file, attributes(), StandardCharsets.UTF_8);
+    assertThat(entry.charset()).isEqualTo(StandardCharsets.ISO_8859_1);
+    assertThat(entry.metadata().lines()).isEqualTo(4);
+    assertThat(entry.metadata().nonBlankLines()).isEqualTo(3);
+    assertThat(entry.metadata().hash()).isEqualTo("hash");
+    assertThat(entry.metadata().originalLineOffsets()).containsExactly(0, 4, 9, 10);
+    assertThat(entry.metadata().lastValidOffset()).isEqualTo(13);
+    cache.stop();
+
+    // reused metadata are kept for the next analysis
+    assertThat(newCache().get(file, attributes(), StandardCharsets.UTF_8)).isNotNull();
+  }
+
+  @Test
+  public void ignore_metadata_of_modified_files() throws IOException {
+    FileMetadataCache cache = newCache();
+    cache.put(file, attributes(), StandardCharsets.UTF_8, StandardCharsets.UTF_8, new Metadata(1, 1, "hash", new int[] {0}, 3));
+    cache.stop();
+
+    cache = newCache();
+    assertThat(cache.get(file, attributes(), StandardCharsets.UTF_16)).isNull();
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 30_000L));
+    assertThat(cache.get(file, attributes(), StandardCharsets.UTF_8)).isNull();
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 60_000L));
+    Files.write(file, "foo".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 60_000L));
+    assertThat(cache.get(file, attributes(), StandardCharsets.UTF_8)).isNull();
+  }
+
+  @Test
+  public void do_not_keep_metadata_of_files_modified_just_before_being_read() throws IOException {
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 500L));
+    FileMetadataCache cache = newCache();
+    cache.put(file, attributes(), StandardCharsets.UTF_8, StandardCharsets.UTF_8, new Metadata(1, 1, "hash", new int[] {0}, 3));
+    cache.stop();
+
+    assertThat(newCache().get(file, attributes(), StandardCharsets.UTF_8)).isNull();
+  }
+
+  @Test
+  public void ignore_corrupted_cache() throws IOException {
+    Files.write(workDir.resolve(FileMetadataCache.FILE_NAME), "corrupted".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(newCache().get(file, attributes(), StandardCharsets.UTF_8)).isNull();
+  }
+
+  @Test
+  public void disable_cache() throws IOException {
+    settings.setProperty(FileMetadataCache.ENABLED_PROP_KEY, false);
+    FileMetadataCache cache = newCache();
+    assertThat(cache.isEnabled()).isFalse();
+    cache.put(file, attributes(), StandardCharsets.UTF_8, StandardCharsets.UTF_8, new Metadata(1, 1, "hash", new int[] {0}, 3));
+    cache.stop();
+
+    assertThat(workDir.resolve(FileMetadataCache.FILE_NAME)).doesNotExist();
+  }
+
+  private FileMetadataCache newCache() {
+    FileMetadataCache cache = new FileMetadataCache(hierarchy, settings.asConfig(), system2);
+    cache.start();
+    return cache;
+  }
+
+  private BasicFileAttributes attributes() throws IOException {
+    return Files.readAttributes(file, BasicFileAttributes.class);
+  }
+}
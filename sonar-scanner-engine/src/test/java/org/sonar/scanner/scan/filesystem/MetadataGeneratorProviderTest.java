@@ -46,6 +46,6 @@ public class MetadataGeneratorProviderTest {
 
     MetadataGeneratorProvider factory = new MetadataGeneratorProvider();
     assertThat(factory.provide(new DefaultInputModule(ProjectDefinition.create().setKey("module").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder())),
-      statusDetectionFactory, new FileMetadata(), issueExclusionsLoader)).isNotNull();
+      statusDetectionFactory, new FileMetadata(), issueExclusionsLoader, mock(FileMetadataCache.class))).isNotNull();
   }
 }
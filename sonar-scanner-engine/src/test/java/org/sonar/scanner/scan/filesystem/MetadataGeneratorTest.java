@@ -21,8 +21,10 @@ package org.sonar.scanner.scan.filesystem;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -36,8 +38,11 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.PathUtils;
+import org.sonar.api.utils.System2;
 import org.sonar.scanner.issue.ignore.pattern.IssueExclusionPatternInitializer;
 import org.sonar.scanner.issue.ignore.pattern.PatternMatcher;
 import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
@@ -57,6 +62,7 @@ public class MetadataGeneratorTest {
   private DefaultModuleFileSystem fs;
 
   private FileMetadata metadata;
+  private FileMetadataCache cache;
   private MetadataGenerator generator;
 
   @Before
@@ -64,8 +70,11 @@ public class MetadataGeneratorTest {
     MockitoAnnotations.initMocks(this);
     metadata = new FileMetadata();
     IssueExclusionsLoader issueExclusionsLoader = new IssueExclusionsLoader(mock(IssueExclusionPatternInitializer.class), mock(PatternMatcher.class));
-    generator = new MetadataGenerator(new DefaultInputModule(ProjectDefinition.create().setKey("module").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder())),
-      statusDetection, metadata, issueExclusionsLoader);
+    DefaultInputModule module = new DefaultInputModule(ProjectDefinition.create().setKey("module").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder()));
+    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
+    when(hierarchy.root()).thenReturn(module);
+    cache = new FileMetadataCache(hierarchy, new MapSettings().asConfig(), System2.INSTANCE);
+    generator = new MetadataGenerator(module, statusDetection, metadata, issueExclusionsLoader, cache);
   }
 
   @Test
@@ -131,6 +140,25 @@ public class MetadataGeneratorTest {
     }
   }
 
+  @Test
+  public void reuse_metadata_of_files_with_same_size_and_modification_time() throws Exception {
+    Path file = temp.newFile().toPath();
+    FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60_000L);
+    FileUtils.write(file.toFile(), "foo\nbar", StandardCharsets.UTF_8);
+    Files.setLastModifiedTime(file, lastModified);
+    assertThat(createInputFileWithMetadata(file).hash()).isEqualTo(md5Hex("foo\nbar"));
+
+    FileUtils.write(file.toFile(), "baz\nqux", StandardCharsets.UTF_8);
+    Files.setLastModifiedTime(file, lastModified);
+    // next analysis
+    cache.stop();
+    cache.start();
+    assertThat(createInputFileWithMetadata(file).hash()).isEqualTo(md5Hex("foo\nbar"));
+
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified.toMillis() - 1_000L));
+    assertThat(createInputFileWithMetadata(file).hash()).isEqualTo(md5Hex("baz\nqux"));
+  }
+
   @Test
   public void complete_input_file() throws Exception {
     // file system
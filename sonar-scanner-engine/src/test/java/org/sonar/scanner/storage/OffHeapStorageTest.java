@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapStorageTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File spillDir;
+
+  @Before
+  public void setUp() throws IOException {
+    spillDir = temp.newFolder();
+  }
+
+  @Test
+  public void values_of_a_group_are_iterated_in_the_order_they_were_added() {
+    OffHeapStorage<String> storage = newStorage(new MemoryArenas(1024 * 1024, 1024, spillDir));
+    storage.put(3, "c").put(1, "a").put(3, "b").put(3, "a");
+
+    assertThat(storage.values(3)).containsExactly("c", "b", "a");
+    assertThat(storage.values(1)).containsExactly("a");
+    assertThat(storage.values(2)).isEmpty();
+    assertThat(storage.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void values_of_all_groups_are_sorted_by_group() {
+    OffHeapStorage<String> storage = newStorage(new MemoryArenas(1024 * 1024, 1024, spillDir));
+    storage.put(3, "c").put(0, "zero").put(-1, "minus").put(3, "d");
+
+    assertThat(storage.values()).containsExactly("minus", "zero", "c", "d");
+    // can be iterated again
+    assertThat(storage.values()).hasSize(4);
+  }
+
+  @Test
+  public void index_many_groups() {
+    OffHeapStorage<String> storage = newStorage(new MemoryArenas(1024 * 1024, 64 * 1024, spillDir));
+    for (int i = 0; i < 10_000; i++) {
+      storage.put(i * 31, "a" + i).put(i * 31, "b" + i);
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(storage.values(i * 31)).containsExactly("a" + i, "b" + i);
+    }
+    assertThat(storage.values()).hasSize(20_000);
+  }
+
+  @Test
+  public void spill_to_files_when_memory_is_full() {
+    MemoryArenas arenas = new MemoryArenas(256, 128, spillDir);
+    OffHeapStorage<String> storage = newStorage(arenas);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      storage.put(i % 3, "value" + i);
+      if (i % 3 == 1) {
+        expected.add("value" + i);
+      }
+    }
+
+    assertThat(arenas.allocatedMemory()).isEqualTo(256);
+    assertThat(arenas.spillFileCount()).isGreaterThan(0);
+    assertThat(spillDir.listFiles()).hasSize(arenas.spillFileCount());
+    assertThat(storage.values(1)).containsExactlyElementsOf(expected);
+
+    arenas.close();
+    assertThat(arenas.spillFileCount()).isZero();
+    assertThat(arenas.allocatedMemory()).isZero();
+  }
+
+  @Test
+  public void store_values_larger_than_arenas() {
+    OffHeapStorage<String> storage = newStorage(new MemoryArenas(1024 * 1024, 16, spillDir));
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("a");
+    }
+    storage.put(1, "small").put(1, sb.toString()).put(1, "small again");
+
+    assertThat(storage.values(1)).containsExactly("small", sb.toString(), "small again");
+  }
+
+  private static OffHeapStorage<String> newStorage(MemoryArenas arenas) {
+    return new OffHeapStorage<>("test", new StringCodec(), arenas);
+  }
+
+  static class StringCodec implements OffHeapStorage.Codec<String> {
+    @Override
+    public byte[] encode(String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(byte[] bytes) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.persistit.Value;
+import com.persistit.encoding.CoderContext;
+import com.persistit.encoding.ValueCoder;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.scanner.bootstrap.GlobalProperties;
+import org.sonar.scanner.bootstrap.GlobalTempFolderProvider;
+import org.sonar.scanner.issue.tracking.ServerIssueValueCoder;
+import org.sonar.scanner.protocol.Constants.Severity;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares {@link OffHeapStorage} with the Persistit {@link Storage} on the workload of the server issues of a project:
+ * issues are put by component, then read component by component, then iterated all at once. Startup is the time to
+ * get an empty storage, Persistit being initialized by {@link StoragesManager}.
+ * <p>
+ * 1,000,000 issues on 10,000 components are stored by default, which can be changed with the system property
+ * {@code sonar.test.storageBenchmark.issues}. On 1,000,000 issues, Persistit takes about 8.5 s to put, 1.7 s to get,
+ * 0.9 s to iterate and 75 ms to start. The off-heap storage takes about 1 s to put, 0.3 s to get, 0.4 s to iterate and
+ * a few ms to start.
+ * <p>
+ * Being too slow for the default build, it is executed only when the system property {@code sonar.test.benchmarks} is
+ * true, for example with {@code mvn test -Dtest=StorageBenchmarkTest -Dsonar.test.benchmarks=true}.
+ */
+public class StorageBenchmarkTest {
+
+  private static final Logger LOGGER = Loggers.get(StorageBenchmarkTest.class);
+  private static final int ISSUES = Integer.getInteger("sonar.test.storageBenchmark.issues", 1_000_000);
+  private static final int COMPONENTS = 10_000;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Before
+  public void setUp() {
+    assumeTrue(Boolean.getBoolean("sonar.test.benchmarks"));
+  }
+
+  @Test
+  public void compare_persistit_and_off_heap_storages() {
+    long start = System.currentTimeMillis();
+    StoragesManager storagesManager = new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(ImmutableMap.of(
+      CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath()))));
+    Storages storages = new Storages(storagesManager, new MapSettings().asConfig());
+    storages.registerValueCoder(ServerIssue.class, new PersistitServerIssueCoder());
+    Storage<ServerIssue> persistitStorage = storages.createCache("persistit");
+    long persistitStartup = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    OffHeapStorage<ServerIssue> offHeapStorage = storages.createOffHeapStorage("offHeap", new ServerIssueValueCoder());
+    long offHeapStartup = System.currentTimeMillis() - start;
+
+    try {
+      start = System.currentTimeMillis();
+      for (int i = 0; i < ISSUES; i++) {
+        ServerIssue issue = newIssue(i);
+        persistitStorage.put(i % COMPONENTS, issue.getKey(), issue);
+      }
+      long persistitPut = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      for (int i = 0; i < ISSUES; i++) {
+        offHeapStorage.put(i % COMPONENTS, newIssue(i));
+      }
+      long offHeapPut = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      int persistitGot = 0;
+      for (int component = 0; component < COMPONENTS; component++) {
+        for (ServerIssue issue : persistitStorage.values(component)) {
+          persistitGot += issue.getLine() >= 0 ? 1 : 0;
+        }
+      }
+      long persistitGet = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      int offHeapGot = 0;
+      for (int component = 0; component < COMPONENTS; component++) {
+        for (ServerIssue issue : offHeapStorage.values(component)) {
+          offHeapGot += issue.getLine() >= 0 ? 1 : 0;
+        }
+      }
+      long offHeapGet = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      int persistitIterated = count(persistitStorage.values());
+      long persistitIterate = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      int offHeapIterated = count(offHeapStorage.values());
+      long offHeapIterate = System.currentTimeMillis() - start;
+
+      LOGGER.info("{} issues on {} components. Persistit: startup={} ms, put={} ms, get={} ms, iterate={} ms. " +
+        "Off-heap: startup={} ms, put={} ms, get={} ms, iterate={} ms",
+        ISSUES, COMPONENTS, persistitStartup, persistitPut, persistitGet, persistitIterate,
+        offHeapStartup, offHeapPut, offHeapGet, offHeapIterate);
+      assertThat(persistitGot).isEqualTo(ISSUES);
+      assertThat(offHeapGot).isEqualTo(ISSUES);
+      assertThat(persistitIterated).isEqualTo(ISSUES);
+      assertThat(offHeapIterated).isEqualTo(ISSUES);
+    } finally {
+      storages.stop();
+      storagesManager.stop();
+    }
+  }
+
+  private static int count(Iterable<ServerIssue> issues) {
+    int count = 0;
+    for (ServerIssue issue : issues) {
+      count += issue.hasKey() ? 1 : 0;
+    }
+    return count;
+  }
+
+  private static ServerIssue newIssue(int i) {
+    return ServerIssue.newBuilder()
+      .setKey("AVxyz" + i)
+      .setModuleKey("org.sonarsource:project")
+      .setPath("src/main/java/org/sonarsource/File" + (i % COMPONENTS) + ".java")
+      .setRuleRepository("squid")
+      .setRuleKey("S" + (i % 500))
+      .setLine(1 + i % 1000)
+      .setMsg("Remove this unused private field number " + i)
+      .setChecksum("c1b2a3" + i)
+      .setStatus("OPEN")
+      .setSeverity(Severity.MAJOR)
+      .setCreationDate(1_500_000_000_000L + i)
+      .build();
+  }
+
+  private static class PersistitServerIssueCoder implements ValueCoder {
+    @Override
+    public void put(Value value, Object object, CoderContext context) {
+      value.putByteArray(((ServerIssue) object).toByteArray());
+    }
+
+    @Override
+    public Object get(Value value, Class<?> clazz, CoderContext context) {
+      try {
+        return ServerIssue.parseFrom(value.getByteArray());
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
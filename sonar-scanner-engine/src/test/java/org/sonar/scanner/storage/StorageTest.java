@@ -20,6 +20,11 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage.Entry;
@@ -248,4 +253,33 @@ public class StorageTest extends AbstractCachesTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void support_concurrent_writes_and_reads() throws Exception {
+    Storage<String> cache = caches.createCache("concurrent");
+    int threads = 4;
+    int valuesPerThread = 500;
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        String group = "group" + t;
+        futures.add(executorService.submit(() -> {
+          for (int i = 0; i < valuesPerThread; i++) {
+            cache.put(group, i, group + "-" + i);
+            assertThat(cache.get(group, i)).isEqualTo(group + "-" + i);
+          }
+          assertThat(cache.values(group)).hasSize(valuesPerThread);
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(cache.keySet()).hasSize(threads);
+    assertThat(cache.values()).hasSize(threads * valuesPerThread);
+  }
 }
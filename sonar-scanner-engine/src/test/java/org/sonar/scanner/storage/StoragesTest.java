@@ -22,6 +22,7 @@ package org.sonar.scanner.storage;
 import com.persistit.exception.PersistitException;
 import java.io.Serializable;
 import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.scanner.index.AbstractCachesTest;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,6 +46,17 @@ public class StoragesTest extends AbstractCachesTest {
     }
   }
 
+  @Test
+  public void should_not_create_off_heap_storage_with_the_name_of_a_cache() {
+    caches.<Element>createCache("foo");
+    try {
+      caches.createOffHeapStorage("foo", new OffHeapStorageTest.StringCodec());
+      fail();
+    } catch (IllegalStateException e) {
+      // ok
+    }
+  }
+
   @Test
   public void should_clean_resources() {
     Storage<String> c = caches.<String>createCache("test1");
@@ -57,7 +69,7 @@ public class StoragesTest extends AbstractCachesTest {
     // manager continues up
     assertThat(cachesManager.persistit().isInitialized()).isTrue();
 
-    caches = new Storages(cachesManager);
+    caches = new Storages(cachesManager, new MapSettings().asConfig());
     caches.start();
     caches.createCache("test1");
   }
@@ -73,7 +85,7 @@ public class StoragesTest extends AbstractCachesTest {
     }
 
     for (int i = 0; i < 3; i++) {
-      caches = new Storages(cachesManager);
+      caches = new Storages(cachesManager, new MapSettings().asConfig());
       caches.start();
       Storage<String> c = caches.<String>createCache("test" + i);
       c.put("key" + i, sb.toString());
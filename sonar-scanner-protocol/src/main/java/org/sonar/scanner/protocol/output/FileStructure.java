@@ -41,6 +41,7 @@ public class FileStructure {
     COVERAGES("coverages-", Domain.PB),
     TESTS("tests-", Domain.PB),
     COVERAGE_DETAILS("coverage-details-", Domain.PB),
+    SOURCE_FINGERPRINTS("source-fingerprints-", Domain.PB),
     SOURCE("source-", ".txt");
 
     private static final String PB = ".pb";
@@ -53,6 +54,11 @@ public class FileStructure {
     }
   }
 
+  public static final String METADATA_FILE = "metadata.pb";
+  public static final String ANALYSIS_LOG_FILE = "analysis.log";
+  public static final String ACTIVE_RULES_FILE = "activerules.pb";
+  public static final String CONTEXT_PROPERTIES_FILE = "context-props.pb";
+
   private final File dir;
 
   public FileStructure(File dir) {
@@ -63,23 +69,31 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, METADATA_FILE);
   }
 
   public File analysisLog() {
-    return new File(dir, "analysis.log");
+    return new File(dir, ANALYSIS_LOG_FILE);
   }
 
   public File activeRules() {
-    return new File(dir, "activerules.pb");
+    return new File(dir, ACTIVE_RULES_FILE);
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return new File(dir, fileName(domain, componentRef));
+  }
+
+  /**
+   * Name of the file of the given domain and component, relative to the root of the report. It is also
+   * the name of the corresponding entry in the zipped report.
+   */
+  public static String fileName(Domain domain, int componentRef) {
+    return domain.filePrefix + componentRef + domain.fileSuffix;
   }
 
   public File contextProperties() {
-    return new File(dir, "context-props.pb");
+    return new File(dir, CONTEXT_PROPERTIES_FILE);
   }
   
   public File root() {
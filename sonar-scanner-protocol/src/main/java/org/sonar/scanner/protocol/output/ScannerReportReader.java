@@ -67,6 +67,15 @@ public class ScannerReportReader {
     return null;
   }
 
+  @CheckForNull
+  public ScannerReport.SourceFingerprints readSourceFingerprints(int fileRef) {
+    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE_FINGERPRINTS, fileRef);
+    if (fileExists(file)) {
+      return Protobuf.read(file, ScannerReport.SourceFingerprints.parser());
+    }
+    return null;
+  }
+
   public ScannerReport.Component readComponent(int componentRef) {
     File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
     if (!fileExists(file)) {
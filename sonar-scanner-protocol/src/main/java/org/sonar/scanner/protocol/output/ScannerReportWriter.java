@@ -94,6 +94,12 @@ public class ScannerReportWriter {
     return file;
   }
 
+  public File writeSourceFingerprints(ScannerReport.SourceFingerprints fingerprints) {
+    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE_FINGERPRINTS, fingerprints.getComponentRef());
+    Protobuf.write(fingerprints, file);
+    return file;
+  }
+
   public File writeComponentDuplications(int componentRef, Iterable<ScannerReport.Duplication> duplications) {
     File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
     Protobuf.writeStream(duplications, file, false);
@@ -141,6 +141,21 @@ public class ScannerReportReaderTest {
     assertThat(underTest.readChangesets(UNKNOWN_COMPONENT_REF)).isNull();
   }
 
+  @Test
+  public void read_source_fingerprints() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeSourceFingerprints(ScannerReport.SourceFingerprints.newBuilder()
+      .setComponentRef(1)
+      .setSource("abc")
+      .setCoverage("def")
+      .build());
+
+    assertThat(underTest.readSourceFingerprints(1).getSource()).isEqualTo("abc");
+    assertThat(underTest.readSourceFingerprints(1).getCoverage()).isEqualTo("def");
+    assertThat(underTest.readSourceFingerprints(1).getSymbols()).isEmpty();
+    assertThat(underTest.readSourceFingerprints(UNKNOWN_COMPONENT_REF)).isNull();
+  }
+
   @Test
   public void read_duplications() {
     ScannerReportWriter writer = new ScannerReportWriter(dir);
@@ -21,9 +21,11 @@ package org.sonarqube.tests.performance.scanner;
 
 import com.sonar.orchestrator.Orchestrator;
 import com.sonar.orchestrator.build.MavenBuild;
+import com.sonar.orchestrator.build.SonarScanner;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Properties;
 import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -31,6 +33,7 @@ import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ErrorCollector;
+import org.apache.commons.io.FileUtils;
 import org.junit.rules.TemporaryFolder;
 import org.sonarqube.tests.performance.AbstractPerfTest;
 import org.sonarqube.ws.WsMeasures;
@@ -79,6 +82,50 @@ public class DuplicationTest extends AbstractPerfTest {
     assertThat(measure.get("duplicated_lines")).isGreaterThan(50000.0);
   }
 
+  /**
+   * Detection of duplications is executed on several threads. 10,000 files of 200 lines, each file sharing half of its
+   * lines with other files.
+   */
+  @Test
+  public void largeProjectWithManyDuplicatedFiles() throws IOException {
+    File baseDir = prepareProjectWithManyDuplicatedFiles(10_000, 200);
+    SonarScanner scanner = SonarScanner.create()
+      .setProperties(
+        "sonar.projectKey", "cpd-large-project",
+        "sonar.projectName", "cpd large project",
+        "sonar.projectVersion", "1.0",
+        "sonar.sources", "src",
+        "sonar.scm.disabled", "true",
+        "sonar.showProfiling", "true")
+      .setEnvironmentVariable("SONAR_RUNNER_OPTS", "-Xmx1024m -server")
+      .setEnvironmentVariable("SONAR_SCANNER_OPTS", "-Xmx1024m -server")
+      .setProjectDir(baseDir);
+    orchestrator.executeBuild(scanner);
+
+    Properties prof = readProfiling(baseDir, "cpd-large-project");
+    assertDurationLessThan(collector, Long.valueOf(prof.getProperty("Computing duplications")), 60_000L);
+    assertThat(getMeasures("cpd-large-project").get("duplicated_files")).isEqualTo(10_000.0);
+  }
+
+  private File prepareProjectWithManyDuplicatedFiles(int files, int lines) throws IOException {
+    File baseDir = temp.newFolder();
+    File srcDir = new File(baseDir, "src");
+    srcDir.mkdir();
+    for (int file = 0; file < files; file++) {
+      StringBuilder content = new StringBuilder();
+      for (int line = 0; line < lines; line++) {
+        if (line < lines / 2) {
+          // shared with the 9 other files of the same group of 10 files
+          content.append("shared").append(file / 10).append(" token").append(line).append(" value").append(line % 7).append('\n');
+        } else {
+          content.append("unique").append(file).append(" token").append(line).append('\n');
+        }
+      }
+      FileUtils.write(new File(srcDir, "sample" + file + ".xoo"), content.toString());
+    }
+    return baseDir;
+  }
+
   private Map<String, Double> getMeasures(String key) {
     return newWsClient().measures().component(new ComponentWsRequest()
       .setComponentKey(key)
@@ -86,7 +86,11 @@ public class FileSystemTest extends AbstractPerfTest {
     orchestrator.executeBuild(runner);
 
     Properties prof = readProfiling(baseDir, "filesystemXmx" + xmx);
-    perfRule.assertDurationAround(Long.valueOf(prof.getProperty("Index filesystem")), expectedDuration);
+    long duration = Long.valueOf(prof.getProperty("Index filesystem"));
+    long bytes = FileUtils.sizeOfDirectory(new File(baseDir, "src"));
+    System.out.printf("Test %s : indexed %d MB at %.1f MB/s%n", testName.getMethodName(), bytes / FileUtils.ONE_MB,
+      1000.0 * bytes / FileUtils.ONE_MB / Math.max(1L, duration));
+    perfRule.assertDurationAround(duration, expectedDuration);
   }
 
   private static File prepareProject() throws IOException {